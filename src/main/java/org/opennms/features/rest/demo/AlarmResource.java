@@ -1,9 +1,5 @@
 package org.opennms.features.rest.demo;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 
 import javax.ws.rs.GET;
@@ -11,27 +7,37 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
-import org.opennms.core.criteria.Criteria;
-import org.opennms.core.criteria.CriteriaBuilder;
-import org.opennms.features.rest.demo.exception.NotFIQLOperatorException;
-import org.opennms.features.rest.demo.util.QueryDecoder;
+import org.opennms.core.criteria.Alias.JoinType;
+import org.opennms.features.rest.demo.alarm.AlarmSnapshot;
+import org.opennms.features.rest.demo.cache.RepresentationCache;
+import org.opennms.features.rest.demo.search.NodeCategoryRestriction;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.search.SearchDefinition;
+import org.opennms.features.rest.demo.search.SearchEngine;
+import org.opennms.features.rest.demo.search.SearchRequest;
+import org.opennms.features.rest.demo.search.ValueConverters;
+import org.opennms.features.rest.demo.search.deadline.DeadlineInterceptor;
 import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.dao.api.CategoryDao;
+import org.opennms.netmgt.dao.api.OnmsDao;
 import org.opennms.netmgt.model.OnmsAlarm;
 import org.opennms.netmgt.model.OnmsAlarmCollection;
-import org.opennms.netmgt.model.OnmsSeverity;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.orm.hibernate3.HibernateQueryException;
+import org.opennms.netmgt.model.OnmsCategory;
 
 @Path("/alarms")
 @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
 public class AlarmResource {
 
     private AlarmDao alarmDao;
-    private static Logger logger = LoggerFactory.getLogger(NodeResource.class);    
+    private CategoryDao categoryDao;
+    private SearchEngine searchEngine;
+    private RepresentationCache representationCache;
+    private AlarmSnapshot alarmSnapshot;
 
     /**
      * get all alarms in the system
@@ -50,80 +56,34 @@ public class AlarmResource {
      */
     @GET
     @Path("{alarmId}")
-    public OnmsAlarm getAlarmById(@PathParam("alarmId") final Integer alarmId) {
-        return alarmDao.get(alarmId);
+    public Response getAlarmById(@PathParam("alarmId") final Integer alarmId, @Context HttpHeaders headers) {
+        Response response = representationCache.respond(OnmsAlarm.class.getSimpleName(), alarmId, headers, new RepresentationCache.Loader() {
+            public Object load() {
+                return alarmDao.get(alarmId);
+            }
+        });
+        return response != null ? response : Response.noContent().build();
     }
 
     /**
      * search alarm data by FIQL and get paginated result
+     * attributes of the node are queried as node.label, node.foreignSource and node.categories in the same statement, ex -
+     * http://localhost:8980/opennms/rest2/alarms?_s=severity=ge=6;node.categories==Production&orderBy=node.label
      * 
      * @param queryString
      * @param limit
      * @param offset
      * @param orderBy
      * @param order
+     * @param timeout - milliseconds the search may take, capped by the configured maximum
      * @return
      */
     @GET
     public Response searchAlarms(@QueryParam("_s") String queryString, @QueryParam("limit") String limit, 
-            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order) {
-        QueryDecoder aqd = new AlarmQueryDecoder();
-        
-        if (queryString == null) {
-            queryString = "";
-        }
-        
-        if (limit == null) {
-            limit = "10";
-        }
-
-        if (offset == null) {
-            offset = "0";
-        }
-        
-        if (orderBy == null) {
-            orderBy = "lastEventTime";
-        } 
-        
-        if (order == null) {
-            order = "asc";
-        } 
-        
-        Criteria crit;
-        try{
-            crit = aqd.FIQLtoCriteria(queryString, Integer.parseInt(limit), Integer.parseInt(offset), orderBy, order);
-        }
-        catch(NotFIQLOperatorException e){    //in a case where user has specified an invalid FIQL operator
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(ParseException e){    //in a case where user has provided data in wrong format
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(NumberFormatException e){    //in a case where user has provided wrong data for query params
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        } 
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        OnmsAlarmCollection result;
-        
-        try{         
-            result = new OnmsAlarmCollection(alarmDao.findMatching(crit));
-        }
-        catch(HibernateQueryException e){    //in a case where user has requested a non existing data type
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        if (result.isEmpty()) {         //result set is empty
-            return Response.noContent().build();
-        }
-        return Response.ok().entity(result).build();
+            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order,
+            @QueryParam("timeout") String timeout) {
+        return searchEngine.search(searchDefinition, new SearchRequest(queryString, limit, offset, orderBy, order)
+                                   .parameter(DeadlineInterceptor.PARAMETER, timeout));
     }
 
     /**
@@ -135,57 +95,74 @@ public class AlarmResource {
     }
     
     /**
-     * inner class to do the query decoding part of the search function 
-     *
+     * method to initialize local variable categoryDao using blueprint
+     * @param categoryDao
      */
-    private class AlarmQueryDecoder extends QueryDecoder { //start of inner class
-        
-        /**
-         * implemented abstract method from QueryDecoder class
-         * in order to create the appropriate criteria object
-         * 
-         */
-        protected CriteriaBuilder CreateCriteriaBuilder(){
-            final CriteriaBuilder builder = new CriteriaBuilder(OnmsAlarm.class);
-            
-            builder.orderBy("lastEventTime").desc();
-            builder.orderBy("id").desc();
+    public void setCategoryDao(CategoryDao categoryDao) {
+        this.categoryDao = categoryDao;
+    }
+    
+    /**
+     * method to initialize local variable searchEngine using blueprint
+     * @param searchEngine
+     */
+    public void setSearchEngine(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+    
+    /**
+     * method to initialize local variable representationCache using blueprint
+     * @param representationCache
+     */
+    public void setRepresentationCache(RepresentationCache representationCache) {
+        this.representationCache = representationCache;
+    }
+    
+    /**
+     * method to initialize local variable alarmSnapshot using blueprint
+     * @param alarmSnapshot
+     */
+    public void setAlarmSnapshot(AlarmSnapshot alarmSnapshot) {
+        this.alarmSnapshot = alarmSnapshot;
+    }
+    
+    /**
+     * search metadata of alarms
+     */
+    private final SearchDefinition<OnmsAlarm> searchDefinition = new SearchDefinition<OnmsAlarm>(OnmsAlarm.class, "lastEventTime", "asc") {
+        {
+            orderBy("lastEventTime", false);
+            orderBy("id", false);
+            fetched(AlarmSnapshot.FETCH_PATHS);
+            indexed("id", "uei", "node", "node.id", "node.label", "node.foreignSource", "node.categories", "reductionKey", "lastEventTime", "alarmAckUser", "severity");
             
-            return builder;
+            properties(ValueConverters.DATE, "firstEventTime", "lastEventTime", "firstAutomationTime", "suppressedUntil", "suppressedTime", "alarmAckTime");
+            properties(ValueConverters.INTEGER, "id", "ifIndex", "counter", "node.id");
+            lazyAlias("node", "node", JoinType.LEFT_JOIN);
+            restriction("node.categories", new NodeCategoryRestriction("nodeId") {
+                protected OnmsCategory findCategory(String name) {
+                    return categoryDao.findByName(name);
+                }
+            });
+            property("severity", ValueConverters.SEVERITY);
+        }
+        
+        public OnmsDao<OnmsAlarm, Integer> getDao() {
+            return alarmDao;
+        }
+        
+        public Object createCollection(List<OnmsAlarm> results) {
+            return new OnmsAlarmCollection(results);
         }
         
         /**
-         * implemented abstract method from QueryDecoder class
-         * For the given property name respective comparable object is created
-         * ex - createTime -> java.util.Date
-         * 
-         * TODO - extend to provide validations
-         * 
-         * @param propertyName
-         * @param compareValue
-         * @return
-         * @throws ParseException 
+         * unacknowledged alarms (alarmAckTime==null) filtered by severity, node.id and times
+         * are answered by the alarm snapshot
          */
-        protected Object getCompareObject(String propertyName, String compareValue) throws ParseException {
-            if (propertyName.equals("firstEventTime") || propertyName.equals("lastEventTime") || propertyName.equals("firstAutomationTime")
-                    || propertyName.equals("suppressedUntil") || propertyName.equals("suppressedTime") || propertyName.equals("alarmAckTime")) {
-                DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-                try {
-                    Date formattedDate = formatter.parse(compareValue);
-                    return formattedDate;
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    throw new ParseException("Please specify dates in format \"yyyy-MM-dd'T'HH:mm:ss\"", 0);
-                }
-            }
-            else if (propertyName.equals("id") || propertyName.equals("ifIndex") || propertyName.equals("counter")) {
-                return Integer.parseInt(compareValue);
-            }
-            else if (propertyName.equals("severity")) {
-                return OnmsSeverity.get(Integer.parseInt(compareValue));
-            }
-            return compareValue;
+        @Override
+        public List<OnmsAlarm> findInMemory(SearchContext<OnmsAlarm> ctx) {
+            return alarmSnapshot == null ? null : alarmSnapshot.find(ctx);
         }
-    }//end of inner class
+    };
     
-}
\ No newline at end of file
+}
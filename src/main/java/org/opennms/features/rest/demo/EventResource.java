@@ -1,40 +1,56 @@
 package org.opennms.features.rest.demo;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
-import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.Alias.JoinType;
 import org.opennms.core.criteria.CriteriaBuilder;
-import org.opennms.features.rest.demo.exception.NotFIQLOperatorException;
-import org.opennms.features.rest.demo.util.QueryDecoder;
+import org.opennms.features.rest.demo.cache.RepresentationCache;
+import org.opennms.features.rest.demo.event.RecentEventBuffer;
+import org.opennms.features.rest.demo.export.NdjsonExporter;
+import org.opennms.features.rest.demo.search.NodeCategoryRestriction;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.search.SearchDefinition;
+import org.opennms.features.rest.demo.search.SearchEngine;
+import org.opennms.features.rest.demo.search.SearchRequest;
+import org.opennms.features.rest.demo.search.ValueConverters;
+import org.opennms.features.rest.demo.search.deadline.DeadlineInterceptor;
+import org.opennms.features.rest.demo.search.partition.TimePartitionInterceptor;
+import org.opennms.netmgt.dao.api.CategoryDao;
 import org.opennms.netmgt.dao.api.EventDao;
-import org.opennms.netmgt.dao.api.NodeDao;
 
+import org.opennms.netmgt.dao.api.OnmsDao;
+import org.opennms.netmgt.model.OnmsCategory;
 import org.opennms.netmgt.model.OnmsEvent;
 import org.opennms.netmgt.model.OnmsEventCollection;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-import org.springframework.orm.hibernate3.HibernateQueryException;
 
 @Path("/events")
 @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
 public class EventResource {
 
-    private NodeDao nodeDao;
+    /**
+     * associations of an event which are marshalled with it
+     */
+    public static final String[] FETCH_PATHS = {"node", "serviceType", "distPoller"};
+
     private EventDao eventDao;
-    private static Logger logger = LoggerFactory.getLogger(NodeResource.class);    
+    private CategoryDao categoryDao;
+    private SearchEngine searchEngine;
+    private RepresentationCache representationCache;
+    private RecentEventBuffer recentEvents;
 
     /**
      * get all events in the system
@@ -53,90 +69,50 @@ public class EventResource {
      */
     @GET
     @Path("{eventId}")
-    public OnmsEvent getEventById(@PathParam("eventId") final Integer eventId) {
-        return eventDao.get(eventId);
+    public Response getEventById(@PathParam("eventId") final Integer eventId, @Context HttpHeaders headers) {
+        Response response = representationCache.respond(OnmsEvent.class.getSimpleName(), eventId, headers, new RepresentationCache.Loader() {
+            public Object load() {
+                return eventDao.get(eventId);
+            }
+        });
+        return response != null ? response : Response.noContent().build();
     }
 
     /**
      * search events using FIQL and access paginated results
+     * attributes of the node are queried as node.label, node.foreignSource and node.categories in the same statement, ex -
+     * http://localhost:8980/opennms/rest2/events?_s=node.foreignSource==Servers;node.categories=in=(Production,Routers)
      * 
      * @param queryString
      * @param limit
      * @param offset
      * @param orderBy
      * @param order
+     * @param partition - true to query a bounded eventTime / eventCreateTime range in parallel sub-ranges,
+     *                    false to never do so, by default only wide ranges are partitioned
+     * @param timeout - milliseconds the search may take, capped by the configured maximum
+     * @param headers - searches over the cost budget are streamed as NDJSON if configured and the Accept header
+     *                  includes application/x-ndjson (ex - Accept: application/json, application/x-ndjson)
      * @return
      */
     @GET
     public Response searchEvents(@QueryParam("_s") String queryString, @QueryParam("limit") String limit, 
-            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order) {
-        QueryDecoder eqd = new EventQueryDecoder();
-        
-        if (queryString == null) {
-            queryString = "";
-        }
-        
-        if (limit == null) {
-            limit = "10";
-        }
-
-        if (offset == null) {
-            offset = "0";
-        }
-        
-        if (orderBy == null) {
-            orderBy = "eventTime";
-        } 
-        
-        if (order == null) {
-            order = "asc";
-        } 
-        
-        Criteria crit;
-        try{
-            crit = eqd.FIQLtoCriteria(queryString, Integer.parseInt(limit), Integer.parseInt(offset), orderBy, order);
-        }
-        catch(NotFIQLOperatorException e){    //in a case where user has specified an invalid FIQL operator
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(ParseException e){    //in a case where user has provided data in wrong format
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(NumberFormatException e){    //in a case where user has provided wrong data for query params
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        } 
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        OnmsEventCollection result;
-        
-        try{
-            result = new OnmsEventCollection(eventDao.findMatching(crit));
-        }
-        catch(HibernateQueryException e){    //in a case where user has requested a non existing data type
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        if (result.isEmpty()) {         //result set is empty
-            return Response.noContent().build();
-        }
-        return Response.ok().entity(result).build();
+            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order,
+            @QueryParam("partition") String partition, @QueryParam("timeout") String timeout, @Context HttpHeaders headers) {
+        return searchEngine.search(searchDefinition, new SearchRequest(queryString, limit, offset, orderBy, order)
+                                   .parameter(TimePartitionInterceptor.PARAMETER, partition)
+                                   .parameter(DeadlineInterceptor.PARAMETER, timeout)
+                                   .accept(headers == null ? null : headers.getAcceptableMediaTypes()));
     }
 
     /**
-     * method to initialize local variable nodeDao using blueprint
-     * @param nodeDao
+     * method to initialize local variable categoryDao using blueprint
+     * @param categoryDao
      */
-    public void setNodeDao(NodeDao nodeDao) {
-        this.nodeDao = nodeDao;
+    public void setCategoryDao(CategoryDao categoryDao) {
+        this.categoryDao = categoryDao;
     }
-
+    
     /**
      * method to initialize local variable eventDao using blueprint
      * @param eventDao
@@ -146,55 +122,108 @@ public class EventResource {
     }
     
     /**
-     * inner class to do the query decoding part of the search function 
-     *
+     * method to initialize local variable searchEngine using blueprint
+     * @param searchEngine
      */
-    private class EventQueryDecoder extends QueryDecoder { //start of inner class
-        
-        /**
-         * implemented abstract method from QueryDecoder class
-         * in order to create the appropriate criteria object
-         * 
-         */
-        protected CriteriaBuilder CreateCriteriaBuilder(){
-            final CriteriaBuilder builder = new CriteriaBuilder(OnmsEvent.class);
-            
-            builder.orderBy("eventTime").asc();
+    public void setSearchEngine(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+    
+    /**
+     * method to initialize local variable representationCache using blueprint
+     * @param representationCache
+     */
+    public void setRepresentationCache(RepresentationCache representationCache) {
+        this.representationCache = representationCache;
+    }
+    
+    /**
+     * method to initialize local variable recentEvents using blueprint
+     * @param recentEvents
+     */
+    public void setRecentEvents(RecentEventBuffer recentEvents) {
+        this.recentEvents = recentEvents;
+    }
+    
+    /**
+     * load events by primary key and return them in the order of the given ids
+     * events deleted in the meantime are skipped
+     * 
+     * @param eventIds
+     * @return
+     */
+    private List<OnmsEvent> getEventsInOrder(List<Integer> eventIds) {
+        final List<OnmsEvent> result = new ArrayList<OnmsEvent>(eventIds.size());
+        if (eventIds.isEmpty()) {
+            return result;
+        }
+        final Map<Integer, OnmsEvent> events = new HashMap<Integer, OnmsEvent>();
+        for (OnmsEvent event : eventDao.findMatching(new CriteriaBuilder(OnmsEvent.class).in("id", eventIds).toCriteria())) {
+            events.put(event.getId(), event);
+        }
+        for (Integer eventId : eventIds) {
+            if (events.containsKey(eventId)) {
+                result.add(events.get(eventId));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * export all events matching the FIQL query as newline delimited JSON
+     * the export runs as a single database cursor instead of paging through limit/offset
+     * 
+     * example URL - 
+     * http://localhost:8980/opennms/rest2/events/export?_s=eventTime=gt=2013-06-14T00:00:00
+     * 
+     * @param queryString
+     * @return
+     */
+    @GET
+    @Path("/export")
+    @Produces(NdjsonExporter.MEDIA_TYPE)
+    public Response exportEvents(@QueryParam("_s") String queryString) {
+        return searchEngine.search(searchDefinition, SearchRequest.export(queryString));
+    }
+
+    /**
+     * search metadata of events
+     */
+    private final SearchDefinition<OnmsEvent> searchDefinition = new SearchDefinition<OnmsEvent>(OnmsEvent.class, "eventTime", "asc") {
+        {
+            orderBy("eventTime", true);
+            streamable();
+            partitionedBy("eventTime", "eventCreateTime");
+            fetched(FETCH_PATHS);
+            indexed("id", "eventId", "eventTime", "eventUei", "node.id", "node.label", "node.foreignSource", "node.categories", "eventSeverity", "ipAddr", "eventAckTime", "eventAckUser");
             
-            return builder;
+            properties(ValueConverters.DATE, "eventCreateTime", "eventTime", "eventAckTime");
+            properties(ValueConverters.INTEGER, "id", "eventId", "eventSeverity", "node.id");
+            lazyAlias("node", "node", JoinType.LEFT_JOIN);
+            restriction("node.categories", new NodeCategoryRestriction("nodeId") {
+                protected OnmsCategory findCategory(String name) {
+                    return categoryDao.findByName(name);
+                }
+            });
+            synonym("nodeId", "node.id");
+        }
+        
+        public OnmsDao<OnmsEvent, Integer> getDao() {
+            return eventDao;
+        }
+        
+        public Object createCollection(List<OnmsEvent> results) {
+            return new OnmsEventCollection(results);
         }
         
         /**
-         * implemented abstract method from QueryDecoder class
-         * For the given property name respective comparable object is created
-         * ex - createTime -> java.util.Date
-         * 
-         * TODO - extend to provide validations
-         * 
-         * @param propertyName
-         * @param compareValue
-         * @return
-         * @throws ParseException 
+         * "last N minutes" searches are matched against the recent event buffer,
+         * only the page of matching events is loaded from the database
          */
-        protected Object getCompareObject(String propertyName, String compareValue) throws ParseException {
-            if (propertyName.equals("eventCreateTime") || propertyName.equals("eventTime") || propertyName.equals("eventAckTime")) {
-                DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-                try {
-                    Date formattedDate = formatter.parse(compareValue);
-                    return formattedDate;
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    throw new ParseException("Please specify dates in format \"yyyy-MM-dd'T'HH:mm:ss\"", 0);
-                }
-            }
-            else if (propertyName.equals("eventId") || propertyName.equals("eventSeverity")) {
-                return Integer.parseInt(compareValue);
-            }
-            else if (propertyName.equals("nodeId")) {
-                return nodeDao.get(Integer.parseInt(compareValue));
-            }
-            return compareValue;
+        @Override
+        public List<OnmsEvent> findInMemory(SearchContext<OnmsEvent> ctx) {
+            final List<Integer> eventIds = recentEvents == null ? null : recentEvents.find(ctx);
+            return eventIds == null ? null : getEventsInOrder(eventIds);
         }
-    }//end of inner class
-    
+    };
 }
@@ -1,11 +1,13 @@
 package org.opennms.features.rest.demo;
 
-import java.text.DateFormat;
 import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.ws.rs.GET;
@@ -13,19 +15,37 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
+import org.hibernate.Query;
+import org.hibernate.Session;
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
 import org.opennms.core.criteria.Order;
 import org.opennms.core.criteria.Alias.JoinType;
 import org.opennms.core.criteria.restrictions.Restriction;
 import org.opennms.core.criteria.restrictions.Restrictions;
-import org.opennms.features.rest.demo.exception.NotFIQLOperatorException;
-import org.opennms.features.rest.demo.util.QueryDecoder;
+import org.opennms.features.rest.demo.cache.RepresentationCache;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.index.NodeInventoryIndex;
+import org.opennms.features.rest.demo.search.SearchDefinition;
+import org.opennms.features.rest.demo.search.SearchEngine;
+import org.opennms.features.rest.demo.search.SearchRequest;
+import org.opennms.features.rest.demo.search.ValueConverter;
+import org.opennms.features.rest.demo.search.ValueConverters;
+import org.opennms.features.rest.demo.search.deadline.DeadlineInterceptor;
+import org.opennms.features.rest.demo.summary.NodeSummary;
+import org.opennms.features.rest.demo.summary.NodeSummaryService;
+import org.opennms.features.rest.demo.sync.NodeChangeJournal;
+import org.opennms.features.rest.demo.sync.NodeChanges;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
 import org.opennms.netmgt.dao.api.NodeDao;
 import org.opennms.netmgt.dao.api.CategoryDao;
+import org.opennms.netmgt.dao.api.OnmsDao;
 import org.opennms.netmgt.model.OnmsCategory;
 import org.opennms.netmgt.model.OnmsIpInterface;
 import org.opennms.netmgt.model.OnmsMonitoredService;
@@ -33,15 +53,28 @@ import org.opennms.netmgt.model.OnmsNode;
 import org.opennms.netmgt.model.OnmsNodeList;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.orm.hibernate3.HibernateQueryException;
 
 @Path("/nodes")
 @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
 public class NodeResource{
 
+    /**
+     * associations of a node which are marshalled with it
+     */
+    public static final String[] FETCH_PATHS = {"categories", "assetRecord"};
+
     private NodeDao nodeDao;
     private CategoryDao categoryDao;
+    private SearchEngine searchEngine;
+    private NodeInventoryIndex inventoryIndex;
+    private NodeSummaryService summaryService;
+    private RepresentationCache representationCache;
+    private ReadOnlySessionTemplate sessionTemplate;
+    private NodeChangeJournal changeJournal;
     private static Logger logger = LoggerFactory.getLogger(NodeResource.class);
+    private static final int ID_CHUNK_SIZE = 1000;
+    private static final int DEFAULT_CHANGES_LIMIT = 1000;
+    private static final String NOT_DELETED = "(n.type is null or n.type <> 'D')";
 
     /**
      * method to initialize local variable nodeDao using blueprint
@@ -58,6 +91,54 @@ public class NodeResource{
     public void setCategoryDao(CategoryDao categoryDao) {
         this.categoryDao = categoryDao;
     }
+    
+    /**
+     * method to initialize local variable searchEngine using blueprint
+     * @param searchEngine
+     */
+    public void setSearchEngine(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+    
+    /**
+     * method to initialize local variable inventoryIndex using blueprint
+     * @param inventoryIndex
+     */
+    public void setInventoryIndex(NodeInventoryIndex inventoryIndex) {
+        this.inventoryIndex = inventoryIndex;
+    }
+    
+    /**
+     * method to initialize local variable summaryService using blueprint
+     * @param summaryService
+     */
+    public void setSummaryService(NodeSummaryService summaryService) {
+        this.summaryService = summaryService;
+    }
+    
+    /**
+     * method to initialize local variable representationCache using blueprint
+     * @param representationCache
+     */
+    public void setRepresentationCache(RepresentationCache representationCache) {
+        this.representationCache = representationCache;
+    }
+        
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+        
+    /**
+     * method to initialize local variable changeJournal using blueprint
+     * @param changeJournal
+     */
+    public void setChangeJournal(NodeChangeJournal changeJournal) {
+        this.changeJournal = changeJournal;
+    }
         
     /**
      * get a list of all the nodes present in the system
@@ -69,14 +150,89 @@ public class NodeResource{
 
     /**
      * get a specified node's details
-     * @param nodeId
+     * the node id, the label and foreignSource:foreignId are resolved to the primary key first,
+     * so every form shares one cache entry and is invalidated with it
+     * @param nodeId - node id, label or foreignSource:foreignId
      * @return OnmsNode
      */
     @GET
     @Path("{nodeId}")
-    public Response getNode(@PathParam("nodeId") final String nodeId) {
-        OnmsNode result = nodeDao.get(nodeId);
-        if (result == null) {
+    public Response getNode(@PathParam("nodeId") final String nodeId, @Context HttpHeaders headers) {
+        final Integer id;
+        try {
+            id = resolveNodeId(nodeId);
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of a unidentified error caused
+        }
+        Response response = id == null ? null : representationCache.respond(OnmsNode.class.getSimpleName(), id, headers, new RepresentationCache.Loader() {
+            public Object load() {
+                return nodeDao.get(id);
+            }
+        });
+        if (response == null) {
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify a valid node ID").build();
+        }
+        return response;
+    }
+
+    /**
+     * resolve a node path segment to the node's primary key
+     * labels are looked up in the inventory index and only queried while it is not ready
+     * @param nodeId - node id, label or foreignSource:foreignId
+     * @return id of the node, null if no node matches
+     * @throws Exception
+     */
+    private Integer resolveNodeId(final String nodeId) throws Exception {
+        try {
+            return Integer.valueOf(nodeId);
+        } catch (NumberFormatException e) {
+            //not a primary key
+        }
+        final int separator = nodeId.indexOf(':');
+        if (separator < 0) {
+            final Integer labelId = inventoryIndex.findByLabel(nodeId);
+            if (labelId != null || inventoryIndex.isReady()) {
+                return labelId;
+            }
+        }
+        return sessionTemplate.execute(new SessionCallback<Integer>() {
+            public Integer doInSession(Session session) throws Exception {
+                final Query query;
+                if (separator < 0) {
+                    query = session.createQuery("select n.id from OnmsNode n where n.label = :label and " + NOT_DELETED)
+                            .setParameter("label", nodeId);
+                } else {
+                    query = session.createQuery("select n.id from OnmsNode n where n.foreignSource = :foreignSource and n.foreignId = :foreignId and " + NOT_DELETED)
+                            .setParameter("foreignSource", nodeId.substring(0, separator))
+                            .setParameter("foreignId", nodeId.substring(separator + 1));
+                }
+                return (Integer) query.setMaxResults(1).uniqueResult();
+            }
+        });
+    }
+
+    /**
+     * node, ip interfaces, alarms, outages and recent events of a node in one document
+     * the sections are loaded concurrently, a section which runs out of time is left empty
+     * and the summary is marked as partial
+     * @param nodeId - node id or label
+     * @return NodeSummary
+     */
+    @GET
+    @Path("{nodeId}/summary")
+    public Response getNodeSummary(@PathParam("nodeId") final String nodeId) {
+        Integer id;
+        try {
+            id = Integer.valueOf(nodeId);
+        } catch (NumberFormatException e) {
+            id = inventoryIndex.findByLabel(nodeId);
+        }
+        if (id == null) {
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify a valid node ID").build();
+        }
+        NodeSummary result = summaryService.summarize(id);
+        if (result.getNode() == null && !result.isPartial()) {
             return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify a valid node ID").build();
         }
         return Response.ok().entity(result).build();
@@ -133,12 +289,17 @@ public class NodeResource{
      * sample URL
      * "http://localhost:8980/opennms/rest2/nodes/categories?q=Servers&q=Routers&q=Switches&q=Production&q=Test&q=Development"
      * 
+     * by default nodes belonging to any of the categories are returned,
+     * with match=all only nodes belonging to all of them
+     * "http://localhost:8980/opennms/rest2/nodes/categories?q=Servers&q=Production&match=all"
+     * 
      * @param categories
+     * @param match - any (union, default) or all (intersection)
      * @return
      */
     @GET
     @Path("/categories")
-    public Response getNodesByCategories(@QueryParam("q") List<String> categories){
+    public Response getNodesByCategories(@QueryParam("q") List<String> categories, @QueryParam("match") String match){
         try{    
             if (categories.isEmpty()){
                 /*
@@ -152,21 +313,30 @@ public class NodeResource{
                 resultArray = result.toArray(new OnmsCategory[0]);
                 return Response.status(Response.Status.BAD_REQUEST).entity(resultArray).build();
             }
-            else {
-                List<OnmsCategory> onmsCategories = new ArrayList<OnmsCategory>();
+            else if (inventoryIndex.isReady()) {
                 for (String category : categories) {
-                    onmsCategories.add(categoryDao.findByName(category));
-                    if (onmsCategories.get(onmsCategories.size() - 1) == null){ // invalid category specified
+                    if (!inventoryIndex.hasCategory(category)){ // invalid category specified
                         return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).
                                 entity("Please specify a set of valid categories").build();
                     }
                 }
-                List<OnmsNode> result = nodeDao.findAllByCategoryList(onmsCategories);
-                if (result.isEmpty()) {                                         //result set is empty
-                    return Response.noContent().build();
+                return nodeListResponse(inventoryIndex.findByCategories(categories, "all".equalsIgnoreCase(match)));
+            }
+            else if ("all".equalsIgnoreCase(match)) {
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE).type(MediaType.TEXT_PLAIN).
+                        entity("The node inventory index is still loading, please retry").build();
+            }
+            else {
+                List<Integer> categoryIds = new ArrayList<Integer>();
+                for (String category : categories) {
+                    OnmsCategory onmsCategory = categoryDao.findByName(category);
+                    if (onmsCategory == null){ // invalid category specified
+                        return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).
+                                entity("Please specify a set of valid categories").build();
+                    }
+                    categoryIds.add(onmsCategory.getId());
                 }
-                OnmsNodeList resultNodeList = new OnmsNodeList(result);
-                return Response.ok().entity(resultNodeList).build();
+                return nodeListResponse(findNodeIds("select distinct n.id from OnmsNode n join n.categories c where c.id in (:values)", categoryIds));
             }
         }catch(Exception e){    
             logger.error(e.getMessage(), e);
@@ -188,16 +358,18 @@ public class NodeResource{
         //{category} == null case is handled by getNodesByCategories method
         //therefore no need to check it in this method
         try{    
+            if (inventoryIndex.isReady()) {
+                if (!inventoryIndex.hasCategory(category)){                     // invalid category specified
+                    return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify a valid category").build();
+                }
+                return nodeListResponse(inventoryIndex.findByCategories(Collections.singletonList(category), false));
+            }
             OnmsCategory onmsCategory = categoryDao.findByName(category);
             if (onmsCategory == null){                                      // invalid category specified
                 return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify a valid category").build();
             }
-            List<OnmsNode> result = nodeDao.findByCategory(onmsCategory);
-            if (result.isEmpty()) {                                         //result set is empty
-                return Response.noContent().build();
-            }
-            OnmsNodeList resultNodeList = new OnmsNodeList(result);
-            return Response.ok().entity(resultNodeList).build();
+            return nodeListResponse(findNodeIds("select distinct n.id from OnmsNode n join n.categories c where c.id in (:values)",
+                                                Collections.singletonList(onmsCategory.getId())));
         }catch(Exception e){  
             logger.error(e.getMessage(), e);  
             return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of a unidentified error caused
@@ -227,18 +399,131 @@ public class NodeResource{
     public Response getNodesByForeignSource(@PathParam("foreignSource") String foreignSource){
        //empty variable foreignSource is handled by overloaded method getNodesByForeignSource()
        try{
-            List<OnmsNode> result = nodeDao.findByForeignSource(foreignSource);
-            if (result.isEmpty()) {                                         //result set is empty
-                return Response.noContent().build();
+            if (inventoryIndex.isReady()) {
+                return nodeListResponse(inventoryIndex.findByForeignSource(foreignSource));
             }
-            OnmsNodeList resultNodeList = new OnmsNodeList(result);
-            return Response.ok().entity(resultNodeList).build();
+            return nodeListResponse(findNodeIds("select n.id from OnmsNode n where n.foreignSource in (:values)",
+                                                Collections.singletonList(foreignSource)));
         }catch(Exception e){
             logger.error(e.getMessage(), e);
             return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of a unidentified error caused
         }
     }
     
+    /**
+     * ids of the nodes matching an HQL query with a single list parameter "values", used while the index is loading
+     * deleted nodes are left out like in the index
+     * 
+     * @param hql - selecting n.id of OnmsNode n
+     * @param values
+     * @return
+     * @throws Exception
+     */
+    private BitSet findNodeIds(final String hql, final List<?> values) throws Exception {
+        return sessionTemplate.execute(new SessionCallback<BitSet>() {
+            public BitSet doInSession(Session session) throws Exception {
+                final Query query = session.createQuery(hql + " and " + NOT_DELETED).setParameterList("values", values);
+                final BitSet result = new BitSet();
+                for (Object id : query.list()) {
+                    result.set((Integer) id);
+                }
+                return result;
+            }
+        });
+    }
+    
+    /**
+     * load the nodes identified by the index and wrap them into a response
+     * ids are fetched in chunks to keep the IN clauses small, the result is ordered by label
+     * the associations marshalled with the nodes are fetched per chunk, so the number of queries doesn't depend on the number of nodes
+     * 
+     * @param nodeIds
+     * @return
+     */
+    private Response nodeListResponse(BitSet nodeIds) throws Exception {
+        if (nodeIds.isEmpty()) {                                            //result set is empty
+            return Response.noContent().build();
+        }
+        List<Integer> ids = new ArrayList<Integer>(nodeIds.cardinality());
+        for (int id = nodeIds.nextSetBit(0); id >= 0; id = nodeIds.nextSetBit(id + 1)) {
+            ids.add(id);
+        }
+        List<OnmsNode> result = loadNodes(ids);
+        Collections.sort(result, new Comparator<OnmsNode>() {
+            public int compare(OnmsNode o1, OnmsNode o2) {
+                return String.valueOf(o1.getLabel()).compareTo(String.valueOf(o2.getLabel()));
+            }
+        });
+        return Response.ok().entity(new OnmsNodeList(result)).build();
+    }
+    
+    /**
+     * load nodes by id in chunks together with the associations marshalled with them
+     * 
+     * @param ids
+     * @return nodes in no particular order, ids of nodes which don't exist are skipped
+     * @throws Exception
+     */
+    private List<OnmsNode> loadNodes(List<Integer> ids) throws Exception {
+        List<OnmsNode> result = new ArrayList<OnmsNode>(ids.size());
+        for (int i = 0; i < ids.size(); i += ID_CHUNK_SIZE) {
+            final Criteria crit = new Criteria(OnmsNode.class);
+            crit.setRestrictions(Collections.singletonList(Restrictions.in("id", ids.subList(i, Math.min(ids.size(), i + ID_CHUNK_SIZE)))));
+            result.addAll(sessionTemplate.<OnmsNode>findMatching(crit, 0, searchDefinition.getFetchPaths()));
+        }
+        return result;
+    }
+    
+    /**
+     * delta synchronization of the node inventory
+     * returns the nodes created or modified and tombstones of the nodes deleted since the token of a previous response,
+     * without since every node is returned, the token of the response is passed as since of the next request
+     * if more is set the limit was reached and the next request should follow immediately
+     * 
+     * sample URLs
+     * "http://localhost:8980/opennms/rest2/nodes/changes"
+     * "http://localhost:8980/opennms/rest2/nodes/changes?since=1382000000000-4711&limit=500"
+     * 
+     * @param since - token of the previous response
+     * @param limit - maximum number of changes, default 1000
+     * @return 410 if the token has expired (bundle restarted or tombstones expired) and a full synchronization is required
+     */
+    @GET
+    @Path("/changes")
+    public Response getNodeChanges(@QueryParam("since") String since, @QueryParam("limit") String limit) {
+        int maxChanges = DEFAULT_CHANGES_LIMIT;
+        if (limit != null) {
+            try {
+                maxChanges = Integer.parseInt(limit);
+            } catch (NumberFormatException e) {
+                maxChanges = 0;
+            }
+            if (maxChanges <= 0) {
+                return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify a positive limit").build();
+            }
+        }
+        try {
+            final NodeChangeJournal.Delta delta = changeJournal.changesSince(since, maxChanges);
+            final Map<Integer, OnmsNode> loaded = new HashMap<Integer, OnmsNode>();
+            for (OnmsNode node : loadNodes(delta.getNodeIds())) {
+                loaded.put(node.getId(), node);
+            }
+            final NodeChanges result = new NodeChanges(delta.getToken(), delta.isMore());
+            for (Integer id : delta.getNodeIds()) {
+                if (loaded.containsKey(id)) {                               //nodes deleted after the scan are reported by the next one
+                    result.getNodes().add(loaded.get(id));
+                }
+            }
+            result.setDeleted(delta.getTombstones());
+            return Response.ok().entity(result).build();
+        } catch (SearchException e) {
+            return Response.status(e.getStatus()).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of a unidentified error caused
+        }
+    }
+    
     /**
      * quering node data using core.criteria
      * FIQL query is transmitted as a query parameter in the http request
@@ -249,129 +534,50 @@ public class NodeResource{
      * http://localhost:8980/opennms/rest2/nodes/search?_s=createTime=gt=2013-06-14T20:41:45;(type==D,lastCapsdPoll=le=2013-12-30T00:00:00)
      * 
      * @param queryString
+     * @param timeout - milliseconds the search may take, capped by the configured maximum
      * @return
      */
     @GET
     public Response searchNodes(@QueryParam("_s") String queryString, @QueryParam("limit") String limit, 
-            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order) {
-        NodeQueryDecoder nqd = new NodeQueryDecoder();
-        
-        if (queryString == null) {
-            queryString = "";
-        }
-        
-        if (limit == null) {
-            limit = "10";
-        }
-
-        if (offset == null) {
-            offset = "0";
-        }
-        
-        if (orderBy == null) {
-            orderBy = "label";
-        } 
-        
-        if (order == null) {
-            order = "asc";
-        } 
-        
-        Criteria crit;
-        try{
-            crit = nqd.FIQLtoCriteria(queryString, Integer.parseInt(limit), Integer.parseInt(offset), orderBy, order);
-        }
-        catch(NotFIQLOperatorException e){    //in a case where user has specified an invalid FIQL operator
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(ParseException e){    //in a case where user has provided data in wrong format
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(NumberFormatException e){    //in a case where user has provided wrong data for query params
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        } 
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        OnmsNodeList result;
-        
-        try{
-            result = new OnmsNodeList(nodeDao.findMatching(crit));
-        }
-        catch(HibernateQueryException e){    //in a case where user has requested a non existing data type
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        if (result.isEmpty()) {         //result set is empty
-            return Response.noContent().build();
-        }
-        return Response.ok().entity(result).build();
+            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order,
+            @QueryParam("timeout") String timeout) {
+        return searchEngine.search(searchDefinition, new SearchRequest(queryString, limit, offset, orderBy, order)
+                                   .parameter(DeadlineInterceptor.PARAMETER, timeout));
     }
     
     /**
-     * inner class to do the query decoding part of the search function 
-     *
+     * search metadata of nodes
      */
-    private class NodeQueryDecoder extends QueryDecoder { //start of inner class
-        
-        /**
-         * implemented abstract method from QueryDecoder class
-         * in order to create the appropriate criteria object
-         * 
-         */
-        protected CriteriaBuilder CreateCriteriaBuilder() {
-            final CriteriaBuilder builder = new CriteriaBuilder(OnmsNode.class);
-            builder.alias("snmpInterfaces", "snmpInterface", JoinType.LEFT_JOIN);
-            builder.alias("ipInterfaces", "ipInterface", JoinType.LEFT_JOIN);
-            builder.alias("categories", "category", JoinType.LEFT_JOIN);
-    
-            builder.orderBy("label").asc();
+    private final SearchDefinition<OnmsNode> searchDefinition = new SearchDefinition<OnmsNode>(OnmsNode.class, "label", "asc") {
+        {
+            alias("snmpInterfaces", "snmpInterface", JoinType.LEFT_JOIN);
+            alias("ipInterfaces", "ipInterface", JoinType.LEFT_JOIN);
+            alias("categories", "category", JoinType.LEFT_JOIN);
+            orderBy("label", true);
+            indexed("id", "label", "foreignSource", "foreignId", "type");
+            fetched(FETCH_PATHS);
             
-            return builder;
+            properties(ValueConverters.DATE, "createTime", "lastCapsdPoll");
+            properties(ValueConverters.INTEGER, "id");
+            property("categories", new ValueConverter() {
+                public Object convert(String propertyName, String compareValue) throws ParseException {
+                    OnmsCategory onmsCategory = categoryDao.findByName(compareValue);
+                    if (onmsCategory == null){                                      // invalid category specified
+                        throw new ParseException("Please specify a valid category instead of \"" + compareValue + "\"", 0);
+                    }
+                    return onmsCategory;
+                }
+            });
         }
         
-        /**
-         * implemented abstract method from QueryDecoder class
-         * For the given property name respective comparable object is created
-         * ex - createTime -> java.util.Date
-         * 
-         * TODO - extend to provide validations
-         * 
-         * @param propertyName
-         * @param compareValue
-         * @return
-         * @throws ParseException 
-         */
-        protected Object getCompareObject(String propertyName, String compareValue) throws ParseException {
-            if (propertyName.equals("createTime") || propertyName.equals("lastCapsdPoll")) {
-                DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-                try {
-                    Date formattedDate = formatter.parse(compareValue);
-                    return formattedDate;
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    throw new ParseException("Please specify dates in format \"yyyy-MM-dd'T'HH:mm:ss\"", 0);
-                }
-            }
-            else if (propertyName.equals("id")) {
-                return Integer.parseInt(compareValue);
-            }
-            else if (propertyName.equals("categories")) {
-                OnmsCategory onmsCategory = categoryDao.findByName(compareValue);
-                if (onmsCategory == null){                                      // invalid category specified
-                    throw new ParseException("Please specify a valid category instead of \"" + compareValue + "\"", 0);
-                }
-                return onmsCategory;
-            }
-            return compareValue;
+        public OnmsDao<OnmsNode, Integer> getDao() {
+            return nodeDao;
         }
-
-    }//end of inner class
+        
+        public Object createCollection(List<OnmsNode> results) {
+            return new OnmsNodeList(results);
+        }
+    };
     
     /**
      * method to test the criteria for node searching
@@ -1,9 +1,5 @@
 package org.opennms.features.rest.demo;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 
 import javax.ws.rs.GET;
@@ -11,27 +7,36 @@ import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
-import org.opennms.core.criteria.Criteria;
-import org.opennms.core.criteria.CriteriaBuilder;
-import org.opennms.features.rest.demo.exception.NotFIQLOperatorException;
-import org.opennms.features.rest.demo.util.QueryDecoder;
+import org.opennms.features.rest.demo.cache.RepresentationCache;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.notification.ResponseTimeCalculator;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.search.SearchDefinition;
+import org.opennms.features.rest.demo.search.SearchEngine;
+import org.opennms.features.rest.demo.search.SearchRequest;
+import org.opennms.features.rest.demo.search.ValueConverters;
+import org.opennms.features.rest.demo.search.deadline.DeadlineInterceptor;
 import org.opennms.netmgt.dao.api.NotificationDao;
+import org.opennms.netmgt.dao.api.OnmsDao;
 import org.opennms.netmgt.model.OnmsNotification;
 import org.opennms.netmgt.model.OnmsNotificationCollection;
-import org.opennms.netmgt.model.OnmsSeverity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.orm.hibernate3.HibernateQueryException;
 
 @Path("/notifications")
 @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
 public class NotificationResource {
 
     private NotificationDao notificationDao;
-    private static Logger logger = LoggerFactory.getLogger(NodeResource.class);    
+    private SearchEngine searchEngine;
+    private RepresentationCache representationCache;
+    private ResponseTimeCalculator responseTimeCalculator;
+    private static Logger logger = LoggerFactory.getLogger(NotificationResource.class);
 
     /**
      * get all notifications in the system
@@ -50,8 +55,13 @@ public class NotificationResource {
      */
     @GET
     @Path("{notificationId}")
-    public OnmsNotification getNotificationById(@PathParam("notificationId") final Integer notificationId) {
-        return notificationDao.get(notificationId);
+    public Response getNotificationById(@PathParam("notificationId") final Integer notificationId, @Context HttpHeaders headers) {
+        Response response = representationCache.respond(OnmsNotification.class.getSimpleName(), notificationId, headers, new RepresentationCache.Loader() {
+            public Object load() {
+                return notificationDao.get(notificationId);
+            }
+        });
+        return response != null ? response : Response.noContent().build();
     }
     
     /**
@@ -62,6 +72,60 @@ public class NotificationResource {
         this.notificationDao = outageDao;
     }
     
+    /**
+     * method to initialize local variable searchEngine using blueprint
+     * @param searchEngine
+     */
+    public void setSearchEngine(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+    
+    /**
+     * method to initialize local variable representationCache using blueprint
+     * @param representationCache
+     */
+    public void setRepresentationCache(RepresentationCache representationCache) {
+        this.representationCache = representationCache;
+    }
+    
+    /**
+     * method to initialize local variable responseTimeCalculator using blueprint
+     * @param responseTimeCalculator
+     */
+    public void setResponseTimeCalculator(ResponseTimeCalculator responseTimeCalculator) {
+        this.responseTimeCalculator = responseTimeCalculator;
+    }
+    
+    /**
+     * count, mean and p50 / p90 / p99 of the response time (respondTime - pageTime)
+     * of the answered notifications matching the FIQL query
+     * 
+     * example URLs - 
+     * http://localhost:8980/opennms/rest2/notifications/stats?_s=pageTime=gt=2013-12-01T00:00:00&groupBy=user
+     * http://localhost:8980/opennms/rest2/notifications/stats?groupBy=notification
+     * 
+     * @param queryString
+     * @param groupBy - user (answeredBy), notification (notification name) or none for the total only
+     * @return
+     */
+    @GET
+    @Path("/stats")
+    public Response getResponseTimeStats(@QueryParam("_s") String queryString, @QueryParam("groupBy") String groupBy) {
+        if (groupBy != null && !ResponseTimeCalculator.GROUP_BY_USER.equals(groupBy) && !ResponseTimeCalculator.GROUP_BY_NOTIFICATION.equals(groupBy)) {
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify groupBy=user or groupBy=notification").build();
+        }
+        try {
+            final SearchContext<OnmsNotification> ctx = new SearchContext<OnmsNotification>(searchDefinition, SearchRequest.export(queryString));
+            searchEngine.parse(ctx);
+            return Response.ok().entity(responseTimeCalculator.calculate(ctx.getCriteria(), groupBy)).build();
+        } catch (SearchException e) {
+            return Response.status(e.getStatus()).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of a unidentified error caused
+        }
+    }
+    
     /**
      * search notification data using FIQL and access paginated results
      * 
@@ -70,116 +134,36 @@ public class NotificationResource {
      * @param offset
      * @param orderBy
      * @param order
+     * @param timeout - milliseconds the search may take, capped by the configured maximum
      * @return
      */
     @GET
     public Response searchNotifications(@QueryParam("_s") String queryString, @QueryParam("limit") String limit, 
-            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order) {
-        QueryDecoder nqd = new NotificationQueryDecoder();
-
-        if (queryString == null) {
-            queryString = "";
-        }
-        
-        if (limit == null) {
-            limit = "10";
-        }
-
-        if (offset == null) {
-            offset = "0";
-        }
-        
-        if (orderBy == null) {
-            orderBy = "notifyId";
-        } 
-        
-        if (order == null) {
-            order = "asc";
-        } 
-             
-        Criteria crit;
-        try{ 
-            crit = nqd.FIQLtoCriteria(queryString, Integer.parseInt(limit), Integer.parseInt(offset), orderBy, order);
-        }
-        catch(NotFIQLOperatorException e){    //in a case where user has specified an invalid FIQL operator
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(ParseException e){    //in a case where user has provided data in wrong format
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(NumberFormatException e){    //in a case where user has provided wrong data for query params
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        OnmsNotificationCollection result;
-        
-        try{         
-            result = new OnmsNotificationCollection(notificationDao.findMatching(crit));  
-        }
-        catch(HibernateQueryException e){    //in a case where user has requested a non existing data type
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
-        }
-        
-        if (result.isEmpty()) {         //result set is empty
-            return Response.noContent().build();
-        }
-        return Response.ok().entity(result).build();
+            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order,
+            @QueryParam("timeout") String timeout) {
+        return searchEngine.search(searchDefinition, new SearchRequest(queryString, limit, offset, orderBy, order)
+                                   .parameter(DeadlineInterceptor.PARAMETER, timeout));
     }
-    
+
     /**
-     * inner class to do the query decoding part of the search function 
-     *
+     * search metadata of notifications
      */
-    private class NotificationQueryDecoder extends QueryDecoder { //start of inner class
-        
-        /**
-         * implemented abstract method from QueryDecoder class
-         * in order to create the appropriate criteria object
-         * 
-         */
-        protected CriteriaBuilder CreateCriteriaBuilder(){
-            final CriteriaBuilder builder = new CriteriaBuilder(OnmsNotification.class);
-            
-            builder.orderBy("notifyId").desc();
+    private final SearchDefinition<OnmsNotification> searchDefinition = new SearchDefinition<OnmsNotification>(OnmsNotification.class, "notifyId", "asc") {
+        {
+            orderBy("notifyId", false);
+            fetched("node", "serviceType", "event.serviceType", "event.distPoller");
+            indexed("id", "notifyId", "pageTime", "respondTime", "answeredBy");
             
-            return builder;
+            properties(ValueConverters.DATE, "pageTime", "respondTime");
+            properties(ValueConverters.INTEGER, "id");
         }
         
-        /**
-         * implemented abstract method from QueryDecoder class
-         * For the given property name respective comparable object is created
-         * ex - createTime -> java.util.Date
-         * 
-         * TODO - extend to provide validations
-         * 
-         * @param propertyName
-         * @param compareValue
-         * @return
-         * @throws ParseException 
-         */
-        protected Object getCompareObject(String propertyName, String compareValue) throws ParseException {
-            if (propertyName.equals("pageTime") || propertyName.equals("respondTime")) {
-                DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-                try {
-                    Date formattedDate = formatter.parse(compareValue);
-                    return formattedDate;
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    throw new ParseException("Please specify dates in format \"yyyy-MM-dd'T'HH:mm:ss\"", 0);
-                }
-            }
-            else if (propertyName.equals("id")) {
-                return Integer.parseInt(compareValue);
-            }
-            return compareValue;
+        public OnmsDao<OnmsNotification, Integer> getDao() {
+            return notificationDao;
+        }
+        
+        public Object createCollection(List<OnmsNotification> results) {
+            return new OnmsNotificationCollection(results);
         }
-    }//end of inner class
+    };
 }
@@ -1,37 +1,47 @@
 package org.opennms.features.rest.demo;
 
-import java.text.DateFormat;
-import java.text.ParseException;
-import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.ws.rs.GET;
 import javax.ws.rs.Path;
 import javax.ws.rs.PathParam;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 
-import org.opennms.core.criteria.Criteria;
-import org.opennms.core.criteria.CriteriaBuilder;
-import org.opennms.features.rest.demo.exception.NotFIQLOperatorException;
-import org.opennms.features.rest.demo.util.QueryDecoder;
+import org.opennms.features.rest.demo.cache.RepresentationCache;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.export.NdjsonExporter;
+import org.opennms.features.rest.demo.outage.AvailabilityCalculator;
+import org.opennms.features.rest.demo.outage.OpenOutageMap;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.search.SearchDefinition;
+import org.opennms.features.rest.demo.search.SearchEngine;
+import org.opennms.features.rest.demo.search.SearchRequest;
+import org.opennms.features.rest.demo.search.ValueConverters;
+import org.opennms.features.rest.demo.search.deadline.DeadlineInterceptor;
+import org.opennms.netmgt.dao.api.OnmsDao;
 import org.opennms.netmgt.dao.api.OutageDao;
 import org.opennms.netmgt.model.OnmsOutage;
 import org.opennms.netmgt.model.OnmsOutageCollection;
-import org.opennms.netmgt.model.OnmsSeverity;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.orm.hibernate3.HibernateQueryException;
 
 @Path("/outages")
 @Produces({MediaType.APPLICATION_XML, MediaType.APPLICATION_JSON})
 public class OutageResource {
     
     private OutageDao outageDao;
-    private static Logger logger = LoggerFactory.getLogger(NodeResource.class);    
+    private SearchEngine searchEngine;
+    private RepresentationCache representationCache;
+    private OpenOutageMap openOutages;
+    private AvailabilityCalculator availabilityCalculator;
+    private static Logger logger = LoggerFactory.getLogger(OutageResource.class);
 
     /**
      * get all outages in the system
@@ -50,8 +60,13 @@ public class OutageResource {
      */
     @GET
     @Path("{outageId}")
-    public OnmsOutage getOutageById(@PathParam("outageId") final Integer outageId) {
-        return outageDao.get(outageId);
+    public Response getOutageById(@PathParam("outageId") final Integer outageId, @Context HttpHeaders headers) {
+        Response response = representationCache.respond(OnmsOutage.class.getSimpleName(), outageId, headers, new RepresentationCache.Loader() {
+            public Object load() {
+                return outageDao.get(outageId);
+            }
+        });
+        return response != null ? response : Response.noContent().build();
     }
     
     /**
@@ -70,113 +85,144 @@ public class OutageResource {
      * @param offset
      * @param orderBy
      * @param order
+     * @param timeout - milliseconds the search may take, capped by the configured maximum
      * @return
      */
     @GET
     public Response searchOutages(@QueryParam("_s") String queryString, @QueryParam("limit") String limit, 
-            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order) {
-            QueryDecoder oqd = new OutageQueryDecoder();
-
-            if (queryString == null) {
-                queryString = "";
-            }
-            
-            if (limit == null) {
-                limit = "10";
-            }
-
-            if (offset == null) {
-                offset = "0";
-            }
-            
-            if (orderBy == null) {
-                orderBy = "id";
-            } 
-            
-            if (order == null) {
-                order = "desc";
-            } 
-                 
-            Criteria crit;
-        try{
-            crit = oqd.FIQLtoCriteria(queryString, Integer.parseInt(limit), Integer.parseInt(offset), orderBy, order);
-        }
-        catch(NotFIQLOperatorException e){    //in a case where user has specified an invalid FIQL operator
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(ParseException e){    //in a case where user has provided data in wrong format
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(NumberFormatException e){    //in a case where user has provided wrong data for query params
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
-        }
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
+            @QueryParam("offset") String offset, @QueryParam("orderBy") String orderBy, @QueryParam("order") String order,
+            @QueryParam("timeout") String timeout) {
+        return searchEngine.search(searchDefinition, new SearchRequest(queryString, limit, offset, orderBy, order)
+                                   .parameter(DeadlineInterceptor.PARAMETER, timeout));
+    }
+    
+    /**
+     * method to initialize local variable searchEngine using blueprint
+     * @param searchEngine
+     */
+    public void setSearchEngine(SearchEngine searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+    
+    /**
+     * method to initialize local variable representationCache using blueprint
+     * @param representationCache
+     */
+    public void setRepresentationCache(RepresentationCache representationCache) {
+        this.representationCache = representationCache;
+    }
+    
+    /**
+     * method to initialize local variable openOutages using blueprint
+     * @param openOutages
+     */
+    public void setOpenOutages(OpenOutageMap openOutages) {
+        this.openOutages = openOutages;
+    }
+    
+    /**
+     * method to initialize local variable availabilityCalculator using blueprint
+     * @param availabilityCalculator
+     */
+    public void setAvailabilityCalculator(AvailabilityCalculator availabilityCalculator) {
+        this.availabilityCalculator = availabilityCalculator;
+    }
+    
+    /**
+     * availability of nodes or services within a window, computed from the outages matching the FIQL query
+     * outage intervals are clipped to the window and overlapping outages are merged, open outages last until the end of the window
+     * without a query every monitored node or service is listed, the ones without an outage at 100%,
+     * with a query only the nodes or services of the matching outages are listed
+     * 
+     * example URL - 
+     * http://localhost:8980/opennms/rest2/outages/availability?from=2013-12-01T00:00:00&to=2014-01-01T00:00:00&groupBy=service
+     * 
+     * @param queryString
+     * @param from - start of the window, by default 24 hours before to
+     * @param to - end of the window, by default (and at most) now
+     * @param groupBy - node (default) or service
+     * @return
+     */
+    @GET
+    @Path("/availability")
+    public Response getAvailability(@QueryParam("_s") String queryString, @QueryParam("from") String from,
+            @QueryParam("to") String to, @QueryParam("groupBy") String groupBy) {
+        final String grouping = groupBy == null ? AvailabilityCalculator.GROUP_BY_NODE : groupBy;
+        if (!AvailabilityCalculator.GROUP_BY_NODE.equals(grouping) && !AvailabilityCalculator.GROUP_BY_SERVICE.equals(grouping)) {
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify groupBy=node or groupBy=service").build();
         }
-        OnmsOutageCollection result;
-        try{
-            result = new OnmsOutageCollection(outageDao.findMatching(crit));
+        final Date now = new Date();
+        Date toDate;
+        Date fromDate;
+        try {
+            toDate = to == null ? now : (Date) ValueConverters.DATE.convert("to", to);
+            fromDate = from == null ? new Date(toDate.getTime() - TimeUnit.DAYS.toMillis(1)) : (Date) ValueConverters.DATE.convert("from", from);
+        } catch (Exception e) {                                                 //dates in the wrong format
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();
         }
-        catch(HibernateQueryException e){    //in a case where user has requested a non existing data type
-            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   
+        if (toDate.after(now)) {                                                //the future has no outages yet
+            toDate = now;
         }
-        catch(Exception e){
-            logger.error(e.getMessage(), e);    
-            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of an unidentified error caused
+        if (!fromDate.before(toDate)) {
+            return Response.status(Response.Status.BAD_REQUEST).type(MediaType.TEXT_PLAIN).entity("Please specify a window with from before to and from in the past").build();
         }
-        if (result.isEmpty()) {         //result set is empty
-            return Response.noContent().build();
+        try {
+            final SearchContext<OnmsOutage> ctx = new SearchContext<OnmsOutage>(searchDefinition, SearchRequest.export(queryString));
+            searchEngine.parse(ctx);
+            return Response.ok().entity(availabilityCalculator.calculate(ctx.getCriteria(), fromDate, toDate, grouping)).build();
+        } catch (SearchException e) {
+            return Response.status(e.getStatus()).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();
+        } catch (Exception e) {
+            logger.error(e.getMessage(), e);
+            return Response.serverError().type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build();   //in case of a unidentified error caused
         }
-        return Response.ok().entity(result).build();
     }
     
     /**
-     * inner class to do the query decoding part of the search function 
-     *
+     * export all outages matching the FIQL query as newline delimited JSON
+     * the export runs as a single database cursor instead of paging through limit/offset
+     * 
+     * example URL - 
+     * http://localhost:8980/opennms/rest2/outages/export?_s=ifLostService=gt=2013-06-14T00:00:00
+     * 
+     * @param queryString
+     * @return
      */
-    private class OutageQueryDecoder extends QueryDecoder { //start of inner class
-        
-        /**
-         * implemented abstract method from QueryDecoder class
-         * in order to create the appropriate criteria object
-         * 
-         */
-        protected CriteriaBuilder CreateCriteriaBuilder(){
-            final CriteriaBuilder builder = new CriteriaBuilder(OnmsOutage.class);
-            
-            builder.orderBy("id").desc();
+    @GET
+    @Path("/export")
+    @Produces(NdjsonExporter.MEDIA_TYPE)
+    public Response exportOutages(@QueryParam("_s") String queryString) {
+        return searchEngine.search(searchDefinition, SearchRequest.export(queryString));
+    }
+
+    /**
+     * search metadata of outages
+     */
+    private final SearchDefinition<OnmsOutage> searchDefinition = new SearchDefinition<OnmsOutage>(OnmsOutage.class, "id", "desc") {
+        {
+            orderBy("id", false);
+            streamable();
+            fetched(OpenOutageMap.FETCH_PATHS);
+            indexed("id", "ifLostService", "ifRegainedService", "monitoredService");
             
-            return builder;
+            properties(ValueConverters.DATE, "ifLostService", "ifRegainedService", "suppressTime");
+            properties(ValueConverters.INTEGER, "id");
+        }
+        
+        public OnmsDao<OnmsOutage, Integer> getDao() {
+            return outageDao;
+        }
+        
+        public Object createCollection(List<OnmsOutage> results) {
+            return new OnmsOutageCollection(results);
         }
         
         /**
-         * implemented abstract method from QueryDecoder class
-         * For the given property name respective comparable object is created
-         * ex - createTime -> java.util.Date
-         * 
-         * TODO - extend to provide validations
-         * 
-         * @param propertyName
-         * @param compareValue
-         * @return
-         * @throws ParseException 
+         * "what is down right now" (ifRegainedService==null) is answered by the open outage map
          */
-        protected Object getCompareObject(String propertyName, String compareValue) throws ParseException {
-            if (propertyName.equals("ifLostService") || propertyName.equals("ifRegainedService") || propertyName.equals("suppressTime")) {
-                DateFormat formatter = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
-                try {
-                    Date formattedDate = formatter.parse(compareValue);
-                    return formattedDate;
-                } catch (ParseException e) {
-                    e.printStackTrace();
-                    throw new ParseException("Please specify dates in format \"yyyy-MM-dd'T'HH:mm:ss\"", 0);
-                }
-            }
-            else if (propertyName.equals("id")) {
-                return Integer.parseInt(compareValue);
-            }
-            return compareValue;
+        @Override
+        public List<OnmsOutage> findInMemory(SearchContext<OnmsOutage> ctx) {
+            return openOutages == null ? null : openOutages.find(ctx);
         }
-    }//end of inner class
+    };
 }
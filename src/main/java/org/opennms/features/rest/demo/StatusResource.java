@@ -0,0 +1,42 @@
+package org.opennms.features.rest.demo;
+
+import java.util.List;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.opennms.features.rest.demo.warmup.WarmUp;
+
+@Path("/status")
+@Produces(MediaType.TEXT_PLAIN)
+public class StatusResource {
+
+    private WarmUp warmUp;
+
+    /**
+     * readiness probe for load balancers and deploy scripts
+     * 200 once the warm-up has finished, 503 with the pending steps before
+     * 
+     * @return
+     */
+    @GET
+    @Path("/ready")
+    public Response getReadiness() {
+        if (warmUp.isReady()) {
+            return Response.ok("ready").build();
+        }
+        List<String> pending = warmUp.getPendingSteps();
+        return Response.status(Response.Status.SERVICE_UNAVAILABLE).header("Retry-After", "5").entity("warming up: " + pending).build();
+    }
+
+    /**
+     * method to initialize local variable warmUp using blueprint
+     * @param warmUp
+     */
+    public void setWarmUp(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+}
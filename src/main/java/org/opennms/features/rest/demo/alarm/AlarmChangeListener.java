@@ -0,0 +1,22 @@
+package org.opennms.features.rest.demo.alarm;
+
+import org.opennms.netmgt.model.OnmsAlarm;
+
+/**
+ * notified about every change of an alarm
+ * every delta carries a new instance, instances passed to a listener must not be modified afterwards
+ *
+ */
+public interface AlarmChangeListener {
+
+    /**
+     * @param alarm - the new state of a created, reduced, escalated, cleared or acknowledged alarm,
+     *                with the associations of {@link AlarmSnapshot#FETCH_PATHS} initialized
+     */
+    void alarmUpdated(OnmsAlarm alarm);
+
+    /**
+     * @param alarmId - id of a deleted alarm
+     */
+    void alarmDeleted(int alarmId);
+}
@@ -0,0 +1,18 @@
+package org.opennms.features.rest.demo.alarm;
+
+/**
+ * publisher of alarm deltas, ex - a bridge from the alarm lifecycle events
+ *
+ */
+public interface AlarmChangeSource {
+
+    void addListener(AlarmChangeListener listener);
+
+    void removeListener(AlarmChangeListener listener);
+
+    /**
+     * @return true while every alarm change is delivered to the listeners,
+     *         the snapshot answers searches only as long as its source is connected
+     */
+    boolean isConnected();
+}
@@ -0,0 +1,519 @@
+package org.opennms.features.rest.demo.alarm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.opennms.core.criteria.Alias.JoinType;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.core.criteria.Order;
+import org.opennms.features.rest.demo.search.EntityMetadata;
+import org.opennms.features.rest.demo.search.InMemoryQuery;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.util.Comparison;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsSeverity;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * in-memory snapshot of the unacknowledged alarms for dashboard queries
+ * 
+ * alarms are indexed by severity and node, every severity bucket is sorted by lastEventTime (newest first)
+ * searches ordered by lastEventTime walk the buckets they need in merged order and stop at offset + limit
+ * 
+ * bootstrapped from the database at start, kept current by deltas of an {@link AlarmChangeSource}
+ * and reconciled with the database every reconcileInterval
+ * searches are only answered while the change source is connected, reconciliation alone would serve alarms up to reconcileInterval old
+ * 
+ * the alarms are held long after their session is closed, so every association the alarm representation reads is loaded with them
+ *
+ */
+public class AlarmSnapshot implements AlarmSnapshotMBean, AlarmChangeListener {
+
+    private static Logger logger = LoggerFactory.getLogger(AlarmSnapshot.class);
+
+    /**
+     * associations read by the marshalled alarm
+     */
+    public static final String[] FETCH_PATHS = {"node", "serviceType", "distPoller", "lastEvent.node", "lastEvent.serviceType", "lastEvent.distPoller"};
+
+    /**
+     * properties searches may filter and order by to be answered from the snapshot
+     */
+    private static final Set<String> PROPERTIES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "id", "severity", "node.id", "lastEventTime", "firstEventTime", "alarmAckTime")));
+
+    /**
+     * newest first, ties by id (newest first)
+     */
+    private static final Comparator<OnmsAlarm> NEWEST_FIRST = new Comparator<OnmsAlarm>() {
+        public int compare(OnmsAlarm a, OnmsAlarm b) {
+            final Date left = a.getLastEventTime();
+            final Date right = b.getLastEventTime();
+            if (left != right) {
+                if (left == null) {
+                    return 1;
+                } else if (right == null) {
+                    return -1;
+                }
+                final int result = right.compareTo(left);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return b.getId().compareTo(a.getId());
+        }
+    };
+
+    private AlarmDao alarmDao;
+    private ReadOnlySessionTemplate sessionTemplate;
+    private AlarmChangeSource changeSource;
+    private boolean enabled = true;
+    private long reconcileIntervalSeconds = 120;
+    private ScheduledExecutorService scheduler;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Integer, OnmsAlarm> alarms = new HashMap<Integer, OnmsAlarm>();
+    private final Map<OnmsSeverity, TreeSet<OnmsAlarm>> bySeverity = new EnumMap<OnmsSeverity, TreeSet<OnmsAlarm>>(OnmsSeverity.class);
+    private final Map<Integer, Set<Integer>> byNode = new HashMap<Integer, Set<Integer>>();
+
+    private final ConcurrentMap<Integer, Long> changed = new ConcurrentHashMap<Integer, Long>();    //alarm id -> nanoTime of the last delta
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong corrections = new AtomicLong();
+    private volatile boolean ready = false;
+    private volatile long lastReconciliation = 0;
+
+    public AlarmSnapshot() {
+        for (OnmsSeverity severity : OnmsSeverity.values()) {
+            bySeverity.put(severity, new TreeSet<OnmsAlarm>(NEWEST_FIRST));
+        }
+    }
+
+    /**
+     * method to initialize local variable alarmDao using blueprint
+     * @param alarmDao
+     */
+    public void setAlarmDao(AlarmDao alarmDao) {
+        this.alarmDao = alarmDao;
+    }
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * method to initialize local variable changeSource using blueprint
+     * @param changeSource
+     */
+    public void setChangeSource(AlarmChangeSource changeSource) {
+        this.changeSource = changeSource;
+    }
+
+    /**
+     * @param enabled - false to answer all alarm searches from the database
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param reconcileIntervalSeconds - interval of the reconciliation with the database
+     */
+    public void setReconcileIntervalSeconds(long reconcileIntervalSeconds) {
+        this.reconcileIntervalSeconds = reconcileIntervalSeconds;
+    }
+
+    /**
+     * blueprint init-method, subscribes to the change source and loads the snapshot in the background
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        if (changeSource != null) {
+            changeSource.addListener(this);
+        }
+        if (changeSource == null || !changeSource.isConnected()) {
+            logger.info("alarm change source is not connected, alarm searches are answered by the database until it is");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rest-alarm-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                reconcileNow();
+            }
+        }, 0, reconcileIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (changeSource != null) {
+            changeSource.removeListener(this);
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void alarmUpdated(OnmsAlarm alarm) {
+        changed.put(alarm.getId(), System.nanoTime());
+        lock.writeLock().lock();
+        try {
+            upsert(alarm);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changesApplied.incrementAndGet();
+    }
+
+    public void alarmDeleted(int alarmId) {
+        changed.put(alarmId, System.nanoTime());
+        lock.writeLock().lock();
+        try {
+            remove(alarmId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        changesApplied.incrementAndGet();
+    }
+
+    /**
+     * answer a search for unacknowledged alarms (alarmAckTime==null)
+     * @param ctx
+     * @return results, null if the search needs the database
+     */
+    public List<OnmsAlarm> find(SearchContext<OnmsAlarm> ctx) {
+        if (!ready || !isChangeSourceConnected() || !InMemoryQuery.isSupported(ctx, PROPERTIES)) {
+            return null;
+        }
+        boolean unacknowledged = false;
+        Integer nodeId = null;
+        final List<Comparison> severities = new ArrayList<Comparison>();
+        for (Comparison comparison : ctx.getDecoder().getComparisons()) {
+            if (comparison.getProperty().equals("alarmAckTime") && Comparison.EQ.equals(comparison.getOperator())
+                    && "null".equalsIgnoreCase(comparison.getValue())) {
+                unacknowledged = true;
+            } else if (comparison.getProperty().equals("node.id") && Comparison.EQ.equals(comparison.getOperator())) {
+                nodeId = (Integer) comparison.getCompareValue();
+            } else if (comparison.getProperty().equals("severity") && comparison.getCompareValue() != null) {
+                severities.add(comparison);
+            }
+        }
+        if (!unacknowledged) {    //acknowledged alarms are not held in memory
+            return null;
+        }
+        final Criteria crit = ctx.getCriteria();
+        final InMemoryQuery.Filter filter = InMemoryQuery.filterOf(ctx.getDefinition().getMetadata(), ctx.getDecoder().getComparisons());
+        lock.readLock().lock();
+        try {
+            if (nodeId != null) {     //node index, usually a handful of alarms
+                final List<OnmsAlarm> result = new ArrayList<OnmsAlarm>();
+                final Set<Integer> ids = byNode.get(nodeId);
+                if (ids != null) {
+                    for (Integer id : ids) {
+                        if (filter.matches(alarms.get(id))) {
+                            result.add(alarms.get(id));
+                        }
+                    }
+                }
+                Collections.sort(result, InMemoryQuery.comparatorOf(ctx.getDefinition().getMetadata(), crit));
+                return InMemoryQuery.page(result, crit);
+            }
+            final List<TreeSet<OnmsAlarm>> buckets = new ArrayList<TreeSet<OnmsAlarm>>();
+            final InMemoryQuery.Filter severityFilter = InMemoryQuery.filterOf(ctx.getDefinition().getMetadata(), severities);
+            for (Map.Entry<OnmsSeverity, TreeSet<OnmsAlarm>> bucket : bySeverity.entrySet()) {
+                if (!bucket.getValue().isEmpty() && severityFilter.matches(bucket.getValue().first())) {
+                    buckets.add(bucket.getValue());
+                }
+            }
+            final List<Order> orders = new ArrayList<Order>(crit.getOrders());
+            if (orders.size() == 1 && orders.get(0).getAttribute().equals("lastEventTime")) {
+                return walk(buckets, orders.get(0).asc(), filter, crit);
+            }
+            final List<OnmsAlarm> result = new ArrayList<OnmsAlarm>();
+            for (TreeSet<OnmsAlarm> bucket : buckets) {
+                for (OnmsAlarm alarm : bucket) {
+                    if (filter.matches(alarm)) {
+                        result.add(alarm);
+                    }
+                }
+            }
+            Collections.sort(result, InMemoryQuery.comparatorOf(ctx.getDefinition().getMetadata(), crit));
+            return InMemoryQuery.page(result, crit);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * merge the sorted buckets in lastEventTime order, stop as soon as offset + limit alarms matched
+     */
+    private static List<OnmsAlarm> walk(List<TreeSet<OnmsAlarm>> buckets, boolean ascending, InMemoryQuery.Filter filter, Criteria crit) {
+        final Comparator<OnmsAlarm> order = ascending ? Collections.reverseOrder(NEWEST_FIRST) : NEWEST_FIRST;
+        final PriorityQueue<Head> heads = new PriorityQueue<Head>(Math.max(1, buckets.size()), new Comparator<Head>() {
+            public int compare(Head a, Head b) {
+                return order.compare(a.current, b.current);
+            }
+        });
+        for (TreeSet<OnmsAlarm> bucket : buckets) {
+            final Iterator<OnmsAlarm> iterator = ascending ? bucket.descendingIterator() : bucket.iterator();
+            if (iterator.hasNext()) {
+                heads.add(new Head(iterator));
+            }
+        }
+        final int offset = crit.getOffset() == null ? 0 : crit.getOffset();
+        final long window = (long) offset + crit.getLimit();
+        final List<OnmsAlarm> result = new ArrayList<OnmsAlarm>();
+        int matched = 0;
+        while (!heads.isEmpty() && matched < window) {
+            final Head head = heads.poll();
+            if (filter.matches(head.current)) {
+                if (matched++ >= offset) {
+                    result.add(head.current);
+                }
+            }
+            if (head.advance()) {
+                heads.add(head);
+            }
+        }
+        return result;
+    }
+
+    private static class Head {
+        private final Iterator<OnmsAlarm> iterator;
+        private OnmsAlarm current;
+
+        public Head(Iterator<OnmsAlarm> iterator) {
+            this.iterator = iterator;
+            this.current = iterator.next();
+        }
+
+        public boolean advance() {
+            if (!iterator.hasNext()) {
+                return false;
+            }
+            current = iterator.next();
+            return true;
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isChangeSourceConnected() {
+        return changeSource != null && changeSource.isConnected();
+    }
+
+    public int getAlarmCount() {
+        lock.readLock().lock();
+        try {
+            return alarms.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public String[] getSeverityCounts() {
+        final List<String> lines = new ArrayList<String>();
+        lock.readLock().lock();
+        try {
+            for (Map.Entry<OnmsSeverity, TreeSet<OnmsAlarm>> bucket : bySeverity.entrySet()) {
+                lines.add(bucket.getKey() + " " + bucket.getValue().size());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    public long getChangesApplied() {
+        return changesApplied.get();
+    }
+
+    public long getReconciliationCorrections() {
+        return corrections.get();
+    }
+
+    public long getLastReconciliation() {
+        return lastReconciliation;
+    }
+
+    public void reconcile() {
+        if (scheduler != null) {
+            scheduler.execute(new Runnable() {
+                public void run() {
+                    reconcileNow();
+                }
+            });
+        }
+    }
+
+    /**
+     * load the unacknowledged alarms and bring the snapshot in line with them
+     */
+    void reconcileNow() {
+        final long started = System.nanoTime();
+        try {
+            final Criteria crit = new CriteriaBuilder(OnmsAlarm.class)
+                    .alias("node", "node", JoinType.LEFT_JOIN)
+                    .isNull("alarmAckTime")
+                    .toCriteria();
+            final List<OnmsAlarm> loaded = sessionTemplate == null ? alarmDao.findMatching(crit)
+                                                                   : sessionTemplate.<OnmsAlarm>findMatching(crit, 0, fetchPaths());
+            final Set<Integer> loadedIds = new HashSet<Integer>();
+            long fixed = 0;
+            lock.writeLock().lock();
+            try {
+                for (OnmsAlarm alarm : loaded) {
+                    loadedIds.add(alarm.getId());
+                    if (changedSince(alarm.getId(), started)) {
+                        continue;
+                    }
+                    final OnmsAlarm previous = alarms.get(alarm.getId());
+                    if (previous == null || !sameState(previous, alarm)) {
+                        fixed++;
+                    }
+                    upsert(alarm);
+                }
+                for (Integer id : new ArrayList<Integer>(alarms.keySet())) {
+                    if (!loadedIds.contains(id) && !changedSince(id, started)) {
+                        remove(id);
+                        fixed++;
+                    }
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            for (Map.Entry<Integer, Long> entry : changed.entrySet()) {
+                if (entry.getValue() - started < 0) {
+                    changed.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            if (ready) {
+                corrections.addAndGet(fixed);
+                if (fixed > 0) {
+                    logger.info("alarm snapshot reconciliation corrected {} entries", fixed);
+                }
+            }
+            ready = true;
+            lastReconciliation = System.currentTimeMillis();
+            logger.debug("alarm snapshot reconciled, {} alarms in {}ms", loaded.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception e) {
+            logger.warn("failed to reconcile the alarm snapshot: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return the paths of {@link #FETCH_PATHS} the alarm model has
+     */
+    private static List<String> fetchPaths() {
+        final List<String> paths = new ArrayList<String>();
+        for (String path : FETCH_PATHS) {
+            if (EntityMetadata.forClass(OnmsAlarm.class).resolve(path) != null) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    /**
+     * replace the alarm, acknowledged alarms are removed, called with the write lock held
+     */
+    private void upsert(OnmsAlarm alarm) {
+        remove(alarm.getId());
+        if (alarm.getAlarmAckTime() != null || alarm.getSeverity() == null) {
+            return;
+        }
+        alarms.put(alarm.getId(), alarm);
+        bySeverity.get(alarm.getSeverity()).add(alarm);
+        final Integer nodeId = nodeIdOf(alarm);
+        if (nodeId != null) {
+            Set<Integer> ids = byNode.get(nodeId);
+            if (ids == null) {
+                ids = new HashSet<Integer>();
+                byNode.put(nodeId, ids);
+            }
+            ids.add(alarm.getId());
+        }
+    }
+
+    /**
+     * called with the write lock held
+     */
+    private void remove(int alarmId) {
+        final OnmsAlarm previous = alarms.remove(alarmId);
+        if (previous == null) {
+            return;
+        }
+        bySeverity.get(previous.getSeverity()).remove(previous);
+        final Integer nodeId = nodeIdOf(previous);
+        if (nodeId != null) {
+            final Set<Integer> ids = byNode.get(nodeId);
+            if (ids != null) {
+                ids.remove(alarmId);
+                if (ids.isEmpty()) {
+                    byNode.remove(nodeId);
+                }
+            }
+        }
+    }
+
+    private static Integer nodeIdOf(OnmsAlarm alarm) {
+        return alarm.getNode() == null ? null : alarm.getNode().getId();
+    }
+
+    private static boolean sameState(OnmsAlarm a, OnmsAlarm b) {
+        return a.getSeverity() == b.getSeverity() && equal(a.getLastEventTime(), b.getLastEventTime()) && equal(a.getCounter(), b.getCounter());
+    }
+
+    private static boolean equal(Object a, Object b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    private boolean changedSince(Integer alarmId, long nanos) {
+        final Long stamp = changed.get(alarmId);
+        return stamp != null && stamp - nanos >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "AlarmSnapshot [ready=" + ready + ", alarms=" + getAlarmCount() + ", changesApplied=" + changesApplied.get()
+                + ", corrections=" + corrections.get() + "]";
+    }
+}
@@ -0,0 +1,42 @@
+package org.opennms.features.rest.demo.alarm;
+
+/**
+ * management interface of {@link AlarmSnapshot}
+ *
+ */
+public interface AlarmSnapshotMBean {
+
+    boolean isReady();
+
+    /**
+     * @return true while the change source delivers deltas, searches are answered from the snapshot only then
+     */
+    boolean isChangeSourceConnected();
+
+    /**
+     * @return number of unacknowledged alarms held in memory
+     */
+    int getAlarmCount();
+
+    /**
+     * @return one line per severity: "MAJOR 12"
+     */
+    String[] getSeverityCounts();
+
+    /**
+     * @return deltas received from the change source
+     */
+    long getChangesApplied();
+
+    /**
+     * @return entries added, updated or removed by reconciliation, deltas the change source missed
+     */
+    long getReconciliationCorrections();
+
+    long getLastReconciliation();
+
+    /**
+     * reconcile with the database now
+     */
+    void reconcile();
+}
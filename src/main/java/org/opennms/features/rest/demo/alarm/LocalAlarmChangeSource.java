@@ -0,0 +1,49 @@
+package org.opennms.features.rest.demo.alarm;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.opennms.netmgt.model.OnmsAlarm;
+
+/**
+ * in-process stand-in for a real alarm change feed
+ * deltas are published by calling {@link #fireUpdated(OnmsAlarm)} / {@link #fireDeleted(int)},
+ * the publisher has to mark the source connected, until then the alarm snapshot answers no search
+ *
+ */
+public class LocalAlarmChangeSource implements AlarmChangeSource {
+
+    private final List<AlarmChangeListener> listeners = new CopyOnWriteArrayList<AlarmChangeListener>();
+    private volatile boolean connected = false;
+
+    public void addListener(AlarmChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(AlarmChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @param connected - true once a publisher delivers every alarm change
+     */
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    public void fireUpdated(OnmsAlarm alarm) {
+        for (AlarmChangeListener listener : listeners) {
+            listener.alarmUpdated(alarm);
+        }
+    }
+
+    public void fireDeleted(int alarmId) {
+        for (AlarmChangeListener listener : listeners) {
+            listener.alarmDeleted(alarmId);
+        }
+    }
+}
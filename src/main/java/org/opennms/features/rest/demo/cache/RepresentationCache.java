@@ -0,0 +1,355 @@
+package org.opennms.features.rest.demo.cache;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.apache.cxf.jaxrs.impl.MetadataMap;
+import org.apache.cxf.jaxrs.provider.JAXBElementProvider;
+import org.apache.cxf.jaxrs.provider.json.JSONProvider;
+import org.opennms.features.rest.demo.alarm.AlarmChangeListener;
+import org.opennms.features.rest.demo.alarm.AlarmChangeSource;
+import org.opennms.features.rest.demo.outage.OutageChangeListener;
+import org.opennms.features.rest.demo.outage.OutageChangeSource;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsOutage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * bounded cache of serialized XML / JSON representations of single entities
+ * 
+ * entries are keyed by entity type, id, media type and a version token,
+ * a hit is written straight from the cached bytes without touching hibernate or JAXB
+ * 
+ * alarm and outage changes bump the version token of the entity, so a representation
+ * serialized while the change happened is never served, other entities expire after the TTL
+ * the version tokens are striped counters, a collision only costs an additional miss
+ *
+ */
+public class RepresentationCache implements RepresentationCacheMBean, AlarmChangeListener, OutageChangeListener {
+
+    private static Logger logger = LoggerFactory.getLogger(RepresentationCache.class);
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    private static final int VERSION_STRIPES = 4096;
+
+    /**
+     * loads the entity on a miss
+     */
+    public interface Loader {
+
+        /**
+         * @return the entity or null if it does not exist
+         */
+        Object load();
+    }
+
+    private boolean enabled = true;
+    private long ttlMillis = TimeUnit.SECONDS.toMillis(30);
+    private int maxEntries = 10000;
+    private long maxBytes = 64L * 1024 * 1024;
+    private AlarmChangeSource alarmChangeSource;
+    private OutageChangeSource outageChangeSource;
+
+    private final JAXBElementProvider<Object> xmlProvider = new JAXBElementProvider<Object>();
+    private MessageBodyWriter<Object> jsonProvider = new JSONProvider<Object>();
+
+    private final AtomicLongArray versions = new AtomicLongArray(VERSION_STRIPES);
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<Key, Entry>(256, 0.75f, true); //access order, guarded by itself
+    private long bytes = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param enabled - false to serialize every single entity response
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param ttlSeconds - maximum age of a cached representation
+     */
+    public void setTtlSeconds(long ttlSeconds) {
+        this.ttlMillis = TimeUnit.SECONDS.toMillis(ttlSeconds);
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public void setMaxBytes(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * method to initialize local variable alarmChangeSource using blueprint
+     * @param alarmChangeSource
+     */
+    public void setAlarmChangeSource(AlarmChangeSource alarmChangeSource) {
+        this.alarmChangeSource = alarmChangeSource;
+    }
+
+    /**
+     * method to initialize local variable outageChangeSource using blueprint
+     * @param outageChangeSource
+     */
+    public void setOutageChangeSource(OutageChangeSource outageChangeSource) {
+        this.outageChangeSource = outageChangeSource;
+    }
+
+    /**
+     * provider serializing JSON representations, the CXF JSONProvider unless set
+     * @param jsonProvider
+     */
+    public void setJsonProvider(MessageBodyWriter<Object> jsonProvider) {
+        this.jsonProvider = jsonProvider;
+    }
+
+    /**
+     * subscribe to the change sources
+     */
+    public void start() {
+        if (alarmChangeSource != null) {
+            alarmChangeSource.addListener(this);
+        }
+        if (outageChangeSource != null) {
+            outageChangeSource.addListener(this);
+        }
+    }
+
+    public void stop() {
+        if (alarmChangeSource != null) {
+            alarmChangeSource.removeListener(this);
+        }
+        if (outageChangeSource != null) {
+            outageChangeSource.removeListener(this);
+        }
+        clear();
+    }
+
+    /**
+     * response of a single entity GET, written from cached bytes when possible
+     * 
+     * @param type - entity type, ex - "OnmsAlarm"
+     * @param id - id as used by the resource
+     * @param headers - request headers used to select XML or JSON
+     * @param loader - loads the entity on a miss
+     * @return the response or null if the entity does not exist
+     */
+    public Response respond(String type, Object id, HttpHeaders headers, Loader loader) {
+        final MediaType mediaType = selectMediaType(headers);
+        if (!enabled) {
+            final Object entity = loader.load();
+            return entity == null ? null : Response.ok(entity, mediaType).build();
+        }
+        final int stripe = stripeOf(type, id);
+        final long version = versions.get(stripe);
+        final Key key = new Key(type, String.valueOf(id), mediaType.getSubtype(), version);
+        final long now = System.currentTimeMillis();
+        synchronized (entries) {
+            final Entry entry = entries.get(key);
+            if (entry != null && entry.expiresAt > now) {
+                hits.incrementAndGet();
+                return Response.ok(entry.bytes, mediaType).build();
+            } else if (entry != null) {
+                remove(key);
+            }
+        }
+        misses.incrementAndGet();
+        final Object entity = loader.load();
+        if (entity == null) {
+            return null;
+        }
+        final byte[] serialized = serialize(entity, mediaType);
+        if (versions.get(stripe) == version) {    //no change arrived while loading
+            put(key, new Entry(serialized, now + ttlMillis));
+        }
+        return Response.ok(serialized, mediaType).build();
+    }
+
+    /**
+     * invalidate every cached representation of an entity
+     * @param type
+     * @param id
+     */
+    public void invalidate(String type, Object id) {
+        final int stripe = stripeOf(type, id);
+        final long version = versions.getAndIncrement(stripe);
+        invalidations.incrementAndGet();
+        synchronized (entries) {
+            remove(new Key(type, String.valueOf(id), MediaType.APPLICATION_XML_TYPE.getSubtype(), version));
+            remove(new Key(type, String.valueOf(id), MediaType.APPLICATION_JSON_TYPE.getSubtype(), version));
+        }
+    }
+
+    public void alarmUpdated(OnmsAlarm alarm) {
+        invalidate(OnmsAlarm.class.getSimpleName(), alarm.getId());
+    }
+
+    public void alarmDeleted(int alarmId) {
+        invalidate(OnmsAlarm.class.getSimpleName(), alarmId);
+    }
+
+    public void outageOpened(OnmsOutage outage) {
+        invalidate(OnmsOutage.class.getSimpleName(), outage.getId());
+    }
+
+    public void outageResolved(OnmsOutage outage) {
+        invalidate(OnmsOutage.class.getSimpleName(), outage.getId());
+    }
+
+    /**
+     * XML unless the client prefers JSON, the same choice CXF makes for @Produces({XML, JSON})
+     * @param headers
+     * @return
+     */
+    static MediaType selectMediaType(HttpHeaders headers) {
+        if (headers != null) {
+            for (MediaType acceptable : headers.getAcceptableMediaTypes()) {
+                if (acceptable.isCompatible(MediaType.APPLICATION_XML_TYPE)) {
+                    return MediaType.APPLICATION_XML_TYPE;
+                } else if (acceptable.isCompatible(MediaType.APPLICATION_JSON_TYPE)) {
+                    return MediaType.APPLICATION_JSON_TYPE;
+                }
+            }
+        }
+        return MediaType.APPLICATION_XML_TYPE;
+    }
+
+    private byte[] serialize(Object entity, MediaType mediaType) {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream(1024);
+        try {
+            if (MediaType.APPLICATION_JSON_TYPE.isCompatible(mediaType)) {
+                jsonProvider.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS, mediaType, new MetadataMap<String, Object>(), os);
+            } else {
+                xmlProvider.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS, mediaType, new MetadataMap<String, Object>(), os);
+            }
+        } catch (IOException e) {
+            logger.error("Failed to serialize " + entity.getClass().getSimpleName(), e);
+            throw new WebApplicationException(e);
+        }
+        return os.toByteArray();
+    }
+
+    private void put(Key key, Entry entry) {
+        if (entry.bytes.length > maxBytes) {
+            return;
+        }
+        synchronized (entries) {
+            remove(key);
+            entries.put(key, entry);
+            bytes += entry.bytes.length;
+            final Iterator<Map.Entry<Key, Entry>> eldest = entries.entrySet().iterator();
+            while ((entries.size() > maxEntries || bytes > maxBytes) && eldest.hasNext()) {
+                bytes -= eldest.next().getValue().bytes.length;
+                eldest.remove();
+                evictions.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * caller holds the lock of entries
+     */
+    private void remove(Key key) {
+        final Entry removed = entries.remove(key);
+        if (removed != null) {
+            bytes -= removed.bytes.length;
+        }
+    }
+
+    private static int stripeOf(String type, Object id) {
+        final int hash = 31 * type.hashCode() + String.valueOf(id).hashCode();
+        return (hash ^ (hash >>> 16)) & (VERSION_STRIPES - 1);
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getInvalidations() {
+        return invalidations.get();
+    }
+
+    public int getEntries() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    public long getBytes() {
+        synchronized (entries) {
+            return bytes;
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+            bytes = 0;
+        }
+    }
+
+    private static final class Key {
+        private final String type;
+        private final String id;
+        private final String mediaType;
+        private final long version;
+
+        Key(String type, String id, String mediaType, long version) {
+            this.type = type;
+            this.id = id;
+            this.mediaType = mediaType;
+            this.version = version;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key other = (Key) obj;
+            return version == other.version && id.equals(other.id) && type.equals(other.type) && mediaType.equals(other.mediaType);
+        }
+
+        @Override
+        public int hashCode() {
+            return ((type.hashCode() * 31 + id.hashCode()) * 31 + mediaType.hashCode()) * 31 + (int) (version ^ (version >>> 32));
+        }
+    }
+
+    private static final class Entry {
+        private final byte[] bytes;
+        private final long expiresAt;
+
+        Entry(byte[] bytes, long expiresAt) {
+            this.bytes = bytes;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package org.opennms.features.rest.demo.cache;
+
+/**
+ * management interface of the {@link RepresentationCache}
+ *
+ */
+public interface RepresentationCacheMBean {
+
+    /**
+     * @return number of single entity responses written from cached bytes
+     */
+    long getHits();
+
+    /**
+     * @return number of single entity responses which had to be loaded and serialized
+     */
+    long getMisses();
+
+    /**
+     * @return number of entries removed because the cache was full
+     */
+    long getEvictions();
+
+    /**
+     * @return number of change notifications which invalidated an entity
+     */
+    long getInvalidations();
+
+    /**
+     * @return number of cached representations
+     */
+    int getEntries();
+
+    /**
+     * @return bytes held by the cached representations
+     */
+    long getBytes();
+
+    /**
+     * drop all cached representations
+     */
+    void clear();
+}
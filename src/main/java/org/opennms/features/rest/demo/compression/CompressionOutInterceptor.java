@@ -0,0 +1,193 @@
+package org.opennms.features.rest.demo.compression;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.Deflater;
+
+import org.apache.cxf.helpers.CastUtils;
+import org.apache.cxf.interceptor.Fault;
+import org.apache.cxf.interceptor.MessageSenderInterceptor;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.phase.AbstractPhaseInterceptor;
+import org.apache.cxf.phase.Phase;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * CXF out interceptor adding negotiated gzip / deflate compression to all resources of the rest server
+ *
+ * the encoding is chosen from the Accept-Encoding header of the request (q-values are honoured, gzip wins a tie)
+ * the response stream is replaced by a {@link ThresholdCompressingOutputStream}
+ * so small responses stay uncompressed and large ones are compressed while they are written
+ *
+ */
+public class CompressionOutInterceptor extends AbstractPhaseInterceptor<Message> {
+
+    private static Logger logger = LoggerFactory.getLogger(CompressionOutInterceptor.class);
+
+    private int threshold = 1024;
+    private int level = Deflater.DEFAULT_COMPRESSION;
+    private CompressionStatistics statistics = new CompressionStatistics();
+
+    public CompressionOutInterceptor() {
+        super(Phase.PREPARE_SEND);
+        addAfter(MessageSenderInterceptor.class.getName());
+    }
+
+    /**
+     * minimum response size in bytes before compression is applied
+     * @param threshold
+     */
+    public void setThreshold(int threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * deflater compression level, 1 (fastest) to 9 (smallest) or -1 for the default
+     * @param level
+     */
+    public void setLevel(int level) {
+        if (level != Deflater.DEFAULT_COMPRESSION && (level < Deflater.BEST_SPEED || level > Deflater.BEST_COMPRESSION)) {
+            throw new IllegalArgumentException("Compression level must be between 1 and 9 or -1, but was " + level);
+        }
+        this.level = level;
+    }
+
+    /**
+     * method to initialize local variable statistics using blueprint
+     * @param statistics
+     */
+    public void setStatistics(CompressionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    public void handleMessage(final Message message) throws Fault {
+        if (message.getExchange() == null || message.getExchange().getInMessage() == null) {
+            return;
+        }
+        OutputStream os = message.getContent(OutputStream.class);
+        if (os == null || !isCompressible(message)) {
+            return;
+        }
+        Map<String, List<String>> requestHeaders = CastUtils.cast((Map<?, ?>) message.getExchange().getInMessage().get(Message.PROTOCOL_HEADERS));
+        final String encoding = negotiateEncoding(requestHeaders);
+        if (encoding == null) {
+            return;
+        }
+
+        message.setContent(OutputStream.class, new ThresholdCompressingOutputStream(os, encoding, threshold, level) {
+            @Override
+            protected void onCompressionStart() {
+                Map<String, List<String>> headers = getResponseHeaders(message);
+                headers.remove("Content-Length");
+                putHeader(headers, "Content-Encoding", encoding);
+                putHeader(headers, "Vary", "Accept-Encoding");
+            }
+
+            @Override
+            protected void onComplete(long uncompressedLength, long wireLength, boolean compressed) {
+                if (compressed) {
+                    statistics.recordCompressed(uncompressedLength, wireLength);
+                    logger.debug("{} compressed response {} -> {} bytes", encoding, uncompressedLength, wireLength);
+                } else {
+                    statistics.recordPassthrough(wireLength);
+                }
+            }
+        });
+    }
+
+    /**
+     * only successful textual responses without an existing encoding are compressed
+     * @param message
+     * @return
+     */
+    private boolean isCompressible(Message message) {
+        Integer status = (Integer) message.get(Message.RESPONSE_CODE);
+        if (status != null && (status == 204 || status == 304)) {
+            return false;
+        }
+        if ("HEAD".equals(message.getExchange().getInMessage().get(Message.HTTP_REQUEST_METHOD))) {
+            return false;
+        }
+        Map<String, List<String>> headers = CastUtils.cast((Map<?, ?>) message.get(Message.PROTOCOL_HEADERS));
+        if (headers != null && headers.containsKey("Content-Encoding")) {
+            return false;
+        }
+        String contentType = (String) message.get(Message.CONTENT_TYPE);
+        if (contentType == null) {
+            return true;
+        }
+        contentType = contentType.toLowerCase();
+        return contentType.startsWith("text/") || contentType.contains("xml") || contentType.contains("json");
+    }
+
+    /**
+     * pick the preferred supported encoding out of an Accept-Encoding header
+     * @param requestHeaders
+     * @return "gzip", "deflate" or null if the client does not accept either
+     */
+    static String negotiateEncoding(Map<String, List<String>> requestHeaders) {
+        if (requestHeaders == null) {
+            return null;
+        }
+        List<String> acceptEncoding = requestHeaders.get("Accept-Encoding");
+        if (acceptEncoding == null) {
+            return null;
+        }
+        float gzipQ = -1;
+        float deflateQ = -1;
+        float wildcardQ = -1;
+        for (String headerValue : acceptEncoding) {
+            for (String token : headerValue.split(",")) {
+                String[] parts = token.trim().split(";");
+                String coding = parts[0].trim().toLowerCase();
+                float q = 1;
+                for (int i = 1; i < parts.length; i++) {
+                    String param = parts[i].trim();
+                    if (param.startsWith("q=")) {
+                        try {
+                            q = Float.parseFloat(param.substring(2));
+                        } catch (NumberFormatException e) {
+                            q = 0;
+                        }
+                    }
+                }
+                if (coding.equals(ThresholdCompressingOutputStream.GZIP) || coding.equals("x-gzip")) {
+                    gzipQ = q;
+                } else if (coding.equals(ThresholdCompressingOutputStream.DEFLATE)) {
+                    deflateQ = q;
+                } else if (coding.equals("*")) {
+                    wildcardQ = q;
+                }
+            }
+        }
+        if (gzipQ < 0) {
+            gzipQ = wildcardQ;
+        }
+        if (deflateQ < 0) {
+            deflateQ = wildcardQ;
+        }
+        if (gzipQ <= 0 && deflateQ <= 0) {
+            return null;
+        }
+        return gzipQ >= deflateQ ? ThresholdCompressingOutputStream.GZIP : ThresholdCompressingOutputStream.DEFLATE;
+    }
+
+    private static Map<String, List<String>> getResponseHeaders(Message message) {
+        Map<String, List<String>> headers = CastUtils.cast((Map<?, ?>) message.get(Message.PROTOCOL_HEADERS));
+        if (headers == null) {
+            headers = new TreeMap<String, List<String>>(String.CASE_INSENSITIVE_ORDER);
+            message.put(Message.PROTOCOL_HEADERS, headers);
+        }
+        return headers;
+    }
+
+    private static void putHeader(Map<String, List<String>> headers, String name, String value) {
+        List<String> values = new ArrayList<String>();
+        values.add(value);
+        headers.put(name, values);
+    }
+}
@@ -0,0 +1,77 @@
+package org.opennms.features.rest.demo.compression;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * thread safe counters of compressed and uncompressed response bytes
+ * a single instance is shared by the compression interceptor through blueprint
+ *
+ */
+public class CompressionStatistics implements CompressionStatisticsMBean {
+
+    private final AtomicLong responses = new AtomicLong();
+    private final AtomicLong compressedResponses = new AtomicLong();
+    private final AtomicLong uncompressedBytes = new AtomicLong();
+    private final AtomicLong compressedBytes = new AtomicLong();
+    private final AtomicLong passthroughBytes = new AtomicLong();
+
+    /**
+     * record a response which was sent compressed
+     * @param originalLength - bytes written by the resource
+     * @param wireLength - bytes sent after compression
+     */
+    public void recordCompressed(long originalLength, long wireLength) {
+        responses.incrementAndGet();
+        compressedResponses.incrementAndGet();
+        uncompressedBytes.addAndGet(originalLength);
+        compressedBytes.addAndGet(wireLength);
+    }
+
+    /**
+     * record a response which was sent without compression
+     * @param length - bytes sent
+     */
+    public void recordPassthrough(long length) {
+        responses.incrementAndGet();
+        passthroughBytes.addAndGet(length);
+    }
+
+    public long getResponses() {
+        return responses.get();
+    }
+
+    public long getCompressedResponses() {
+        return compressedResponses.get();
+    }
+
+    public long getUncompressedBytes() {
+        return uncompressedBytes.get();
+    }
+
+    public long getCompressedBytes() {
+        return compressedBytes.get();
+    }
+
+    public long getPassthroughBytes() {
+        return passthroughBytes.get();
+    }
+
+    public long getSavedBytes() {
+        return uncompressedBytes.get() - compressedBytes.get();
+    }
+
+    public void reset() {
+        responses.set(0);
+        compressedResponses.set(0);
+        uncompressedBytes.set(0);
+        compressedBytes.set(0);
+        passthroughBytes.set(0);
+    }
+
+    @Override
+    public String toString() {
+        return "CompressionStatistics [responses=" + getResponses() + ", compressedResponses=" + getCompressedResponses()
+                + ", uncompressedBytes=" + getUncompressedBytes() + ", compressedBytes=" + getCompressedBytes()
+                + ", passthroughBytes=" + getPassthroughBytes() + ", savedBytes=" + getSavedBytes() + "]";
+    }
+}
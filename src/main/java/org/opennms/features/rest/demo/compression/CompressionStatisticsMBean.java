@@ -0,0 +1,44 @@
+package org.opennms.features.rest.demo.compression;
+
+/**
+ * management interface exposing the bandwidth figures collected by {@link CompressionStatistics}
+ *
+ */
+public interface CompressionStatisticsMBean {
+
+    /**
+     * @return number of responses which passed through the compression interceptor
+     */
+    long getResponses();
+
+    /**
+     * @return number of responses which were sent compressed
+     */
+    long getCompressedResponses();
+
+    /**
+     * @return bytes written by the resources for compressed responses (before compression)
+     */
+    long getUncompressedBytes();
+
+    /**
+     * @return bytes actually sent on the wire for compressed responses
+     */
+    long getCompressedBytes();
+
+    /**
+     * @return bytes sent uncompressed because the client did not negotiate an encoding
+     * or the response was below the size threshold
+     */
+    long getPassthroughBytes();
+
+    /**
+     * @return uncompressedBytes - compressedBytes
+     */
+    long getSavedBytes();
+
+    /**
+     * reset all counters to zero
+     */
+    void reset();
+}
@@ -0,0 +1,179 @@
+package org.opennms.features.rest.demo.compression;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * output stream which buffers the first bytes of a response and only starts
+ * compressing once the configured threshold has been reached
+ *
+ * responses smaller than the threshold are written unchanged when the stream is closed
+ * once compression has started every write goes straight through the deflater
+ * and flush() performs a sync flush, so chunked / streamed output keeps flowing
+ *
+ */
+public abstract class ThresholdCompressingOutputStream extends OutputStream {
+
+    public static final String GZIP = "gzip";
+    public static final String DEFLATE = "deflate";
+
+    private static final int DEFLATER_BUFFER_SIZE = 8192;
+
+    private final CountingOutputStream wire;
+    private final String encoding;
+    private final int threshold;
+    private final int level;
+
+    private ByteArrayOutputStream buffer;
+    private DeflaterOutputStream compressor;
+    private Deflater deflater;
+    private long written = 0;
+    private boolean closed = false;
+
+    /**
+     * @param wrapped - the original response stream
+     * @param encoding - "gzip" or "deflate"
+     * @param threshold - minimum number of bytes before compression is switched on
+     * @param level - deflater level 1..9 or -1 for the default
+     */
+    public ThresholdCompressingOutputStream(OutputStream wrapped, String encoding, int threshold, int level) {
+        this.wire = new CountingOutputStream(wrapped);
+        this.encoding = encoding;
+        this.threshold = threshold;
+        this.level = level;
+        this.buffer = new ByteArrayOutputStream(Math.max(threshold, 32));
+    }
+
+    /**
+     * called exactly once, before the first compressed byte is written
+     * implementations set the Content-Encoding header here
+     */
+    protected abstract void onCompressionStart();
+
+    /**
+     * called exactly once when the stream is closed
+     * @param uncompressedLength - bytes written to this stream
+     * @param wireLength - bytes written to the wrapped stream
+     * @param compressed - whether the response was compressed
+     */
+    protected abstract void onComplete(long uncompressedLength, long wireLength, boolean compressed);
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (closed) {
+            throw new IOException("Stream already closed");
+        }
+        written += len;
+        if (compressor != null) {
+            compressor.write(b, off, len);
+            return;
+        }
+        buffer.write(b, off, len);
+        if (buffer.size() >= threshold) {
+            startCompression();
+        }
+    }
+
+    /**
+     * while still below the threshold the data is kept back,
+     * otherwise the deflater is sync flushed so the client receives the data written so far
+     */
+    @Override
+    public void flush() throws IOException {
+        if (compressor != null) {
+            compressor.flush();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (compressor != null) {
+                compressor.finish();
+                compressor.flush();
+            } else {
+                buffer.writeTo(wire);
+                buffer = null;
+            }
+            wire.close();
+        } finally {
+            if (deflater != null) {
+                deflater.end();
+            }
+            onComplete(written, wire.getCount(), compressor != null);
+        }
+    }
+
+    private void startCompression() throws IOException {
+        onCompressionStart();
+        if (GZIP.equals(encoding)) {
+            final LevelGZIPOutputStream gzip = new LevelGZIPOutputStream(wire, level);
+            deflater = gzip.deflater();
+            compressor = gzip;
+        } else {
+            deflater = new Deflater(level, false);
+            compressor = new DeflaterOutputStream(wire, deflater, DEFLATER_BUFFER_SIZE, true);
+        }
+        buffer.writeTo(compressor);
+        buffer = null;
+    }
+
+    /**
+     * GZIPOutputStream does not accept a level in its constructor
+     * the protected deflater is adjusted instead
+     */
+    private static class LevelGZIPOutputStream extends GZIPOutputStream {
+        public LevelGZIPOutputStream(OutputStream out, int level) throws IOException {
+            super(out, DEFLATER_BUFFER_SIZE, true);
+            def.setLevel(level);
+        }
+
+        /**
+         * the stream itself is never closed, so its deflater is ended by the caller
+         */
+        Deflater deflater() {
+            return def;
+        }
+    }
+
+    /**
+     * counts the bytes which reach the wrapped stream
+     */
+    private static class CountingOutputStream extends FilterOutputStream {
+        private long count = 0;
+
+        public CountingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            out.write(b);
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+            count += len;
+        }
+
+        public long getCount() {
+            return count;
+        }
+    }
+}
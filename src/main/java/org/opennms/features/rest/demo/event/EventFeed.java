@@ -0,0 +1,12 @@
+package org.opennms.features.rest.demo.event;
+
+/**
+ * publisher of newly stored events, ex - a bridge from the event daemon
+ *
+ */
+public interface EventFeed {
+
+    void addListener(EventFeedListener listener);
+
+    void removeListener(EventFeedListener listener);
+}
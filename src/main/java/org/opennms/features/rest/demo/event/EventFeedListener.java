@@ -0,0 +1,18 @@
+package org.opennms.features.rest.demo.event;
+
+/**
+ * receives every event stored by OpenNMS
+ * the event is passed as primitive columns, so listeners can keep it without allocating
+ *
+ */
+public interface EventFeedListener {
+
+    /**
+     * @param eventId
+     * @param eventTime - milliseconds since the epoch
+     * @param severity - 1 (indeterminate) to 7 (critical)
+     * @param nodeId - 0 if the event has no node
+     * @param uei
+     */
+    void eventReceived(int eventId, long eventTime, int severity, int nodeId, String uei);
+}
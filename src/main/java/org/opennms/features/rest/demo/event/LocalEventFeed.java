@@ -0,0 +1,28 @@
+package org.opennms.features.rest.demo.event;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * in-process stand-in for a real event feed
+ * events are published by calling {@link #fire(int, long, int, int, String)}
+ *
+ */
+public class LocalEventFeed implements EventFeed {
+
+    private final List<EventFeedListener> listeners = new CopyOnWriteArrayList<EventFeedListener>();
+
+    public void addListener(EventFeedListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(EventFeedListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void fire(int eventId, long eventTime, int severity, int nodeId, String uei) {
+        for (EventFeedListener listener : listeners) {
+            listener.eventReceived(eventId, eventTime, severity, nodeId, uei);
+        }
+    }
+}
@@ -0,0 +1,626 @@
+package org.opennms.features.rest.demo.event;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import org.hibernate.Session;
+import org.opennms.core.criteria.Order;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.util.Comparison;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * fixed capacity ring buffer of the most recent events
+ * 
+ * events are stored column wise in primitive arrays (id, time, severity, node id, UEI number)
+ * UEIs are interned into a table, so adding an event never allocates once the UEI is known
+ * the oldest event is overwritten when the buffer is full
+ * 
+ * the buffer is filled from the database at start, then events stored since are read by id
+ * every catchUpIntervalSeconds and before a search if the last catch-up started longer than maxLagMillis ago,
+ * so a search never misses events stored more than maxLagMillis before it started; an {@link EventFeed} only shortens the catch-ups
+ * ids are taken from a sequence but transactions commit out of id order, so a catch-up reads again all ids above
+ * the last id of the catch-ups started at least overlapMillis ago (settled id) and skips the events it already holds
+ * it answers which event ids match a search, the events themselves are loaded by primary key
+ * a search can be answered if it is conjunctive, only uses eventTime, eventSeverity, node.id, eventUei and id,
+ * is ordered by eventTime or id and has a lower eventTime bound inside the covered time window
+ *
+ */
+public class RecentEventBuffer implements RecentEventBufferMBean, EventFeedListener {
+
+    private static Logger logger = LoggerFactory.getLogger(RecentEventBuffer.class);
+
+    private static final int ID = 0;
+    private static final int TIME = 1;
+    private static final int SEVERITY = 2;
+    private static final int NODE = 3;
+    private static final int UEI = 4;
+
+    private static final Map<String, Integer> COLUMNS = new HashMap<String, Integer>();
+    static {
+        COLUMNS.put("id", ID);
+        COLUMNS.put("eventTime", TIME);
+        COLUMNS.put("eventSeverity", SEVERITY);
+        COLUMNS.put("node.id", NODE);
+        COLUMNS.put("eventUei", UEI);
+    }
+
+    private ReadOnlySessionTemplate sessionTemplate;
+    private EventFeed eventFeed;
+    private boolean enabled = true;
+    private int capacity = 100000;
+    private int maxUeis = 65536;
+    private long catchUpIntervalSeconds = 5;
+    private long maxLagMillis = 5000;
+    private long overlapMillis = 60000;
+    private ScheduledExecutorService scheduler;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private int[] ids;
+    private long[] times;
+    private byte[] severities;
+    private int[] nodeIds;
+    private int[] ueis;
+    private int head = 0;    //next slot to write
+    private int size = 0;
+    private long coverageStart = Long.MAX_VALUE;
+    private int lastId = 0;                     //highest event id held
+    private int settledId = 0;                  //no event with a lower id can be committed anymore
+    private final Set<Integer> unsettledIds = new HashSet<Integer>();                  //ids held above settledId
+    private final ArrayDeque<long[]> catchUps = new ArrayDeque<long[]>();              //start, last id of the recent catch-ups
+    private volatile long coveredUntil = 0;     //all events stored before this time are held
+    private final Object catchUpLock = new Object();
+    private boolean ueiOverflow = false;
+    private final Map<String, Integer> ueiNumbers = new HashMap<String, Integer>();
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private volatile boolean ready = false;
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * method to initialize local variable eventFeed using blueprint
+     * @param eventFeed
+     */
+    public void setEventFeed(EventFeed eventFeed) {
+        this.eventFeed = eventFeed;
+    }
+
+    /**
+     * @param enabled - false to answer all event searches from the database
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param capacity - number of events kept
+     */
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @param maxUeis - size limit of the UEI table, UEI searches are not answered once it is exceeded
+     */
+    public void setMaxUeis(int maxUeis) {
+        this.maxUeis = maxUeis;
+    }
+
+    /**
+     * @param catchUpIntervalSeconds - delay between two reads of the events stored since the last one
+     */
+    public void setCatchUpIntervalSeconds(long catchUpIntervalSeconds) {
+        this.catchUpIntervalSeconds = catchUpIntervalSeconds;
+    }
+
+    /**
+     * @param maxLagMillis - a search runs a catch-up first if the last one started longer ago, 0 to catch up before every search
+     */
+    public void setMaxLagMillis(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * @param overlapMillis - longest time between taking an event id and committing the event,
+     *                        events of later catch-ups are read again for this long
+     */
+    public void setOverlapMillis(long overlapMillis) {
+        this.overlapMillis = overlapMillis;
+    }
+
+    /**
+     * blueprint init-method, subscribes to the feed, fills the buffer with the latest stored events
+     * and schedules the catch-ups
+     */
+    public void start() {
+        if (!enabled) {
+            return;
+        }
+        ids = new int[capacity];
+        times = new long[capacity];
+        severities = new byte[capacity];
+        nodeIds = new int[capacity];
+        ueis = new int[capacity];
+        final long subscribed = System.currentTimeMillis();
+        lock.writeLock().lock();
+        try {
+            coverageStart = subscribed;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (eventFeed != null) {
+            eventFeed.addListener(this);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rest-recent-events");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                if (!ready) {
+                    bootstrap(subscribed);              //retried until the buffer could be loaded
+                    return;
+                }
+                try {
+                    catchUp(System.currentTimeMillis(), 0);
+                } catch (Exception e) {
+                    logger.warn("failed to read the events stored since the last catch-up: " + e.getMessage(), e);
+                }
+            }
+        }, 0, catchUpIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (eventFeed != null) {
+            eventFeed.removeListener(this);
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        ready = false;
+    }
+
+    public void eventReceived(int eventId, long eventTime, int severity, int nodeId, String uei) {
+        lock.writeLock().lock();
+        try {
+            if (eventId > settledId && !unsettledIds.add(eventId)) {
+                return;                     //already read by a catch-up
+            }
+            append(eventId, eventTime, severity, nodeId, uei);
+            lastId = Math.max(lastId, eventId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * ids of the events matching a search, in the requested order and paged
+     * @param ctx
+     * @return event ids, null if the search can't be answered from the buffer
+     */
+    public List<Integer> find(SearchContext<OnmsEvent> ctx) {
+        if (!ready || ctx.getDecoder() == null || !ctx.getDecoder().isConjunctive() || ctx.getCriteria().getLimit() == null) {
+            return null;
+        }
+        final List<Order> orders = new ArrayList<Order>(ctx.getCriteria().getOrders());
+        if (orders.size() != 1 || !(orders.get(0).getAttribute().equals("eventTime") || orders.get(0).getAttribute().equals("id"))) {
+            misses.incrementAndGet();
+            return null;
+        }
+        final boolean byTime = orders.get(0).getAttribute().equals("eventTime");
+        final boolean ascending = orders.get(0).asc();
+        final long requested = System.currentTimeMillis();
+        if (requested - coveredUntil > maxLagMillis) {
+            try {
+                catchUp(requested, maxLagMillis);
+            } catch (Exception e) {
+                logger.warn("failed to read the events stored since the last catch-up, searching the database: " + e.getMessage(), e);
+                misses.incrementAndGet();
+                return null;
+            }
+        }
+
+        lock.readLock().lock();
+        try {
+            final List<Comparison> comparisons = ctx.getDecoder().getComparisons();
+            final int[] columns = new int[comparisons.size()];
+            final long[] operands = new long[comparisons.size()];
+            long lowerBound = Long.MIN_VALUE;
+            for (int i = 0; i < comparisons.size(); i++) {
+                final Comparison comparison = comparisons.get(i);
+                final Integer column = COLUMNS.get(comparison.getProperty());
+                if (column == null || comparison.getCompareValue() == null || !compile(comparison, column, operands, i)) {
+                    misses.incrementAndGet();
+                    return null;
+                }
+                columns[i] = column;
+                if (column == TIME && (comparison.isLowerBound() || Comparison.EQ.equals(comparison.getOperator()))) {
+                    lowerBound = Math.max(lowerBound, operands[i]);
+                }
+            }
+            if (lowerBound < coverageStart) {    //window reaches back further than the buffer
+                misses.incrementAndGet();
+                return null;
+            }
+
+            final List<Integer> slots = new ArrayList<Integer>();
+            for (int n = 0; n < size; n++) {
+                final int slot = (head - size + n + capacity) % capacity;
+                if (matches(slot, comparisons, columns, operands)) {
+                    slots.add(slot);
+                }
+            }
+            Collections.sort(slots, new Comparator<Integer>() {
+                public int compare(Integer a, Integer b) {
+                    int result = byTime ? compareLong(times[a], times[b]) : 0;
+                    if (result == 0) {
+                        result = compareLong(ids[a], ids[b]);
+                    }
+                    return ascending ? result : -result;
+                }
+            });
+            final int offset = Math.min(ctx.getCriteria().getOffset() == null ? 0 : ctx.getCriteria().getOffset(), slots.size());
+            final int end = (int) Math.min((long) offset + ctx.getCriteria().getLimit(), slots.size());
+            final List<Integer> result = new ArrayList<Integer>(end - offset);
+            for (Integer slot : slots.subList(offset, end)) {
+                result.add(ids[slot]);
+            }
+            hits.incrementAndGet();
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * translate the compare value into the column representation
+     * @return false if the comparison can't be evaluated on the columns
+     */
+    private boolean compile(Comparison comparison, int column, long[] operands, int index) {
+        final Object value = comparison.getCompareValue();
+        switch (column) {
+        case TIME:
+            if (!(value instanceof Date)) {
+                return false;
+            }
+            operands[index] = ((Date) value).getTime();
+            return true;
+        case UEI:
+            if (ueiOverflow || !(value instanceof String) || !(Comparison.EQ.equals(comparison.getOperator()) || Comparison.NE.equals(comparison.getOperator()))) {
+                return false;
+            }
+            final Integer number = ueiNumbers.get(value);
+            operands[index] = number == null ? -2 : number;    //unknown UEI matches no event, -1 is an event without UEI
+            return true;
+        default:
+            if (!(value instanceof Integer)) {
+                return false;
+            }
+            operands[index] = (Integer) value;
+            return true;
+        }
+    }
+
+    private boolean matches(int slot, List<Comparison> comparisons, int[] columns, long[] operands) {
+        for (int i = 0; i < columns.length; i++) {
+            final long value;
+            switch (columns[i]) {
+            case ID:
+                value = ids[slot];
+                break;
+            case TIME:
+                value = times[slot];
+                break;
+            case SEVERITY:
+                value = severities[slot];
+                break;
+            case NODE:
+                if (nodeIds[slot] == 0) {    //no node, SQL comparisons with null are never true
+                    return false;
+                }
+                value = nodeIds[slot];
+                break;
+            default:
+                value = ueis[slot];
+            }
+            final int result = compareLong(value, operands[i]);
+            final String operator = comparisons.get(i).getOperator();
+            if ((Comparison.EQ.equals(operator) && result != 0) || (Comparison.NE.equals(operator) && result == 0)
+                    || (Comparison.LT.equals(operator) && result >= 0) || (Comparison.LE.equals(operator) && result > 0)
+                    || (Comparison.GT.equals(operator) && result <= 0) || (Comparison.GE.equals(operator) && result < 0)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int compareLong(long a, long b) {
+        return a < b ? -1 : (a == b ? 0 : 1);
+    }
+
+    /**
+     * called with the write lock held
+     */
+    private void append(int eventId, long eventTime, int severity, int nodeId, String uei) {
+        if (size == capacity) {    //the overwritten event leaves the covered window
+            coverageStart = Math.max(coverageStart, times[head] + 1);
+        } else {
+            size++;
+        }
+        ids[head] = eventId;
+        times[head] = eventTime;
+        severities[head] = (byte) severity;
+        nodeIds[head] = nodeId;
+        ueis[head] = intern(uei);
+        head = (head + 1) % capacity;
+    }
+
+    private int intern(String uei) {
+        if (uei == null) {
+            return -1;
+        }
+        Integer number = ueiNumbers.get(uei);
+        if (number == null) {
+            if (ueiNumbers.size() >= maxUeis) {
+                ueiOverflow = true;
+                return -1;
+            }
+            number = ueiNumbers.size();
+            ueiNumbers.put(uei, number);
+        }
+        return number;
+    }
+
+    /**
+     * append the events stored since the last catch-up
+     * all ids above the settled id are read, the events already held are skipped
+     * a caller which arrives while a catch-up runs waits for it and only queries again
+     * if that catch-up started more than allowedLagMillis before the caller requested it
+     * 
+     * @param requested - time the caller needs the events stored before
+     * @param allowedLagMillis - events stored this long before requested may be missing
+     */
+    void catchUp(long requested, long allowedLagMillis) throws Exception {
+        synchronized (catchUpLock) {
+            if (requested - coveredUntil <= allowedLagMillis) {
+                return;
+            }
+            final long started = System.currentTimeMillis();
+            settle(started);
+            int after;
+            lock.readLock().lock();
+            try {
+                after = settledId;
+            } finally {
+                lock.readLock().unlock();
+            }
+            List<?> rows;
+            do {
+                final int from = after;
+                rows = sessionTemplate.execute(new SessionCallback<List<?>>() {
+                    public List<?> doInSession(Session session) {
+                        return session.createQuery("select e.id, e.eventTime, e.eventSeverity, n.id, e.eventUei from OnmsEvent e left join e.node n "
+                                                   + "where e.id > :after order by e.id")
+                                .setInteger("after", from)
+                                .setMaxResults(capacity)
+                                .list();
+                    }
+                });
+                lock.writeLock().lock();
+                try {
+                    for (Object result : rows) {
+                        final Object[] row = (Object[]) result;
+                        final int id = (Integer) row[0];
+                        after = id;
+                        if (id > settledId && unsettledIds.add(id)) {    //not read before or received from the feed
+                            append(id, ((Date) row[1]).getTime(), row[2] == null ? 0 : (Integer) row[2],
+                                   row[3] == null ? 0 : (Integer) row[3], (String) row[4]);
+                            lastId = Math.max(lastId, id);
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+            } while (rows.size() == capacity);
+            lock.readLock().lock();
+            try {
+                catchUps.addLast(new long[] {started, lastId});    //only used with the catch-up lock held
+            } finally {
+                lock.readLock().unlock();
+            }
+            coveredUntil = started;
+        }
+    }
+
+    /**
+     * advance the settled id to the last id of the catch-ups started at least overlapMillis ago
+     * and forget the held ids below it, called with the catch-up lock held
+     */
+    private void settle(long now) {
+        int settled = -1;
+        while (!catchUps.isEmpty() && catchUps.peekFirst()[0] <= now - overlapMillis) {
+            settled = (int) catchUps.pollFirst()[1];
+        }
+        if (settled <= settledId) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            settledId = settled;
+            for (Iterator<Integer> it = unsettledIds.iterator(); it.hasNext();) {
+                if (it.next() <= settledId) {
+                    it.remove();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * load the latest events stored before the subscription, oldest first in front of the events received since
+     */
+    void bootstrap(final long subscribed) {
+        try {
+            final long start = System.currentTimeMillis();
+            final List<?> rows = sessionTemplate.execute(new SessionCallback<List<?>>() {
+                public List<?> doInSession(Session session) {
+                    return session.createQuery("select e.id, e.eventTime, e.eventSeverity, n.id, e.eventUei from OnmsEvent e left join e.node n "
+                                               + "where e.eventTime < :subscribed order by e.eventTime desc, e.id desc")
+                            .setTimestamp("subscribed", new Date(subscribed))
+                            .setMaxResults(capacity)
+                            .list();
+                }
+            });
+            lock.writeLock().lock();
+            try {
+                final int live = size;
+                final int[] liveIds = new int[live];
+                final long[] liveTimes = new long[live];
+                final byte[] liveSeverities = new byte[live];
+                final int[] liveNodes = new int[live];
+                final int[] liveUeis = new int[live];
+                final Set<Integer> received = new HashSet<Integer>();
+                for (int n = 0; n < live; n++) {
+                    final int slot = (head - live + n + capacity) % capacity;
+                    liveIds[n] = ids[slot];
+                    liveTimes[n] = times[slot];
+                    liveSeverities[n] = severities[slot];
+                    liveNodes[n] = nodeIds[slot];
+                    liveUeis[n] = ueis[slot];
+                    received.add(ids[slot]);
+                }
+                head = 0;
+                size = 0;
+                final int room = Math.min(rows.size(), capacity - live);
+                for (int n = room - 1; n >= 0; n--) {
+                    final Object[] row = (Object[]) rows.get(n);
+                    if (!received.contains(row[0])) {
+                        append((Integer) row[0], ((Date) row[1]).getTime(), row[2] == null ? 0 : (Integer) row[2],
+                               row[3] == null ? 0 : (Integer) row[3], (String) row[4]);
+                    }
+                }
+                System.arraycopy(liveIds, 0, ids, size, live);
+                System.arraycopy(liveTimes, 0, times, size, live);
+                System.arraycopy(liveSeverities, 0, severities, size, live);
+                System.arraycopy(liveNodes, 0, nodeIds, size, live);
+                System.arraycopy(liveUeis, 0, ueis, size, live);
+                size += live;
+                head = size % capacity;
+                for (Object row : rows) {
+                    lastId = Math.max(lastId, (Integer) ((Object[]) row)[0]);
+                }
+                for (int n = 0; n < live; n++) {
+                    lastId = Math.max(lastId, liveIds[n]);
+                }
+                //events older than the overlap are taken as settled, the ids above are read again by the catch-ups
+                for (Object result : rows) {
+                    final Object[] row = (Object[]) result;
+                    if (((Date) row[1]).getTime() < subscribed - overlapMillis) {
+                        settledId = Math.max(settledId, (Integer) row[0]);
+                    }
+                }
+                for (int n = 0; n < size; n++) {
+                    if (ids[n] > settledId) {
+                        unsettledIds.add(ids[n]);
+                    }
+                }
+                if (rows.size() < capacity && room == rows.size()) {
+                    coverageStart = 0;    //every stored event is held
+                } else if (room > 0) {
+                    coverageStart = ((Date) ((Object[]) rows.get(room - 1))[1]).getTime() + 1;
+                }
+            } finally {
+                lock.writeLock().unlock();
+            }
+            coveredUntil = subscribed;
+            ready = true;
+            logger.debug("recent event buffer loaded {} events in {}ms", rows.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            logger.warn("failed to load the recent event buffer, searching the database until it is loaded: " + e.getMessage(), e);
+        }
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public int getSize() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int getUeiCount() {
+        lock.readLock().lock();
+        try {
+            return ueiNumbers.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getCoverageStart() {
+        lock.readLock().lock();
+        try {
+            return coverageStart == Long.MAX_VALUE ? 0 : coverageStart;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public long getCoveredUntil() {
+        return coveredUntil;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RecentEventBuffer [capacity=" + capacity + ", size=" + getSize() + ", ueis=" + getUeiCount()
+                + ", coverageStart=" + getCoverageStart() + ", hits=" + hits.get() + ", misses=" + misses.get() + "]";
+    }
+}
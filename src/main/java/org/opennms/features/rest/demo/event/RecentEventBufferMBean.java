@@ -0,0 +1,40 @@
+package org.opennms.features.rest.demo.event;
+
+/**
+ * management interface of {@link RecentEventBuffer}
+ *
+ */
+public interface RecentEventBufferMBean {
+
+    int getCapacity();
+
+    /**
+     * @return number of events held
+     */
+    int getSize();
+
+    /**
+     * @return number of distinct UEIs interned
+     */
+    int getUeiCount();
+
+    /**
+     * @return events are complete from this time on (milliseconds since the epoch), 0 if nothing is covered yet
+     */
+    long getCoverageStart();
+
+    /**
+     * @return time the last catch-up started, all events stored before are held (milliseconds since the epoch)
+     */
+    long getCoveredUntil();
+
+    /**
+     * @return searches answered from the buffer
+     */
+    long getHits();
+
+    /**
+     * @return searches which had to go to the database
+     */
+    long getMisses();
+}
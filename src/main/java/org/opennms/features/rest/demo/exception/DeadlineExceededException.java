@@ -0,0 +1,16 @@
+package org.opennms.features.rest.demo.exception;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * raised when a search runs past its deadline
+ * answered with 503 Service Unavailable together with the time spent in each stage
+ *
+ */
+public class DeadlineExceededException extends SearchException {
+
+    public DeadlineExceededException(long timeoutMillis, Throwable cause) {
+        super(Response.Status.SERVICE_UNAVAILABLE, "Search did not complete within its deadline of " + timeoutMillis
+              + "ms, please narrow down the query or raise the timeout", cause);
+    }
+}
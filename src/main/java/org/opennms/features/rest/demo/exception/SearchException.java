@@ -0,0 +1,30 @@
+package org.opennms.features.rest.demo.exception;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * raised by a stage of the search pipeline
+ * carries the http status the failure has to be answered with
+ *
+ */
+public class SearchException extends Exception{
+
+    private final int status;
+
+    public SearchException(Response.Status status, String message) {
+        this(status.getStatusCode(), message, null);
+    }
+
+    public SearchException(Response.Status status, String message, Throwable cause) {
+        this(status.getStatusCode(), message, cause);
+    }
+
+    public SearchException(int status, String message, Throwable cause) {
+        super(message, cause);
+        this.status = status;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+}
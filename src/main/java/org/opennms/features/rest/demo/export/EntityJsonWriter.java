@@ -0,0 +1,18 @@
+package org.opennms.features.rest.demo.export;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * writes a single entity as one JSON document without a trailing line break
+ *
+ */
+public interface EntityJsonWriter {
+
+    /**
+     * @param entity - entity to be written
+     * @param os - target stream, must not be closed by the writer
+     * @throws IOException
+     */
+    void write(Object entity, OutputStream os) throws IOException;
+}
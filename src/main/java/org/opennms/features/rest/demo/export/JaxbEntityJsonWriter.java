@@ -0,0 +1,47 @@
+package org.opennms.features.rest.demo.export;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+
+import javax.ws.rs.core.MediaType;
+
+import org.apache.cxf.jaxrs.impl.MetadataMap;
+import org.apache.cxf.jaxrs.provider.json.JSONProvider;
+
+/**
+ * {@link EntityJsonWriter} delegating to the JAXB based CXF JSONProvider
+ * so exported lines have the same shape as the entities in the regular JSON responses
+ *
+ */
+public class JaxbEntityJsonWriter implements EntityJsonWriter {
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    private final JSONProvider<Object> provider = new JSONProvider<Object>();
+
+    public void write(Object entity, OutputStream os) throws IOException {
+        provider.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE,
+                         new MetadataMap<String, Object>(), new NonClosingOutputStream(os));
+    }
+
+    /**
+     * guards the export stream against writers closing it after each entity
+     */
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        public NonClosingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,138 @@
+package org.opennms.features.rest.demo.export;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.StreamingOutput;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * streams all entities matching a criteria as newline delimited JSON
+ *
+ * the whole export runs as a single forward-only cursor with a tuned JDBC fetch size
+ * the session is cleared every clearInterval rows so memory use stays flat
+ * regardless of the number of exported rows
+ * the rows are written in blocks of clearInterval, the associations of a block are initialized
+ * with one fetch join query per fetch path before it is written
+ *
+ */
+public class NdjsonExporter {
+
+    public static final String MEDIA_TYPE = "application/x-ndjson";
+
+    private static Logger logger = LoggerFactory.getLogger(NdjsonExporter.class);
+    private static final byte[] NEWLINE = new byte[] {'\n'};
+
+    private ReadOnlySessionTemplate sessionTemplate;
+    private EntityJsonWriter entityWriter = new JaxbEntityJsonWriter();
+    private int fetchSize = 1000;
+    private int clearInterval = 500;
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    public void setEntityWriter(EntityJsonWriter entityWriter) {
+        this.entityWriter = entityWriter;
+    }
+
+    /**
+     * JDBC fetch size used for the export cursor
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * number of rows after which the session is cleared and the output is flushed
+     * @param clearInterval
+     */
+    public void setClearInterval(int clearInterval) {
+        this.clearInterval = clearInterval;
+    }
+
+    /**
+     * create the response body of an export
+     * limit and offset of the criteria are honoured, null exports the whole result set
+     * 
+     * @param crit
+     * @param fetchPaths - associations written with the rows (ex - "node", "monitoredService.ipInterface.node")
+     * @return
+     */
+    public StreamingOutput export(final Criteria crit, final Collection<String> fetchPaths) {
+        return new StreamingOutput() {
+            public void write(final OutputStream output) throws IOException, WebApplicationException {
+                final OutputStream os = new BufferedOutputStream(output, 16384);
+                try {
+                    long rows = sessionTemplate.execute(new SessionCallback<Long>() {
+                        public Long doInSession(Session session) throws Exception {
+                            return writeRows(crit, fetchPaths, session, os);
+                        }
+                    });
+                    os.flush();
+                    logger.debug("exported {} rows of {}", rows, crit.getCriteriaClass().getSimpleName());
+                } catch (IOException e) {
+                    throw e;            //client disconnected
+                } catch (Exception e) {
+                    logger.error(e.getMessage(), e);
+                    throw new WebApplicationException(e);
+                }
+            }
+        };
+    }
+
+    private long writeRows(Criteria crit, Collection<String> fetchPaths, Session session, OutputStream os) throws IOException {
+        final ScrollableResults results = sessionTemplate.toHibernateCriteria(crit, session)
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        final List<Object> block = new ArrayList<Object>(clearInterval);
+        long rows = 0;
+        try {
+            while (results.next()) {
+                block.add(results.get(0));
+                if (++rows % clearInterval == 0) {
+                    writeBlock(crit, fetchPaths, block, session, os);
+                }
+            }
+            writeBlock(crit, fetchPaths, block, session, os);
+        } finally {
+            results.close();
+        }
+        return rows;
+    }
+
+    /**
+     * initialize the associations of the block, write it and clear the session
+     */
+    private void writeBlock(Criteria crit, Collection<String> fetchPaths, List<Object> block, Session session, OutputStream os) throws IOException {
+        ReadOnlySessionTemplate.fetch(session, crit.getCriteriaClass(), block, fetchPaths, 0);
+        for (Object entity : block) {
+            entityWriter.write(entity, os);
+            os.write(NEWLINE);
+        }
+        block.clear();
+        session.clear();
+        os.flush();
+    }
+}
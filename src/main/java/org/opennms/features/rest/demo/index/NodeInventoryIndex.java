@@ -0,0 +1,340 @@
+package org.opennms.features.rest.demo.index;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.Session;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * in-memory index of the node inventory
+ * category -> node id bitmap, foreign source -> node id bitmap, label -> node id
+ * 
+ * the index is an immutable snapshot which is replaced atomically
+ * it is loaded with three projection queries at start, reloaded in the background every refreshInterval
+ * and patched for the nodes the {@link org.opennms.features.rest.demo.sync.NodeChangeJournal} reports as changed
+ * or which are passed to {@link #invalidateNode(int)}
+ * deleted nodes (type 'D') are not indexed
+ *
+ */
+public class NodeInventoryIndex implements NodeInventoryIndexMBean {
+
+    private static Logger logger = LoggerFactory.getLogger(NodeInventoryIndex.class);
+
+    private static final String NOT_DELETED = "(n.type is null or n.type <> 'D')";
+
+    /**
+     * more changed nodes than this are applied by a full reload instead of a patch
+     */
+    private static final int MAX_PATCHED_NODES = 1000;
+
+    private ReadOnlySessionTemplate sessionTemplate;
+    private long refreshIntervalSeconds = 300;
+    private ScheduledExecutorService scheduler;
+
+    private volatile Snapshot snapshot = null;
+    private volatile long lastRefresh = 0;
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * @param refreshIntervalSeconds - interval of the background full reload
+     */
+    public void setRefreshIntervalSeconds(long refreshIntervalSeconds) {
+        this.refreshIntervalSeconds = refreshIntervalSeconds;
+    }
+
+    /**
+     * blueprint init-method, loads the index in the background and schedules the reloads
+     */
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rest-node-inventory-index");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                refresh();
+            }
+        }, 0, refreshIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    public int getNodeCount() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.labels.size();
+    }
+
+    public int getCategoryCount() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.categories.size();
+    }
+
+    public int getForeignSourceCount() {
+        Snapshot current = snapshot;
+        return current == null ? 0 : current.foreignSources.size();
+    }
+
+    public long getLastRefresh() {
+        return lastRefresh;
+    }
+
+    public void invalidate() {
+        if (scheduler != null) {
+            scheduler.execute(new Runnable() {
+                public void run() {
+                    refresh();
+                }
+            });
+        }
+    }
+
+    public void invalidateNode(final int nodeId) {
+        invalidateNodes(Collections.singleton(nodeId));
+    }
+
+    /**
+     * reload the given nodes with a single copy of the snapshot, a full reload if there are too many
+     * @param nodeIds - nodes added, changed or deleted
+     */
+    public void invalidateNodes(Collection<Integer> nodeIds) {
+        if (nodeIds.isEmpty()) {
+            return;
+        }
+        if (nodeIds.size() > MAX_PATCHED_NODES) {
+            invalidate();
+            return;
+        }
+        final List<Integer> ids = new ArrayList<Integer>(nodeIds);
+        if (scheduler != null) {
+            scheduler.execute(new Runnable() {
+                public void run() {
+                    refreshNodes(ids);
+                }
+            });
+        }
+    }
+
+    /**
+     * @param category
+     * @return true if a category with that name exists, null if the index is not ready
+     */
+    public Boolean hasCategory(String category) {
+        Snapshot current = snapshot;
+        return current == null ? null : current.categories.containsKey(category);
+    }
+
+    /**
+     * nodes belonging to any (union) or all (intersection) of the given categories
+     * 
+     * @param categories
+     * @param matchAll - true for intersection, false for union
+     * @return node ids, null if the index is not ready
+     */
+    public BitSet findByCategories(Collection<String> categories, boolean matchAll) {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        BitSet result = null;
+        for (String category : categories) {
+            final BitSet nodes = current.categories.containsKey(category) ? current.categories.get(category) : new BitSet();
+            if (result == null) {
+                result = (BitSet) nodes.clone();
+            } else if (matchAll) {
+                result.and(nodes);
+            } else {
+                result.or(nodes);
+            }
+        }
+        return result == null ? new BitSet() : result;
+    }
+
+    /**
+     * @param foreignSource
+     * @return node ids, null if the index is not ready
+     */
+    public BitSet findByForeignSource(String foreignSource) {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        final BitSet nodes = current.foreignSources.get(foreignSource);
+        return nodes == null ? new BitSet() : (BitSet) nodes.clone();
+    }
+
+    /**
+     * @param label
+     * @return id of the node with the given label, null if unknown or the index is not ready
+     */
+    public Integer findByLabel(String label) {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            return null;
+        }
+        return current.labelIds.get(label);
+    }
+
+    /**
+     * reload the whole index
+     */
+    void refresh() {
+        try {
+            final long start = System.currentTimeMillis();
+            snapshot = sessionTemplate.execute(new SessionCallback<Snapshot>() {
+                public Snapshot doInSession(Session session) {
+                    Snapshot loaded = new Snapshot();
+                    for (Object name : session.createQuery("select c.name from OnmsCategory c").list()) {
+                        loaded.categories.put((String) name, new BitSet());
+                    }
+                    for (Object row : session.createQuery("select n.id, n.label, n.foreignSource from OnmsNode n where " + NOT_DELETED).list()) {
+                        Object[] columns = (Object[]) row;
+                        loaded.addNode((Integer) columns[0], (String) columns[1], (String) columns[2]);
+                    }
+                    for (Object row : session.createQuery("select n.id, c.name from OnmsNode n join n.categories c where " + NOT_DELETED).list()) {
+                        Object[] columns = (Object[]) row;
+                        loaded.addCategory((Integer) columns[0], (String) columns[1]);
+                    }
+                    return loaded;
+                }
+            });
+            lastRefresh = System.currentTimeMillis();
+            logger.debug("node inventory index loaded {} nodes in {}ms", getNodeCount(), lastRefresh - start);
+        } catch (Exception e) {
+            logger.warn("failed to load the node inventory index: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * patch a copy of the current snapshot with the current state of the given nodes
+     */
+    void refreshNodes(final List<Integer> nodeIds) {
+        final Snapshot current = snapshot;
+        if (current == null) {
+            return;
+        }
+        try {
+            snapshot = sessionTemplate.execute(new SessionCallback<Snapshot>() {
+                public Snapshot doInSession(Session session) {
+                    Snapshot patched = current.copyWithout(nodeIds);
+                    for (Object row : session.createQuery("select n.id, n.label, n.foreignSource from OnmsNode n where n.id in (:ids) and " + NOT_DELETED)
+                            .setParameterList("ids", nodeIds).list()) {
+                        Object[] columns = (Object[]) row;
+                        patched.addNode((Integer) columns[0], (String) columns[1], (String) columns[2]);
+                    }
+                    for (Object row : session.createQuery("select n.id, c.name from OnmsNode n join n.categories c where n.id in (:ids) and " + NOT_DELETED)
+                            .setParameterList("ids", nodeIds).list()) {
+                        Object[] columns = (Object[]) row;
+                        patched.addCategory((Integer) columns[0], (String) columns[1]);
+                    }
+                    return patched;
+                }
+            });
+        } catch (Exception e) {
+            logger.warn("failed to update nodes " + nodeIds + " in the node inventory index, scheduling full reload", e);
+            invalidate();
+        }
+    }
+
+    /**
+     * immutable once published
+     */
+    private static class Snapshot {
+        private final Map<String, BitSet> categories = new HashMap<String, BitSet>();
+        private final Map<String, BitSet> foreignSources = new HashMap<String, BitSet>();
+        private final Map<Integer, String> labels = new HashMap<Integer, String>();
+        private final Map<String, Integer> labelIds = new HashMap<String, Integer>();
+
+        private void addNode(int nodeId, String label, String foreignSource) {
+            labels.put(nodeId, label == null ? "" : label);
+            if (label != null) {
+                labelIds.put(label, nodeId);
+            }
+            if (foreignSource != null) {
+                BitSet nodes = foreignSources.get(foreignSource);
+                if (nodes == null) {
+                    nodes = new BitSet();
+                    foreignSources.put(foreignSource, nodes);
+                }
+                nodes.set(nodeId);
+            }
+        }
+
+        private void addCategory(int nodeId, String category) {
+            BitSet nodes = categories.get(category);
+            if (nodes == null) {
+                nodes = new BitSet();
+                categories.put(category, nodes);
+            }
+            nodes.set(nodeId);
+        }
+
+        /**
+         * deep copy with every trace of the nodes removed
+         * bitmaps are cloned so the published snapshot is never modified
+         */
+        private Snapshot copyWithout(Collection<Integer> nodeIds) {
+            Snapshot copy = new Snapshot();
+            copyBitSets(categories, copy.categories, nodeIds);
+            copyBitSets(foreignSources, copy.foreignSources, nodeIds);
+            copy.labels.putAll(labels);
+            copy.labelIds.putAll(labelIds);
+            for (Integer nodeId : nodeIds) {
+                String label = copy.labels.remove(nodeId);
+                if (label != null && nodeId.equals(copy.labelIds.get(label))) {
+                    copy.labelIds.remove(label);
+                }
+            }
+            return copy;
+        }
+
+        private static void copyBitSets(Map<String, BitSet> from, Map<String, BitSet> to, Collection<Integer> nodeIds) {
+            for (Map.Entry<String, BitSet> entry : from.entrySet()) {
+                BitSet nodes = (BitSet) entry.getValue().clone();
+                for (Integer nodeId : nodeIds) {
+                    nodes.clear(nodeId);
+                }
+                to.put(entry.getKey(), nodes);
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NodeInventoryIndex [ready=" + isReady() + ", nodes=" + getNodeCount() + ", categories=" + getCategoryCount()
+                + ", foreignSources=" + getForeignSourceCount() + "]";
+    }
+}
@@ -0,0 +1,35 @@
+package org.opennms.features.rest.demo.index;
+
+/**
+ * management interface of the {@link NodeInventoryIndex}
+ *
+ */
+public interface NodeInventoryIndexMBean {
+
+    /**
+     * @return true once the first load has completed
+     */
+    boolean isReady();
+
+    int getNodeCount();
+
+    int getCategoryCount();
+
+    int getForeignSourceCount();
+
+    /**
+     * @return milliseconds since the epoch of the last full load
+     */
+    long getLastRefresh();
+
+    /**
+     * schedule an immediate full reload
+     */
+    void invalidate();
+
+    /**
+     * reload a single node, ex - after it has been added, changed or deleted
+     * @param nodeId
+     */
+    void invalidateNode(int nodeId);
+}
@@ -0,0 +1,441 @@
+package org.opennms.features.rest.demo.json;
+
+import java.beans.Introspector;
+import java.io.IOException;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Member;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.GregorianCalendar;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.bind.DatatypeConverter;
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAnyAttribute;
+import javax.xml.bind.annotation.XmlAnyElement;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementRef;
+import javax.xml.bind.annotation.XmlElementRefs;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlElements;
+import javax.xml.bind.annotation.XmlEnumValue;
+import javax.xml.bind.annotation.XmlIDREF;
+import javax.xml.bind.annotation.XmlList;
+import javax.xml.bind.annotation.XmlMixed;
+import javax.xml.bind.annotation.XmlRootElement;
+import javax.xml.bind.annotation.XmlTransient;
+import javax.xml.bind.annotation.XmlValue;
+import javax.xml.bind.annotation.adapters.XmlAdapter;
+import javax.xml.bind.annotation.adapters.XmlJavaTypeAdapter;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * JSON write plan of a JAXB annotated class
+ * 
+ * the plan is built once per class from the JAXB annotations (access type, XmlAttribute, XmlElement,
+ * XmlElementWrapper, XmlTransient, XmlJavaTypeAdapter) and then written without a JAXB context,
+ * StAX writer or intermediate Jettison object tree
+ * 
+ * the output follows the Jettison mapped convention of the CXF JSONProvider:
+ * attributes are prefixed with "@", a repeated element becomes an array only when it occurs more than once
+ * and an element without content is written as ""
+ * 
+ * mappings which are not covered (XmlValue, XmlElementRef, XmlAnyElement, arrays ...) are rejected when the plan is built
+ *
+ */
+final class JaxbWritePlan {
+
+    private static final String DEFAULT_NAME = "##default";
+    private static final ConcurrentMap<Class<?>, JaxbWritePlan> PLANS = new ConcurrentHashMap<Class<?>, JaxbWritePlan>();
+    private static final ConcurrentMap<Enum<?>, String> ENUM_VALUES = new ConcurrentHashMap<Enum<?>, String>();
+
+    @SuppressWarnings("unchecked")
+    private static final Class<? extends Annotation>[] UNSUPPORTED = new Class[] {
+        XmlValue.class, XmlElementRef.class, XmlElementRefs.class, XmlElements.class, XmlAnyElement.class,
+        XmlAnyAttribute.class, XmlMixed.class, XmlList.class, XmlIDREF.class
+    };
+
+    private final Class<?> type;
+    private final String rootName;
+    private final List<Property> attributes = new ArrayList<Property>();
+    private final List<Property> elements = new ArrayList<Property>();
+
+    private JaxbWritePlan(Class<?> type) {
+        this.type = type;
+        final XmlRootElement root = type.getAnnotation(XmlRootElement.class);
+        this.rootName = root == null || DEFAULT_NAME.equals(root.name()) ? Introspector.decapitalize(type.getSimpleName()) : root.name();
+    }
+
+    /**
+     * @param type - runtime class of an entity, hibernate proxies are resolved to the entity class
+     * @return
+     * @throws IllegalArgumentException - if the mapping of the class is not supported
+     */
+    static JaxbWritePlan forClass(Class<?> type) {
+        final Class<?> mapped = unproxy(type);
+        JaxbWritePlan plan = PLANS.get(mapped);
+        if (plan == null) {
+            plan = new JaxbWritePlan(mapped);
+            plan.build();
+            final JaxbWritePlan existing = PLANS.putIfAbsent(mapped, plan);
+            if (existing != null) {
+                plan = existing;
+            }
+        }
+        return plan;
+    }
+
+    static Class<?> unproxy(Class<?> type) {
+        Class<?> mapped = type;
+        while (mapped.getName().contains("$$") && mapped.getSuperclass() != null) {
+            mapped = mapped.getSuperclass();
+        }
+        return mapped;
+    }
+
+    Class<?> getType() {
+        return type;
+    }
+
+    /**
+     * write {"rootName":{...}}
+     * @param entity
+     * @param out
+     * @throws IOException
+     */
+    void writeRoot(Object entity, JsonStreamWriter out) throws IOException {
+        out.beginObject();
+        out.name(rootName);
+        writeContent(entity, out);
+        out.endObject();
+    }
+
+    /**
+     * write the entity as the value of an element
+     */
+    void writeContent(Object entity, JsonStreamWriter out) throws IOException {
+        if (!hasContent(entity)) {
+            out.string("");
+            return;
+        }
+        out.beginObject();
+        for (Property property : attributes) {
+            final Object value = property.adapt(property.read(entity));
+            if (value != null) {
+                out.name("@" + property.name);
+                writeScalar(value, out);
+            }
+        }
+        for (Property property : elements) {
+            final Object value = property.read(entity);
+            if (value == null) {
+                continue;
+            }
+            if (property.wrapper != null) {
+                final List<Object> items = property.items(value);
+                out.name(property.wrapper);
+                if (items.isEmpty()) {
+                    out.string("");
+                } else {
+                    out.beginObject();
+                    writeRepeated(property.name, items, out);
+                    out.endObject();
+                }
+            } else if (value instanceof Collection) {
+                final List<Object> items = property.items(value);
+                if (!items.isEmpty()) {
+                    writeRepeated(property.name, items, out);
+                }
+            } else {
+                final Object adapted = property.adapt(value);
+                if (adapted != null) {
+                    out.name(property.name);
+                    writeValue(adapted, out);
+                }
+            }
+        }
+        out.endObject();
+    }
+
+    /**
+     * an element without any attribute or child is written by Jettison as ""
+     */
+    private boolean hasContent(Object entity) throws IOException {
+        for (Property property : attributes) {
+            if (property.adapt(property.read(entity)) != null) {
+                return true;
+            }
+        }
+        for (Property property : elements) {
+            final Object value = property.read(entity);
+            if (value != null && (property.wrapper != null || !(value instanceof Collection) || !property.items(value).isEmpty())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void writeRepeated(String name, List<Object> items, JsonStreamWriter out) throws IOException {
+        out.name(name);
+        if (items.size() == 1) {
+            writeValue(items.get(0), out);
+            return;
+        }
+        out.beginArray();
+        for (Object item : items) {
+            writeValue(item, out);
+        }
+        out.endArray();
+    }
+
+    private static void writeValue(Object value, JsonStreamWriter out) throws IOException {
+        if (isScalar(value)) {
+            writeScalar(value, out);
+        } else {
+            forClass(value.getClass()).writeContent(value, out);
+        }
+    }
+
+    private static boolean isScalar(Object value) {
+        return value instanceof String || value instanceof Number || value instanceof Boolean || value instanceof Character
+                || value instanceof Date || value instanceof Calendar || value instanceof XMLGregorianCalendar || value instanceof Enum;
+    }
+
+    private static void writeScalar(Object value, JsonStreamWriter out) throws IOException {
+        if (value instanceof Date) {
+            final Calendar calendar = new GregorianCalendar();
+            calendar.setTime((Date) value);
+            out.primitive(DatatypeConverter.printDateTime(calendar));
+        } else if (value instanceof Calendar) {
+            out.primitive(DatatypeConverter.printDateTime((Calendar) value));
+        } else if (value instanceof XMLGregorianCalendar) {
+            out.primitive(((XMLGregorianCalendar) value).toXMLFormat());
+        } else if (value instanceof Enum) {
+            out.primitive(enumValue((Enum<?>) value));
+        } else if (isScalar(value)) {
+            out.primitive(value.toString());
+        } else {
+            throw new IllegalArgumentException("Unsupported attribute value of type " + value.getClass().getName());
+        }
+    }
+
+    private static String enumValue(Enum<?> value) {
+        String text = ENUM_VALUES.get(value);
+        if (text == null) {
+            text = value.name();
+            try {
+                final XmlEnumValue annotation = value.getDeclaringClass().getField(value.name()).getAnnotation(XmlEnumValue.class);
+                if (annotation != null) {
+                    text = annotation.value();
+                }
+            } catch (NoSuchFieldException e) {
+                //keep the name
+            }
+            ENUM_VALUES.put(value, text);
+        }
+        return text;
+    }
+
+    /**
+     * collect the mapped properties of the class and its super classes, super class properties first
+     */
+    private void build() {
+        final List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+        for (Class<?> c = type; c != null && !isPlatformClass(c); c = c.getSuperclass()) {
+            hierarchy.add(0, c);
+        }
+        final Set<String> seen = new HashSet<String>(); //a property redeclared by a sub class or mapped by getter and field is written once
+        for (Class<?> c : hierarchy) {
+            final XmlAccessType access = accessTypeOf(c);
+            final Map<String, Field> fields = new LinkedHashMap<String, Field>();
+            for (Field field : c.getDeclaredFields()) {
+                if (!Modifier.isStatic(field.getModifiers())) {
+                    fields.put(field.getName(), field);
+                }
+            }
+            for (Method method : c.getDeclaredMethods()) {
+                final String property = propertyName(method);
+                if (property == null) {
+                    continue;
+                }
+                if (!method.isAnnotationPresent(XmlTransient.class) && (isAnnotated(method)
+                        || ((access == XmlAccessType.PUBLIC_MEMBER || access == XmlAccessType.PROPERTY) && hasSetter(c, method, property, access)))) {
+                    if (seen.add(property)) {
+                        add(property, method, method.getReturnType());
+                    }
+                }
+            }
+            for (Field field : fields.values()) {
+                if (Modifier.isTransient(field.getModifiers()) || field.isAnnotationPresent(XmlTransient.class)) {
+                    continue;
+                }
+                if (isAnnotated(field) || access == XmlAccessType.FIELD
+                        || (access == XmlAccessType.PUBLIC_MEMBER && Modifier.isPublic(field.getModifiers()))) {
+                    if (seen.add(field.getName())) {
+                        add(field.getName(), field, field.getType());
+                    }
+                }
+            }
+        }
+    }
+
+    private void add(String propertyName, AccessibleObject accessor, Class<?> valueType) {
+        for (Class<? extends Annotation> unsupported : UNSUPPORTED) {
+            if (accessor.isAnnotationPresent(unsupported)) {
+                throw new IllegalArgumentException(type.getName() + "." + propertyName + " uses @" + unsupported.getSimpleName());
+            }
+        }
+        final XmlJavaTypeAdapter adapterAnnotation = accessor.isAnnotationPresent(XmlJavaTypeAdapter.class)
+                ? accessor.getAnnotation(XmlJavaTypeAdapter.class) : valueType.getAnnotation(XmlJavaTypeAdapter.class);
+        if (valueType.isArray() && adapterAnnotation == null) {
+            throw new IllegalArgumentException(type.getName() + "." + propertyName + " is an array");
+        }
+        if (Map.class.isAssignableFrom(valueType) && adapterAnnotation == null) {
+            throw new IllegalArgumentException(type.getName() + "." + propertyName + " is a map");
+        }
+        XmlAdapter<?, ?> adapter = null;
+        if (adapterAnnotation != null) {
+            try {
+                adapter = adapterAnnotation.value().newInstance();
+            } catch (Exception e) {
+                throw new IllegalArgumentException("Can't create adapter of " + type.getName() + "." + propertyName, e);
+            }
+        }
+        final XmlAttribute attribute = accessor.getAnnotation(XmlAttribute.class);
+        if (attribute != null) {
+            attributes.add(new Property(DEFAULT_NAME.equals(attribute.name()) ? propertyName : attribute.name(), null, accessor, adapter));
+            return;
+        }
+        final XmlElement element = accessor.getAnnotation(XmlElement.class);
+        final XmlElementWrapper wrapper = accessor.getAnnotation(XmlElementWrapper.class);
+        final String name = element == null || DEFAULT_NAME.equals(element.name()) ? propertyName : element.name();
+        final String wrapperName = wrapper == null ? null : DEFAULT_NAME.equals(wrapper.name()) ? propertyName : wrapper.name();
+        elements.add(new Property(name, wrapperName, accessor, adapter));
+    }
+
+    private static boolean isPlatformClass(Class<?> c) {
+        return c.getName().startsWith("java.") || c.getName().startsWith("javax.");
+    }
+
+    private static XmlAccessType accessTypeOf(Class<?> c) {
+        XmlAccessorType accessorType = c.getAnnotation(XmlAccessorType.class);
+        if (accessorType == null && c.getPackage() != null) {
+            accessorType = c.getPackage().getAnnotation(XmlAccessorType.class);
+        }
+        return accessorType == null ? XmlAccessType.PUBLIC_MEMBER : accessorType.value();
+    }
+
+    private static boolean isAnnotated(AccessibleObject accessor) {
+        for (Annotation annotation : accessor.getAnnotations()) {
+            if (annotation.annotationType().getName().startsWith("javax.xml.bind.annotation")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return bean property name of a getter, null if the method is not a getter
+     */
+    private static String propertyName(Method method) {
+        if (Modifier.isStatic(method.getModifiers()) || method.isBridge() || method.isSynthetic() || method.getParameterTypes().length != 0) {
+            return null;
+        }
+        final String name = method.getName();
+        if (name.startsWith("get") && name.length() > 3 && method.getReturnType() != void.class) {
+            return Introspector.decapitalize(name.substring(3));
+        } else if (name.startsWith("is") && name.length() > 2 && method.getReturnType() == boolean.class) {
+            return Introspector.decapitalize(name.substring(2));
+        }
+        return null;
+    }
+
+    private static boolean hasSetter(Class<?> c, Method getter, String property, XmlAccessType access) {
+        if (access == XmlAccessType.PUBLIC_MEMBER && !Modifier.isPublic(getter.getModifiers())) {
+            return false;
+        }
+        final String setter = "set" + getter.getName().substring(getter.getName().startsWith("is") ? 2 : 3);
+        for (Method method : c.getDeclaredMethods()) {
+            if (method.getName().equals(setter) && method.getParameterTypes().length == 1
+                    && (access == XmlAccessType.PROPERTY || Modifier.isPublic(method.getModifiers()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * a mapped property with its pre-resolved accessor
+     */
+    private static final class Property {
+        private final String name;
+        private final String wrapper;
+        private final Method getter;
+        private final Field field;
+        @SuppressWarnings("rawtypes")
+        private final XmlAdapter adapter;
+
+        Property(String name, String wrapper, AccessibleObject accessor, XmlAdapter<?, ?> adapter) {
+            this.name = name;
+            this.wrapper = wrapper;
+            this.getter = accessor instanceof Method ? (Method) accessor : null;
+            this.field = accessor instanceof Field ? (Field) accessor : null;
+            if (!Modifier.isPublic(((Member) accessor).getModifiers()) || !Modifier.isPublic(((Member) accessor).getDeclaringClass().getModifiers())) {
+                accessor.setAccessible(true);
+            }
+            this.adapter = adapter;
+        }
+
+        Object read(Object entity) throws IOException {
+            try {
+                return getter != null ? getter.invoke(entity) : field.get(entity);
+            } catch (InvocationTargetException e) {
+                throw new IOException("Failed to read " + name + " of " + entity.getClass().getName(), e.getCause());
+            } catch (IllegalAccessException e) {
+                throw new IOException("Failed to read " + name + " of " + entity.getClass().getName(), e);
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        Object adapt(Object value) throws IOException {
+            if (value == null || adapter == null) {
+                return value;
+            }
+            try {
+                return adapter.marshal(value);
+            } catch (Exception e) {
+                throw new IOException("Failed to adapt " + name, e);
+            }
+        }
+
+        /**
+         * adapted, non null items of a collection value
+         */
+        List<Object> items(Object value) throws IOException {
+            final List<Object> items = new ArrayList<Object>();
+            for (Iterator<?> it = ((Collection<?>) value).iterator(); it.hasNext();) {
+                final Object item = adapt(it.next());
+                if (item != null) {
+                    items.add(item);
+                }
+            }
+            return items;
+        }
+    }
+}
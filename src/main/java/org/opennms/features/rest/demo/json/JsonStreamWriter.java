@@ -0,0 +1,277 @@
+package org.opennms.features.rest.demo.json;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * minimal JSON writer encoding UTF-8 straight into a per thread byte buffer
+ * 
+ * values follow the rules of the Jettison mapped convention used by the CXF JSONProvider,
+ * text which parses as a number or boolean is written as a JSON number / boolean (see {@link #primitive(String)})
+ * and strings are escaped like Jettison's JSONObject.quote
+ * 
+ * a writer is not thread safe and must be closed by the thread which created it, so the buffer can be reused
+ *
+ */
+public final class JsonStreamWriter {
+
+    private static final int BUFFER_SIZE = 8192;
+    private static final byte[] HEX = {'0', '1', '2', '3', '4', '5', '6', '7', '8', '9', 'a', 'b', 'c', 'd', 'e', 'f'};
+
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
+    private final OutputStream os;
+    private byte[] buffer;
+    private int position = 0;
+
+    private boolean[] first = new boolean[16]; //per nesting level, true until the first member was written
+    private int depth = 0;
+    private boolean afterName = false;
+
+    public JsonStreamWriter(OutputStream os) {
+        this.os = os;
+        this.buffer = BUFFERS.get();
+        BUFFERS.set(null);    //a nested writer on the same thread gets its own buffer
+        if (buffer == null) {
+            buffer = new byte[BUFFER_SIZE];
+        }
+    }
+
+    public JsonStreamWriter beginObject() throws IOException {
+        beforeValue();
+        write('{');
+        push();
+        return this;
+    }
+
+    public JsonStreamWriter endObject() throws IOException {
+        depth--;
+        write('}');
+        return this;
+    }
+
+    public JsonStreamWriter beginArray() throws IOException {
+        beforeValue();
+        write('[');
+        push();
+        return this;
+    }
+
+    public JsonStreamWriter endArray() throws IOException {
+        depth--;
+        write(']');
+        return this;
+    }
+
+    /**
+     * member name of the next value
+     * @param name
+     * @return
+     */
+    public JsonStreamWriter name(String name) throws IOException {
+        if (!first[depth]) {
+            write(',');
+        }
+        first[depth] = false;
+        quote(name);
+        write(':');
+        afterName = true;
+        return this;
+    }
+
+    public JsonStreamWriter string(String value) throws IOException {
+        beforeValue();
+        quote(value);
+        return this;
+    }
+
+    /**
+     * write a text value the way the Jettison DefaultConverter does,
+     * integers and finite decimals become numbers, "true" / "false" become booleans, everything else a string
+     * @param text
+     * @return
+     */
+    public JsonStreamWriter primitive(String text) throws IOException {
+        beforeValue();
+        if (mayBeNumber(text)) {
+            try {
+                ascii(Long.toString(Long.parseLong(text)));
+                return this;
+            } catch (NumberFormatException e) {
+                //not an integer
+            }
+            try {
+                final double value = Double.parseDouble(text);
+                if (!Double.isInfinite(value) && !Double.isNaN(value)) {
+                    ascii(numberToString(value));
+                    return this;
+                }
+            } catch (NumberFormatException e) {
+                //not a decimal
+            }
+        } else if (text.trim().equalsIgnoreCase("true") || text.trim().equalsIgnoreCase("false")) {
+            ascii(String.valueOf(Boolean.valueOf(text)));
+            return this;
+        }
+        quote(text);
+        return this;
+    }
+
+    /**
+     * write the buffered bytes to the stream
+     */
+    public void flush() throws IOException {
+        if (position > 0) {
+            os.write(buffer, 0, position);
+            position = 0;
+        }
+        os.flush();
+    }
+
+    /**
+     * flush and hand the buffer back to the thread, the underlying stream is not closed
+     */
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            BUFFERS.set(buffer);
+        }
+    }
+
+    private void push() {
+        depth++;
+        if (depth == first.length) {
+            first = Arrays.copyOf(first, depth * 2);
+        }
+        first[depth] = true;
+    }
+
+    private void beforeValue() throws IOException {
+        if (afterName) {
+            afterName = false;
+        } else if (depth > 0) {
+            if (!first[depth]) {
+                write(',');
+            }
+            first[depth] = false;
+        }
+    }
+
+    /**
+     * cheap test avoiding the exception of a failing parse for ordinary text
+     */
+    private static boolean mayBeNumber(String text) {
+        final String trimmed = text.trim();
+        if (trimmed.length() == 0) {
+            return false;
+        }
+        final char c = trimmed.charAt(0);
+        return (c >= '0' && c <= '9') || c == '-' || c == '+' || c == '.' || c == 'I' || c == 'N';
+    }
+
+    /**
+     * same as Jettison's JSONObject.numberToString, trailing zeros of a plain decimal are removed
+     */
+    private static String numberToString(double value) {
+        String s = Double.toString(value);
+        if (s.indexOf('.') > 0 && s.indexOf('e') < 0 && s.indexOf('E') < 0) {
+            int end = s.length();
+            while (s.charAt(end - 1) == '0') {
+                end--;
+            }
+            if (s.charAt(end - 1) == '.') {
+                end--;
+            }
+            s = s.substring(0, end);
+        }
+        return s;
+    }
+
+    private void quote(String value) throws IOException {
+        write('"');
+        char previous = 0;
+        for (int i = 0; i < value.length(); i++) {
+            final char c = value.charAt(i);
+            switch (c) {
+            case '"':
+            case '\\':
+                write('\\');
+                write(c);
+                break;
+            case '/':
+                if (previous == '<') {
+                    write('\\');
+                }
+                write(c);
+                break;
+            case '\b':
+                write('\\');
+                write('b');
+                break;
+            case '\t':
+                write('\\');
+                write('t');
+                break;
+            case '\n':
+                write('\\');
+                write('n');
+                break;
+            case '\f':
+                write('\\');
+                write('f');
+                break;
+            case '\r':
+                write('\\');
+                write('r');
+                break;
+            default:
+                if (c < ' ' || (c >= '\u0080' && c < '\u00a0') || (c >= '\u2000' && c < '\u2100')) {
+                    write('\\');
+                    write('u');
+                    write(HEX[(c >> 12) & 0xf]);
+                    write(HEX[(c >> 8) & 0xf]);
+                    write(HEX[(c >> 4) & 0xf]);
+                    write(HEX[c & 0xf]);
+                } else if (c < 0x80) {
+                    write(c);
+                } else if (c < 0x800) {
+                    write(0xc0 | (c >> 6));
+                    write(0x80 | (c & 0x3f));
+                } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                    final int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                    write(0xf0 | (codePoint >> 18));
+                    write(0x80 | ((codePoint >> 12) & 0x3f));
+                    write(0x80 | ((codePoint >> 6) & 0x3f));
+                    write(0x80 | (codePoint & 0x3f));
+                } else {
+                    write(0xe0 | (c >> 12));
+                    write(0x80 | ((c >> 6) & 0x3f));
+                    write(0x80 | (c & 0x3f));
+                }
+            }
+            previous = c;
+        }
+        write('"');
+    }
+
+    private void ascii(String value) throws IOException {
+        for (int i = 0; i < value.length(); i++) {
+            write(value.charAt(i));
+        }
+    }
+
+    private void write(int b) throws IOException {
+        if (position == buffer.length) {
+            os.write(buffer, 0, position);
+            position = 0;
+        }
+        buffer[position++] = (byte) b;
+    }
+}
@@ -0,0 +1,201 @@
+package org.opennms.features.rest.demo.json;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * parses a JSON document into maps, lists, strings, booleans and number literals
+ * only used to compare the output of two writers independent of member order and escaping
+ *
+ */
+final class JsonTree {
+
+    private static final Object NULL = new Object() {
+        @Override
+        public String toString() {
+            return "null";
+        }
+    };
+
+    private final String text;
+    private int position = 0;
+
+    private JsonTree(String text) {
+        this.text = text;
+    }
+
+    /**
+     * @param text
+     * @return
+     * @throws IllegalArgumentException - if the text is not a single JSON value
+     */
+    static Object parse(String text) {
+        final JsonTree tree = new JsonTree(text);
+        final Object value = tree.value();
+        tree.skipWhitespace();
+        if (tree.position != text.length()) {
+            throw tree.error("Trailing characters");
+        }
+        return value;
+    }
+
+    private Object value() {
+        skipWhitespace();
+        if (position >= text.length()) {
+            throw error("Unexpected end");
+        }
+        final char c = text.charAt(position);
+        if (c == '{') {
+            position++;
+            final Map<String, Object> object = new HashMap<String, Object>();
+            skipWhitespace();
+            if (peek() == '}') {
+                position++;
+                return object;
+            }
+            do {
+                skipWhitespace();
+                final String name = string();
+                skipWhitespace();
+                expect(':');
+                object.put(name, value());
+                skipWhitespace();
+            } while (next() == ',');
+            position--;
+            expect('}');
+            return object;
+        } else if (c == '[') {
+            position++;
+            final List<Object> array = new ArrayList<Object>();
+            skipWhitespace();
+            if (peek() == ']') {
+                position++;
+                return array;
+            }
+            do {
+                array.add(value());
+                skipWhitespace();
+            } while (next() == ',');
+            position--;
+            expect(']');
+            return array;
+        } else if (c == '"') {
+            return string();
+        } else if (text.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        } else if (text.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        } else if (text.startsWith("null", position)) {
+            position += 4;
+            return NULL;
+        }
+        final int start = position;
+        while (position < text.length() && "+-.0123456789eE".indexOf(text.charAt(position)) != -1) {
+            position++;
+        }
+        if (start == position) {
+            throw error("Unexpected character '" + c + "'");
+        }
+        return new NumberLiteral(text.substring(start, position));
+    }
+
+    private String string() {
+        expect('"');
+        final StringBuilder value = new StringBuilder();
+        while (true) {
+            final char c = next();
+            if (c == '"') {
+                return value.toString();
+            } else if (c == '\\') {
+                final char escaped = next();
+                switch (escaped) {
+                case 'b':
+                    value.append('\b');
+                    break;
+                case 't':
+                    value.append('\t');
+                    break;
+                case 'n':
+                    value.append('\n');
+                    break;
+                case 'f':
+                    value.append('\f');
+                    break;
+                case 'r':
+                    value.append('\r');
+                    break;
+                case 'u':
+                    if (position + 4 > text.length()) {
+                        throw error("Incomplete unicode escape");
+                    }
+                    value.append((char) Integer.parseInt(text.substring(position, position + 4), 16));
+                    position += 4;
+                    break;
+                default:
+                    value.append(escaped);
+                }
+            } else {
+                value.append(c);
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (position < text.length() && Character.isWhitespace(text.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() {
+        if (position >= text.length()) {
+            throw error("Unexpected end");
+        }
+        return text.charAt(position);
+    }
+
+    private char next() {
+        final char c = peek();
+        position++;
+        return c;
+    }
+
+    private void expect(char expected) {
+        if (next() != expected) {
+            throw error("Expected '" + expected + "'");
+        }
+    }
+
+    private IllegalArgumentException error(String message) {
+        return new IllegalArgumentException(message + " at index " + position);
+    }
+
+    /**
+     * a number compared by its literal text
+     */
+    private static final class NumberLiteral {
+        private final String literal;
+
+        NumberLiteral(String literal) {
+            this.literal = literal;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof NumberLiteral && ((NumberLiteral) obj).literal.equals(literal);
+        }
+
+        @Override
+        public int hashCode() {
+            return literal.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return literal;
+        }
+    }
+}
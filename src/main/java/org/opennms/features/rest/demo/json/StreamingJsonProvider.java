@@ -0,0 +1,345 @@
+package org.opennms.features.rest.demo.json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Method;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.ws.rs.Produces;
+import javax.ws.rs.WebApplicationException;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.apache.cxf.jaxrs.impl.MetadataMap;
+import org.apache.cxf.jaxrs.provider.json.JSONProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * JSON provider writing the OpenNMS model types straight to the response stream
+ * 
+ * entities are written by a {@link JaxbWritePlan}, without JAXB marshaller, StAX layer and Jettison object tree,
+ * in the same shape the CXF JSONProvider produces
+ * 
+ * every type is verified before it is streamed: the first sampleSize responses of a type are written by both
+ * providers, the JAXB output is sent and both documents are compared (member order is ignored)
+ * a type whose output differs or whose mapping is not supported is served by the JAXB provider from then on
+ * a response is written into a per-thread buffer before it is sent, so a nested type the plan can't write
+ * falls back to the JAXB provider for that response instead of truncating it
+ *
+ */
+@Produces(MediaType.APPLICATION_JSON)
+public class StreamingJsonProvider implements MessageBodyWriter<Object>, StreamingJsonProviderMBean {
+
+    private static Logger logger = LoggerFactory.getLogger(StreamingJsonProvider.class);
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+
+    /**
+     * response buffers growing beyond this size are not kept for the next response of the thread
+     */
+    private static final int MAX_RETAINED_BUFFER = 1024 * 1024;
+
+    /**
+     * entity and collection types returned by the resources
+     */
+    private static final Set<String> TYPES = new HashSet<String>(Arrays.asList(
+        "org.opennms.netmgt.model.OnmsNode", "org.opennms.netmgt.model.OnmsNodeList",
+        "org.opennms.netmgt.model.OnmsEvent", "org.opennms.netmgt.model.OnmsEventCollection",
+        "org.opennms.netmgt.model.OnmsAlarm", "org.opennms.netmgt.model.OnmsAlarmCollection",
+        "org.opennms.netmgt.model.OnmsOutage", "org.opennms.netmgt.model.OnmsOutageCollection",
+        "org.opennms.netmgt.model.OnmsNotification", "org.opennms.netmgt.model.OnmsNotificationCollection"));
+
+    private final JSONProvider<Object> jaxbProvider = new JSONProvider<Object>();
+    private final ConcurrentMap<Class<?>, TypeState> states = new ConcurrentHashMap<Class<?>, TypeState>();
+
+    private boolean enabled = true;
+    private int sampleSize = 3;
+
+    private final ThreadLocal<ByteArrayOutputStream> buffers = new ThreadLocal<ByteArrayOutputStream>();
+
+    private final AtomicLong streamed = new AtomicLong();
+    private final AtomicLong fallbacks = new AtomicLong();
+
+    /**
+     * @param enabled - false to leave all JSON output to the JAXB based provider
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * @param sampleSize - number of responses of a type compared with the JAXB output before the type is streamed
+     */
+    public void setSampleSize(int sampleSize) {
+        this.sampleSize = sampleSize;
+    }
+
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return enabled && mediaType.isCompatible(MediaType.APPLICATION_JSON_TYPE) && TYPES.contains(JaxbWritePlan.unproxy(type).getName());
+    }
+
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+            MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException, WebApplicationException {
+        final TypeState state = stateOf(entity.getClass());
+        if (state.plan == null) {
+            jaxbProvider.writeTo(entity, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+            fallbacks.incrementAndGet();
+            return;
+        }
+        if (state.verified.get() < sampleSize) {
+            final ByteArrayOutputStream expected = new ByteArrayOutputStream(4096);
+            jaxbProvider.writeTo(entity, type, genericType, annotations, mediaType, httpHeaders, expected);
+            verify(state, entity, expected.toByteArray());
+            expected.writeTo(entityStream);
+            fallbacks.incrementAndGet();
+            return;
+        }
+        ByteArrayOutputStream buffer = buffers.get();
+        if (buffer == null) {
+            buffer = new ByteArrayOutputStream(8192);
+        }
+        buffers.remove();       //not shared with a nested call
+        try {
+            write(state.plan, entity, buffer);
+        } catch (IllegalArgumentException e) {    //a nested type not seen during verification, nothing was sent yet
+            reject(state, e.getMessage());
+            jaxbProvider.writeTo(entity, type, genericType, annotations, mediaType, httpHeaders, entityStream);
+            fallbacks.incrementAndGet();
+            return;
+        }
+        buffer.writeTo(entityStream);
+        if (buffer.size() <= MAX_RETAINED_BUFFER) {
+            buffer.reset();
+            buffers.set(buffer);
+        }
+        streamed.incrementAndGet();
+    }
+
+    private static void write(JaxbWritePlan plan, Object entity, OutputStream os) throws IOException {
+        final JsonStreamWriter out = new JsonStreamWriter(os);
+        try {
+            plan.writeRoot(entity, out);
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * compare the streaming output of a sample with the JAXB output
+     */
+    private void verify(TypeState state, Object entity, byte[] expected) {
+        final ByteArrayOutputStream actual = new ByteArrayOutputStream(expected.length + 64);
+        try {
+            write(state.plan, entity, actual);
+        } catch (Exception e) {
+            reject(state, "streaming failed: " + e.getMessage());
+            return;
+        }
+        final String expectedJson = new String(expected, UTF8);
+        final String actualJson = new String(actual.toByteArray(), UTF8);
+        try {
+            if (!JsonTree.parse(expectedJson).equals(JsonTree.parse(actualJson))) {
+                reject(state, "output differs");
+                logger.warn("Streaming JSON of {} differs from JAXB output\n jaxb:      {}\n streaming: {}",
+                            state.type.getSimpleName(), abbreviate(expectedJson), abbreviate(actualJson));
+                return;
+            }
+        } catch (IllegalArgumentException e) {
+            reject(state, "unparsable output: " + e.getMessage());
+            return;
+        }
+        if (state.sample == null) {
+            state.sample = singleElement(entity);
+        }
+        if (state.verified.incrementAndGet() == sampleSize) {
+            logger.info("Streaming JSON of {} verified on {} samples", state.type.getSimpleName(), sampleSize);
+        }
+    }
+
+    /**
+     * the benchmark input kept for a type, so a verified response does not keep a whole page alive
+     * 
+     * @param entity - a verified response entity
+     * @return the entity, for collections a copy holding only the first element, null if it can't be copied
+     */
+    private static Object singleElement(Object entity) {
+        if (!(entity instanceof Iterable)) {
+            return entity;
+        }
+        final Iterator<?> it = ((Iterable<?>) entity).iterator();
+        if (!it.hasNext()) {
+            return null;
+        }
+        final Object first = it.next();
+        if (!it.hasNext()) {
+            return entity;
+        }
+        try {
+            final Object copy = entity.getClass().newInstance();
+            for (Method method : entity.getClass().getMethods()) {
+                if (method.getName().equals("add") && method.getParameterTypes().length == 1) {
+                    method.invoke(copy, first);
+                    return copy;
+                }
+            }
+        } catch (Exception e) {
+            logger.debug("no benchmark sample of {}: {}", entity.getClass().getSimpleName(), e.getMessage());
+        }
+        return null;
+    }
+
+    private void reject(TypeState state, String reason) {
+        if (state.rejection == null) {
+            logger.warn("Serving {} with the JAXB JSON provider: {}", state.type.getSimpleName(), reason);
+        }
+        state.rejection = reason;
+        state.plan = null;
+    }
+
+    private TypeState stateOf(Class<?> entityClass) {
+        final Class<?> type = JaxbWritePlan.unproxy(entityClass);
+        TypeState state = states.get(type);
+        if (state == null) {
+            state = new TypeState(type);
+            try {
+                state.plan = JaxbWritePlan.forClass(type);
+            } catch (IllegalArgumentException e) {
+                state.rejection = "unsupported mapping: " + e.getMessage();
+                logger.warn("Serving {} with the JAXB JSON provider: {}", type.getSimpleName(), state.rejection);
+            }
+            final TypeState existing = states.putIfAbsent(type, state);
+            if (existing != null) {
+                state = existing;
+            }
+        }
+        return state;
+    }
+
+    private static String abbreviate(String text) {
+        return text.length() > 2000 ? text.substring(0, 2000) + "..." : text;
+    }
+
+    public long getStreamedResponses() {
+        return streamed.get();
+    }
+
+    public long getFallbackResponses() {
+        return fallbacks.get();
+    }
+
+    public String[] getVerifiedTypes() {
+        final List<String> verified = new ArrayList<String>();
+        for (TypeState state : states.values()) {
+            if (state.plan != null && state.verified.get() >= sampleSize) {
+                verified.add(state.type.getSimpleName());
+            }
+        }
+        return verified.toArray(new String[verified.size()]);
+    }
+
+    public String[] getRejectedTypes() {
+        final List<String> rejected = new ArrayList<String>();
+        for (TypeState state : states.values()) {
+            if (state.rejection != null) {
+                rejected.add(state.type.getSimpleName() + ": " + state.rejection);
+            }
+        }
+        return rejected.toArray(new String[rejected.size()]);
+    }
+
+    public void reset() {
+        states.clear();
+    }
+
+    public String benchmark(String type, int iterations) {
+        TypeState state = null;
+        for (Map.Entry<Class<?>, TypeState> entry : states.entrySet()) {
+            if (entry.getKey().getName().equals(type) || entry.getKey().getSimpleName().equals(type)) {
+                state = entry.getValue();
+            }
+        }
+        final JaxbWritePlan plan = state == null ? null : state.plan;
+        final Object sample = state == null ? null : state.sample;
+        if (plan == null || sample == null) {
+            return "No verified sample of " + type + " yet";
+        }
+        try {
+            final CountingOutputStream out = new CountingOutputStream();
+            for (int i = 0; i < Math.min(iterations, 100); i++) {    //warm up
+                write(plan, sample, out);
+                jaxbProvider.writeTo(sample, sample.getClass(), sample.getClass(), NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), out);
+            }
+            out.count = 0;
+            long start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                write(plan, sample, out);
+            }
+            final long streamingNanos = System.nanoTime() - start;
+            final long streamingBytes = out.count;
+            out.count = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < iterations; i++) {
+                jaxbProvider.writeTo(sample, sample.getClass(), sample.getClass(), NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), out);
+            }
+            final long jaxbNanos = System.nanoTime() - start;
+            return String.format("%s x %d: streaming %.1f us / %d bytes, jaxb %.1f us / %d bytes per write, speedup %.2f",
+                                 state.type.getSimpleName(), iterations, streamingNanos / 1000.0 / iterations, streamingBytes / iterations,
+                                 jaxbNanos / 1000.0 / iterations, out.count / iterations, (double) jaxbNanos / Math.max(1, streamingNanos));
+        } catch (Exception e) {
+            return "Benchmark of " + type + " failed: " + e;
+        }
+    }
+
+    /**
+     * verification and counters of a single type
+     */
+    private static final class TypeState {
+        private final Class<?> type;
+        private volatile JaxbWritePlan plan;
+        private volatile String rejection;
+        private volatile Object sample;
+        private final AtomicInteger verified = new AtomicInteger();
+
+        TypeState(Class<?> type) {
+            this.type = type;
+        }
+    }
+
+    /**
+     * discards the written bytes, only used by the benchmark
+     */
+    private static final class CountingOutputStream extends OutputStream {
+        private long count = 0;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package org.opennms.features.rest.demo.json;
+
+/**
+ * management interface of the {@link StreamingJsonProvider}
+ *
+ */
+public interface StreamingJsonProviderMBean {
+
+    /**
+     * @return number of responses written by the streaming writers
+     */
+    long getStreamedResponses();
+
+    /**
+     * @return number of responses written by the JAXB based provider, including the verification samples
+     */
+    long getFallbackResponses();
+
+    /**
+     * @return types whose streaming output matched the JAXB output for all samples
+     */
+    String[] getVerifiedTypes();
+
+    /**
+     * @return types served by the JAXB based provider together with the reason
+     */
+    String[] getRejectedTypes();
+
+    /**
+     * forget verified and rejected types, every type is verified again
+     */
+    void reset();
+
+    /**
+     * time the streaming writer against the JAXB based provider on the first verified sample of a type (a single element for collections)
+     * @param type - simple or full class name, ex - "OnmsEventCollection"
+     * @param iterations - number of timed writes per provider
+     * @return average time and size per write of both providers
+     */
+    String benchmark(String type, int iterations);
+}
@@ -0,0 +1,145 @@
+package org.opennms.features.rest.demo.notification;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.CacheMode;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Projections;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.Order;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.features.rest.demo.util.QuantileSketch;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+
+/**
+ * response time statistics (respondTime - pageTime) of answered notifications
+ *
+ * pageTime, respondTime and the group column are read as a projection with a single forward-only cursor,
+ * every response time is added to the {@link QuantileSketch} of its group
+ * so memory is bound by the number of groups and the sketch size, not by the number of notifications
+ * the total is the merge of the group sketches
+ *
+ */
+public class ResponseTimeCalculator {
+
+    public static final String GROUP_BY_USER = "user";
+    public static final String GROUP_BY_NOTIFICATION = "notification";
+
+    private static final String UNKNOWN = "";
+
+    private ReadOnlySessionTemplate sessionTemplate;
+    private int fetchSize = 1000;
+    private double relativeAccuracy = 0.01;
+    private int maxBins = 2048;
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * JDBC fetch size of the notification cursor
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @param relativeAccuracy - maximum relative error of the percentiles, ex - 0.01
+     */
+    public void setRelativeAccuracy(double relativeAccuracy) {
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    /**
+     * @param maxBins - maximum number of buckets per sketch
+     */
+    public void setMaxBins(int maxBins) {
+        this.maxBins = maxBins;
+    }
+
+    /**
+     * @param crit - notification criteria of the FIQL query, orders, limit and offset are replaced
+     * @param groupBy - {@link #GROUP_BY_USER} (answeredBy), {@link #GROUP_BY_NOTIFICATION} (notifConfigName) or null for the total only
+     * @return
+     * @throws Exception
+     */
+    public ResponseTimeReport calculate(final Criteria crit, final String groupBy) throws Exception {
+        final List<Restriction> restrictions = new ArrayList<Restriction>(crit.getRestrictions());
+        restrictions.add(Restrictions.isNotNull("pageTime"));
+        restrictions.add(Restrictions.isNotNull("respondTime"));
+        crit.setRestrictions(restrictions);
+        crit.setOrders(new ArrayList<Order>());
+        crit.setLimit(null);
+        crit.setOffset(null);
+
+        final Map<String, QuantileSketch> sketches = sessionTemplate.execute(new SessionCallback<Map<String, QuantileSketch>>() {
+            public Map<String, QuantileSketch> doInSession(Session session) {
+                return read(crit, session, groupBy);
+            }
+        });
+
+        final ResponseTimeReport report = new ResponseTimeReport(groupBy, relativeAccuracy);
+        final QuantileSketch total = new QuantileSketch(relativeAccuracy, maxBins);
+        for (Map.Entry<String, QuantileSketch> entry : sketches.entrySet()) {
+            total.merge(entry.getValue());
+            if (groupBy != null) {
+                report.getGroups().add(new ResponseTimeStats(entry.getKey(), entry.getValue()));
+            }
+        }
+        report.setTotal(new ResponseTimeStats(null, total));
+        Collections.sort(report.getGroups(), new Comparator<ResponseTimeStats>() {
+            public int compare(ResponseTimeStats o1, ResponseTimeStats o2) {
+                return o1.getName().compareTo(o2.getName());
+            }
+        });
+        return report;
+    }
+
+    private Map<String, QuantileSketch> read(Criteria crit, Session session, String groupBy) {
+        final String groupProperty = GROUP_BY_USER.equals(groupBy) ? "answeredBy" : GROUP_BY_NOTIFICATION.equals(groupBy) ? "notifConfigName" : null;
+        final ScrollableResults results = sessionTemplate.toHibernateCriteria(crit, session)
+                .setProjection(groupProperty == null
+                               ? Projections.projectionList()
+                                       .add(Projections.property("pageTime"))
+                                       .add(Projections.property("respondTime"))
+                               : Projections.projectionList()
+                                       .add(Projections.property("pageTime"))
+                                       .add(Projections.property("respondTime"))
+                                       .add(Projections.property(groupProperty)))
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        final Map<String, QuantileSketch> sketches = new HashMap<String, QuantileSketch>();
+        try {
+            while (results.next()) {
+                final Object[] row = results.get();
+                final String key = groupProperty == null || row[2] == null ? UNKNOWN : (String) row[2];
+                QuantileSketch sketch = sketches.get(key);
+                if (sketch == null) {
+                    sketch = new QuantileSketch(relativeAccuracy, maxBins);
+                    sketches.put(key, sketch);
+                }
+                sketch.add(((Date) row[1]).getTime() - ((Date) row[0]).getTime());
+            }
+        } finally {
+            results.close();
+        }
+        return sketches;
+    }
+}
@@ -0,0 +1,62 @@
+package org.opennms.features.rest.demo.notification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * document returned by /notifications/stats
+ * statistics of all answered notifications matching the query and, if grouped, one entry per user or notification name
+ *
+ */
+@XmlRootElement(name = "responseTimeReport")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ResponseTimeReport {
+
+    @XmlAttribute
+    private String groupBy;
+    @XmlAttribute
+    private double relativeAccuracy;
+
+    @XmlElement(name = "total")
+    private ResponseTimeStats total;
+
+    @XmlElement(name = "responseTime")
+    private List<ResponseTimeStats> groups = new ArrayList<ResponseTimeStats>();
+
+    public ResponseTimeReport() {
+    }
+
+    public ResponseTimeReport(String groupBy, double relativeAccuracy) {
+        this.groupBy = groupBy;
+        this.relativeAccuracy = relativeAccuracy;
+    }
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    /**
+     * @return maximum relative error of the percentiles
+     */
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    public ResponseTimeStats getTotal() {
+        return total;
+    }
+
+    public void setTotal(ResponseTimeStats total) {
+        this.total = total;
+    }
+
+    public List<ResponseTimeStats> getGroups() {
+        return groups;
+    }
+}
@@ -0,0 +1,74 @@
+package org.opennms.features.rest.demo.notification;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.opennms.features.rest.demo.util.QuantileSketch;
+
+/**
+ * response time (respondTime - pageTime) statistics of one user or notification, in milliseconds
+ * percentiles are estimates within the relative accuracy of the sketch they were computed with
+ *
+ */
+@XmlRootElement(name = "responseTime")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class ResponseTimeStats {
+
+    @XmlAttribute
+    private String name;
+    @XmlAttribute
+    private long count;
+    @XmlAttribute
+    private long meanMs;
+    @XmlAttribute
+    private long p50Ms;
+    @XmlAttribute
+    private long p90Ms;
+    @XmlAttribute
+    private long p99Ms;
+    @XmlAttribute
+    private long maxMs;
+
+    public ResponseTimeStats() {
+    }
+
+    public ResponseTimeStats(String name, QuantileSketch sketch) {
+        this.name = name;
+        this.count = sketch.getCount();
+        this.meanMs = Math.round(sketch.getMean());
+        this.p50Ms = Math.round(sketch.getQuantile(0.5));
+        this.p90Ms = Math.round(sketch.getQuantile(0.9));
+        this.p99Ms = Math.round(sketch.getQuantile(0.99));
+        this.maxMs = Math.round(sketch.getMax());
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public long getMeanMs() {
+        return meanMs;
+    }
+
+    public long getP50Ms() {
+        return p50Ms;
+    }
+
+    public long getP90Ms() {
+        return p90Ms;
+    }
+
+    public long getP99Ms() {
+        return p99Ms;
+    }
+
+    public long getMaxMs() {
+        return maxMs;
+    }
+}
@@ -0,0 +1,81 @@
+package org.opennms.features.rest.demo.outage;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * availability of one node or monitored service within the window of an {@link AvailabilityReport}
+ * ipAddress and serviceName are only set when grouped by service
+ *
+ */
+@XmlRootElement(name = "availability")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class Availability {
+
+    @XmlAttribute
+    private int nodeId;
+    @XmlAttribute
+    private String nodeLabel;
+    @XmlAttribute
+    private String ipAddress;
+    @XmlAttribute
+    private String serviceName;
+    @XmlAttribute
+    private int outages;
+    @XmlAttribute
+    private long downtimeMs;
+    @XmlAttribute
+    private double availability;
+
+    public Availability() {
+    }
+
+    public Availability(int nodeId, String nodeLabel, String ipAddress, String serviceName, int outages, long downtimeMs, double availability) {
+        this.nodeId = nodeId;
+        this.nodeLabel = nodeLabel;
+        this.ipAddress = ipAddress;
+        this.serviceName = serviceName;
+        this.outages = outages;
+        this.downtimeMs = downtimeMs;
+        this.availability = availability;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public String getNodeLabel() {
+        return nodeLabel;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public String getServiceName() {
+        return serviceName;
+    }
+
+    /**
+     * @return number of outages overlapping the window
+     */
+    public int getOutages() {
+        return outages;
+    }
+
+    /**
+     * @return time within the window covered by at least one outage
+     */
+    public long getDowntimeMs() {
+        return downtimeMs;
+    }
+
+    /**
+     * @return percentage of the window without outage
+     */
+    public double getAvailability() {
+        return availability;
+    }
+}
@@ -0,0 +1,219 @@
+package org.opennms.features.rest.demo.outage;
+
+import java.net.InetAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.hibernate.CacheMode;
+import org.hibernate.Query;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+import org.hibernate.criterion.Order;
+import org.hibernate.criterion.Projections;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+
+/**
+ * availability of nodes or monitored services over a time window, computed from the outage table
+ *
+ * the outages overlapping the window are read as a projection with a single forward-only cursor ordered by ifLostService,
+ * every interval is clipped to the window (open outages end at the end of the window)
+ * and merged with the previous interval of its group, so memory is bound by the number of groups and not by the number of outages
+ *
+ * grouped by node an outage of any service of the node counts as downtime of the node
+ *
+ * without a FIQL query every node with a monitored service (or every monitored service) is in scope,
+ * the ones without an outage in the window are listed with 100% availability,
+ * with a query only the nodes or services of the matching outages are listed
+ *
+ */
+public class AvailabilityCalculator {
+
+    public static final String GROUP_BY_NODE = "node";
+    public static final String GROUP_BY_SERVICE = "service";
+
+    private static final String MONITORED = "from OnmsMonitoredService s join s.ipInterface i join i.node n join s.serviceType st"
+            + " where (n.type is null or n.type <> 'D') and (s.status is null or s.status <> 'D')";
+
+    private ReadOnlySessionTemplate sessionTemplate;
+    private int fetchSize = 1000;
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * JDBC fetch size of the outage cursor
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * @param crit - outage criteria of the FIQL query, orders, limit and offset are replaced
+     * @param from - start of the window
+     * @param to - end of the window, not after now
+     * @param groupBy - {@link #GROUP_BY_NODE} or {@link #GROUP_BY_SERVICE}
+     * @return
+     * @throws Exception
+     */
+    public AvailabilityReport calculate(final Criteria crit, final Date from, final Date to, final String groupBy) throws Exception {
+        final boolean allInScope = crit.getRestrictions().isEmpty();
+        final List<Restriction> restrictions = new ArrayList<Restriction>(crit.getRestrictions());
+        restrictions.add(Restrictions.lt("ifLostService", to));
+        restrictions.add(Restrictions.or(Restrictions.isNull("ifRegainedService"), Restrictions.gt("ifRegainedService", from)));
+        crit.setRestrictions(restrictions);
+        crit.setOrders(new ArrayList<org.opennms.core.criteria.Order>());
+        crit.setLimit(null);
+        crit.setOffset(null);
+
+        final AvailabilityReport report = new AvailabilityReport(from, to, groupBy);
+        final Map<Integer, Group> groups = sessionTemplate.execute(new SessionCallback<Map<Integer, Group>>() {
+            public Map<Integer, Group> doInSession(Session session) {
+                final Map<Integer, Group> loaded = read(crit, session, from.getTime(), to.getTime(), GROUP_BY_SERVICE.equals(groupBy), report);
+                if (allInScope) {
+                    addAvailable(session, GROUP_BY_SERVICE.equals(groupBy), loaded);
+                }
+                return loaded;
+            }
+        });
+
+        final List<Availability> entries = report.getEntries();
+        for (Group group : groups.values()) {
+            final long downtime = group.finish();
+            entries.add(new Availability(group.nodeId, group.nodeLabel, group.ipAddress, group.serviceName, group.outages, downtime,
+                                         100.0 * (report.getWindowMs() - downtime) / report.getWindowMs()));
+        }
+        Collections.sort(entries, new Comparator<Availability>() {
+            public int compare(Availability o1, Availability o2) {
+                int result = Double.compare(o1.getAvailability(), o2.getAvailability());
+                return result != 0 ? result : o1.getNodeId() - o2.getNodeId();
+            }
+        });
+        return report;
+    }
+
+    private Map<Integer, Group> read(Criteria crit, Session session, long from, long to, boolean byService, AvailabilityReport report) {
+        final ScrollableResults results = sessionTemplate.toHibernateCriteria(crit, session)
+                .createAlias("monitoredService", "availabilityService")
+                .createAlias("availabilityService.ipInterface", "availabilityInterface")
+                .createAlias("availabilityInterface.node", "availabilityNode")
+                .createAlias("availabilityService.serviceType", "availabilityServiceType")
+                .setProjection(Projections.projectionList()
+                               .add(Projections.property("ifLostService"))
+                               .add(Projections.property("ifRegainedService"))
+                               .add(Projections.property("availabilityService.id"))
+                               .add(Projections.property("availabilityNode.id"))
+                               .add(Projections.property("availabilityNode.label"))
+                               .add(Projections.property("availabilityInterface.ipAddress"))
+                               .add(Projections.property("availabilityServiceType.name")))
+                .addOrder(Order.asc("ifLostService"))
+                .setFetchSize(fetchSize)
+                .setReadOnly(true)
+                .setCacheMode(CacheMode.IGNORE)
+                .scroll(ScrollMode.FORWARD_ONLY);
+        final Map<Integer, Group> groups = new HashMap<Integer, Group>();
+        long rows = 0;
+        try {
+            while (results.next()) {
+                rows++;
+                final Object[] row = results.get();
+                final Integer key = (Integer) (byService ? row[2] : row[3]);
+                Group group = groups.get(key);
+                if (group == null) {
+                    group = byService ? new Group((Integer) row[3], (String) row[4], toString(row[5]), (String) row[6])
+                                      : new Group((Integer) row[3], (String) row[4], null, null);
+                    groups.put(key, group);
+                }
+                final long start = Math.max(from, ((Date) row[0]).getTime());
+                final long end = row[1] == null ? to : Math.min(to, ((Date) row[1]).getTime());
+                group.add(start, end);
+            }
+        } finally {
+            results.close();
+        }
+        report.setOutagesRead(rows);
+        return groups;
+    }
+
+    /**
+     * add a group without downtime for every monitored node or service which had no outage in the window
+     */
+    private void addAvailable(Session session, boolean byService, Map<Integer, Group> groups) {
+        final Query query = byService ? session.createQuery("select s.id, n.id, n.label, i.ipAddress, st.name " + MONITORED)
+                                      : session.createQuery("select distinct n.id, n.label " + MONITORED);
+        for (Object row : query.setFetchSize(fetchSize).setReadOnly(true).setCacheMode(CacheMode.IGNORE).list()) {
+            final Object[] columns = (Object[]) row;
+            final Integer key = (Integer) columns[0];
+            if (!groups.containsKey(key)) {
+                groups.put(key, byService ? new Group((Integer) columns[1], (String) columns[2], toString(columns[3]), (String) columns[4])
+                                          : new Group((Integer) columns[0], (String) columns[1], null, null));
+            }
+        }
+    }
+
+    private static String toString(Object address) {
+        if (address instanceof InetAddress) {
+            return ((InetAddress) address).getHostAddress();
+        }
+        return address == null ? null : address.toString();
+    }
+
+    /**
+     * downtime of one group, intervals have to be added in the order of their start
+     */
+    private static class Group {
+        private final int nodeId;
+        private final String nodeLabel;
+        private final String ipAddress;
+        private final String serviceName;
+        private int outages = 0;
+        private long downtime = 0;
+        private long currentStart = -1;
+        private long currentEnd = -1;
+
+        private Group(int nodeId, String nodeLabel, String ipAddress, String serviceName) {
+            this.nodeId = nodeId;
+            this.nodeLabel = nodeLabel;
+            this.ipAddress = ipAddress;
+            this.serviceName = serviceName;
+        }
+
+        private void add(long start, long end) {
+            outages++;
+            if (end <= start) {
+                return;
+            }
+            if (currentEnd >= start) {          //overlapping or adjacent, extend the current interval
+                currentEnd = Math.max(currentEnd, end);
+            } else {
+                finish();
+                currentStart = start;
+                currentEnd = end;
+            }
+        }
+
+        private long finish() {
+            if (currentEnd > currentStart) {
+                downtime += currentEnd - currentStart;
+            }
+            currentStart = -1;
+            currentEnd = -1;
+            return downtime;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package org.opennms.features.rest.demo.outage;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * document returned by /outages/availability
+ * one entry per node or monitored service, lowest availability first
+ * without a query the nodes and services without an outage in the window are listed with 100% availability,
+ * with a query only the ones with a matching outage in the window are listed
+ *
+ */
+@XmlRootElement(name = "availabilityReport")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class AvailabilityReport {
+
+    @XmlAttribute
+    private Date from;
+    @XmlAttribute
+    private Date to;
+    @XmlAttribute
+    private String groupBy;
+    @XmlAttribute
+    private long windowMs;
+    @XmlAttribute
+    private long outagesRead;
+
+    @XmlElement(name = "availability")
+    private List<Availability> entries = new ArrayList<Availability>();
+
+    public AvailabilityReport() {
+    }
+
+    public AvailabilityReport(Date from, Date to, String groupBy) {
+        this.from = from;
+        this.to = to;
+        this.groupBy = groupBy;
+        this.windowMs = to.getTime() - from.getTime();
+    }
+
+    public Date getFrom() {
+        return from;
+    }
+
+    public Date getTo() {
+        return to;
+    }
+
+    public String getGroupBy() {
+        return groupBy;
+    }
+
+    public long getWindowMs() {
+        return windowMs;
+    }
+
+    public long getOutagesRead() {
+        return outagesRead;
+    }
+
+    public void setOutagesRead(long outagesRead) {
+        this.outagesRead = outagesRead;
+    }
+
+    public List<Availability> getEntries() {
+        return entries;
+    }
+}
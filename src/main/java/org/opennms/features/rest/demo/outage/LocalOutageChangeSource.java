@@ -0,0 +1,49 @@
+package org.opennms.features.rest.demo.outage;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.opennms.netmgt.model.OnmsOutage;
+
+/**
+ * in-process stand-in for a real outage change feed
+ * changes are published by calling {@link #fireOpened(OnmsOutage)} / {@link #fireResolved(OnmsOutage)},
+ * the publisher has to mark the source connected, until then the open outage map catches up from the database before a search
+ *
+ */
+public class LocalOutageChangeSource implements OutageChangeSource {
+
+    private final List<OutageChangeListener> listeners = new CopyOnWriteArrayList<OutageChangeListener>();
+    private volatile boolean connected = false;
+
+    public void addListener(OutageChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(OutageChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * @param connected - true once a publisher delivers every outage change
+     */
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    public void fireOpened(OnmsOutage outage) {
+        for (OutageChangeListener listener : listeners) {
+            listener.outageOpened(outage);
+        }
+    }
+
+    public void fireResolved(OnmsOutage outage) {
+        for (OutageChangeListener listener : listeners) {
+            listener.outageResolved(outage);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package org.opennms.features.rest.demo.outage;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hibernate.Session;
+import org.opennms.core.criteria.Alias.JoinType;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.features.rest.demo.search.EntityMetadata;
+import org.opennms.features.rest.demo.search.InMemoryQuery;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.util.Comparison;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+import org.opennms.netmgt.dao.api.OutageDao;
+import org.opennms.netmgt.model.OnmsOutage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * live view of the currently open outages (ifRegainedService is null)
+ * keyed by node, interface and service
+ * 
+ * bootstrapped from the database at start, kept current by an {@link OutageChangeSource}
+ * and reconciled with the database every reconcileInterval to repair changes the source missed
+ * changes received while a reconciliation is loading win over the loaded state
+ * 
+ * without a connected source a search first catches up if the last sync started more than maxLagMillis before it:
+ * outages opened since (id greater than the highest id seen) are loaded and held outages which are no longer open are dropped,
+ * both by primary key, so a search never misses a change stored more than maxLagMillis before it started
+ * a catch-up costs one query per 1000 held outages plus one, searches within maxLagMillis of the last one are answered from memory
+ * the outages are marshalled long after their session is closed, so every association the representation reads is loaded with them
+ *
+ */
+public class OpenOutageMap implements OpenOutageMapMBean, OutageChangeListener {
+
+    private static Logger logger = LoggerFactory.getLogger(OpenOutageMap.class);
+
+    /**
+     * properties open outage searches may filter and order by
+     */
+    private static final Set<String> PROPERTIES = Collections.unmodifiableSet(new HashSet<String>(Arrays.asList(
+            "id", "ifLostService", "ifRegainedService", "suppressTime")));
+
+    /**
+     * associations read by the marshalled outage
+     */
+    public static final String[] FETCH_PATHS = {"monitoredService.ipInterface.node", "monitoredService.serviceType",
+            "serviceLostEvent.serviceType", "serviceLostEvent.distPoller", "serviceRegainedEvent.serviceType", "serviceRegainedEvent.distPoller"};
+
+    /**
+     * maximum number of ids in the IN clause of a catch-up query
+     */
+    private static final int CHUNK_SIZE = 1000;
+
+    private OutageDao outageDao;
+    private ReadOnlySessionTemplate sessionTemplate;
+    private OutageChangeSource changeSource;
+    private long reconcileIntervalSeconds = 300;
+    private long maxLagMillis = 10000;
+    private ScheduledExecutorService scheduler;
+
+    private final ConcurrentMap<OutageKey, OnmsOutage> outages = new ConcurrentHashMap<OutageKey, OnmsOutage>();
+    private final ConcurrentMap<OutageKey, Long> changed = new ConcurrentHashMap<OutageKey, Long>();    //key -> nanoTime of the last change
+    private final AtomicLong changesApplied = new AtomicLong();
+    private final AtomicLong corrections = new AtomicLong();
+    private volatile boolean ready = false;
+    private volatile long lastReconciliation = 0;
+    private volatile long syncedAt = 0;          //all changes stored before this time are applied
+    private volatile int lastId = 0;             //highest outage id loaded
+    private final Object catchUpLock = new Object();
+
+    /**
+     * method to initialize local variable outageDao using blueprint
+     * @param outageDao
+     */
+    public void setOutageDao(OutageDao outageDao) {
+        this.outageDao = outageDao;
+    }
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * method to initialize local variable changeSource using blueprint
+     * @param changeSource
+     */
+    public void setChangeSource(OutageChangeSource changeSource) {
+        this.changeSource = changeSource;
+    }
+
+    /**
+     * @param reconcileIntervalSeconds - interval of the reconciliation with the database
+     */
+    public void setReconcileIntervalSeconds(long reconcileIntervalSeconds) {
+        this.reconcileIntervalSeconds = reconcileIntervalSeconds;
+    }
+
+    /**
+     * @param maxLagMillis - without a connected change source a search catches up first if the last sync started longer ago,
+     *                       0 to catch up before every search
+     */
+    public void setMaxLagMillis(long maxLagMillis) {
+        this.maxLagMillis = maxLagMillis;
+    }
+
+    /**
+     * blueprint init-method, subscribes to the change source and loads the map in the background
+     */
+    public void start() {
+        if (changeSource != null) {
+            changeSource.addListener(this);
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rest-open-outages");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                reconcileNow();
+            }
+        }, 0, reconcileIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (changeSource != null) {
+            changeSource.removeListener(this);
+        }
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public void outageOpened(OnmsOutage outage) {
+        final OutageKey key = OutageKey.of(outage);
+        changed.put(key, System.nanoTime());
+        outages.put(key, outage);
+        changesApplied.incrementAndGet();
+    }
+
+    public void outageResolved(OnmsOutage outage) {
+        final OutageKey key = OutageKey.of(outage);
+        changed.put(key, System.nanoTime());
+        outages.remove(key);
+        changesApplied.incrementAndGet();
+    }
+
+    /**
+     * answer a search for open outages (ifRegainedService==null)
+     * @param ctx
+     * @return results, null if the search is not limited to open outages, uses other properties or the map is not loaded yet
+     */
+    public List<OnmsOutage> find(SearchContext<OnmsOutage> ctx) {
+        if (!ready || !InMemoryQuery.isSupported(ctx, PROPERTIES)) {
+            return null;
+        }
+        for (Comparison comparison : ctx.getDecoder().getComparisons()) {
+            if (comparison.getProperty().equals("ifRegainedService") && Comparison.EQ.equals(comparison.getOperator())
+                    && "null".equalsIgnoreCase(comparison.getValue())) {
+                if (!isChangeSourceConnected() && System.currentTimeMillis() - syncedAt > maxLagMillis) {
+                    try {
+                        catchUp(System.currentTimeMillis());
+                    } catch (Exception e) {
+                        logger.warn("failed to catch up the open outage map, searching the database: " + e.getMessage(), e);
+                        return null;
+                    }
+                }
+                return InMemoryQuery.evaluate(outages.values(), ctx);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return copy of the currently open outages
+     */
+    public Collection<OnmsOutage> getOpenOutages() {
+        return new ArrayList<OnmsOutage>(outages.values());
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public boolean isChangeSourceConnected() {
+        return changeSource != null && changeSource.isConnected();
+    }
+
+    public long getSyncedAt() {
+        return syncedAt;
+    }
+
+    public int getOpenOutageCount() {
+        return outages.size();
+    }
+
+    public long getChangesApplied() {
+        return changesApplied.get();
+    }
+
+    public long getReconciliationCorrections() {
+        return corrections.get();
+    }
+
+    public long getLastReconciliation() {
+        return lastReconciliation;
+    }
+
+    public void reconcile() {
+        if (scheduler != null) {
+            scheduler.execute(new Runnable() {
+                public void run() {
+                    reconcileNow();
+                }
+            });
+        }
+    }
+
+    /**
+     * load the open outages and bring the map in line with them
+     */
+    void reconcileNow() {
+        final long started = System.nanoTime();
+        final long startedMillis = System.currentTimeMillis();
+        try {
+            final List<OnmsOutage> open = load(openOutages().toCriteria());
+            final Map<OutageKey, OnmsOutage> loaded = new HashMap<OutageKey, OnmsOutage>();
+            int maxId = 0;
+            for (OnmsOutage outage : open) {
+                loaded.put(OutageKey.of(outage), outage);
+                maxId = Math.max(maxId, outage.getId());
+            }
+            long fixed = 0;
+            for (Map.Entry<OutageKey, OnmsOutage> entry : loaded.entrySet()) {
+                if (changedSince(entry.getKey(), started)) {
+                    continue;
+                }
+                final OnmsOutage previous = outages.put(entry.getKey(), entry.getValue());
+                if (previous == null || !previous.getId().equals(entry.getValue().getId())) {
+                    fixed++;
+                }
+            }
+            for (OutageKey key : new ArrayList<OutageKey>(outages.keySet())) {
+                if (!loaded.containsKey(key) && !changedSince(key, started)) {
+                    outages.remove(key);
+                    fixed++;
+                }
+            }
+            for (Map.Entry<OutageKey, Long> entry : changed.entrySet()) {
+                if (entry.getValue() - started < 0) {
+                    changed.remove(entry.getKey(), entry.getValue());
+                }
+            }
+            if (ready) {
+                corrections.addAndGet(fixed);
+                if (fixed > 0) {
+                    logger.info("open outage reconciliation corrected {} entries", fixed);
+                }
+            }
+            synchronized (catchUpLock) {
+                lastId = Math.max(lastId, maxId);
+                syncedAt = Math.max(syncedAt, startedMillis);
+            }
+            ready = true;
+            lastReconciliation = System.currentTimeMillis();
+            logger.debug("open outage map reconciled, {} open outages in {}ms", outages.size(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started));
+        } catch (Exception e) {
+            logger.warn("failed to reconcile the open outage map: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * apply the outages opened and resolved since the last sync
+     * a caller which arrives while a catch-up runs waits for it and only queries again
+     * if that catch-up started more than maxLagMillis before the caller requested it
+     * 
+     * @param requested - time the caller needs the changes stored before
+     */
+    void catchUp(long requested) throws Exception {
+        synchronized (catchUpLock) {
+            if (requested - syncedAt <= maxLagMillis) {
+                return;
+            }
+            final long started = System.nanoTime();
+            final long startedMillis = System.currentTimeMillis();
+            final Map<Integer, OutageKey> held = new HashMap<Integer, OutageKey>();
+            for (Map.Entry<OutageKey, OnmsOutage> entry : outages.entrySet()) {
+                held.put(entry.getValue().getId(), entry.getKey());
+            }
+            final Set<Integer> stillOpen = sessionTemplate.execute(new SessionCallback<Set<Integer>>() {
+                public Set<Integer> doInSession(Session session) {
+                    final List<Integer> ids = new ArrayList<Integer>(held.keySet());
+                    final Set<Integer> result = new HashSet<Integer>();
+                    for (int i = 0; i < ids.size(); i += CHUNK_SIZE) {
+                        for (Object id : session.createQuery("select o.id from OnmsOutage o where o.id in (:ids) and o.ifRegainedService is null")
+                                .setParameterList("ids", ids.subList(i, Math.min(ids.size(), i + CHUNK_SIZE))).list()) {
+                            result.add((Integer) id);
+                        }
+                    }
+                    return result;
+                }
+            });
+            final List<OnmsOutage> opened = load(openOutages().gt("id", lastId).toCriteria());
+            for (Map.Entry<Integer, OutageKey> entry : held.entrySet()) {
+                if (!stillOpen.contains(entry.getKey()) && !changedSince(entry.getValue(), started)) {
+                    final OnmsOutage current = outages.get(entry.getValue());
+                    if (current != null && current.getId().equals(entry.getKey())) {
+                        outages.remove(entry.getValue(), current);
+                    }
+                }
+            }
+            int maxId = lastId;
+            for (OnmsOutage outage : opened) {
+                final OutageKey key = OutageKey.of(outage);
+                if (!changedSince(key, started)) {
+                    outages.put(key, outage);
+                }
+                maxId = Math.max(maxId, outage.getId());
+            }
+            lastId = maxId;
+            syncedAt = startedMillis;
+        }
+    }
+
+    private static CriteriaBuilder openOutages() {
+        return new CriteriaBuilder(OnmsOutage.class)
+                .alias("monitoredService", "monitoredService", JoinType.LEFT_JOIN)
+                .alias("monitoredService.ipInterface", "ipInterface", JoinType.LEFT_JOIN)
+                .alias("ipInterface.node", "node", JoinType.LEFT_JOIN)
+                .alias("monitoredService.serviceType", "serviceType", JoinType.LEFT_JOIN)
+                .isNull("ifRegainedService");
+    }
+
+    /**
+     * load through the read-only session with every association of {@link #FETCH_PATHS} the outage model has
+     */
+    private List<OnmsOutage> load(Criteria crit) throws Exception {
+        if (sessionTemplate == null) {
+            return outageDao.findMatching(crit);
+        }
+        final List<String> paths = new ArrayList<String>();
+        for (String path : FETCH_PATHS) {
+            if (EntityMetadata.forClass(OnmsOutage.class).resolve(path) != null) {
+                paths.add(path);
+            }
+        }
+        return sessionTemplate.<OnmsOutage>findMatching(crit, 0, paths);
+    }
+
+    private boolean changedSince(OutageKey key, long nanos) {
+        final Long stamp = changed.get(key);
+        return stamp != null && stamp - nanos >= 0;
+    }
+
+    @Override
+    public String toString() {
+        return "OpenOutageMap [ready=" + ready + ", openOutages=" + outages.size() + ", changesApplied=" + changesApplied.get()
+                + ", corrections=" + corrections.get() + "]";
+    }
+}
@@ -0,0 +1,42 @@
+package org.opennms.features.rest.demo.outage;
+
+/**
+ * management interface of {@link OpenOutageMap}
+ *
+ */
+public interface OpenOutageMapMBean {
+
+    boolean isReady();
+
+    /**
+     * @return true while the change source delivers changes, searches catch up from the database otherwise
+     */
+    boolean isChangeSourceConnected();
+
+    /**
+     * @return start of the last reconciliation or catch-up, all changes stored before are applied (milliseconds since the epoch)
+     */
+    long getSyncedAt();
+
+    /**
+     * @return number of currently open outages
+     */
+    int getOpenOutageCount();
+
+    /**
+     * @return changes received from the change source
+     */
+    long getChangesApplied();
+
+    /**
+     * @return entries added or removed by reconciliation, changes the change source missed
+     */
+    long getReconciliationCorrections();
+
+    long getLastReconciliation();
+
+    /**
+     * reconcile with the database now
+     */
+    void reconcile();
+}
@@ -0,0 +1,20 @@
+package org.opennms.features.rest.demo.outage;
+
+import org.opennms.netmgt.model.OnmsOutage;
+
+/**
+ * notified when a service goes down or comes back
+ *
+ */
+public interface OutageChangeListener {
+
+    /**
+     * @param outage - the new open outage, with monitored service, interface and node loaded
+     */
+    void outageOpened(OnmsOutage outage);
+
+    /**
+     * @param outage - the outage with ifRegainedService set
+     */
+    void outageResolved(OnmsOutage outage);
+}
@@ -0,0 +1,18 @@
+package org.opennms.features.rest.demo.outage;
+
+/**
+ * publisher of outage changes, ex - a bridge from the nodeLostService / nodeRegainedService events
+ *
+ */
+public interface OutageChangeSource {
+
+    void addListener(OutageChangeListener listener);
+
+    void removeListener(OutageChangeListener listener);
+
+    /**
+     * @return true while every outage change is delivered to the listeners,
+     *         the open outage map catches up from the database before a search as long as its source is not connected
+     */
+    boolean isConnected();
+}
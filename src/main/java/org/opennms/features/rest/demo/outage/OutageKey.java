@@ -0,0 +1,65 @@
+package org.opennms.features.rest.demo.outage;
+
+import java.net.InetAddress;
+
+import org.opennms.netmgt.model.OnmsMonitoredService;
+import org.opennms.netmgt.model.OnmsOutage;
+
+/**
+ * identity of an open outage, a service can only have one open outage at a time
+ *
+ */
+public final class OutageKey {
+
+    private final int nodeId;
+    private final String ipAddress;
+    private final int serviceId;
+
+    public OutageKey(int nodeId, String ipAddress, int serviceId) {
+        this.nodeId = nodeId;
+        this.ipAddress = ipAddress;
+        this.serviceId = serviceId;
+    }
+
+    /**
+     * @param outage - with monitored service, interface and node loaded
+     * @return
+     */
+    public static OutageKey of(OnmsOutage outage) {
+        final OnmsMonitoredService service = outage.getMonitoredService();
+        final InetAddress address = service.getIpAddress();
+        return new OutageKey(service.getNodeId(), address == null ? null : address.getHostAddress(), service.getServiceId());
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public String getIpAddress() {
+        return ipAddress;
+    }
+
+    public int getServiceId() {
+        return serviceId;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * nodeId + (ipAddress == null ? 0 : ipAddress.hashCode())) + serviceId;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (!(obj instanceof OutageKey)) {
+            return false;
+        }
+        final OutageKey other = (OutageKey) obj;
+        return nodeId == other.nodeId && serviceId == other.serviceId
+                && (ipAddress == null ? other.ipAddress == null : ipAddress.equals(other.ipAddress));
+    }
+
+    @Override
+    public String toString() {
+        return nodeId + "/" + ipAddress + "/" + serviceId;
+    }
+}
@@ -0,0 +1,38 @@
+package org.opennms.features.rest.demo.ratelimit;
+
+/**
+ * token bucket configuration of one resource
+ *
+ */
+public class RateLimit {
+
+    private long capacity = 50;
+    private double refillPerSecond = 10;
+
+    /**
+     * @return burst size
+     */
+    public long getCapacity() {
+        return capacity;
+    }
+
+    public void setCapacity(long capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * @return sustained requests per second
+     */
+    public double getRefillPerSecond() {
+        return refillPerSecond;
+    }
+
+    public void setRefillPerSecond(double refillPerSecond) {
+        this.refillPerSecond = refillPerSecond;
+    }
+
+    @Override
+    public String toString() {
+        return "RateLimit [capacity=" + capacity + ", refillPerSecond=" + refillPerSecond + "]";
+    }
+}
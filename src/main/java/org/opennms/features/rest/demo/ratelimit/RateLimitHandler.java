@@ -0,0 +1,184 @@
+package org.opennms.features.rest.demo.ratelimit;
+
+import java.security.Principal;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.apache.cxf.jaxrs.ext.RequestHandler;
+import org.apache.cxf.jaxrs.ext.ResponseHandler;
+import org.apache.cxf.jaxrs.model.ClassResourceInfo;
+import org.apache.cxf.jaxrs.model.OperationResourceInfo;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.security.SecurityContext;
+import org.apache.cxf.transport.http.AbstractHTTPDestination;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * per client and per resource rate limiting in front of the resource beans
+ * 
+ * clients are identified by the authenticated user or, if there is none, the remote address
+ * every (client, resource) pair gets its own {@link TokenBucket}, requests without a token
+ * are answered with 429 Too Many Requests
+ * 
+ * the number of buckets is bounded by maxBuckets, idle buckets (full for longer than idleTimeout)
+ * are evicted when the limit is reached, clients which still don't fit share one overflow bucket
+ *
+ */
+public class RateLimitHandler implements RequestHandler, ResponseHandler {
+
+    public static final String LIMIT_HEADER = "X-RateLimit-Limit";
+    public static final String REMAINING_HEADER = "X-RateLimit-Remaining";
+    public static final String RESET_HEADER = "X-RateLimit-Reset";
+    public static final int TOO_MANY_REQUESTS = 429;
+
+    private static final String BUCKET_KEY = RateLimitHandler.class.getName() + ".bucket";
+    private static final String OVERFLOW_CLIENT = "*";
+    private static final long EVICTION_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private static Logger logger = LoggerFactory.getLogger(RateLimitHandler.class);
+
+    private final ConcurrentMap<String, TokenBucket> buckets = new ConcurrentHashMap<String, TokenBucket>();
+    private final ConcurrentMap<String, TokenBucket> overflowBuckets = new ConcurrentHashMap<String, TokenBucket>();
+    private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+    private RateLimit defaultLimit = new RateLimit();
+    private Map<String, RateLimit> limits = new HashMap<String, RateLimit>();
+    private int maxBuckets = 10000;
+    private long idleTimeoutNanos = TimeUnit.MINUTES.toNanos(10);
+    private boolean enabled = true;
+
+    public void setDefaultLimit(RateLimit defaultLimit) {
+        this.defaultLimit = defaultLimit;
+    }
+
+    /**
+     * @param limits - resource path (ex - /events) -> limit
+     */
+    public void setLimits(Map<String, RateLimit> limits) {
+        this.limits = new HashMap<String, RateLimit>(limits);
+    }
+
+    /**
+     * upper bound of tracked (client, resource) pairs
+     * @param maxBuckets
+     */
+    public void setMaxBuckets(int maxBuckets) {
+        this.maxBuckets = maxBuckets;
+    }
+
+    /**
+     * @param idleTimeoutSeconds - a full bucket untouched this long may be evicted
+     */
+    public void setIdleTimeoutSeconds(long idleTimeoutSeconds) {
+        this.idleTimeoutNanos = TimeUnit.SECONDS.toNanos(idleTimeoutSeconds);
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Response handleRequest(Message m, ClassResourceInfo resourceClass) {
+        if (!enabled || resourceClass == null) {
+            return null;
+        }
+        final String resource = resourceClass.getURITemplate().getValue();
+        final String client = getClient(m);
+        final long now = System.nanoTime();
+        final TokenBucket bucket = getBucket(client, resource, now);
+        m.getExchange().put(BUCKET_KEY, bucket);
+
+        if (bucket.tryAcquire(now)) {
+            return null;
+        }
+        logger.debug("rate limit of {} exceeded by {}", resource, client);
+        final long retryAfter = Math.max(TimeUnit.NANOSECONDS.toSeconds(bucket.getNanosUntilNextToken(now)), 1);
+        return addHeaders(Response.status(TOO_MANY_REQUESTS), bucket, now)
+                .header("Retry-After", retryAfter)
+                .type(MediaType.TEXT_PLAIN)
+                .entity("Rate limit of " + bucket.getCapacity() + " requests exceeded for " + resource + ", retry after " + retryAfter + "s")
+                .build();
+    }
+
+    public Response handleResponse(Message m, OperationResourceInfo ori, Response response) {
+        final TokenBucket bucket = (TokenBucket) m.getExchange().get(BUCKET_KEY);
+        if (bucket == null || response == null || response.getStatus() == TOO_MANY_REQUESTS) {
+            return response;
+        }
+        return addHeaders(Response.fromResponse(response), bucket, System.nanoTime()).build();
+    }
+
+    /**
+     * @return number of tracked buckets
+     */
+    public int getBucketCount() {
+        return buckets.size();
+    }
+
+    private static Response.ResponseBuilder addHeaders(Response.ResponseBuilder builder, TokenBucket bucket, long now) {
+        return builder.header(LIMIT_HEADER, bucket.getCapacity())
+                .header(REMAINING_HEADER, bucket.getRemaining(now))
+                .header(RESET_HEADER, (long) Math.ceil(bucket.getNanosUntilFull(now) / 1e9));
+    }
+
+    private TokenBucket getBucket(String client, String resource, long now) {
+        final String key = client + "|" + resource;
+        TokenBucket bucket = buckets.get(key);
+        if (bucket != null) {
+            return bucket;
+        }
+        if (buckets.size() >= maxBuckets) {
+            evictIdle(now);
+            if (buckets.size() >= maxBuckets) {
+                logger.warn("rate limiter tracks {} clients, {} shares the overflow bucket", buckets.size(), client);
+                return putIfAbsent(overflowBuckets, OVERFLOW_CLIENT + "|" + resource, resource, now);
+            }
+        }
+        return putIfAbsent(buckets, key, resource, now);
+    }
+
+    private TokenBucket putIfAbsent(ConcurrentMap<String, TokenBucket> map, String key, String resource, long now) {
+        final RateLimit limit = limits.containsKey(resource) ? limits.get(resource) : defaultLimit;
+        final TokenBucket created = new TokenBucket(limit.getCapacity(), limit.getRefillPerSecond(), now);
+        final TokenBucket existing = map.putIfAbsent(key, created);
+        return existing == null ? created : existing;
+    }
+
+    /**
+     * sweeps at most once per second, so a flood of new clients can't turn every request into a full scan
+     */
+    private void evictIdle(long now) {
+        final long last = lastEviction.get();
+        if (now - last < EVICTION_INTERVAL_NANOS || !lastEviction.compareAndSet(last, now)) {
+            return;
+        }
+        for (Iterator<TokenBucket> it = buckets.values().iterator(); it.hasNext();) {
+            if (it.next().isIdle(now, idleTimeoutNanos)) {
+                it.remove();
+            }
+        }
+    }
+
+    private static String getClient(Message m) {
+        final SecurityContext securityContext = m.get(SecurityContext.class);
+        if (securityContext != null) {
+            final Principal principal = securityContext.getUserPrincipal();
+            if (principal != null) {
+                return "user:" + principal.getName();
+            }
+        }
+        final HttpServletRequest request = (HttpServletRequest) m.get(AbstractHTTPDestination.HTTP_REQUEST);
+        if (request != null) {
+            return "addr:" + request.getRemoteAddr();
+        }
+        return OVERFLOW_CLIENT;
+    }
+}
@@ -0,0 +1,81 @@
+package org.opennms.features.rest.demo.ratelimit;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * lock free token bucket
+ * 
+ * the bucket is kept as a single "theoretical arrival time" (GCRA), which is equivalent to
+ * a token bucket of the given capacity refilled at a constant rate but needs only one CAS per request
+ *
+ */
+public class TokenBucket {
+
+    private final long capacity;
+    private final long nanosPerToken;
+    private final long burstNanos;
+    private final AtomicLong arrival;
+
+    /**
+     * @param capacity - maximum number of tokens (burst size)
+     * @param tokensPerSecond - refill rate
+     * @param nowNanos - creation time, the bucket starts full
+     */
+    public TokenBucket(long capacity, double tokensPerSecond, long nowNanos) {
+        this.capacity = capacity;
+        this.nanosPerToken = (long) (1000000000L / tokensPerSecond);
+        this.burstNanos = capacity * nanosPerToken;
+        this.arrival = new AtomicLong(nowNanos);
+    }
+
+    /**
+     * take one token
+     * @param nowNanos
+     * @return true if a token was available
+     */
+    public boolean tryAcquire(long nowNanos) {
+        while (true) {
+            final long current = arrival.get();
+            final long next = Math.max(current, nowNanos) + nanosPerToken;
+            if (next - nowNanos > burstNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * @return tokens currently available
+     */
+    public long getRemaining(long nowNanos) {
+        final long used = Math.max(arrival.get() - nowNanos, 0);
+        return Math.max(capacity - (used + nanosPerToken - 1) / nanosPerToken, 0);
+    }
+
+    /**
+     * @return nanoseconds until the next token is available, 0 if one is available now
+     */
+    public long getNanosUntilNextToken(long nowNanos) {
+        return Math.max(arrival.get() + nanosPerToken - burstNanos - nowNanos, 0);
+    }
+
+    /**
+     * @return nanoseconds until the bucket is full again
+     */
+    public long getNanosUntilFull(long nowNanos) {
+        return Math.max(arrival.get() - nowNanos, 0);
+    }
+
+    /**
+     * @return true if the bucket has been full for at least idleNanos and can be dropped
+     */
+    public boolean isIdle(long nowNanos, long idleNanos) {
+        return nowNanos - arrival.get() > idleNanos;
+    }
+
+    public long getCapacity() {
+        return capacity;
+    }
+}
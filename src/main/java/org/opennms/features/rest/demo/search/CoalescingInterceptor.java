@@ -0,0 +1,88 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import javax.ws.rs.core.Response;
+
+import org.opennms.features.rest.demo.exception.DeadlineExceededException;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.util.SingleFlight;
+
+/**
+ * execute stage interceptor sharing one DAO execution between identical concurrent searches
+ * 
+ * searches are identical when their normalized query key (entity, FIQL query, limit, offset, order)
+ * is equal, waiters give up after timeoutMillis with 503 Service Unavailable
+ * or earlier when their own deadline passes
+ * 
+ * the shared execution runs under the deadline of the search which started it,
+ * if that deadline cancels it the waiters with time left run the search again instead of inheriting the failure
+ *
+ */
+public class CoalescingInterceptor extends SearchInterceptorAdapter {
+
+    private final SingleFlight<String, List<?>> singleFlight = new SingleFlight<String, List<?>>();
+    private long timeoutMillis = 10000;
+
+    /**
+     * @param timeoutMillis - maximum time to wait for the result of an identical search
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> List<T> execute(final SearchContext<T> ctx, final ExecutionChain<T> chain) throws Exception {
+        final Callable<List<?>> execution = new Callable<List<?>>() {
+            public List<?> call() throws Exception {
+                try {
+                    return chain.proceed(ctx);
+                } catch (SearchException e) {
+                    throw e;
+                } catch (Exception e) {
+                    if (ctx.isExpired()) {    //cancelled by the deadline of this search, tell the waiters apart from other failures
+                        throw new DeadlineExceededException(ctx.getTimeoutMillis(), e);
+                    }
+                    throw e;
+                }
+            }
+        };
+        while (true) {
+            final long waitMillis = ctx.hasDeadline() ? Math.max(1, Math.min(timeoutMillis, ctx.getRemainingMillis())) : timeoutMillis;
+            try {
+                final List<?> results = singleFlight.execute(ctx.getQueryKey(), execution, waitMillis, TimeUnit.MILLISECONDS);
+                return new ArrayList<T>((List<T>) results);    //every caller gets its own list
+            } catch (DeadlineExceededException e) {
+                if (ctx.isExpired()) {
+                    throw e;
+                }
+                //deadline of the search which ran the shared execution, run it again (or join a newer one)
+            } catch (TimeoutException e) {
+                if (ctx.isExpired()) {
+                    throw new DeadlineExceededException(ctx.getTimeoutMillis(), e);
+                }
+                throw new SearchException(Response.Status.SERVICE_UNAVAILABLE, "Timed out after " + timeoutMillis
+                                          + "ms waiting for an identical search to complete", e);
+            }
+        }
+    }
+
+    /**
+     * @return number of searches which were executed against the DAO
+     */
+    public long getExecutions() {
+        return singleFlight.getExecutions();
+    }
+
+    /**
+     * @return number of searches which were answered with the result of a concurrent identical search
+     */
+    public long getCoalesced() {
+        return singleFlight.getShared();
+    }
+}
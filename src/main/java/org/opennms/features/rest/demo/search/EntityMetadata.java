@@ -0,0 +1,142 @@
+package org.opennms.features.rest.demo.search;
+
+import java.beans.IntrospectionException;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
+import java.lang.reflect.Method;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.persistence.Transient;
+
+/**
+ * persistent properties of an entity class, computed once per class by introspection
+ * 
+ * collection valued properties are mapped to their element type,
+ * so paths like "ipInterfaces.ipAddress" can be resolved
+ *
+ */
+public class EntityMetadata {
+
+    private static final ConcurrentMap<Class<?>, EntityMetadata> CACHE = new ConcurrentHashMap<Class<?>, EntityMetadata>();
+
+    private final Class<?> entityClass;
+    private final Map<String, Class<?>> properties;
+    private final Map<String, Method> getters = new TreeMap<String, Method>();
+
+    private EntityMetadata(Class<?> entityClass) {
+        this.entityClass = entityClass;
+        this.properties = Collections.unmodifiableMap(introspect(entityClass, getters));
+    }
+
+    /**
+     * @param entityClass
+     * @return the cached metadata of the class
+     */
+    public static EntityMetadata forClass(Class<?> entityClass) {
+        EntityMetadata metadata = CACHE.get(entityClass);
+        if (metadata == null) {
+            metadata = new EntityMetadata(entityClass);
+            EntityMetadata existing = CACHE.putIfAbsent(entityClass, metadata);
+            if (existing != null) {
+                metadata = existing;
+            }
+        }
+        return metadata;
+    }
+
+    public Class<?> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return property names in alphabetical order
+     */
+    public Set<String> getPropertyNames() {
+        return properties.keySet();
+    }
+
+    /**
+     * @param property
+     * @return type of the property (element type for collections), null if there is no such persistent property
+     */
+    public Class<?> getPropertyType(String property) {
+        return properties.get(property);
+    }
+
+    /**
+     * resolve a dotted path, ex - "node.label"
+     * @param path
+     * @return type at the end of the path, null if a segment does not exist
+     */
+    public Class<?> resolve(String path) {
+        EntityMetadata current = this;
+        Class<?> type = null;
+        for (String segment : path.split("\\.")) {
+            if (current == null) {
+                return null;
+            }
+            type = current.getPropertyType(segment);
+            if (type == null) {
+                return null;
+            }
+            current = isNavigable(type) ? forClass(type) : null;
+        }
+        return type;
+    }
+
+    private static boolean isNavigable(Class<?> type) {
+        return !type.isPrimitive() && !type.isEnum() && !type.getName().startsWith("java.");
+    }
+
+    /**
+     * @param property
+     * @return getter of a persistent property, null if there is no such property
+     */
+    public Method getGetter(String property) {
+        return getters.get(property);
+    }
+
+    private static Map<String, Class<?>> introspect(Class<?> entityClass, Map<String, Method> getters) {
+        final Map<String, Class<?>> result = new TreeMap<String, Class<?>>();
+        try {
+            for (PropertyDescriptor descriptor : Introspector.getBeanInfo(entityClass, Object.class).getPropertyDescriptors()) {
+                final Method getter = descriptor.getReadMethod();
+                if (getter == null || getter.isAnnotationPresent(Transient.class)) {
+                    continue;
+                }
+                result.put(descriptor.getName(), propertyType(getter));
+                getters.put(descriptor.getName(), getter);
+            }
+        } catch (IntrospectionException e) {
+            throw new IllegalStateException("Unable to introspect " + entityClass.getName(), e);
+        }
+        return result;
+    }
+
+    private static Class<?> propertyType(Method getter) {
+        if (Collection.class.isAssignableFrom(getter.getReturnType())) {
+            final Type generic = getter.getGenericReturnType();
+            if (generic instanceof ParameterizedType) {
+                final Type element = ((ParameterizedType) generic).getActualTypeArguments()[0];
+                if (element instanceof Class) {
+                    return (Class<?>) element;
+                }
+            }
+            return Object.class;
+        }
+        return getter.getReturnType();
+    }
+
+    @Override
+    public String toString() {
+        return "EntityMetadata [" + entityClass.getSimpleName() + " " + properties.keySet() + "]";
+    }
+}
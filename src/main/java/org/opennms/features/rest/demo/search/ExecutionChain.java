@@ -0,0 +1,19 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.List;
+
+/**
+ * remaining part of the execute stage, ending with the DAO call
+ *
+ * @param <T> entity type
+ */
+public interface ExecutionChain<T> {
+
+    /**
+     * pass the search on to the next interceptor, or the DAO
+     * @param ctx
+     * @return
+     * @throws Exception
+     */
+    List<T> proceed(SearchContext<T> ctx) throws Exception;
+}
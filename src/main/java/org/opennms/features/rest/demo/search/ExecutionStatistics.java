@@ -0,0 +1,127 @@
+package org.opennms.features.rest.demo.search;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * rows, latency and heap allocation of the queries run by the {@link SearchEngine}
+ * split by entity and session mode (readOnly or dao)
+ * 
+ * the heap figure is the memory allocated by the executing thread while the rows are loaded,
+ * it includes the snapshot copies hibernate keeps for dirty checking in the dao mode
+ * and is only available on JVMs supporting thread allocation counters
+ * (com.sun.management.ThreadMXBean, looked up reflectively so the bundle resolves on every JVM)
+ *
+ */
+public class ExecutionStatistics implements ExecutionStatisticsMBean {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final Method ALLOCATED_BYTES = allocatedBytesMethod();
+
+    private final ConcurrentMap<String, Counter> counters = new ConcurrentHashMap<String, Counter>();
+    private volatile boolean readOnly = true;
+
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    public void setReadOnly(boolean readOnly) {
+        this.readOnly = readOnly;
+    }
+
+    /**
+     * @return bytes allocated by the current thread so far, -1 if not supported
+     */
+    public long allocatedBytes() {
+        if (ALLOCATED_BYTES == null) {
+            return -1;
+        }
+        try {
+            return (Long) ALLOCATED_BYTES.invoke(THREADS, Thread.currentThread().getId());
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * @param entity
+     * @param readOnly - mode the query ran in
+     * @param rows
+     * @param nanos
+     * @param allocatedBytes - difference of two {@link #allocatedBytes()} calls, negative if not supported
+     */
+    public void record(String entity, boolean readOnly, int rows, long nanos, long allocatedBytes) {
+        final String key = entity + (readOnly ? " readOnly" : " dao");
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        counter.record(rows, nanos, allocatedBytes);
+    }
+
+    public String[] getStatistics() {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        Collections.sort(lines);
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    public void reset() {
+        counters.clear();
+    }
+
+    /**
+     * @return getThreadAllocatedBytes(long) of the platform thread bean, null if the JVM has no allocation counters
+     */
+    private static Method allocatedBytesMethod() {
+        try {
+            final Class<?> extension = Class.forName("com.sun.management.ThreadMXBean", false, ExecutionStatistics.class.getClassLoader());
+            if (!extension.isInstance(THREADS) || !(Boolean) extension.getMethod("isThreadAllocatedMemorySupported").invoke(THREADS)) {
+                return null;
+            }
+            extension.getMethod("setThreadAllocatedMemoryEnabled", boolean.class).invoke(THREADS, true);
+            return extension.getMethod("getThreadAllocatedBytes", long.class);
+        } catch (Throwable e) {     //class not visible or not supported by this JVM
+            return null;
+        }
+    }
+
+    private static class Counter {
+        private final AtomicLong queries = new AtomicLong();
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong allocatedBytes = new AtomicLong();
+
+        public void record(int rowCount, long nanos, long bytes) {
+            queries.incrementAndGet();
+            rows.addAndGet(rowCount);
+            totalNanos.addAndGet(nanos);
+            if (bytes > 0) {
+                allocatedBytes.addAndGet(bytes);
+            }
+        }
+
+        @Override
+        public String toString() {
+            final long rowCount = Math.max(1, rows.get());
+            return String.format(Locale.ROOT, "queries=%d rows=%d totalMs=%.3f msPerRow=%.4f allocatedBytes=%d bytesPerRow=%d",
+                                 queries.get(), rows.get(), totalNanos.get() / 1000000.0, totalNanos.get() / 1000000.0 / rowCount,
+                                 allocatedBytes.get(), allocatedBytes.get() / rowCount);
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package org.opennms.features.rest.demo.search;
+
+/**
+ * management interface of {@link ExecutionStatistics}
+ *
+ */
+public interface ExecutionStatisticsMBean {
+
+    /**
+     * @return one line per entity and session mode:
+     * "OnmsEvent readOnly queries=.. rows=.. totalMs=.. msPerRow=.. allocatedBytes=.. bytesPerRow=.."
+     */
+    String[] getStatistics();
+
+    /**
+     * @return true if searches run in read-only sessions
+     */
+    boolean isReadOnly();
+
+    /**
+     * switch between read-only sessions and the DAO, to compare both modes on the same load
+     */
+    void setReadOnly(boolean readOnly);
+
+    void reset();
+}
@@ -0,0 +1,36 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.List;
+
+import javax.ws.rs.core.Response;
+
+/**
+ * execute stage interceptor answering searches from the in-memory views of the resources
+ * see {@link SearchDefinition#findInMemory(SearchContext)}
+ * 
+ * searches served from memory skip the rest of the chain and
+ * are marked with the X-Served-From: memory header
+ *
+ */
+public class InMemoryInterceptor extends SearchInterceptorAdapter {
+
+    public static final String SERVED_FROM_HEADER = "X-Served-From";
+    public static final String MEMORY_ATTRIBUTE = "servedFromMemory";
+
+    @Override
+    public <T> List<T> execute(SearchContext<T> ctx, ExecutionChain<T> chain) throws Exception {
+        final List<T> results = ctx.getDefinition().findInMemory(ctx);
+        if (results == null) {
+            return chain.proceed(ctx);
+        }
+        ctx.setAttribute(MEMORY_ATTRIBUTE, Boolean.TRUE);
+        return results;
+    }
+
+    @Override
+    public void afterSerialize(SearchContext<?> ctx) {
+        if (ctx.getAttribute(MEMORY_ATTRIBUTE) != null) {
+            ctx.setResponse(Response.fromResponse(ctx.getResponse()).header(SERVED_FROM_HEADER, "memory").build());
+        }
+    }
+}
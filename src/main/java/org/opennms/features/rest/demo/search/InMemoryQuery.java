@@ -0,0 +1,236 @@
+package org.opennms.features.rest.demo.search;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.Order;
+import org.opennms.features.rest.demo.util.Comparison;
+
+/**
+ * evaluates a decoded search against entities held in memory
+ * used by the in-memory views of the resources and to merge partial results
+ * 
+ * a search can be evaluated if it only combines comparisons with AND,
+ * every compared and ordered property is a property path of the entity (ex - lastEventTime, node.id)
+ * and the converted compare values have the type of the property
+ *
+ */
+public final class InMemoryQuery {
+
+    private InMemoryQuery() {
+    }
+
+    /**
+     * @param ctx - search after the parse stage
+     * @param properties - properties the caller keeps current in memory
+     * @return true if {@link #evaluate(Collection, SearchContext)} returns the same rows as the database
+     */
+    public static boolean isSupported(SearchContext<?> ctx, Set<String> properties) {
+        if (ctx.getDecoder() == null || !ctx.getDecoder().isConjunctive() || ctx.getCriteria().getLimit() == null) {
+            return false;
+        }
+        final EntityMetadata metadata = ctx.getDefinition().getMetadata();
+        for (Comparison comparison : ctx.getDecoder().getComparisons()) {
+            if (!properties.contains(comparison.getProperty())) {
+                return false;
+            }
+            final List<Method> getters = accessor(metadata, comparison.getProperty());
+            if (getters == null || (comparison.getCompareValue() != null
+                    && !(boxed(last(getters).getReturnType()).isInstance(comparison.getCompareValue()) && comparison.getCompareValue() instanceof Comparable))) {
+                return false;
+            }
+        }
+        for (Order order : ctx.getCriteria().getOrders()) {
+            if (!properties.contains(order.getAttribute())) {
+                return false;
+            }
+        }
+        return comparatorOf(metadata, ctx.getCriteria()) != null;
+    }
+
+    /**
+     * filter, sort and page the given entities like the database would
+     * @param entities
+     * @param ctx - a supported search
+     * @return
+     */
+    public static <T> List<T> evaluate(Collection<T> entities, SearchContext<T> ctx) {
+        final EntityMetadata metadata = ctx.getDefinition().getMetadata();
+        final Filter filter = filterOf(metadata, ctx.getDecoder().getComparisons());
+        final List<T> result = new ArrayList<T>();
+        for (T entity : entities) {
+            if (filter.matches(entity)) {
+                result.add(entity);
+            }
+        }
+        Collections.sort(result, comparatorOf(metadata, ctx.getCriteria()));
+        return page(result, ctx.getCriteria());
+    }
+
+    /**
+     * apply offset and limit of the criteria to a sorted list
+     */
+    public static <T> List<T> page(List<T> sorted, Criteria crit) {
+        final int offset = Math.min(crit.getOffset() == null ? 0 : crit.getOffset(), sorted.size());
+        final int end = crit.getLimit() == null ? sorted.size() : (int) Math.min((long) offset + crit.getLimit(), sorted.size());
+        return new ArrayList<T>(sorted.subList(offset, end));
+    }
+
+    /**
+     * @param metadata
+     * @param comparisons - comparisons of a supported search
+     * @return filter accepting the entities which satisfy all comparisons
+     */
+    public static Filter filterOf(EntityMetadata metadata, List<Comparison> comparisons) {
+        final List<List<Method>> accessors = new ArrayList<List<Method>>();
+        for (Comparison comparison : comparisons) {
+            accessors.add(accessor(metadata, comparison.getProperty()));
+        }
+        return new Filter(new ArrayList<Comparison>(comparisons), accessors);
+    }
+
+    /**
+     * comparator reproducing the order of the criteria, nulls sort last like in PostgreSQL
+     * @return null if an order attribute is not a comparable property of the entity
+     */
+    public static Comparator<Object> comparatorOf(EntityMetadata metadata, Criteria crit) {
+        final List<List<Method>> accessors = new ArrayList<List<Method>>();
+        final List<Boolean> ascending = new ArrayList<Boolean>();
+        for (Order order : crit.getOrders()) {
+            final List<Method> getters = accessor(metadata, order.getAttribute());
+            if (getters == null || !Comparable.class.isAssignableFrom(boxed(last(getters).getReturnType()))) {
+                return null;
+            }
+            accessors.add(getters);
+            ascending.add(order.asc());
+        }
+        return new Comparator<Object>() {
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            public int compare(Object a, Object b) {
+                for (int i = 0; i < accessors.size(); i++) {
+                    final Comparable left = (Comparable) read(accessors.get(i), a);
+                    final Comparable right = (Comparable) read(accessors.get(i), b);
+                    int result;
+                    if (left == null || right == null) {
+                        result = left == right ? 0 : (left == null ? 1 : -1);
+                    } else {
+                        result = left.compareTo(right);
+                    }
+                    if (result != 0) {
+                        return ascending.get(i) ? result : -result;
+                    }
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * @param path - ex - "node.id"
+     * @return getters to follow, null if the path does not exist
+     */
+    private static List<Method> accessor(EntityMetadata metadata, String path) {
+        final List<Method> getters = new ArrayList<Method>();
+        EntityMetadata current = metadata;
+        for (String segment : path.split("\\.")) {
+            final Method getter = current == null ? null : current.getGetter(segment);
+            if (getter == null || Collection.class.isAssignableFrom(getter.getReturnType())) {
+                return null;
+            }
+            getters.add(getter);
+            current = getter.getReturnType().isPrimitive() ? null : EntityMetadata.forClass(getter.getReturnType());
+        }
+        return getters;
+    }
+
+    /**
+     * follow the getters, null as soon as a step returns null
+     */
+    private static Object read(List<Method> getters, Object entity) {
+        Object value = entity;
+        for (Method getter : getters) {
+            if (value == null) {
+                return null;
+            }
+            try {
+                value = getter.invoke(value);
+            } catch (Exception e) {
+                throw new IllegalStateException("Unable to read " + getter.getName() + " of " + value, e);
+            }
+        }
+        return value;
+    }
+
+    private static Method last(List<Method> getters) {
+        return getters.get(getters.size() - 1);
+    }
+
+    private static Class<?> boxed(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return type;
+        } else if (type == int.class) {
+            return Integer.class;
+        } else if (type == long.class) {
+            return Long.class;
+        } else if (type == boolean.class) {
+            return Boolean.class;
+        } else if (type == double.class) {
+            return Double.class;
+        } else if (type == float.class) {
+            return Float.class;
+        } else if (type == short.class) {
+            return Short.class;
+        } else if (type == byte.class) {
+            return Byte.class;
+        }
+        return Character.class;
+    }
+
+    /**
+     * conjunction of comparisons evaluated against entities
+     */
+    public static final class Filter {
+        private final List<Comparison> comparisons;
+        private final List<List<Method>> accessors;
+
+        private Filter(List<Comparison> comparisons, List<List<Method>> accessors) {
+            this.comparisons = comparisons;
+            this.accessors = accessors;
+        }
+
+        /**
+         * @return true if the entity satisfies all comparisons
+         */
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        public boolean matches(Object entity) {
+            for (int i = 0; i < comparisons.size(); i++) {
+                final Comparison comparison = comparisons.get(i);
+                final Object value = read(accessors.get(i), entity);
+                if (comparison.getCompareValue() == null) {     //null / notNull checks
+                    final boolean wantNull = Comparison.EQ.equals(comparison.getOperator()) == "null".equalsIgnoreCase(comparison.getValue());
+                    if ((value == null) != wantNull) {
+                        return false;
+                    }
+                    continue;
+                }
+                if (value == null) {    //SQL comparisons with null are never true
+                    return false;
+                }
+                final int result = ((Comparable) value).compareTo(comparison.getCompareValue());
+                final String operator = comparison.getOperator();
+                if ((Comparison.EQ.equals(operator) && result != 0) || (Comparison.NE.equals(operator) && result == 0)
+                        || (Comparison.LT.equals(operator) && result >= 0) || (Comparison.LE.equals(operator) && result > 0)
+                        || (Comparison.GT.equals(operator) && result <= 0) || (Comparison.GE.equals(operator) && result < 0)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package org.opennms.features.rest.demo.search;
+
+import java.text.ParseException;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.features.rest.demo.util.Comparison;
+import org.opennms.features.rest.demo.util.PropertyRestriction;
+import org.opennms.netmgt.model.OnmsCategory;
+
+/**
+ * restriction of "node.categories" for entities referencing a node (events, alarms)
+ *
+ * the category names are resolved to ids and compared with a membership subquery on category_node,
+ * so the node and its categories are not joined and every row is returned once however many categories match
+ * == and =in= match rows whose node is in one of the categories, != and =out= rows whose node is in none of them
+ * rows without a node never match (a null node id is neither in nor not in the subquery)
+ *
+ */
+public abstract class NodeCategoryRestriction implements PropertyRestriction {
+
+    private final String nodeIdColumn;
+
+    /**
+     * @param nodeIdColumn - column of the queried table referencing the node, ex - "nodeId"
+     */
+    protected NodeCategoryRestriction(String nodeIdColumn) {
+        this.nodeIdColumn = nodeIdColumn;
+    }
+
+    /**
+     * @param name
+     * @return the category, null if there is none with this name
+     */
+    protected abstract OnmsCategory findCategory(String name);
+
+    public Restriction create(String propertyName, String operator, String[] values) throws ParseException {
+        final boolean negated;
+        if (operator.equals(Comparison.EQ) || operator.equals(Comparison.IN)) {
+            negated = false;
+        } else if (operator.equals(Comparison.NE) || operator.equals(Comparison.OUT)) {
+            negated = true;
+        } else {
+            throw new ParseException("Please compare " + propertyName + " with ==, !=, =in= or =out= instead of =" + operator + "=", 0);
+        }
+        final Set<Integer> categoryIds = new LinkedHashSet<Integer>();
+        for (String value : values) {
+            final OnmsCategory category = findCategory(value);
+            if (category == null) {                                             // invalid category specified
+                throw new ParseException("Please specify a valid category instead of \"" + value + "\"", 0);
+            }
+            categoryIds.add(category.getId());
+        }
+        final StringBuilder ids = new StringBuilder();
+        for (Integer categoryId : categoryIds) {
+            ids.append(ids.length() == 0 ? "" : ",").append(categoryId);
+        }
+        return Restrictions.sql("{alias}." + nodeIdColumn + (negated ? " not in" : " in")
+                + " (select cn.nodeId from category_node cn where cn.categoryId in (" + ids + "))");
+    }
+}
@@ -0,0 +1,218 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Response;
+
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.Order;
+import org.opennms.features.rest.demo.util.QueryDecoder;
+
+/**
+ * state of a single search while it passes through the pipeline
+ *
+ * @param <T> entity type
+ */
+public class SearchContext<T> {
+
+    private final SearchDefinition<T> definition;
+    private final SearchRequest request;
+    private final long startNanos = System.nanoTime();
+    private final Map<Stage, Long> stageNanos = new EnumMap<Stage, Long>(Stage.class);
+    private final Map<String, Object> attributes = new HashMap<String, Object>();
+
+    private QueryDecoder decoder;
+    private Criteria criteria;
+    private boolean streaming;
+    private List<T> results;
+    private Response response;
+    private Exception failure;
+    private long timeoutMillis = 0;
+    private long deadlineNanos = Long.MAX_VALUE;
+
+    public SearchContext(SearchDefinition<T> definition, SearchRequest request) {
+        this.definition = definition;
+        this.request = request;
+        this.streaming = request.isStreaming();
+    }
+
+    public SearchDefinition<T> getDefinition() {
+        return definition;
+    }
+
+    public SearchRequest getRequest() {
+        return request;
+    }
+
+    public QueryDecoder getDecoder() {
+        return decoder;
+    }
+
+    public void setDecoder(QueryDecoder decoder) {
+        this.decoder = decoder;
+    }
+
+    public Criteria getCriteria() {
+        return criteria;
+    }
+
+    public void setCriteria(Criteria criteria) {
+        this.criteria = criteria;
+    }
+
+    /**
+     * @return true if the results are streamed as NDJSON instead of executed through the DAO
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    public void setStreaming(boolean streaming) {
+        this.streaming = streaming;
+    }
+
+    public List<T> getResults() {
+        return results;
+    }
+
+    public void setResults(List<T> results) {
+        this.results = results;
+    }
+
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * setting a response during parse or plan skips the remaining stages
+     * @param response
+     */
+    public void setResponse(Response response) {
+        this.response = response;
+    }
+
+    public Exception getFailure() {
+        return failure;
+    }
+
+    public void setFailure(Exception failure) {
+        this.failure = failure;
+    }
+
+    /**
+     * normalized identity of the search after the parse and plan stages
+     * two searches with equal keys return the same results
+     * 
+     * built from the decoded query and the criteria, so reordered or differently written but equal queries share a key
+     * 
+     * @return ex - "OnmsAlarm?_s=severity=ge=6&limit=10&offset=0&orderBy=lastEventTime asc"
+     */
+    public String getQueryKey() {
+        final StringBuilder key = new StringBuilder(definition.getName())
+            .append("?_s=").append(decoder == null ? "" : decoder.getCanonicalQuery())
+            .append("&limit=").append(criteria.getLimit())
+            .append("&offset=").append(criteria.getOffset())
+            .append("&orderBy=");
+        boolean first = true;
+        for (Order order : criteria.getOrders()) {
+            key.append(first ? "" : ",").append(order.getAttribute()).append(order.asc() ? " asc" : " desc");
+            first = false;
+        }
+        return key.toString();
+    }
+
+    /**
+     * add the time spent in a stage
+     */
+    public void recordStage(Stage stage, long nanos) {
+        Long previous = stageNanos.get(stage);
+        stageNanos.put(stage, previous == null ? nanos : previous + nanos);
+    }
+
+    /**
+     * @return stage -> nanoseconds, only for stages which were entered
+     */
+    public Map<Stage, Long> getStageNanos() {
+        return stageNanos;
+    }
+
+    /**
+     * @return nanoseconds since the search started
+     */
+    public long getElapsedNanos() {
+        return System.nanoTime() - startNanos;
+    }
+
+    /**
+     * limit the search to timeoutMillis after it started
+     * @param timeoutMillis
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+        this.deadlineNanos = startNanos + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+    }
+
+    /**
+     * @return timeout of the search, 0 without deadline
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public boolean hasDeadline() {
+        return timeoutMillis > 0;
+    }
+
+    /**
+     * @return milliseconds until the deadline, 0 once it has passed, Long.MAX_VALUE without deadline
+     */
+    public long getRemainingMillis() {
+        if (!hasDeadline()) {
+            return Long.MAX_VALUE;
+        }
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return hasDeadline() && System.nanoTime() - deadlineNanos >= 0;
+    }
+
+    /**
+     * sub searches (ex - time partitions) run under the deadline of the search they belong to
+     * @param parent
+     */
+    public void inheritDeadline(SearchContext<?> parent) {
+        this.timeoutMillis = parent.timeoutMillis;
+        this.deadlineNanos = parent.deadlineNanos;
+    }
+
+    /**
+     * data shared between interceptors
+     */
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public void setAttribute(String name, Object value) {
+        attributes.put(name, value);
+    }
+
+    /**
+     * @return "parse;dur=0.120, plan;dur=0.004, ..." in milliseconds
+     */
+    public String formatStageTimings() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Stage, Long> entry : stageNanos.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(entry.getKey().label()).append(";dur=").append(String.format(Locale.ROOT, "%.3f", entry.getValue() / 1000000.0));
+        }
+        return sb.toString();
+    }
+}
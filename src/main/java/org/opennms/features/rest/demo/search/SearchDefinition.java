@@ -0,0 +1,406 @@
+package org.opennms.features.rest.demo.search;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.opennms.core.criteria.Alias;
+import org.opennms.core.criteria.Alias.JoinType;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.CriteriaBuilder;
+import org.opennms.features.rest.demo.util.PropertyRestriction;
+import org.opennms.features.rest.demo.util.QueryDecoder;
+import org.opennms.netmgt.dao.api.OnmsDao;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * everything the {@link SearchEngine} has to know about a searchable entity
+ * entity type, DAO, default ordering, joined aliases and property metadata
+ * 
+ * resources declare their definition as an anonymous subclass, ex -
+ * 
+ * new SearchDefinition<OnmsOutage>(OnmsOutage.class, "id", "desc") {
+ *     {
+ *         orderBy("id", false);
+ *         properties(ValueConverters.DATE, "ifLostService", "ifRegainedService");
+ *     }
+ *     public OnmsDao<OnmsOutage, Integer> getDao() { return outageDao; }
+ *     public Object createCollection(List<OnmsOutage> results) { return new OnmsOutageCollection(results); }
+ * };
+ *
+ * @param <T> entity type
+ */
+public abstract class SearchDefinition<T> {
+
+    private static Logger logger = LoggerFactory.getLogger(SearchDefinition.class);
+
+    private final Class<T> entityClass;
+    private final EntityMetadata metadata;
+    private final String defaultOrderBy;
+    private final String defaultOrder;
+    private String defaultLimit = "10";
+    private boolean streamable = false;
+
+    private final List<String[]> aliases = new ArrayList<String[]>();
+    private final List<JoinType> joinTypes = new ArrayList<JoinType>();
+    private final Map<String, Alias> lazyAliases = new LinkedHashMap<String, Alias>();
+    private final Map<String, PropertyRestriction> restrictions = new HashMap<String, PropertyRestriction>();
+    private final Map<String, String> synonyms = new HashMap<String, String>();
+    private final Map<String, Boolean> orders = new LinkedHashMap<String, Boolean>();
+    private final Map<String, ValueConverter> converters = new HashMap<String, ValueConverter>();
+    private final Set<String> indexedProperties = new HashSet<String>();
+    private final Set<String> partitionProperties = new HashSet<String>();
+    private final Set<String> fetchPaths = new LinkedHashSet<String>();
+
+    /**
+     * @param entityClass - queried entity
+     * @param defaultOrderBy - used when the request has no orderBy parameter
+     * @param defaultOrder - used when the request has no order parameter
+     */
+    protected SearchDefinition(Class<T> entityClass, String defaultOrderBy, String defaultOrder) {
+        this.entityClass = entityClass;
+        this.metadata = EntityMetadata.forClass(entityClass);
+        this.defaultOrderBy = defaultOrderBy;
+        this.defaultOrder = defaultOrder;
+    }
+
+    /**
+     * @return DAO used to execute the search
+     */
+    public abstract OnmsDao<T, Integer> getDao();
+
+    /**
+     * @param results
+     * @return the JAXB collection returned to the client (ex - OnmsAlarmCollection)
+     */
+    public abstract Object createCollection(List<T> results);
+
+    /**
+     * join an association under the given alias
+     */
+    protected SearchDefinition<T> alias(String associationPath, String alias, JoinType joinType) {
+        aliases.add(new String[] {associationPath, alias});
+        joinTypes.add(joinType);
+        return this;
+    }
+
+    /**
+     * join an association under the given alias only for queries and orders using a property of the alias,
+     * "alias.id" is answered by the foreign key and does not need the join
+     */
+    protected SearchDefinition<T> lazyAlias(String associationPath, String alias, JoinType joinType) {
+        lazyAliases.put(alias, new Alias(associationPath, alias, joinType));
+        return this;
+    }
+
+    /**
+     * accept name in queries and orders as another name of the property path,
+     * ex - "nodeId" for "node.id", so the path's converter, index and in-memory support apply
+     */
+    protected SearchDefinition<T> synonym(String name, String path) {
+        synonyms.put(name, path);
+        return this;
+    }
+
+    /**
+     * create the restriction of a property which is not a column of the entity (ex - the categories of the node of an alarm)
+     */
+    protected SearchDefinition<T> restriction(String name, PropertyRestriction restriction) {
+        restrictions.put(name, restriction);
+        return this;
+    }
+
+    /**
+     * order of the criteria builder (replaced as soon as orderBy is specified)
+     */
+    protected SearchDefinition<T> orderBy(String property, boolean ascending) {
+        orders.put(property, ascending);
+        return this;
+    }
+
+    /**
+     * register the converter for the compare values of a property
+     * properties without converter are compared as strings
+     */
+    protected SearchDefinition<T> property(String name, ValueConverter converter) {
+        converters.put(name, converter);
+        return this;
+    }
+
+    protected SearchDefinition<T> properties(ValueConverter converter, String... names) {
+        for (String name : names) {
+            property(name, converter);
+        }
+        return this;
+    }
+
+    /**
+     * declare properties backed by a database index
+     * queries without a restriction on an indexed property are considered table scans
+     */
+    protected SearchDefinition<T> indexed(String... names) {
+        indexedProperties.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * declare date properties the table is partitioned by
+     * searches bounded on one of them can be split into sub-ranges queried in parallel
+     */
+    protected SearchDefinition<T> partitionedBy(String... names) {
+        partitionProperties.addAll(Arrays.asList(names));
+        return this;
+    }
+
+    /**
+     * declare lazy associations the serialized form reads
+     * they are loaded for the whole page in one query each instead of once per result,
+     * results of the read-only session are marshalled after the session is closed, so every association read has to be declared
+     * dotted paths load the associations on the way as well, ex - "monitoredService.ipInterface.node"
+     * paths the entity does not have (older model versions) are skipped
+     */
+    protected SearchDefinition<T> fetched(String... paths) {
+        for (String path : paths) {
+            if (metadata.resolve(path) != null) {
+                fetchPaths.add(path);
+            } else {
+                logger.warn("{} has no association {}, it is not fetched with the search results", getName(), path);
+            }
+        }
+        return this;
+    }
+
+    /**
+     * allow the query to be served as an NDJSON stream
+     */
+    protected SearchDefinition<T> streamable() {
+        this.streamable = true;
+        return this;
+    }
+
+    /**
+     * answer a search from data held in memory by the resource
+     * called by the {@link InMemoryInterceptor} during the execute stage
+     * 
+     * @param ctx - the parsed and planned search
+     * @return the results, null to run the search against the database
+     */
+    public List<T> findInMemory(SearchContext<T> ctx) {
+        return null;
+    }
+
+    /**
+     * create the criteria builder with all aliases and the default order
+     * @return
+     */
+    public CriteriaBuilder createCriteriaBuilder() {
+        final CriteriaBuilder builder = new CriteriaBuilder(entityClass);
+        for (int i = 0; i < aliases.size(); i++) {
+            builder.alias(aliases.get(i)[0], aliases.get(i)[1], joinTypes.get(i));
+        }
+        for (Map.Entry<String, Boolean> order : orders.entrySet()) {
+            if (order.getValue()) {
+                builder.orderBy(order.getKey()).asc();
+            } else {
+                builder.orderBy(order.getKey()).desc();
+            }
+        }
+        return builder;
+    }
+
+    /**
+     * @return a new decoder translating FIQL into criteria of this entity
+     */
+    public QueryDecoder createDecoder() {
+        return new DefinitionQueryDecoder(this);
+    }
+
+    /**
+     * convert the compare value of a FIQL comparison
+     */
+    public Object convert(String propertyName, String compareValue) throws Exception {
+        ValueConverter converter = converters.get(propertyName);
+        if (converter == null) {
+            return compareValue;
+        }
+        return converter.convert(propertyName, compareValue);
+    }
+
+    /**
+     * check a property path of a query or orderBy against the entity metadata
+     * 
+     * accepted are "id", properties with a declared converter,
+     * persistent properties of the entity (dotted paths are followed through associations)
+     * paths starting with a declared alias, ex - "ipInterface.ipAddress"
+     * and properties with a registered {@link PropertyRestriction}
+     * 
+     * @param path
+     * @throws ParseException - if the path does not exist
+     */
+    public void validateProperty(String path) throws ParseException {
+        if (restrictions.containsKey(path) || path.equals("id") || converters.containsKey(path) || metadata.resolve(path) != null) {
+            return;
+        }
+        final int dot = path.indexOf('.');
+        if (dot > 0) {
+            for (String[] alias : aliases) {
+                if (alias[1].equals(path.substring(0, dot))) {
+                    final Class<?> associationType = metadata.resolve(alias[0]);
+                    if (associationType != null && EntityMetadata.forClass(associationType).resolve(path.substring(dot + 1)) != null) {
+                        return;
+                    }
+                }
+            }
+            final Alias lazyAlias = lazyAliases.get(path.substring(0, dot));
+            if (lazyAlias != null) {
+                final Class<?> associationType = metadata.resolve(lazyAlias.getAssociationPath());
+                if (associationType != null && EntityMetadata.forClass(associationType).resolve(path.substring(dot + 1)) != null) {
+                    return;
+                }
+            }
+        }
+        throw new ParseException("Unknown property \"" + path + "\" for " + getName()
+                + ". Please specify one of " + metadata.getPropertyNames() + " or an alias of " + getAliases().keySet(), 0);
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    /**
+     * @return short name of the entity, used for metrics and logging
+     */
+    public String getName() {
+        return entityClass.getSimpleName();
+    }
+
+    public String getDefaultOrderBy() {
+        return defaultOrderBy;
+    }
+
+    public String getDefaultOrder() {
+        return defaultOrder;
+    }
+
+    public String getDefaultLimit() {
+        return defaultLimit;
+    }
+
+    public boolean isStreamable() {
+        return streamable;
+    }
+
+    /**
+     * @return alias -> association path, including the aliases joined on demand
+     */
+    public Map<String, String> getAliases() {
+        Map<String, String> result = new HashMap<String, String>();
+        for (String[] alias : aliases) {
+            result.put(alias[1], alias[0]);
+        }
+        for (Alias alias : lazyAliases.values()) {
+            result.put(alias.getAlias(), alias.getAssociationPath());
+        }
+        return Collections.unmodifiableMap(result);
+    }
+
+    /**
+     * @return properties backed by a database index
+     */
+    public Set<String> getIndexedProperties() {
+        return Collections.unmodifiableSet(indexedProperties);
+    }
+
+    /**
+     * @return date properties the searches can be partitioned by
+     */
+    public Set<String> getPartitionProperties() {
+        return Collections.unmodifiableSet(partitionProperties);
+    }
+
+    /**
+     * @return lazy associations loaded together with the results
+     */
+    public Set<String> getFetchPaths() {
+        return Collections.unmodifiableSet(fetchPaths);
+    }
+
+    /**
+     * @return introspected properties of the entity
+     */
+    public EntityMetadata getMetadata() {
+        return metadata;
+    }
+
+    /**
+     * @return property -> converter
+     */
+    public Map<String, ValueConverter> getConverters() {
+        return Collections.unmodifiableMap(converters);
+    }
+
+    /**
+     * {@link QueryDecoder} driven by the metadata of a definition
+     * aliases declared with lazyAlias are added to the criteria when the query or the order uses them
+     */
+    private static class DefinitionQueryDecoder extends QueryDecoder {
+        private final SearchDefinition<?> definition;
+        private final Set<String> usedAliases = new LinkedHashSet<String>();
+
+        public DefinitionQueryDecoder(SearchDefinition<?> definition) {
+            this.definition = definition;
+        }
+
+        @Override
+        public Criteria FIQLtoCriteria(String fiqlQuery, int limit, int offset, String orderBy, String order) throws Exception {
+            usedAliases.clear();
+            final Criteria crit = super.FIQLtoCriteria(fiqlQuery, limit, offset, orderBy, order);
+            if (!usedAliases.isEmpty()) {
+                final List<Alias> aliases = new ArrayList<Alias>(crit.getAliases());
+                for (String alias : usedAliases) {
+                    aliases.add(definition.lazyAliases.get(alias));
+                }
+                crit.setAliases(aliases);
+            }
+            return crit;
+        }
+
+        protected CriteriaBuilder CreateCriteriaBuilder() {
+            return definition.createCriteriaBuilder();
+        }
+
+        protected Object getCompareObject(String propertyName, String compareValue) throws Exception {
+            return definition.convert(propertyName, compareValue);
+        }
+
+        @Override
+        protected void validateProperty(String propertyName) throws ParseException {
+            definition.validateProperty(propertyName);
+            final int dot = propertyName.indexOf('.');
+            if (dot > 0 && definition.lazyAliases.containsKey(propertyName.substring(0, dot))
+                    && !propertyName.substring(dot + 1).equals("id") && !definition.restrictions.containsKey(propertyName)) {
+                usedAliases.add(propertyName.substring(0, dot));
+            }
+        }
+
+        @Override
+        protected String getPropertyPath(String propertyName) {
+            final String path = definition.synonyms.get(propertyName);
+            return path == null ? propertyName : path;
+        }
+
+        @Override
+        protected PropertyRestriction getPropertyRestriction(String propertyName) {
+            return definition.restrictions.get(propertyName);
+        }
+    }
+}
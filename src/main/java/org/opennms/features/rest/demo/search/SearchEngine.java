@@ -0,0 +1,295 @@
+package org.opennms.features.rest.demo.search;
+
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+import org.hibernate.QueryException;
+import org.opennms.features.rest.demo.exception.DeadlineExceededException;
+import org.opennms.features.rest.demo.exception.NotFIQLOperatorException;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.export.NdjsonExporter;
+import org.opennms.features.rest.demo.util.QueryDecoder;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.hibernate3.HibernateQueryException;
+
+/**
+ * search pipeline shared by all resources
+ * 
+ * parse     - apply defaults and decode the FIQL query into a criteria object
+ * plan      - let interceptors adjust the criteria or choose a different execution path
+ * execute   - run the criteria through the interceptor chain and finally the DAO
+ * serialize - wrap the results into the JAXB collection of the entity (or an NDJSON stream)
+ * 
+ * the time spent in each stage is recorded in the context and returned in the Server-Timing header
+ * a search with a deadline is checked between the stages and its statement is cancelled when the deadline passes,
+ * an expired search is answered with 503 and the stage timings
+ *
+ */
+public class SearchEngine {
+
+    public static final String SERVER_TIMING = "Server-Timing";
+
+    private static Logger logger = LoggerFactory.getLogger(SearchEngine.class);
+
+    private List<SearchInterceptor> interceptors = new ArrayList<SearchInterceptor>();
+    private NdjsonExporter exporter;
+    private ReadOnlySessionTemplate sessionTemplate;
+    private ExecutionStatistics statistics = new ExecutionStatistics();
+
+    /**
+     * method to initialize the interceptor chain using blueprint
+     * @param interceptors
+     */
+    public void setInterceptors(List<SearchInterceptor> interceptors) {
+        this.interceptors = new ArrayList<SearchInterceptor>(interceptors);
+    }
+
+    /**
+     * method to initialize local variable exporter using blueprint
+     * @param exporter
+     */
+    public void setExporter(NdjsonExporter exporter) {
+        this.exporter = exporter;
+    }
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * without a session template searches are executed through the DAO
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * method to initialize local variable statistics using blueprint
+     * @param statistics
+     */
+    public void setStatistics(ExecutionStatistics statistics) {
+        this.statistics = statistics;
+    }
+
+    /**
+     * run a search through all stages
+     * 
+     * @param definition - entity to be searched
+     * @param request - raw request parameters
+     * @return the response to be returned by the resource
+     */
+    public <T> Response search(SearchDefinition<T> definition, SearchRequest request) {
+        final SearchContext<T> ctx = new SearchContext<T>(definition, request);
+        try {
+            parse(ctx);
+            checkDeadline(ctx);
+            if (ctx.getResponse() == null) {
+                plan(ctx);
+                checkDeadline(ctx);
+            }
+            if (ctx.getResponse() == null) {
+                if (!ctx.isStreaming()) {
+                    execute(ctx);
+                    checkDeadline(ctx);
+                }
+                serialize(ctx);
+            }
+        } catch (DeadlineExceededException e) {
+            ctx.setFailure(e);
+            logger.warn("{} after {}", e.getMessage(), ctx.formatStageTimings());
+            ctx.setResponse(Response.status(e.getStatus()).type(MediaType.TEXT_PLAIN)
+                            .entity(e.getMessage() + " (" + ctx.formatStageTimings() + ")").build());
+        } catch (SearchException e) {
+            ctx.setFailure(e);
+            if (e.getStatus() >= 500) {
+                logger.error(e.getMessage(), e);
+            }
+            ctx.setResponse(Response.status(e.getStatus()).type(MediaType.TEXT_PLAIN).entity(e.getMessage()).build());
+        } finally {
+            for (SearchInterceptor interceptor : interceptors) {
+                try {
+                    interceptor.completed(ctx);
+                } catch (RuntimeException e) {
+                    logger.warn("search interceptor " + interceptor + " failed on completion", e);
+                }
+            }
+        }
+        return Response.fromResponse(ctx.getResponse()).header(SERVER_TIMING, ctx.formatStageTimings()).build();
+    }
+
+    /**
+     * decode the FIQL query of the request
+     * public so endpoints which don't return search results can reuse the query handling
+     */
+    public <T> void parse(SearchContext<T> ctx) throws SearchException {
+        final long start = System.nanoTime();
+        try {
+            for (SearchInterceptor interceptor : interceptors) {
+                interceptor.beforeParse(ctx);
+            }
+            final SearchRequest request = ctx.getRequest();
+            final SearchDefinition<T> definition = ctx.getDefinition();
+            final QueryDecoder decoder = definition.createDecoder();
+            ctx.setDecoder(decoder);
+            try {
+                ctx.setCriteria(decoder.FIQLtoCriteria(
+                        valueOrDefault(request.getQueryString(), ""),
+                        Integer.parseInt(valueOrDefault(request.getLimit(), definition.getDefaultLimit())),
+                        Integer.parseInt(valueOrDefault(request.getOffset(), "0")),
+                        valueOrDefault(request.getOrderBy(), definition.getDefaultOrderBy()),
+                        valueOrDefault(request.getOrder(), definition.getDefaultOrder())));
+                if (request.isStreaming() && request.getLimit() == null) {    //exports are unbounded unless limited explicitly
+                    ctx.getCriteria().setLimit(null);
+                    ctx.getCriteria().setOffset(null);
+                }
+            }
+            catch(NotFIQLOperatorException e){    //in a case where user has specified an invalid FIQL operator
+                throw new SearchException(Response.Status.BAD_REQUEST, e.getMessage(), e);
+            }
+            catch(ParseException e){    //in a case where user has provided data in wrong format
+                throw new SearchException(Response.Status.BAD_REQUEST, e.getMessage(), e);
+            }
+            catch(NumberFormatException e){    //in a case where user has provided wrong data for query params
+                throw new SearchException(Response.Status.BAD_REQUEST, e.getMessage(), e);
+            }
+            catch(SearchException e){
+                throw e;
+            }
+            catch(Exception e){    //in case of an unidentified error caused
+                throw new SearchException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+            }
+            for (SearchInterceptor interceptor : interceptors) {
+                interceptor.afterParse(ctx);
+            }
+        } finally {
+            ctx.recordStage(Stage.PARSE, System.nanoTime() - start);
+        }
+    }
+
+    private <T> void plan(SearchContext<T> ctx) throws SearchException {
+        final long start = System.nanoTime();
+        try {
+            for (SearchInterceptor interceptor : interceptors) {
+                interceptor.plan(ctx);
+                if (ctx.getResponse() != null) {
+                    return;
+                }
+            }
+        } finally {
+            ctx.recordStage(Stage.PLAN, System.nanoTime() - start);
+        }
+    }
+
+    private <T> void execute(SearchContext<T> ctx) throws SearchException {
+        final long start = System.nanoTime();
+        try {
+            ctx.setResults(new Chain<T>(0).proceed(ctx));
+        }
+        catch(SearchException e){
+            throw e;
+        }
+        catch(Exception e){    //in case of an unidentified error caused
+            final Throwable queryError = queryError(e);
+            if (queryError != null) {    //in a case where user has requested a non existing data type
+                throw new SearchException(Response.Status.BAD_REQUEST, queryError.getMessage(), e);
+            }
+            if (ctx.isExpired()) {    //statement cancelled or timed out
+                throw new DeadlineExceededException(ctx.getTimeoutMillis(), e);
+            }
+            throw new SearchException(Response.Status.INTERNAL_SERVER_ERROR, e.getMessage(), e);
+        }
+        finally {
+            ctx.recordStage(Stage.EXECUTE, System.nanoTime() - start);
+        }
+    }
+
+    private <T> void serialize(SearchContext<T> ctx) throws SearchException {
+        final long start = System.nanoTime();
+        try {
+            if (ctx.isStreaming()) {
+                ctx.setResponse(Response.ok(exporter.export(ctx.getCriteria(), ctx.getDefinition().getFetchPaths()), NdjsonExporter.MEDIA_TYPE).build());
+            } else if (ctx.getResults().isEmpty()) {         //result set is empty
+                ctx.setResponse(Response.noContent().build());
+            } else {
+                ctx.setResponse(Response.ok().entity(ctx.getDefinition().createCollection(ctx.getResults())).build());
+            }
+            for (SearchInterceptor interceptor : interceptors) {
+                interceptor.afterSerialize(ctx);
+            }
+        } finally {
+            ctx.recordStage(Stage.SERIALIZE, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * invalid property paths surface as spring's HibernateQueryException through the DAO
+     * and as hibernate's QueryException through the read-only session, possibly wrapped (ex - by a partition task)
+     * @param e
+     * @return the query exception, null if the failure was not caused by the query
+     */
+    private static Throwable queryError(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof HibernateQueryException || cause instanceof QueryException) {
+                return cause;
+            }
+            if (cause.getCause() == cause) {
+                break;
+            }
+        }
+        return null;
+    }
+
+    private static void checkDeadline(SearchContext<?> ctx) throws DeadlineExceededException {
+        if (ctx.isExpired()) {
+            throw new DeadlineExceededException(ctx.getTimeoutMillis(), null);
+        }
+    }
+
+    private static String valueOrDefault(String value, String defaultValue) {
+        return value == null ? defaultValue : value;
+    }
+
+    /**
+     * run the criteria in a read-only session, or through the DAO if read-only mode is switched off
+     * the remaining time of the deadline becomes the statement timeout, the DAO path is only checked between the stages
+     * associations declared as fetched are loaded for the whole page by the read-only session
+     */
+    private <T> List<T> findMatching(SearchContext<T> ctx) throws Exception {
+        checkDeadline(ctx);
+        final boolean readOnly = sessionTemplate != null && statistics.isReadOnly();
+        final long allocated = statistics.allocatedBytes();
+        final long start = System.nanoTime();
+        final List<T> results;
+        if (readOnly) {
+            results = sessionTemplate.findMatching(ctx.getCriteria(), ctx.hasDeadline() ? Math.max(1, ctx.getRemainingMillis()) : 0,
+                                                   ctx.getDefinition().getFetchPaths());
+        } else {
+            results = ctx.getDefinition().getDao().findMatching(ctx.getCriteria());
+        }
+        statistics.record(ctx.getDefinition().getName(), readOnly, results.size(), System.nanoTime() - start,
+                          allocated < 0 ? -1 : statistics.allocatedBytes() - allocated);
+        return results;
+    }
+
+    /**
+     * walks the interceptors, the end of the chain is {@link #findMatching(SearchContext)}
+     */
+    private class Chain<T> implements ExecutionChain<T> {
+        private final int index;
+
+        public Chain(int index) {
+            this.index = index;
+        }
+
+        public List<T> proceed(SearchContext<T> ctx) throws Exception {
+            if (index < interceptors.size()) {
+                return interceptors.get(index).execute(ctx, new Chain<T>(index + 1));
+            }
+            return findMatching(ctx);
+        }
+    }
+}
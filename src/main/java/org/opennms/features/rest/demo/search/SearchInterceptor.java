@@ -0,0 +1,46 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.List;
+
+import org.opennms.features.rest.demo.exception.SearchException;
+
+/**
+ * hooks into the stages of the {@link SearchEngine}
+ * interceptors are called in the order they are configured in blueprint
+ * extend {@link SearchInterceptorAdapter} to implement only the hooks needed
+ *
+ */
+public interface SearchInterceptor {
+
+    /**
+     * before the FIQL query is decoded, the context only holds the request
+     */
+    void beforeParse(SearchContext<?> ctx) throws SearchException;
+
+    /**
+     * after the criteria has been created
+     */
+    void afterParse(SearchContext<?> ctx) throws SearchException;
+
+    /**
+     * plan stage, the criteria may be adjusted, the request switched to streaming
+     * or answered directly with ctx.setResponse()
+     */
+    void plan(SearchContext<?> ctx) throws SearchException;
+
+    /**
+     * execute stage, call chain.proceed(ctx) to continue with the next interceptor / the DAO
+     * or return results from elsewhere
+     */
+    <T> List<T> execute(SearchContext<T> ctx, ExecutionChain<T> chain) throws Exception;
+
+    /**
+     * after the response has been created
+     */
+    void afterSerialize(SearchContext<?> ctx) throws SearchException;
+
+    /**
+     * always called once, for successful and failed searches
+     */
+    void completed(SearchContext<?> ctx);
+}
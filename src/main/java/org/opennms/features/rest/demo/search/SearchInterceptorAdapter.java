@@ -0,0 +1,31 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.List;
+
+import org.opennms.features.rest.demo.exception.SearchException;
+
+/**
+ * no-op implementation of all {@link SearchInterceptor} hooks
+ *
+ */
+public abstract class SearchInterceptorAdapter implements SearchInterceptor {
+
+    public void beforeParse(SearchContext<?> ctx) throws SearchException {
+    }
+
+    public void afterParse(SearchContext<?> ctx) throws SearchException {
+    }
+
+    public void plan(SearchContext<?> ctx) throws SearchException {
+    }
+
+    public <T> List<T> execute(SearchContext<T> ctx, ExecutionChain<T> chain) throws Exception {
+        return chain.proceed(ctx);
+    }
+
+    public void afterSerialize(SearchContext<?> ctx) throws SearchException {
+    }
+
+    public void completed(SearchContext<?> ctx) {
+    }
+}
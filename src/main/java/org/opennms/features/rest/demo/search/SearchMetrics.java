@@ -0,0 +1,91 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * interceptor aggregating the stage timings of all searches per entity
+ *
+ */
+public class SearchMetrics extends SearchInterceptorAdapter implements SearchMetricsMBean {
+
+    private final ConcurrentMap<String, Counter> stages = new ConcurrentHashMap<String, Counter>();
+    private final ConcurrentMap<String, Counter> searches = new ConcurrentHashMap<String, Counter>();
+
+    @Override
+    public void completed(SearchContext<?> ctx) {
+        final String entity = ctx.getDefinition().getName();
+        for (Map.Entry<Stage, Long> entry : ctx.getStageNanos().entrySet()) {
+            counter(stages, entity + " " + entry.getKey().label()).record(entry.getValue(), false);
+        }
+        counter(searches, entity).record(ctx.getElapsedNanos(), ctx.getFailure() != null);
+    }
+
+    public String[] getStageStatistics() {
+        return format(stages);
+    }
+
+    public String[] getSearchStatistics() {
+        return format(searches);
+    }
+
+    public void reset() {
+        stages.clear();
+        searches.clear();
+    }
+
+    private static Counter counter(ConcurrentMap<String, Counter> counters, String key) {
+        Counter counter = counters.get(key);
+        if (counter == null) {
+            Counter created = new Counter();
+            counter = counters.putIfAbsent(key, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    private static String[] format(Map<String, Counter> counters) {
+        List<String> lines = new ArrayList<String>();
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            lines.add(entry.getKey() + " " + entry.getValue());
+        }
+        Collections.sort(lines);
+        return lines.toArray(new String[lines.size()]);
+    }
+
+    /**
+     * lock free count / total / max of durations
+     */
+    private static class Counter {
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong totalNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        public void record(long nanos, boolean failed) {
+            count.incrementAndGet();
+            if (failed) {
+                failures.incrementAndGet();
+            }
+            totalNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return String.format(Locale.ROOT, "count=%d failures=%d totalMs=%.3f maxMs=%.3f",
+                                 count.get(), failures.get(), totalNanos.get() / 1000000.0, maxNanos.get() / 1000000.0);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.opennms.features.rest.demo.search;
+
+/**
+ * management interface of {@link SearchMetrics}
+ *
+ */
+public interface SearchMetricsMBean {
+
+    /**
+     * @return one line per entity and stage: "OnmsEvent execute count=.. totalMs=.. maxMs=.."
+     */
+    String[] getStageStatistics();
+
+    /**
+     * @return one line per entity: "OnmsEvent searches=.. failures=.."
+     */
+    String[] getSearchStatistics();
+
+    void reset();
+}
@@ -0,0 +1,117 @@
+package org.opennms.features.rest.demo.search;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+
+/**
+ * raw query parameters of a search request, defaults are applied by the parse stage
+ *
+ */
+public class SearchRequest {
+
+    private final String queryString;
+    private final String limit;
+    private final String offset;
+    private final String orderBy;
+    private final String order;
+    private boolean streaming = false;
+    private final Map<String, String> parameters = new HashMap<String, String>();
+    private List<MediaType> acceptableMediaTypes = Collections.emptyList();
+
+    /**
+     * @param queryString - FIQL query (_s)
+     * @param limit
+     * @param offset
+     * @param orderBy
+     * @param order - asc or desc
+     */
+    public SearchRequest(String queryString, String limit, String offset, String orderBy, String order) {
+        this.queryString = queryString;
+        this.limit = limit;
+        this.offset = offset;
+        this.orderBy = orderBy;
+        this.order = order;
+    }
+
+    /**
+     * request for an NDJSON export of all rows matching the FIQL query, ordered by id
+     * @param queryString
+     * @return
+     */
+    public static SearchRequest export(String queryString) {
+        SearchRequest request = new SearchRequest(queryString, null, null, "id", "asc");
+        request.streaming = true;
+        return request;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    public String getLimit() {
+        return limit;
+    }
+
+    public String getOffset() {
+        return offset;
+    }
+
+    public String getOrderBy() {
+        return orderBy;
+    }
+
+    public String getOrder() {
+        return order;
+    }
+
+    public boolean isStreaming() {
+        return streaming;
+    }
+
+    /**
+     * additional, resource specific parameter
+     * @param name
+     * @param value - ignored when null
+     * @return this
+     */
+    public SearchRequest parameter(String name, String value) {
+        if (value != null) {
+            parameters.put(name, value);
+        }
+        return this;
+    }
+
+    public String getParameter(String name) {
+        return parameters.get(name);
+    }
+
+    /**
+     * media types of the Accept header
+     * @param acceptableMediaTypes - ignored when null
+     * @return this
+     */
+    public SearchRequest accept(List<MediaType> acceptableMediaTypes) {
+        if (acceptableMediaTypes != null) {
+            this.acceptableMediaTypes = acceptableMediaTypes;
+        }
+        return this;
+    }
+
+    /**
+     * @param mediaType
+     * @return true if the Accept header names the media type explicitly, wildcards do not match
+     */
+    public boolean isAccepted(String mediaType) {
+        final MediaType type = MediaType.valueOf(mediaType);
+        for (MediaType acceptable : acceptableMediaTypes) {
+            if (acceptable.getType().equalsIgnoreCase(type.getType()) && acceptable.getSubtype().equalsIgnoreCase(type.getSubtype())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
@@ -0,0 +1,16 @@
+package org.opennms.features.rest.demo.search;
+
+/**
+ * stages of the search pipeline, in execution order
+ *
+ */
+public enum Stage {
+    PARSE, PLAN, EXECUTE, SERIALIZE;
+
+    /**
+     * @return name used in the Server-Timing header and in the metrics
+     */
+    public String label() {
+        return name().toLowerCase();
+    }
+}
@@ -0,0 +1,17 @@
+package org.opennms.features.rest.demo.search;
+
+/**
+ * converts the string value of a FIQL comparison into the object
+ * the property is compared with (ex - createTime -> java.util.Date)
+ *
+ */
+public interface ValueConverter {
+
+    /**
+     * @param propertyName
+     * @param compareValue
+     * @return
+     * @throws Exception - ParseException / NumberFormatException for malformed values
+     */
+    Object convert(String propertyName, String compareValue) throws Exception;
+}
@@ -0,0 +1,54 @@
+package org.opennms.features.rest.demo.search;
+
+import java.text.DateFormat;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+
+import org.opennms.netmgt.model.OnmsSeverity;
+
+/**
+ * converters shared by the search definitions of all resources
+ *
+ */
+public final class ValueConverters {
+
+    public static final String DATE_FORMAT = "yyyy-MM-dd'T'HH:mm:ss";
+
+    /**
+     * dates in format "yyyy-MM-dd'T'HH:mm:ss"
+     */
+    public static final ValueConverter DATE = new ValueConverter() {
+        public Object convert(String propertyName, String compareValue) throws ParseException {
+            DateFormat formatter = new SimpleDateFormat(DATE_FORMAT);
+            try {
+                return formatter.parse(compareValue);
+            } catch (ParseException e) {
+                throw new ParseException("Please specify dates in format \"" + DATE_FORMAT + "\"", 0);
+            }
+        }
+    };
+
+    public static final ValueConverter INTEGER = new ValueConverter() {
+        public Object convert(String propertyName, String compareValue) {
+            return Integer.parseInt(compareValue);
+        }
+    };
+
+    /**
+     * numeric severity (1 - 7) to OnmsSeverity
+     */
+    public static final ValueConverter SEVERITY = new ValueConverter() {
+        public Object convert(String propertyName, String compareValue) {
+            return OnmsSeverity.get(Integer.parseInt(compareValue));
+        }
+    };
+
+    public static final ValueConverter STRING = new ValueConverter() {
+        public Object convert(String propertyName, String compareValue) {
+            return compareValue;
+        }
+    };
+
+    private ValueConverters() {
+    }
+}
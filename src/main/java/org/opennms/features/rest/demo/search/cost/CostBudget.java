@@ -0,0 +1,66 @@
+package org.opennms.features.rest.demo.search.cost;
+
+/**
+ * limits enforced by the {@link CostGuardInterceptor} for one resource
+ *
+ */
+public class CostBudget {
+
+    /**
+     * what happens to a query which exceeds the budget
+     * CLAMP  - the limit is lowered until the query fits, but not below minLimit
+     * REJECT - 400 Bad Request
+     * STREAM - served as NDJSON stream if the resource supports it, rejected otherwise
+     */
+    public enum Action {
+        CLAMP, REJECT, STREAM
+    }
+
+    private int maxLimit = 1000;
+    private int minLimit = 10;
+    private long maxCost = 50000;
+    private Action action = Action.CLAMP;
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    /**
+     * @param minLimit - page size a clamped query keeps even if its filters alone exceed the budget
+     */
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public long getMaxCost() {
+        return maxCost;
+    }
+
+    public void setMaxCost(long maxCost) {
+        this.maxCost = maxCost;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    /**
+     * @param action - clamp, reject or stream (case insensitive, as configured in blueprint)
+     */
+    public void setAction(String action) {
+        this.action = Action.valueOf(action.trim().toUpperCase());
+    }
+
+    @Override
+    public String toString() {
+        return "CostBudget [maxLimit=" + maxLimit + ", minLimit=" + minLimit + ", maxCost=" + maxCost + ", action=" + action + "]";
+    }
+}
@@ -0,0 +1,148 @@
+package org.opennms.features.rest.demo.search.cost;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+
+import org.opennms.core.criteria.Criteria;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.export.NdjsonExporter;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.search.SearchInterceptorAdapter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * admission control for searches
+ * 
+ * in the plan stage the requested limit and the estimated {@link QueryCost} are compared
+ * with the budget of the resource, queries over budget are clamped, rejected
+ * or switched to the NDJSON streaming path depending on the configured action,
+ * streaming only if the Accept header of the request includes application/x-ndjson
+ * 
+ * the estimated cost is returned in the X-Query-Cost header, adjustments in a Warning header
+ *
+ */
+public class CostGuardInterceptor extends SearchInterceptorAdapter {
+
+    public static final String QUERY_COST_HEADER = "X-Query-Cost";
+    public static final String COST_ATTRIBUTE = "queryCost";
+    private static final String NOTICE_ATTRIBUTE = "queryCostNotice";
+
+    private static Logger logger = LoggerFactory.getLogger(CostGuardInterceptor.class);
+
+    private QueryCostEstimator estimator = new QueryCostEstimator();
+    private CostBudget defaultBudget = new CostBudget();
+    private Map<String, CostBudget> budgets = new HashMap<String, CostBudget>();
+
+    public void setEstimator(QueryCostEstimator estimator) {
+        this.estimator = estimator;
+    }
+
+    /**
+     * budget for entities without an entry in budgets
+     * @param defaultBudget
+     */
+    public void setDefaultBudget(CostBudget defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    /**
+     * @param budgets - entity name (ex - OnmsEvent) -> budget
+     */
+    public void setBudgets(Map<String, CostBudget> budgets) {
+        this.budgets = new HashMap<String, CostBudget>(budgets);
+    }
+
+    @Override
+    public void plan(SearchContext<?> ctx) throws SearchException {
+        if (ctx.isStreaming()) {
+            return;
+        }
+        final CostBudget budget = getBudget(ctx.getDefinition().getName());
+        final Criteria crit = ctx.getCriteria();
+
+        final Integer limit = crit.getLimit();
+        if (limit != null && limit > budget.getMaxLimit()) {
+            String reason = "limit " + limit + " exceeds the maximum of " + budget.getMaxLimit();
+            if (budget.getAction() == CostBudget.Action.CLAMP) {
+                crit.setLimit(budget.getMaxLimit());
+                ctx.setAttribute(NOTICE_ATTRIBUTE, reason + ", limit clamped to " + budget.getMaxLimit());
+            } else if (overBudget(ctx, budget, reason)) {
+                return;
+            }
+        }
+
+        QueryCost cost = estimator.estimate(ctx);
+        if (cost.getTotal() > budget.getMaxCost()) {
+            String reason = "estimated query cost " + cost + " exceeds the budget of " + budget.getMaxCost();
+            if (budget.getAction() == CostBudget.Action.CLAMP) {
+                cost = clamp(ctx, cost, budget, reason);
+            } else if (overBudget(ctx, budget, reason)) {
+                return;
+            }
+        }
+        ctx.setAttribute(COST_ATTRIBUTE, cost);
+    }
+
+    @Override
+    public void afterSerialize(SearchContext<?> ctx) {
+        final QueryCost cost = (QueryCost) ctx.getAttribute(COST_ATTRIBUTE);
+        final Object notice = ctx.getAttribute(NOTICE_ATTRIBUTE);
+        if (cost == null && notice == null) {
+            return;
+        }
+        Response.ResponseBuilder builder = Response.fromResponse(ctx.getResponse());
+        if (cost != null) {
+            builder.header(QUERY_COST_HEADER, cost.getTotal());
+        }
+        if (notice != null) {
+            builder.header("Warning", "199 - \"" + notice + "\"");
+        }
+        ctx.setResponse(builder.build());
+    }
+
+    /**
+     * lower the limit until the row cost fits into what the filter cost leaves of the budget,
+     * the minimum page of the budget is kept if the filters alone exceed it
+     */
+    private QueryCost clamp(SearchContext<?> ctx, QueryCost cost, CostBudget budget, String reason) {
+        final Criteria crit = ctx.getCriteria();
+        final int joins = ctx.getCriteria().getAliases().size();
+        final int offset = crit.getOffset() == null ? 0 : crit.getOffset();
+        final long allowedRows = (budget.getMaxCost() - cost.getFilterCost()) >> joins;
+        final long requested = crit.getLimit() == null ? Integer.MAX_VALUE : crit.getLimit();
+        final int clampedLimit = (int) Math.min(requested, Math.max(allowedRows - offset, budget.getMinLimit()));
+        crit.setLimit(clampedLimit);
+        ctx.setAttribute(NOTICE_ATTRIBUTE, reason + ", limit clamped to " + clampedLimit);
+        logger.debug("{}: {}, limit clamped to {}", ctx.getDefinition().getName(), reason, clampedLimit);
+        return estimator.estimate(ctx);
+    }
+
+    /**
+     * apply the REJECT or STREAM action, clients which do not accept NDJSON get the budget error
+     * @return true if the request was switched to streaming
+     */
+    private boolean overBudget(SearchContext<?> ctx, CostBudget budget, String reason) throws SearchException {
+        if (budget.getAction() == CostBudget.Action.STREAM && ctx.getDefinition().isStreamable()
+                && ctx.getRequest().isAccepted(NdjsonExporter.MEDIA_TYPE)) {
+            ctx.setStreaming(true);
+            logger.debug("{}: {}, switched to streaming", ctx.getDefinition().getName(), reason);
+            return true;
+        }
+        throw reject(ctx, reason);
+    }
+
+    private SearchException reject(SearchContext<?> ctx, String reason) {
+        logger.debug("{}: rejected, {}", ctx.getDefinition().getName(), reason);
+        return new SearchException(Response.Status.BAD_REQUEST, "Query rejected: " + reason
+                + ". Please restrict the query on indexed properties " + ctx.getDefinition().getIndexedProperties()
+                + " or lower the limit");
+    }
+
+    private CostBudget getBudget(String entityName) {
+        CostBudget budget = budgets.get(entityName);
+        return budget == null ? defaultBudget : budget;
+    }
+}
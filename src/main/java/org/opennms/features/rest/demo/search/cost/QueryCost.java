@@ -0,0 +1,56 @@
+package org.opennms.features.rest.demo.search.cost;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * estimated cost of a parsed query together with the reasons which contributed to it
+ *
+ */
+public class QueryCost {
+
+    private long rowCost = 0;
+    private long filterCost = 0;
+    private final List<String> reasons = new ArrayList<String>();
+
+    /**
+     * cost which grows with the number of rows read (limit, offset, joins)
+     */
+    void addRowCost(long cost, String reason) {
+        rowCost += cost;
+        reasons.add(reason + " (+" + cost + ")");
+    }
+
+    /**
+     * fixed cost of a restriction which can't be answered from an index
+     */
+    void addFilterCost(long cost, String reason) {
+        filterCost += cost;
+        reasons.add(reason + " (+" + cost + ")");
+    }
+
+    public long getRowCost() {
+        return rowCost;
+    }
+
+    public long getFilterCost() {
+        return filterCost;
+    }
+
+    public long getTotal() {
+        return getRowCost() + getFilterCost();
+    }
+
+    /**
+     * @return human readable cost contributions, ex - "unindexed property eventLog (+1000)"
+     */
+    public List<String> getReasons() {
+        return Collections.unmodifiableList(reasons);
+    }
+
+    @Override
+    public String toString() {
+        return getTotal() + " " + reasons;
+    }
+}
@@ -0,0 +1,86 @@
+package org.opennms.features.rest.demo.search.cost;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.util.Comparison;
+
+/**
+ * scores a parsed query on limit, joins, unindexed properties, open ranges and unanchored wildcards
+ * 
+ * cost = (limit + offset) * 2^joins
+ *      + (unfilteredScan | sum of unindexed / open range / wildcard penalties)
+ * 
+ * every comparison belongs to one OR branch, so each branch pays for its own comparisons and the filter cost grows linearly with them
+ * 
+ * the absolute numbers have no unit, they are only compared against the budgets
+ *
+ */
+public class QueryCostEstimator {
+
+    private long unfilteredScanCost = 5000;
+    private long unindexedPropertyCost = 1000;
+    private long openRangeCost = 500;
+
+    public void setUnfilteredScanCost(long unfilteredScanCost) {
+        this.unfilteredScanCost = unfilteredScanCost;
+    }
+
+    public void setUnindexedPropertyCost(long unindexedPropertyCost) {
+        this.unindexedPropertyCost = unindexedPropertyCost;
+    }
+
+    public void setOpenRangeCost(long openRangeCost) {
+        this.openRangeCost = openRangeCost;
+    }
+
+    /**
+     * @param ctx - search context after the parse stage
+     * @return
+     */
+    public QueryCost estimate(SearchContext<?> ctx) {
+        final QueryCost cost = new QueryCost();
+        final Set<String> indexed = ctx.getDefinition().getIndexedProperties();
+        final List<Comparison> comparisons = ctx.getDecoder().getComparisons();
+        final int joins = ctx.getCriteria().getAliases().size();
+
+        Integer limit = ctx.getCriteria().getLimit();
+        Integer offset = ctx.getCriteria().getOffset();
+        if (limit != null) {
+            long rows = limit + (offset == null ? 0 : offset);
+            cost.addRowCost(rows << joins, rows + " rows" + (joins > 0 ? " with " + joins + " joins" : ""));
+        }
+
+        if (comparisons.isEmpty()) {
+            cost.addFilterCost(unfilteredScanCost, "no filter");
+        }
+
+        final Set<String> lowerBounds = new HashSet<String>();
+        final Set<String> upperBounds = new HashSet<String>();
+        for (Comparison comparison : comparisons) {
+            if (comparison.isLowerBound()) {
+                lowerBounds.add(comparison.getProperty());
+            } else if (comparison.isUpperBound()) {
+                upperBounds.add(comparison.getProperty());
+            }
+        }
+
+        for (Comparison comparison : comparisons) {
+            final String property = comparison.getProperty();
+            if (!indexed.contains(property)) {
+                cost.addFilterCost(unindexedPropertyCost, "unindexed property " + property);
+            } else if (comparison.isNegated()) {
+                cost.addFilterCost(unindexedPropertyCost, "negated comparison " + comparison);
+            } else if (comparison.isUnanchoredWildcard()) {
+                cost.addFilterCost(unindexedPropertyCost, "unanchored wildcard " + comparison);
+            } else if (comparison.isLowerBound() && !upperBounds.contains(property)) {
+                cost.addFilterCost(openRangeCost, "open range " + comparison);
+            } else if (comparison.isUpperBound() && !lowerBounds.contains(property)) {
+                cost.addFilterCost(openRangeCost, "open range " + comparison);
+            }
+        }
+        return cost;
+    }
+}
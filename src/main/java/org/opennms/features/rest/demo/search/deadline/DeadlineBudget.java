@@ -0,0 +1,38 @@
+package org.opennms.features.rest.demo.search.deadline;
+
+/**
+ * deadline settings of a resource
+ *
+ */
+public class DeadlineBudget {
+
+    private long defaultMillis = 30000;
+    private long maxMillis = 120000;
+
+    /**
+     * @return deadline of a search without timeout parameter, 0 for none
+     */
+    public long getDefaultMillis() {
+        return defaultMillis;
+    }
+
+    public void setDefaultMillis(long defaultMillis) {
+        this.defaultMillis = defaultMillis;
+    }
+
+    /**
+     * @return upper bound of the timeout parameter, 0 for none
+     */
+    public long getMaxMillis() {
+        return maxMillis;
+    }
+
+    public void setMaxMillis(long maxMillis) {
+        this.maxMillis = maxMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "DeadlineBudget [defaultMillis=" + defaultMillis + ", maxMillis=" + maxMillis + "]";
+    }
+}
@@ -0,0 +1,68 @@
+package org.opennms.features.rest.demo.search.deadline;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.ws.rs.core.Response;
+
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.search.SearchInterceptorAdapter;
+
+/**
+ * sets the deadline of a search from the timeout parameter (milliseconds)
+ * or the default of the resource, capped at the maximum of the resource
+ * 
+ * the deadline is measured from the start of the search, the engine checks it between the stages,
+ * passes the remaining time to the JDBC statement and cancels the statement once it has passed
+ * exports are not limited
+ *
+ */
+public class DeadlineInterceptor extends SearchInterceptorAdapter {
+
+    public static final String PARAMETER = "timeout";
+
+    private DeadlineBudget defaultBudget = new DeadlineBudget();
+    private Map<String, DeadlineBudget> budgets = new HashMap<String, DeadlineBudget>();
+
+    /**
+     * method to initialize local variable defaultBudget using blueprint
+     * @param defaultBudget
+     */
+    public void setDefaultBudget(DeadlineBudget defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    /**
+     * @param budgets - entity name (ex - "OnmsEvent") -> budget
+     */
+    public void setBudgets(Map<String, DeadlineBudget> budgets) {
+        this.budgets = new HashMap<String, DeadlineBudget>(budgets);
+    }
+
+    @Override
+    public void beforeParse(SearchContext<?> ctx) throws SearchException {
+        if (ctx.isStreaming()) {
+            return;
+        }
+        final DeadlineBudget budget = budgets.containsKey(ctx.getDefinition().getName()) ? budgets.get(ctx.getDefinition().getName()) : defaultBudget;
+        final String timeout = ctx.getRequest().getParameter(PARAMETER);
+        long timeoutMillis = budget.getDefaultMillis();
+        if (timeout != null) {
+            try {
+                timeoutMillis = Long.parseLong(timeout);
+            } catch (NumberFormatException e) {
+                throw new SearchException(Response.Status.BAD_REQUEST, "timeout must be a number of milliseconds, but was " + timeout, e);
+            }
+            if (timeoutMillis <= 0) {
+                throw new SearchException(Response.Status.BAD_REQUEST, "timeout must be positive, but was " + timeout);
+            }
+        }
+        if (budget.getMaxMillis() > 0 && (timeoutMillis <= 0 || timeoutMillis > budget.getMaxMillis())) {
+            timeoutMillis = budget.getMaxMillis();
+        }
+        if (timeoutMillis > 0) {
+            ctx.setTimeoutMillis(timeoutMillis);
+        }
+    }
+}
@@ -0,0 +1,364 @@
+package org.opennms.features.rest.demo.search.partition;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.ws.rs.core.Response;
+
+import org.opennms.core.criteria.Criteria;
+import org.opennms.core.criteria.Order;
+import org.opennms.core.criteria.restrictions.Restriction;
+import org.opennms.core.criteria.restrictions.Restrictions;
+import org.opennms.features.rest.demo.exception.DeadlineExceededException;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.search.ExecutionChain;
+import org.opennms.features.rest.demo.search.InMemoryQuery;
+import org.opennms.features.rest.demo.search.SearchContext;
+import org.opennms.features.rest.demo.search.SearchInterceptorAdapter;
+import org.opennms.features.rest.demo.util.Comparison;
+
+/**
+ * splits searches over a bounded time range into sub-ranges which are queried in parallel
+ * 
+ * plan    - a conjunctive query with a lower and an upper bound on a partition property
+ *           (ex - eventTime=ge=2013-06-01T00:00:00;eventTime=lt=2013-07-01T00:00:00)
+ *           is partitioned if the request asks for it (partition=true)
+ *           or automatically if the range is wider than thresholdMinutes, partition=false disables it
+ * execute - every sub-range is queried with limit offset + limit on a bounded pool,
+ *           ordered by the partition property the sub-ranges are concatenated and
+ *           the remaining ones are cancelled as soon as the limit is reached,
+ *           ordered by anything else the sorted sub-results are k-way merged
+ * 
+ * must be the last interceptor of the chain, every sub-range is passed on to the end of the chain in its own context
+ *
+ */
+public class TimePartitionInterceptor extends SearchInterceptorAdapter {
+
+    public static final String PARAMETER = "partition";
+    public static final String PARTITIONS_ATTRIBUTE = "timePartitions";
+    public static final String PARTITIONS_HEADER = "X-Partitions";
+
+    private long partitionMinutes = 1440;
+    private long thresholdMinutes = 10080;
+    private int maxPartitions = 32;
+    private int threads = 8;
+    private int queueSize = 64;
+    private long timeoutMillis = 30000;
+    private ThreadPoolExecutor executor;
+
+    /**
+     * @param partitionMinutes - minimum width of a sub-range, one day matches the daily table partitions
+     */
+    public void setPartitionMinutes(long partitionMinutes) {
+        this.partitionMinutes = partitionMinutes;
+    }
+
+    /**
+     * @param thresholdMinutes - ranges at least this wide are partitioned without being asked to
+     */
+    public void setThresholdMinutes(long thresholdMinutes) {
+        this.thresholdMinutes = thresholdMinutes;
+    }
+
+    /**
+     * @param maxPartitions - wider ranges get wider sub-ranges
+     */
+    public void setMaxPartitions(int maxPartitions) {
+        this.maxPartitions = maxPartitions;
+    }
+
+    /**
+     * @param threads - sub-range queries running at the same time over all searches
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param queueSize - sub-range queries waiting for a thread, further ones run in the request thread
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @param timeoutMillis - time a partitioned search may take before it is answered with 503
+     */
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * blueprint init-method
+     */
+    public void start() {
+        final AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rest-search-partition-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    @Override
+    public void plan(SearchContext<?> ctx) throws SearchException {
+        final String mode = ctx.getRequest().getParameter(PARAMETER);
+        if (ctx.isStreaming() || ctx.getCriteria().getLimit() == null || "false".equalsIgnoreCase(mode)
+                || ctx.getDefinition().getPartitionProperties().isEmpty() || !ctx.getDecoder().isConjunctive()) {
+            return;
+        }
+        Partitioning partitioning = null;
+        for (String property : ctx.getDefinition().getPartitionProperties()) {
+            final Partitioning candidate = findRange(ctx.getDecoder().getComparisons(), property);
+            if (candidate != null && (partitioning == null || candidate.getSpan() < partitioning.getSpan())) {
+                partitioning = candidate;
+            }
+        }
+        if (partitioning == null) {
+            return;
+        }
+        if (!"true".equalsIgnoreCase(mode) && partitioning.getSpan() < TimeUnit.MINUTES.toMillis(thresholdMinutes)) {
+            return;
+        }
+        final long width = Math.max(TimeUnit.MINUTES.toMillis(partitionMinutes), (partitioning.getSpan() + maxPartitions - 1) / maxPartitions);
+        if (partitioning.getSpan() <= width) {
+            return;
+        }
+        final Comparator<Object> comparator = InMemoryQuery.comparatorOf(ctx.getDefinition().getMetadata(), ctx.getCriteria());
+        if (comparator == null) {    //order can't be reproduced in memory
+            return;
+        }
+        partitioning.split(width, comparator);
+        ctx.setAttribute(PARTITIONS_ATTRIBUTE, partitioning);
+    }
+
+    @Override
+    public <T> List<T> execute(SearchContext<T> ctx, final ExecutionChain<T> chain) throws Exception {
+        final Partitioning partitioning = (Partitioning) ctx.getAttribute(PARTITIONS_ATTRIBUTE);
+        if (partitioning == null) {
+            return chain.proceed(ctx);
+        }
+        final Criteria crit = ctx.getCriteria();
+        final int offset = crit.getOffset() == null ? 0 : crit.getOffset();
+        final int window = offset + crit.getLimit();
+        final long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.min(timeoutMillis, ctx.getRemainingMillis()));
+
+        final List<Future<List<T>>> futures = new ArrayList<Future<List<T>>>();
+        for (int i = 0; i < partitioning.size(); i++) {
+            final SearchContext<T> sub = new SearchContext<T>(ctx.getDefinition(), ctx.getRequest());
+            sub.inheritDeadline(ctx);
+            sub.setDecoder(ctx.getDecoder());
+            sub.setCriteria(partitioning.createCriteria(crit, i, window));
+            futures.add(executor.submit(new Callable<List<T>>() {
+                public List<T> call() throws Exception {
+                    return chain.proceed(sub);
+                }
+            }));
+        }
+        try {
+            final List<T> merged;
+            if (partitioning.isOrderedByPartition(crit)) {
+                merged = concatenate(futures, partitioning.isAscending(crit), window, deadline);
+            } else {
+                final List<List<T>> results = new ArrayList<List<T>>();
+                for (Future<List<T>> future : futures) {
+                    results.add(get(future, deadline));
+                }
+                merged = merge(results, partitioning.getComparator(), window);
+            }
+            return new ArrayList<T>(merged.subList(Math.min(offset, merged.size()), merged.size()));
+        } catch (TimeoutException e) {
+            if (ctx.isExpired()) {
+                throw new DeadlineExceededException(ctx.getTimeoutMillis(), e);
+            }
+            throw new SearchException(Response.Status.SERVICE_UNAVAILABLE, "Partitioned search did not complete within "
+                                      + timeoutMillis + "ms, please narrow down the time range", e);
+        } finally {
+            for (Future<List<T>> future : futures) {
+                future.cancel(true);
+            }
+        }
+    }
+
+    @Override
+    public void afterSerialize(SearchContext<?> ctx) {
+        final Partitioning partitioning = (Partitioning) ctx.getAttribute(PARTITIONS_ATTRIBUTE);
+        if (partitioning != null) {
+            ctx.setResponse(Response.fromResponse(ctx.getResponse()).header(PARTITIONS_HEADER, partitioning.size()).build());
+        }
+    }
+
+    /**
+     * sub-ranges are disjoint, so in partition order their results are already sorted
+     * stops waiting as soon as the leading sub-ranges fill the window
+     */
+    private static <T> List<T> concatenate(List<Future<List<T>>> futures, boolean ascending, int window, long deadline) throws Exception {
+        final List<T> result = new ArrayList<T>();
+        for (int i = 0; i < futures.size() && result.size() < window; i++) {
+            result.addAll(get(futures.get(ascending ? i : futures.size() - 1 - i), deadline));
+        }
+        return result.size() > window ? result.subList(0, window) : result;
+    }
+
+    /**
+     * k-way merge of sorted lists, stops after window elements
+     */
+    private static <T> List<T> merge(final List<List<T>> sorted, final Comparator<Object> comparator, int window) {
+        final PriorityQueue<int[]> heads = new PriorityQueue<int[]>(Math.max(1, sorted.size()), new Comparator<int[]>() {
+            public int compare(int[] a, int[] b) {    //{list index, position}, ties keep partition order
+                int result = comparator.compare(sorted.get(a[0]).get(a[1]), sorted.get(b[0]).get(b[1]));
+                return result != 0 ? result : a[0] - b[0];
+            }
+        });
+        for (int i = 0; i < sorted.size(); i++) {
+            if (!sorted.get(i).isEmpty()) {
+                heads.add(new int[] {i, 0});
+            }
+        }
+        final List<T> result = new ArrayList<T>(window);
+        while (!heads.isEmpty() && result.size() < window) {
+            final int[] head = heads.poll();
+            final List<T> list = sorted.get(head[0]);
+            result.add(list.get(head[1]));
+            if (head[1] + 1 < list.size()) {
+                heads.add(new int[] {head[0], head[1] + 1});
+            }
+        }
+        return result;
+    }
+
+    private static <T> List<T> get(Future<List<T>> future, long deadline) throws Exception {
+        try {
+            return future.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * tightest lower and upper bound on the property
+     * @return null if the range is open on one side
+     */
+    private static Partitioning findRange(List<Comparison> comparisons, String property) {
+        Date lower = null;
+        Date upper = null;
+        for (Comparison comparison : comparisons) {
+            if (!comparison.getProperty().equals(property) || !(comparison.getCompareValue() instanceof Date)) {
+                continue;
+            }
+            final Date value = (Date) comparison.getCompareValue();
+            if (comparison.isLowerBound() && (lower == null || value.after(lower))) {
+                lower = value;
+            } else if (comparison.isUpperBound() && (upper == null || value.before(upper))) {
+                upper = value;
+            }
+        }
+        if (lower == null || upper == null || !upper.after(lower)) {
+            return null;
+        }
+        return new Partitioning(property, lower, upper);
+    }
+
+    /**
+     * the time range of a search and its sub-ranges
+     */
+    private static class Partitioning {
+        private final String property;
+        private final Date lower;
+        private final Date upper;
+        private final List<Date> boundaries = new ArrayList<Date>();
+        private Comparator<Object> comparator;
+
+        public Partitioning(String property, Date lower, Date upper) {
+            this.property = property;
+            this.lower = lower;
+            this.upper = upper;
+        }
+
+        public long getSpan() {
+            return upper.getTime() - lower.getTime();
+        }
+
+        public void split(long width, Comparator<Object> comparator) {
+            this.comparator = comparator;
+            boundaries.clear();
+            for (long t = lower.getTime(); t < upper.getTime(); t += width) {
+                boundaries.add(new Date(t));
+            }
+            boundaries.add(upper);
+        }
+
+        public int size() {
+            return boundaries.size() - 1;
+        }
+
+        public Comparator<Object> getComparator() {
+            return comparator;
+        }
+
+        /**
+         * the original restrictions still apply, the sub-range only narrows them down
+         * [from, to) for all but the last sub-range, which includes the upper bound
+         */
+        public Criteria createCriteria(Criteria crit, int index, int limit) {
+            final Criteria sub = new Criteria(crit.getCriteriaClass());
+            sub.setAliases(crit.getAliases());
+            sub.setFetchTypes(crit.getFetchTypes());
+            sub.setOrders(crit.getOrders());
+            sub.setDistinct(crit.isDistinct());
+            final List<Restriction> restrictions = new ArrayList<Restriction>(crit.getRestrictions());
+            restrictions.add(Restrictions.ge(property, boundaries.get(index)));
+            if (index == size() - 1) {
+                restrictions.add(Restrictions.le(property, boundaries.get(index + 1)));
+            } else {
+                restrictions.add(Restrictions.lt(property, boundaries.get(index + 1)));
+            }
+            sub.setRestrictions(restrictions);
+            sub.setLimit(limit);
+            sub.setOffset(0);
+            return sub;
+        }
+
+        public boolean isOrderedByPartition(Criteria crit) {
+            final List<Order> orders = new ArrayList<Order>(crit.getOrders());
+            return !orders.isEmpty() && orders.get(0).getAttribute().equals(property);
+        }
+
+        public boolean isAscending(Criteria crit) {
+            final List<Order> orders = new ArrayList<Order>(crit.getOrders());
+            return orders.isEmpty() || orders.get(0).asc();
+        }
+
+        @Override
+        public String toString() {
+            return property + " " + boundaries;
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.opennms.features.rest.demo.summary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.OnmsOutage;
+
+/**
+ * combined document returned by /nodes/{nodeId}/summary
+ * node, ip interfaces, alarms, outages and recent events
+ * 
+ * partial is set if at least one section did not complete,
+ * the sections list tells which one and why
+ *
+ */
+@XmlRootElement(name = "nodeSummary")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class NodeSummary {
+
+    @XmlAttribute
+    private int nodeId;
+    @XmlAttribute
+    private boolean partial = false;
+    @XmlAttribute
+    private long elapsedMs;
+
+    @XmlElement(name = "node")
+    private OnmsNode node;
+
+    @XmlElementWrapper(name = "ipInterfaces")
+    @XmlElement(name = "ipInterface")
+    private List<OnmsIpInterface> ipInterfaces;
+
+    @XmlElementWrapper(name = "alarms")
+    @XmlElement(name = "alarm")
+    private List<OnmsAlarm> alarms;
+
+    @XmlElementWrapper(name = "outages")
+    @XmlElement(name = "outage")
+    private List<OnmsOutage> outages;
+
+    @XmlElementWrapper(name = "events")
+    @XmlElement(name = "event")
+    private List<OnmsEvent> events;
+
+    @XmlElementWrapper(name = "sections")
+    @XmlElement(name = "section")
+    private List<SectionStatus> sections = new ArrayList<SectionStatus>();
+
+    public NodeSummary() {
+    }
+
+    public NodeSummary(int nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public boolean isPartial() {
+        return partial;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public void setElapsedMs(long elapsedMs) {
+        this.elapsedMs = elapsedMs;
+    }
+
+    public OnmsNode getNode() {
+        return node;
+    }
+
+    public void setNode(OnmsNode node) {
+        this.node = node;
+    }
+
+    public List<OnmsIpInterface> getIpInterfaces() {
+        return ipInterfaces;
+    }
+
+    public void setIpInterfaces(List<OnmsIpInterface> ipInterfaces) {
+        this.ipInterfaces = ipInterfaces;
+    }
+
+    public List<OnmsAlarm> getAlarms() {
+        return alarms;
+    }
+
+    public void setAlarms(List<OnmsAlarm> alarms) {
+        this.alarms = alarms;
+    }
+
+    public List<OnmsOutage> getOutages() {
+        return outages;
+    }
+
+    public void setOutages(List<OnmsOutage> outages) {
+        this.outages = outages;
+    }
+
+    public List<OnmsEvent> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<OnmsEvent> events) {
+        this.events = events;
+    }
+
+    public List<SectionStatus> getSections() {
+        return sections;
+    }
+
+    public void addSection(SectionStatus section) {
+        sections.add(section);
+        if (!section.isOk()) {
+            partial = true;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package org.opennms.features.rest.demo.summary;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.hibernate.Session;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * builds a {@link NodeSummary} by running all {@link SummarySection}s concurrently
+ * 
+ * every section runs in its own read-only session on a bounded executor
+ * and has its own row limit and time budget, counted from the start of the summary
+ * sections which time out, are rejected by the saturated executor or fail
+ * are left empty and reported in the sections list, the others are still returned
+ *
+ */
+public class NodeSummaryService {
+
+    private static Logger logger = LoggerFactory.getLogger(NodeSummaryService.class);
+
+    private ReadOnlySessionTemplate sessionTemplate;
+    private int threads = 4;
+    private int queueSize = 100;
+    private SectionBudget defaultBudget = new SectionBudget();
+    private Map<String, SectionBudget> budgets = new HashMap<String, SectionBudget>();
+    private ThreadPoolExecutor executor;
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * @param threads - maximum number of sections loaded at the same time
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    /**
+     * @param queueSize - sections waiting for a thread, further sections are rejected
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * budget of the sections without an entry in budgets
+     * @param defaultBudget
+     */
+    public void setDefaultBudget(SectionBudget defaultBudget) {
+        this.defaultBudget = defaultBudget;
+    }
+
+    /**
+     * @param budgets - section label (node, ipInterfaces, alarms, outages, events) -> budget
+     */
+    public void setBudgets(Map<String, SectionBudget> budgets) {
+        this.budgets = new HashMap<String, SectionBudget>(budgets);
+    }
+
+    /**
+     * blueprint init-method
+     */
+    public void start() {
+        final AtomicInteger counter = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(queueSize), new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rest-node-summary-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * load all sections of the summary
+     * @param nodeId
+     * @return the summary, partial if a section did not complete in its budget
+     */
+    public NodeSummary summarize(final int nodeId) {
+        final long start = System.nanoTime();
+        final NodeSummary summary = new NodeSummary(nodeId);
+        final Map<SummarySection, Future<Object>> futures = new EnumMap<SummarySection, Future<Object>>(SummarySection.class);
+
+        for (final SummarySection section : SummarySection.values()) {
+            final SectionBudget budget = budgetOf(section);
+            try {
+                futures.put(section, executor.submit(new Callable<Object>() {
+                    public Object call() throws Exception {
+                        return sessionTemplate.execute(new SessionCallback<Object>() {
+                            public Object doInSession(Session session) throws Exception {
+                                return section.load(session, nodeId, budget.getLimit(), timeoutSeconds(budget, start));
+                            }
+                        });
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                summary.addSection(new SectionStatus(section.label(), SectionStatus.REJECTED, 0, null, "too many summaries in progress"));
+            }
+        }
+
+        for (Map.Entry<SummarySection, Future<Object>> entry : futures.entrySet()) {
+            final SummarySection section = entry.getKey();
+            final Future<Object> future = entry.getValue();
+            final long remaining = start + TimeUnit.MILLISECONDS.toNanos(budgetOf(section).getTimeoutMillis()) - System.nanoTime();
+            try {
+                final int count = section.apply(summary, future.get(Math.max(remaining, 0), TimeUnit.NANOSECONDS));
+                summary.addSection(new SectionStatus(section.label(), SectionStatus.OK, elapsedMillis(start), count, null));
+            } catch (TimeoutException e) {
+                future.cancel(true);
+                summary.addSection(new SectionStatus(section.label(), SectionStatus.TIMEOUT, elapsedMillis(start), null,
+                        "no result within " + budgetOf(section).getTimeoutMillis() + " ms"));
+            } catch (ExecutionException e) {
+                logger.warn("summary section " + section.label() + " of node " + nodeId + " failed", e.getCause());
+                summary.addSection(new SectionStatus(section.label(), SectionStatus.ERROR, elapsedMillis(start), null, String.valueOf(e.getCause().getMessage())));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                future.cancel(true);
+                summary.addSection(new SectionStatus(section.label(), SectionStatus.TIMEOUT, elapsedMillis(start), null, "interrupted"));
+            }
+        }
+        summary.setElapsedMs(elapsedMillis(start));
+        return summary;
+    }
+
+    private SectionBudget budgetOf(SummarySection section) {
+        final SectionBudget budget = budgets.get(section.label());
+        return budget == null ? defaultBudget : budget;
+    }
+
+    /**
+     * statement timeout covering what is left of the section budget, at least one second
+     */
+    private static int timeoutSeconds(SectionBudget budget, long start) {
+        final long remaining = budget.getTimeoutMillis() - elapsedMillis(start);
+        return (int) Math.max(1, (remaining + 999) / 1000);
+    }
+
+    private static long elapsedMillis(long start) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    }
+}
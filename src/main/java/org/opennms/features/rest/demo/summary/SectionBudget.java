@@ -0,0 +1,46 @@
+package org.opennms.features.rest.demo.summary;
+
+/**
+ * limit and time budget of one section of the node summary
+ *
+ */
+public class SectionBudget {
+
+    private int limit = 10;
+    private long timeoutMillis = 2000;
+
+    public SectionBudget() {
+    }
+
+    public SectionBudget(int limit, long timeoutMillis) {
+        this.limit = limit;
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * maximum number of rows loaded for the section
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    public void setLimit(int limit) {
+        this.limit = limit;
+    }
+
+    /**
+     * time the section may take, measured from the start of the summary
+     */
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    public void setTimeoutMillis(long timeoutMillis) {
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "SectionBudget [limit=" + limit + ", timeoutMillis=" + timeoutMillis + "]";
+    }
+}
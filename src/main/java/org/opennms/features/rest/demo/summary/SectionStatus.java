@@ -0,0 +1,67 @@
+package org.opennms.features.rest.demo.summary;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * outcome of one section of a {@link NodeSummary}
+ * status is one of ok, timeout, rejected (executor saturated) or error
+ *
+ */
+@XmlRootElement(name = "section")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class SectionStatus {
+
+    public static final String OK = "ok";
+    public static final String TIMEOUT = "timeout";
+    public static final String REJECTED = "rejected";
+    public static final String ERROR = "error";
+
+    @XmlAttribute
+    private String name;
+    @XmlAttribute
+    private String status;
+    @XmlAttribute
+    private long elapsedMs;
+    @XmlAttribute
+    private Integer count;
+    @XmlAttribute
+    private String message;
+
+    public SectionStatus() {
+    }
+
+    public SectionStatus(String name, String status, long elapsedMs, Integer count, String message) {
+        this.name = name;
+        this.status = status;
+        this.elapsedMs = elapsedMs;
+        this.count = count;
+        this.message = message;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public long getElapsedMs() {
+        return elapsedMs;
+    }
+
+    public Integer getCount() {
+        return count;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    public boolean isOk() {
+        return OK.equals(status);
+    }
+}
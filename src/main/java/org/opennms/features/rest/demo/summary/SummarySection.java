@@ -0,0 +1,150 @@
+package org.opennms.features.rest.demo.summary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.opennms.features.rest.demo.EventResource;
+import org.opennms.features.rest.demo.NodeResource;
+import org.opennms.features.rest.demo.alarm.AlarmSnapshot;
+import org.opennms.features.rest.demo.outage.OpenOutageMap;
+import org.opennms.features.rest.demo.search.EntityMetadata;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.OnmsOutage;
+
+/**
+ * the sub-queries of a {@link NodeSummary}
+ * each section loads its rows in its own session and copies them into the summary
+ * the session is closed before the summary is marshalled, so the associations marshalled
+ * with the rows are initialized by the section
+ *
+ */
+public enum SummarySection {
+
+    NODE("node") {
+        Object load(Session session, int nodeId, int limit, int timeoutSeconds) {
+            final OnmsNode node = (OnmsNode) session.get(OnmsNode.class, nodeId);
+            if (node != null) {
+                ReadOnlySessionTemplate.fetch(session, OnmsNode.class, Collections.singletonList(node),
+                                              fetchPaths(OnmsNode.class, NodeResource.FETCH_PATHS), timeoutSeconds);
+            }
+            return node;
+        }
+
+        int apply(NodeSummary summary, Object result) {
+            summary.setNode((OnmsNode) result);
+            return result == null ? 0 : 1;
+        }
+    },
+
+    IP_INTERFACES("ipInterfaces") {
+        Object load(Session session, int nodeId, int limit, int timeoutSeconds) {
+            return list(session, "from OnmsIpInterface i where i.node.id = :nodeId order by i.id", nodeId, limit, timeoutSeconds,
+                        OnmsIpInterface.class, "snmpInterface");
+        }
+
+        @SuppressWarnings("unchecked")
+        int apply(NodeSummary summary, Object result) {
+            summary.setIpInterfaces((List<OnmsIpInterface>) result);
+            return summary.getIpInterfaces().size();
+        }
+    },
+
+    ALARMS("alarms") {
+        Object load(Session session, int nodeId, int limit, int timeoutSeconds) {
+            return list(session, "from OnmsAlarm a where a.node.id = :nodeId order by a.lastEventTime desc", nodeId, limit, timeoutSeconds,
+                        OnmsAlarm.class, AlarmSnapshot.FETCH_PATHS);
+        }
+
+        @SuppressWarnings("unchecked")
+        int apply(NodeSummary summary, Object result) {
+            summary.setAlarms((List<OnmsAlarm>) result);
+            return summary.getAlarms().size();
+        }
+    },
+
+    OUTAGES("outages") {
+        Object load(Session session, int nodeId, int limit, int timeoutSeconds) {
+            return list(session, "from OnmsOutage o where o.monitoredService.ipInterface.node.id = :nodeId order by o.ifLostService desc", nodeId, limit, timeoutSeconds,
+                        OnmsOutage.class, OpenOutageMap.FETCH_PATHS);
+        }
+
+        @SuppressWarnings("unchecked")
+        int apply(NodeSummary summary, Object result) {
+            summary.setOutages((List<OnmsOutage>) result);
+            return summary.getOutages().size();
+        }
+    },
+
+    EVENTS("events") {
+        Object load(Session session, int nodeId, int limit, int timeoutSeconds) {
+            return list(session, "from OnmsEvent e where e.node.id = :nodeId order by e.eventTime desc", nodeId, limit, timeoutSeconds,
+                        OnmsEvent.class, EventResource.FETCH_PATHS);
+        }
+
+        @SuppressWarnings("unchecked")
+        int apply(NodeSummary summary, Object result) {
+            summary.setEvents((List<OnmsEvent>) result);
+            return summary.getEvents().size();
+        }
+    };
+
+    private final String label;
+
+    private SummarySection(String label) {
+        this.label = label;
+    }
+
+    /**
+     * @return name used in the configuration and the sections list of the summary
+     */
+    public String label() {
+        return label;
+    }
+
+    /**
+     * run the query of the section
+     * @param session - read-only session owned by the section
+     * @param nodeId
+     * @param limit - maximum number of rows
+     * @param timeoutSeconds - JDBC statement timeout
+     * @return
+     */
+    abstract Object load(Session session, int nodeId, int limit, int timeoutSeconds);
+
+    /**
+     * store the result of {@link #load} in the summary
+     * @return number of rows
+     */
+    abstract int apply(NodeSummary summary, Object result);
+
+    /**
+     * run the query and initialize the given associations of the rows
+     */
+    private static List<?> list(Session session, String hql, int nodeId, int limit, int timeoutSeconds, Class<?> entityClass, String... fetchPaths) {
+        final Query query = session.createQuery(hql);
+        query.setInteger("nodeId", nodeId);
+        query.setMaxResults(limit);
+        query.setTimeout(timeoutSeconds);
+        return ReadOnlySessionTemplate.fetch(session, entityClass, query.list(), fetchPaths(entityClass, fetchPaths), timeoutSeconds);
+    }
+
+    /**
+     * @return the paths the entity model has
+     */
+    private static List<String> fetchPaths(Class<?> entityClass, String... paths) {
+        final List<String> resolved = new ArrayList<String>();
+        for (String path : paths) {
+            if (EntityMetadata.forClass(entityClass).resolve(path) != null) {
+                resolved.add(path);
+            }
+        }
+        return resolved;
+    }
+}
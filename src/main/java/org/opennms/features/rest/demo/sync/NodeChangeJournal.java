@@ -0,0 +1,389 @@
+package org.opennms.features.rest.demo.sync;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.Response;
+
+import org.hibernate.Session;
+import org.opennms.features.rest.demo.cache.RepresentationCache;
+import org.opennms.features.rest.demo.exception.SearchException;
+import org.opennms.features.rest.demo.index.NodeInventoryIndex;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.features.rest.demo.util.SessionCallback;
+import org.opennms.netmgt.model.OnmsNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * journal of node changes backing the delta synchronization of /nodes/changes
+ *
+ * the node table is scanned every scanInterval with two projection queries,
+ * a fingerprint of the synchronized columns and categories is kept per node
+ * and every node whose fingerprint changed, which appeared or which disappeared gets the next sequence number
+ * only the latest change of a node is kept, so answering a token costs O(changes since the token)
+ *
+ * the changed nodes are passed on to the {@link NodeInventoryIndex}, so it stays current between its full reloads,
+ * and their cached representations are invalidated in the {@link RepresentationCache}
+ * 
+ * deleted nodes (type 'D' or removed rows) are kept as tombstones for tombstoneRetention,
+ * tokens older than the oldest expired tombstone or issued before a restart of the bundle can't be answered
+ * and have to be replaced by a full synchronization (request without since)
+ *
+ */
+public class NodeChangeJournal implements NodeChangeJournalMBean {
+
+    private static Logger logger = LoggerFactory.getLogger(NodeChangeJournal.class);
+
+    private static final String NOT_DELETED = "(n.type is null or n.type <> 'D')";
+
+    private ReadOnlySessionTemplate sessionTemplate;
+    private NodeInventoryIndex inventoryIndex;
+    private RepresentationCache representationCache;
+    private long scanIntervalSeconds = 60;
+    private long tombstoneRetentionHours = 168;
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * tokens carry the start time of the journal, sequence numbers are only valid within one run
+     */
+    private final long epoch = System.currentTimeMillis();
+
+    private final Map<Integer, NodeState> states = new HashMap<Integer, NodeState>();
+    private final TreeMap<Long, Integer> changes = new TreeMap<Long, Integer>();
+    private long sequence = 0;
+    private long horizon = 0;
+    private int tombstones = 0;
+    private volatile boolean ready = false;
+    private volatile long lastScan = 0;
+    private volatile long lastScanMillis = 0;
+
+    /**
+     * method to initialize local variable sessionTemplate using blueprint
+     * @param sessionTemplate
+     */
+    public void setSessionTemplate(ReadOnlySessionTemplate sessionTemplate) {
+        this.sessionTemplate = sessionTemplate;
+    }
+
+    /**
+     * method to initialize local variable inventoryIndex using blueprint
+     * @param inventoryIndex
+     */
+    public void setInventoryIndex(NodeInventoryIndex inventoryIndex) {
+        this.inventoryIndex = inventoryIndex;
+    }
+
+    /**
+     * method to initialize local variable representationCache using blueprint
+     * @param representationCache
+     */
+    public void setRepresentationCache(RepresentationCache representationCache) {
+        this.representationCache = representationCache;
+    }
+
+    /**
+     * @param scanIntervalSeconds - delay between two scans of the node table
+     */
+    public void setScanIntervalSeconds(long scanIntervalSeconds) {
+        this.scanIntervalSeconds = scanIntervalSeconds;
+    }
+
+    /**
+     * @param tombstoneRetentionHours - how long deletions can be synchronized
+     */
+    public void setTombstoneRetentionHours(long tombstoneRetentionHours) {
+        this.tombstoneRetentionHours = tombstoneRetentionHours;
+    }
+
+    /**
+     * blueprint init-method, runs the first scan in the background and schedules the following ones
+     */
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "rest-node-change-journal");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        scheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                scan();
+            }
+        }, 0, scanIntervalSeconds, TimeUnit.SECONDS);
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    public synchronized long getSequence() {
+        return sequence;
+    }
+
+    public synchronized int getNodeCount() {
+        return states.size() - tombstones;
+    }
+
+    public synchronized int getTombstoneCount() {
+        return tombstones;
+    }
+
+    public long getLastScan() {
+        return lastScan;
+    }
+
+    public long getLastScanMillis() {
+        return lastScanMillis;
+    }
+
+    public void rescan() {
+        if (scheduler != null) {
+            scheduler.execute(new Runnable() {
+                public void run() {
+                    scan();
+                }
+            });
+        }
+    }
+
+    /**
+     * changes after the given token, oldest first
+     *
+     * @param token - token of the previous response, null to get every node
+     * @param limit - maximum number of changes (nodes and tombstones)
+     * @return
+     * @throws SearchException - 503 before the first scan, 400 for an invalid token,
+     *                           410 if the token can't be answered any more
+     */
+    public synchronized Delta changesSince(String token, int limit) throws SearchException {
+        if (!ready) {
+            throw new SearchException(Response.Status.SERVICE_UNAVAILABLE, "The node change journal is still loading, please retry");
+        }
+        final long since = parseToken(token);
+        final Delta delta = new Delta();
+        long last = since;
+        final Iterator<Map.Entry<Long, Integer>> tail = changes.tailMap(since, false).entrySet().iterator();
+        while (tail.hasNext() && delta.nodeIds.size() + delta.tombstones.size() < limit) {
+            final Map.Entry<Long, Integer> change = tail.next();
+            final NodeState state = states.get(change.getValue());
+            if (state.deleted) {
+                delta.tombstones.add(new NodeTombstone(change.getValue(), state.label, state.foreignSource, state.foreignId, new Date(state.changedTime)));
+            } else {
+                delta.nodeIds.add(change.getValue());
+            }
+            last = change.getKey();
+        }
+        delta.more = tail.hasNext();
+        delta.token = epoch + "-" + (delta.more ? last : sequence);
+        return delta;
+    }
+
+    private long parseToken(String token) throws SearchException {
+        if (token == null || token.isEmpty()) {
+            return 0;
+        }
+        final int separator = token.indexOf('-');
+        final long tokenEpoch;
+        final long tokenSequence;
+        try {
+            tokenEpoch = Long.parseLong(token.substring(0, Math.max(separator, 0)));
+            tokenSequence = Long.parseLong(token.substring(separator + 1));
+        } catch (NumberFormatException e) {
+            throw new SearchException(Response.Status.BAD_REQUEST, "Please specify a token returned by a previous request instead of \"" + token + "\"", e);
+        }
+        if (tokenEpoch != epoch || tokenSequence < horizon) {
+            throw new SearchException(Response.Status.GONE, "The token \"" + token + "\" has expired, please synchronize all nodes by omitting since");
+        }
+        if (tokenSequence > sequence) {
+            throw new SearchException(Response.Status.BAD_REQUEST, "Please specify a token returned by a previous request instead of \"" + token + "\"");
+        }
+        return tokenSequence;
+    }
+
+    /**
+     * load the fingerprints of all nodes and record the differences to the previous scan
+     */
+    void scan() {
+        try {
+            final long start = System.currentTimeMillis();
+            final Map<Integer, NodeState> scanned = sessionTemplate.execute(new SessionCallback<Map<Integer, NodeState>>() {
+                public Map<Integer, NodeState> doInSession(Session session) {
+                    final Map<Integer, NodeState> loaded = new HashMap<Integer, NodeState>();
+                    for (Object row : session.createQuery("select n.id, n.label, n.foreignSource, n.foreignId, n.labelSource, n.type, n.sysObjectId, n.sysName, "
+                                                          + "n.sysDescription, n.sysLocation, n.sysContact, n.netBiosName, n.netBiosDomain, n.operatingSystem, "
+                                                          + "n.lastCapsdPoll, a.lastModifiedDate from OnmsNode n left join n.assetRecord a where " + NOT_DELETED).list()) {
+                        final Object[] columns = (Object[]) row;
+                        long fingerprint = 17;
+                        for (Object column : columns) {
+                            fingerprint = 31 * fingerprint + (column == null ? 0 : column.hashCode());
+                        }
+                        loaded.put((Integer) columns[0], new NodeState(fingerprint, (String) columns[1], (String) columns[2], (String) columns[3]));
+                    }
+                    for (Object row : session.createQuery("select n.id, c.name from OnmsNode n join n.categories c where " + NOT_DELETED).list()) {
+                        final Object[] columns = (Object[]) row;
+                        final NodeState state = loaded.get(columns[0]);
+                        if (state != null) {
+                            state.fingerprint += 0x9e3779b97f4a7c15L * String.valueOf(columns[1]).hashCode();    //independent of the order of the categories
+                        }
+                    }
+                    return loaded;
+                }
+            });
+            final List<Integer> changed = apply(scanned, System.currentTimeMillis());
+            lastScan = System.currentTimeMillis();
+            lastScanMillis = lastScan - start;
+            if (ready && inventoryIndex != null) {      //the first scan records every node, the index loads them itself
+                inventoryIndex.invalidateNodes(changed);
+            }
+            if (ready && representationCache != null) {
+                for (Integer nodeId : changed) {
+                    representationCache.invalidate(OnmsNode.class.getSimpleName(), nodeId);
+                }
+            }
+            ready = true;
+            logger.debug("node change journal scanned {} nodes in {}ms, {} changes", scanned.size(), lastScanMillis, changed.size());
+        } catch (Exception e) {
+            logger.warn("failed to scan the nodes for the node change journal: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * @return ids of the nodes with a recorded change
+     */
+    private synchronized List<Integer> apply(Map<Integer, NodeState> scanned, long now) {
+        final List<Integer> changed = new ArrayList<Integer>();
+        for (Map.Entry<Integer, NodeState> entry : scanned.entrySet()) {
+            final NodeState previous = states.get(entry.getKey());
+            if (previous == null || previous.deleted || previous.fingerprint != entry.getValue().fingerprint) {
+                record(entry.getKey(), entry.getValue(), now);
+                changed.add(entry.getKey());
+            }
+        }
+        final List<Integer> deleted = new ArrayList<Integer>();
+        for (Map.Entry<Integer, NodeState> entry : states.entrySet()) {
+            if (!entry.getValue().deleted && !scanned.containsKey(entry.getKey())) {
+                deleted.add(entry.getKey());
+            }
+        }
+        for (Integer nodeId : deleted) {
+            final NodeState previous = states.get(nodeId);
+            final NodeState tombstone = new NodeState(0, previous.label, previous.foreignSource, previous.foreignId);
+            tombstone.deleted = true;
+            record(nodeId, tombstone, now);
+            changed.add(nodeId);
+        }
+        expireTombstones(now - TimeUnit.HOURS.toMillis(tombstoneRetentionHours));
+        return changed;
+    }
+
+    private void record(int nodeId, NodeState state, long now) {
+        final NodeState previous = states.put(nodeId, state);
+        if (previous != null) {
+            changes.remove(previous.sequence);
+            if (previous.deleted) {
+                tombstones--;
+            }
+        }
+        if (state.deleted) {
+            tombstones++;
+        }
+        state.sequence = ++sequence;
+        state.changedTime = now;
+        changes.put(state.sequence, nodeId);
+    }
+
+    /**
+     * changes are ordered by time, so only the head of the journal has to be looked at
+     */
+    private void expireTombstones(long cutoff) {
+        final Iterator<Map.Entry<Long, Integer>> it = changes.entrySet().iterator();
+        while (it.hasNext()) {
+            final Map.Entry<Long, Integer> change = it.next();
+            final NodeState state = states.get(change.getValue());
+            if (state.changedTime >= cutoff) {
+                break;
+            }
+            if (state.deleted) {
+                it.remove();
+                states.remove(change.getValue());
+                tombstones--;
+                horizon = Math.max(horizon, change.getKey());
+            }
+        }
+    }
+
+    /**
+     * result of {@link NodeChangeJournal#changesSince(String, int)}
+     */
+    public static class Delta {
+        private final List<Integer> nodeIds = new ArrayList<Integer>();
+        private final List<NodeTombstone> tombstones = new ArrayList<NodeTombstone>();
+        private String token;
+        private boolean more;
+
+        /**
+         * @return ids of the created or modified nodes, oldest change first
+         */
+        public List<Integer> getNodeIds() {
+            return nodeIds;
+        }
+
+        public List<NodeTombstone> getTombstones() {
+            return tombstones;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public boolean isMore() {
+            return more;
+        }
+    }
+
+    /**
+     * last seen state of a node
+     */
+    private static class NodeState {
+        private long fingerprint;
+        private final String label;
+        private final String foreignSource;
+        private final String foreignId;
+        private long sequence;
+        private long changedTime;
+        private boolean deleted = false;
+
+        private NodeState(long fingerprint, String label, String foreignSource, String foreignId) {
+            this.fingerprint = fingerprint;
+            this.label = label;
+            this.foreignSource = foreignSource;
+            this.foreignId = foreignId;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "NodeChangeJournal [ready=" + isReady() + ", sequence=" + getSequence() + ", nodes=" + getNodeCount()
+                + ", tombstones=" + getTombstoneCount() + "]";
+    }
+}
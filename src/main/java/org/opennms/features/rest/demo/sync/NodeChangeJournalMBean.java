@@ -0,0 +1,37 @@
+package org.opennms.features.rest.demo.sync;
+
+/**
+ * management interface of the {@link NodeChangeJournal}
+ *
+ */
+public interface NodeChangeJournalMBean {
+
+    /**
+     * @return true once the first scan has completed
+     */
+    boolean isReady();
+
+    /**
+     * @return current sequence number, incremented for every detected change
+     */
+    long getSequence();
+
+    int getNodeCount();
+
+    int getTombstoneCount();
+
+    /**
+     * @return milliseconds since the epoch of the last completed scan
+     */
+    long getLastScan();
+
+    /**
+     * @return duration of the last scan in milliseconds
+     */
+    long getLastScanMillis();
+
+    /**
+     * schedule an immediate scan
+     */
+    void rescan();
+}
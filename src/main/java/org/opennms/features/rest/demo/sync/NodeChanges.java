@@ -0,0 +1,75 @@
+package org.opennms.features.rest.demo.sync;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlElement;
+import javax.xml.bind.annotation.XmlElementWrapper;
+import javax.xml.bind.annotation.XmlRootElement;
+
+import org.opennms.netmgt.model.OnmsNode;
+
+/**
+ * document returned by /nodes/changes
+ * nodes created or modified and tombstones of nodes deleted since the requested token
+ * 
+ * token is passed as since parameter of the next request,
+ * more is set if the changes did not fit into the limit and the next request should follow immediately
+ *
+ */
+@XmlRootElement(name = "nodeChanges")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class NodeChanges {
+
+    @XmlAttribute
+    private String token;
+    @XmlAttribute
+    private boolean more = false;
+
+    @XmlElementWrapper(name = "nodes")
+    @XmlElement(name = "node")
+    private List<OnmsNode> nodes = new ArrayList<OnmsNode>();
+
+    @XmlElementWrapper(name = "deletedNodes")
+    @XmlElement(name = "deleted")
+    private List<NodeTombstone> deleted = new ArrayList<NodeTombstone>();
+
+    public NodeChanges() {
+    }
+
+    public NodeChanges(String token, boolean more) {
+        this.token = token;
+        this.more = more;
+    }
+
+    public String getToken() {
+        return token;
+    }
+
+    public boolean isMore() {
+        return more;
+    }
+
+    public List<OnmsNode> getNodes() {
+        return nodes;
+    }
+
+    public void setNodes(List<OnmsNode> nodes) {
+        this.nodes = nodes;
+    }
+
+    public List<NodeTombstone> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<NodeTombstone> deleted) {
+        this.deleted = deleted;
+    }
+
+    public boolean isEmpty() {
+        return nodes.isEmpty() && deleted.isEmpty();
+    }
+}
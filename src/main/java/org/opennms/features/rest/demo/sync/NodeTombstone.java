@@ -0,0 +1,60 @@
+package org.opennms.features.rest.demo.sync;
+
+import java.util.Date;
+
+import javax.xml.bind.annotation.XmlAccessType;
+import javax.xml.bind.annotation.XmlAccessorType;
+import javax.xml.bind.annotation.XmlAttribute;
+import javax.xml.bind.annotation.XmlRootElement;
+
+/**
+ * marker of a deleted node in a {@link NodeChanges} document
+ * carries the identifying properties the node had when it was last seen
+ *
+ */
+@XmlRootElement(name = "deleted")
+@XmlAccessorType(XmlAccessType.FIELD)
+public class NodeTombstone {
+
+    @XmlAttribute
+    private int id;
+    @XmlAttribute
+    private String label;
+    @XmlAttribute
+    private String foreignSource;
+    @XmlAttribute
+    private String foreignId;
+    @XmlAttribute
+    private Date deletedTime;
+
+    public NodeTombstone() {
+    }
+
+    public NodeTombstone(int id, String label, String foreignSource, String foreignId, Date deletedTime) {
+        this.id = id;
+        this.label = label;
+        this.foreignSource = foreignSource;
+        this.foreignId = foreignId;
+        this.deletedTime = deletedTime;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public String getForeignSource() {
+        return foreignSource;
+    }
+
+    public String getForeignId() {
+        return foreignId;
+    }
+
+    public Date getDeletedTime() {
+        return deletedTime;
+    }
+}
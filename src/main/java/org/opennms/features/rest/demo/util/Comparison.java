@@ -0,0 +1,140 @@
+package org.opennms.features.rest.demo.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * a single primitive FIQL comparison as decoded by the {@link QueryDecoder}
+ * ex - "eventTime=gt=2013-06-14T20:41:45" -> property eventTime, operator "gt"
+ *
+ */
+public class Comparison {
+
+    /**
+     * FIQL operators without the surrounding "="
+     */
+    public static final String EQ = "eq";
+    public static final String NE = "ne";
+    public static final String LT = "lt";
+    public static final String LE = "le";
+    public static final String GT = "gt";
+    public static final String GE = "ge";
+    public static final String IN = "in";
+    public static final String OUT = "out";
+
+    private final String property;
+    private final String operator;
+    private final String value;
+    private final Object compareValue;
+
+    /**
+     * @param property - property name as used in the query, may contain an alias (ex - ipInterface.ipAddress)
+     * @param operator - one of the operator constants
+     * @param value - compare value as given in the query
+     * @param compareValue - converted compare value, null for null / notNull checks,
+     * a {@link LongSet} or a list of converted values for =in= / =out=,
+     * a {@link WildcardPattern} for == / != with "*" on a string property
+     */
+    public Comparison(String property, String operator, String value, Object compareValue) {
+        this.property = property;
+        this.operator = operator;
+        this.value = value;
+        this.compareValue = compareValue;
+    }
+
+    public String getProperty() {
+        return property;
+    }
+
+    public String getOperator() {
+        return operator;
+    }
+
+    public String getValue() {
+        return value;
+    }
+
+    public Object getCompareValue() {
+        return compareValue;
+    }
+
+    /**
+     * @return true for =lt=, =le=, =gt= and =ge=
+     */
+    public boolean isRange() {
+        return LT.equals(operator) || LE.equals(operator) || GT.equals(operator) || GE.equals(operator);
+    }
+
+    /**
+     * @return true for =gt= and =ge=
+     */
+    public boolean isLowerBound() {
+        return GT.equals(operator) || GE.equals(operator);
+    }
+
+    /**
+     * @return true for =lt= and =le=
+     */
+    public boolean isUpperBound() {
+        return LT.equals(operator) || LE.equals(operator);
+    }
+
+    /**
+     * @return true for =in= and =out=
+     */
+    public boolean isSet() {
+        return IN.equals(operator) || OUT.equals(operator);
+    }
+
+    /**
+     * @return true for != and =out=
+     */
+    public boolean isNegated() {
+        return NE.equals(operator) || OUT.equals(operator);
+    }
+
+    /**
+     * @return true if the compare value is a wildcard pattern which can't use a btree index, ex - "*rtr*"
+     */
+    public boolean isUnanchoredWildcard() {
+        return compareValue instanceof WildcardPattern && !((WildcardPattern) compareValue).isPrefix()
+                && !((WildcardPattern) compareValue).isMatchAll();
+    }
+
+    /**
+     * the compare value as a string which is equal for equal values however they were written,
+     * ex - dates as milliseconds, the elements of =in= / =out= sorted
+     * 
+     * @return
+     */
+    public String getNormalizedValue() {
+        if (compareValue == null || compareValue instanceof WildcardPattern) {
+            return value;
+        } else if (compareValue instanceof Collection) {
+            final List<String> values = new ArrayList<String>();
+            for (Object element : (Collection<?>) compareValue) {
+                values.add(normalize(element));
+            }
+            Collections.sort(values);
+            return values.toString();
+        }
+        return normalize(compareValue);
+    }
+
+    private static String normalize(Object value) {
+        return value instanceof Date ? String.valueOf(((Date) value).getTime()) : String.valueOf(value);
+    }
+
+    @Override
+    public String toString() {
+        if (EQ.equals(operator)) {
+            return property + "==" + value;
+        } else if (NE.equals(operator)) {
+            return property + "!=" + value;
+        }
+        return property + "=" + operator + "=" + value;
+    }
+}
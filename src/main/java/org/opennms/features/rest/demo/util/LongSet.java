@@ -0,0 +1,120 @@
+package org.opennms.features.rest.demo.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * immutable sorted set of primitive longs, used for the values of =in= / =out= on numeric properties
+ * values are parsed straight from the query string into a long[] without boxing
+ *
+ */
+public final class LongSet {
+
+    private final long[] values;
+
+    private LongSet(long[] values) {
+        this.values = values;
+    }
+
+    /**
+     * parse a comma separated list of integers, ex - "12,7,12,300"
+     * duplicates are removed
+     * 
+     * @param list
+     * @return
+     * @throws NumberFormatException - if an element is not an integer or the list is empty
+     */
+    public static LongSet parse(CharSequence list) {
+        long[] parsed = new long[Math.max(4, list.length() / 2)];
+        int count = 0;
+        int i = 0;
+        final int length = list.length();
+        while (i <= length) {
+            int start = i;
+            boolean negative = false;
+            if (i < length && list.charAt(i) == '-') {
+                negative = true;
+                i++;
+            }
+            long value = 0;
+            int digits = 0;
+            while (i < length && list.charAt(i) != ',') {
+                final int digit = list.charAt(i) - '0';
+                if (digit < 0 || digit > 9 || value > (Long.MAX_VALUE - digit) / 10) {
+                    throw new NumberFormatException("\"" + list.subSequence(start, nextComma(list, i)) + "\" is not a valid integer");
+                }
+                value = value * 10 + digit;
+                digits++;
+                i++;
+            }
+            if (digits == 0) {
+                throw new NumberFormatException("Empty value in list \"" + list + "\"");
+            }
+            if (count == parsed.length) {
+                parsed = Arrays.copyOf(parsed, count * 2);
+            }
+            parsed[count++] = negative ? -value : value;
+            i++;    //skip the comma
+        }
+        Arrays.sort(parsed, 0, count);
+        int unique = 0;
+        for (int j = 0; j < count; j++) {
+            if (unique == 0 || parsed[j] != parsed[unique - 1]) {
+                parsed[unique++] = parsed[j];
+            }
+        }
+        return new LongSet(Arrays.copyOf(parsed, unique));
+    }
+
+    private static int nextComma(CharSequence list, int from) {
+        int i = from;
+        while (i < list.length() && list.charAt(i) != ',') {
+            i++;
+        }
+        return i;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    public long get(int index) {
+        return values[index];
+    }
+
+    public boolean contains(long value) {
+        return Arrays.binarySearch(values, value) >= 0;
+    }
+
+    /**
+     * @return true if every value fits into an int
+     */
+    public boolean isIntRange() {
+        return values.length == 0 || (values[0] >= Integer.MIN_VALUE && values[values.length - 1] <= Integer.MAX_VALUE);
+    }
+
+    /**
+     * split into parameter lists for IN clauses, boxing happens only here
+     * @param chunkSize - maximum number of parameters per IN clause
+     * @param asInt - box as Integer instead of Long
+     * @return
+     */
+    public List<List<Object>> chunks(int chunkSize, boolean asInt) {
+        final List<List<Object>> chunks = new ArrayList<List<Object>>();
+        for (int from = 0; from < values.length; from += chunkSize) {
+            final int to = Math.min(from + chunkSize, values.length);
+            final List<Object> chunk = new ArrayList<Object>(to - from);
+            for (int i = from; i < to; i++) {
+                chunk.add(asInt ? Integer.valueOf((int) values[i]) : Long.valueOf(values[i]));
+            }
+            chunks.add(chunk);
+        }
+        return chunks;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(values);
+    }
+}
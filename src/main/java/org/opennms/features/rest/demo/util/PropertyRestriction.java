@@ -0,0 +1,21 @@
+package org.opennms.features.rest.demo.util;
+
+import org.opennms.core.criteria.restrictions.Restriction;
+
+/**
+ * creates the restriction of a query property which is not a column of the queried entity,
+ * ex - membership of the node of an alarm in a category
+ * registered per property name, the {@link QueryDecoder} hands over the comparison instead of creating the restriction itself
+ *
+ */
+public interface PropertyRestriction {
+
+    /**
+     * @param propertyName - property as used in the query
+     * @param operator - one of the {@link Comparison} operator constants
+     * @param values - compare values as given in the query, several for =in= / =out=
+     * @return
+     * @throws Exception - ParseException if the operator or a value is not supported
+     */
+    Restriction create(String propertyName, String operator, String[] values) throws Exception;
+}
@@ -0,0 +1,184 @@
+package org.opennms.features.rest.demo.util;
+
+/**
+ * mergeable quantile sketch with relative error guarantees for positive values
+ *
+ * values are counted in logarithmic buckets, bucket i covers (gamma^(i-1), gamma^i] with gamma = (1 + a) / (1 - a),
+ * so every quantile is returned within the relative accuracy a of the exact value
+ * memory is bounded by maxBins, if the range of the values needs more buckets the lowest ones are collapsed
+ * (only low quantiles lose accuracy then)
+ * values <= 0 are counted separately and reported as 0
+ *
+ * two sketches with the same accuracy can be merged, the result is the same as adding all values to one sketch
+ * not thread safe
+ *
+ */
+public class QuantileSketch {
+
+    private static final double MIN_INDEXABLE = 1e-9;
+
+    private final double relativeAccuracy;
+    private final double gamma;
+    private final double logGamma;
+    private final int maxBins;
+
+    private long[] bins = new long[0];
+    private int offset = 0;                     //bucket index of bins[0]
+    private long zeroCount = 0;
+    private long count = 0;
+    private double sum = 0;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    /**
+     * @param relativeAccuracy - ex - 0.01 for quantiles within 1% of the exact value
+     * @param maxBins - maximum number of buckets
+     */
+    public QuantileSketch(double relativeAccuracy, int maxBins) {
+        if (relativeAccuracy <= 0 || relativeAccuracy >= 1) {
+            throw new IllegalArgumentException("Relative accuracy must be between 0 and 1, but was " + relativeAccuracy);
+        }
+        if (maxBins < 1) {
+            throw new IllegalArgumentException("Maximum number of bins must be positive, but was " + maxBins);
+        }
+        this.relativeAccuracy = relativeAccuracy;
+        this.gamma = (1 + relativeAccuracy) / (1 - relativeAccuracy);
+        this.logGamma = Math.log(gamma);
+        this.maxBins = maxBins;
+    }
+
+    public void add(double value) {
+        count++;
+        sum += value;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        if (value <= MIN_INDEXABLE) {
+            zeroCount++;
+        } else {
+            increment((int) Math.ceil(Math.log(value) / logGamma), 1);
+        }
+    }
+
+    /**
+     * add all values of another sketch
+     * @param other - sketch with the same relative accuracy
+     */
+    public void merge(QuantileSketch other) {
+        if (Double.compare(other.gamma, gamma) != 0) {
+            throw new IllegalArgumentException("Sketches with relative accuracy " + relativeAccuracy + " and "
+                                               + other.relativeAccuracy + " can't be merged");
+        }
+        if (other.count == 0) {
+            return;
+        }
+        count += other.count;
+        sum += other.sum;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        zeroCount += other.zeroCount;
+        for (int i = 0; i < other.bins.length; i++) {
+            if (other.bins[i] > 0) {
+                increment(other.offset + i, other.bins[i]);
+            }
+        }
+    }
+
+    /**
+     * @param quantile - 0..1, ex - 0.99
+     * @return estimated value of the quantile, NaN if the sketch is empty
+     */
+    public double getQuantile(double quantile) {
+        if (quantile < 0 || quantile > 1) {
+            throw new IllegalArgumentException("Quantile must be between 0 and 1, but was " + quantile);
+        }
+        if (count == 0) {
+            return Double.NaN;
+        }
+        final double rank = quantile * (count - 1);
+        long seen = zeroCount;
+        if (rank < seen) {
+            return Math.max(min, 0);
+        }
+        for (int i = 0; i < bins.length; i++) {
+            seen += bins[i];
+            if (rank < seen) {
+                final double estimate = 2 * Math.pow(gamma, offset + i) / (gamma + 1);
+                return Math.max(min, Math.min(max, estimate));
+            }
+        }
+        return max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    /**
+     * @return NaN if the sketch is empty
+     */
+    public double getMean() {
+        return count == 0 ? Double.NaN : sum / count;
+    }
+
+    /**
+     * @return NaN if the sketch is empty
+     */
+    public double getMin() {
+        return count == 0 ? Double.NaN : min;
+    }
+
+    /**
+     * @return NaN if the sketch is empty
+     */
+    public double getMax() {
+        return count == 0 ? Double.NaN : max;
+    }
+
+    public double getRelativeAccuracy() {
+        return relativeAccuracy;
+    }
+
+    /**
+     * @return number of buckets currently allocated
+     */
+    public int getBinCount() {
+        return bins.length;
+    }
+
+    private void increment(int index, long n) {
+        if (bins.length == 0) {
+            bins = new long[1];
+            offset = index;
+        }
+        int low = Math.min(offset, index);
+        final int high = Math.max(offset + bins.length - 1, index);
+        if (high - low + 1 > maxBins) {
+            low = high - maxBins + 1;           //collapse the lowest buckets
+        }
+        if (low != offset || high - low + 1 != bins.length) {
+            resize(low, high);
+        }
+        bins[Math.max(index, low) - offset] += n;
+    }
+
+    private void resize(int low, int high) {
+        final long[] resized = new long[high - low + 1];
+        for (int i = 0; i < bins.length; i++) {
+            if (bins[i] > 0) {
+                resized[Math.max(offset + i, low) - low] += bins[i];
+            }
+        }
+        bins = resized;
+        offset = low;
+    }
+
+    @Override
+    public String toString() {
+        return "QuantileSketch [count=" + count + ", mean=" + getMean() + ", p50=" + getQuantile(0.5)
+                + ", p99=" + getQuantile(0.99) + ", bins=" + bins.length + "]";
+    }
+}
@@ -2,7 +2,13 @@ package org.opennms.features.rest.demo.util;
 
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.opennms.core.criteria.Criteria;
 import org.opennms.core.criteria.CriteriaBuilder;
@@ -13,6 +19,20 @@ import org.opennms.features.rest.demo.exception.NotFIQLOperatorException;
 
 public abstract class QueryDecoder {
 
+    /**
+     * maximum number of values in a single IN clause
+     * longer =in= / =out= lists are split into several clauses (Oracle rejects more than 1000 elements)
+     */
+    public static final int MAX_IN_PARAMETERS = 1000;
+
+    private static final char VALUE_LIST_MARK = '\u0001'; //stands in for a protected "(a,b,c)" value list
+
+    private final List<Comparison> comparisons = new ArrayList<Comparison>(); //primitive comparisons in order of appearance
+    private int disjunctions = 0; //number of OR (,) pivots merged
+    private final List<String> valueLists = new ArrayList<String>(); //value lists of =in= / =out= taken out of the query
+    private final Map<Restriction, String> canonicalForms = new IdentityHashMap<Restriction, String>(); //decoded restriction -> canonical query
+    private String canonicalQuery = "";
+
     /**
      * Application of template pattern to query decoder algorithm
      * main algorithmic flow to convert a given FIQL string to a matching criteria object
@@ -21,9 +41,16 @@ public abstract class QueryDecoder {
      * @throws Exception
      */
     public Criteria FIQLtoCriteria(String fiqlQuery, int limit, int offset, String orderBy, String order) throws Exception{
+        comparisons.clear();
+        disjunctions = 0;
+        valueLists.clear();
+        canonicalForms.clear();
+        canonicalQuery = "";
         final CriteriaBuilder builder = CreateCriteriaBuilder();
         
         if (!orderBy.equals("")) {
+            orderBy = getPropertyPath(orderBy);
+            validateProperty(orderBy);
             builder.clearOrder();
             if (order.equals("desc")) {
                 builder.orderBy(orderBy).desc();
@@ -41,8 +68,10 @@ public abstract class QueryDecoder {
             return crit;
         }
         final List<Restriction> restrictions = new ArrayList<Restriction>(crit.getRestrictions());
-        Restriction restriction = removeBrackets(fiqlQuery);
+        Restriction restriction = removeBrackets(protectValueLists(fiqlQuery));
         restrictions.add(restriction);
+        canonicalQuery = canonicalForms.containsKey(restriction) ? canonicalForms.get(restriction) : fiqlQuery;
+        canonicalForms.clear();
         crit.setRestrictions(restrictions);
         
         return crit;
@@ -55,6 +84,43 @@ public abstract class QueryDecoder {
      */
     protected abstract CriteriaBuilder CreateCriteriaBuilder();
     
+    /**
+     * replace the bracketed value lists of =in= / =out= by a marker and index
+     * so their brackets and commas are not taken as grouping and OR by the following steps
+     * ex - "id=in=(1,2,3);nodeLabel==x" -> "id=in=\u00010;nodeLabel==x"
+     * 
+     * @param fiqlQuery
+     * @return
+     * @throws ParseException - if a value list is not closed
+     */
+    private String protectValueLists(String fiqlQuery) throws ParseException {
+        if (fiqlQuery.indexOf("=" + Comparison.IN + "=(") == -1 && fiqlQuery.indexOf("=" + Comparison.OUT + "=(") == -1) {
+            return fiqlQuery;
+        }
+        final StringBuilder protectedQuery = new StringBuilder(fiqlQuery.length());
+        int i = 0;
+        while (i < fiqlQuery.length()) {
+            int listStart = -1;
+            if (fiqlQuery.startsWith("=" + Comparison.IN + "=(", i)) {
+                listStart = i + Comparison.IN.length() + 3;
+            } else if (fiqlQuery.startsWith("=" + Comparison.OUT + "=(", i)) {
+                listStart = i + Comparison.OUT.length() + 3;
+            }
+            if (listStart == -1) {
+                protectedQuery.append(fiqlQuery.charAt(i++));
+                continue;
+            }
+            int listEnd = fiqlQuery.indexOf(')', listStart);
+            if (listEnd == -1) {
+                throw new ParseException("Value list starting at index " + (listStart - 1) + " is not closed", listStart - 1);
+            }
+            protectedQuery.append(fiqlQuery, i, listStart - 1).append(VALUE_LIST_MARK).append(valueLists.size());
+            valueLists.add(fiqlQuery.substring(listStart, listEnd));
+            i = listEnd + 1;
+        }
+        return protectedQuery.toString();
+    }
+
     /**
      * create a Restriction object out of the queries containing brackets
      * 
@@ -155,7 +221,7 @@ public abstract class QueryDecoder {
      * @return
      * @throws MergeException 
      */
-    private static Restriction mergeBracketedRestrictions(
+    private Restriction mergeBracketedRestrictions(
                                                     List<Restriction> componentRestrictions,
                                                     List<Character> pivotPoints) throws MergeException {
         if (componentRestrictions.size() != pivotPoints.size() + 1) {
@@ -181,6 +247,7 @@ public abstract class QueryDecoder {
                 } else {
                     //else just add the next component restriction to andMergeList
                     andMergedList.add(componentRestrictions.get(pivotIndex + 1));
+                    disjunctions++;
                 }
                 
                 pivotIndex++; //increment pivot index to access next restriction element
@@ -196,9 +263,46 @@ public abstract class QueryDecoder {
             }
         }
         
+        canonicalForms.put(result, canonicalForm(componentRestrictions, pivotPoints));
         return result;
     }
 
+    /**
+     * method to create the canonical form of merged restriction components
+     * operands of AND and OR are sorted, so reordered but equal queries get the same form
+     * ex - "b==2;a==1,c==3" -> "((a=eq=1;b=eq=2),c=eq=3)"
+     * 
+     * @param componentRestrictions
+     * @param pivotPoints
+     * @return
+     */
+    private String canonicalForm(List<Restriction> componentRestrictions, List<Character> pivotPoints) {
+        final List<String> groups = new ArrayList<String>();
+        List<String> operands = new ArrayList<String>();
+        for (int i = 0; i < componentRestrictions.size(); i++) {
+            final String operand = canonicalForms.get(componentRestrictions.get(i));
+            operands.add(operand == null ? String.valueOf(componentRestrictions.get(i)) : operand);
+            if (i == pivotPoints.size() || pivotPoints.get(i) == ',') {
+                Collections.sort(operands);
+                groups.add(operands.size() == 1 ? operands.get(0) : join(operands, ';'));
+                operands = new ArrayList<String>();
+            }
+        }
+        Collections.sort(groups);
+        return groups.size() == 1 ? groups.get(0) : join(groups, ',');
+    }
+
+    private static String join(List<String> operands, char operator) {
+        final StringBuilder joined = new StringBuilder("(");
+        for (String operand : operands) {
+            if (joined.length() > 1) {
+                joined.append(operator);
+            }
+            joined.append(operand);
+        }
+        return joined.append(')').toString();
+    }
+
     /**
      * Method takes a complex query with AND (;) & OR (,)
      * and returns the matching restriction
@@ -239,43 +343,84 @@ public abstract class QueryDecoder {
 
     /**
      * method to create restrictions for the primitive operators
-     * primitive operators = (==, !=, =lt=, =le=, =gt=, =ge=)
+     * primitive operators = (==, !=, =lt=, =le=, =gt=, =ge=, =in=, =out=)
      * 
      * @param primitiveQuery
      * @return
      * @throws Exception 
      */
-    private Restriction createPrimitiveRestriction(
+    private Restriction createPrimitiveRestriction(String primitiveQuery) throws Exception {
+        final int decoded = comparisons.size();
+        final Restriction restriction = createComparisonRestriction(primitiveQuery);
+        if (comparisons.size() == decoded + 1) {
+            final Comparison comparison = comparisons.get(decoded);
+            canonicalForms.put(restriction, comparison.getProperty() + "=" + comparison.getOperator() + "=" + comparison.getNormalizedValue());
+        }
+        return restriction;
+    }
+
+    private Restriction createComparisonRestriction(
                                             String primitiveQuery) throws Exception {
         if (primitiveQuery.equals("")) {
             throw new ParseException("Please specify a not-null primitive query", 0);
         }
         //pre-processing the string by split("=")
         String[] componentStrings = primitiveQuery.split("=");
+        componentStrings[0] = componentStrings[0].endsWith("!")
+                              ? getPropertyPath(componentStrings[0].substring(0, componentStrings[0].length() - 1)) + "!"
+                              : getPropertyPath(componentStrings[0]);
+        final String queriedProperty = componentStrings[0].endsWith("!") ? componentStrings[0].substring(0, componentStrings[0].length() - 1) : componentStrings[0];
+        validateProperty(queriedProperty);
+        
+        final PropertyRestriction propertyRestriction = getPropertyRestriction(queriedProperty);
+        if (propertyRestriction != null) {
+            return createPropertyRestriction(propertyRestriction, componentStrings, primitiveQuery);
+        }
                 
         if (componentStrings.length == 2 && componentStrings[0].endsWith("!")) {//case "!="
             String propertyName = componentStrings[0].substring(0, componentStrings[0].length() - 1);
             if ("null".equalsIgnoreCase(componentStrings[1])) {
+                comparisons.add(new Comparison(propertyName, Comparison.NE, componentStrings[1], null));
                 return Restrictions.isNotNull(propertyName);
             } else if ("notNull".equalsIgnoreCase(componentStrings[1])) {
+                comparisons.add(new Comparison(propertyName, Comparison.NE, componentStrings[1], null));
                 return Restrictions.isNull(propertyName);
             }
             Object compareWith = getCompareObject(propertyName, componentStrings[1]);
+            WildcardPattern pattern = compareWith instanceof String ? WildcardPattern.of(componentStrings[1]) : null;
+            if (pattern != null) {
+                comparisons.add(new Comparison(propertyName, Comparison.NE, componentStrings[1], pattern));
+                return Restrictions.not(createWildcardRestriction(propertyName, pattern));
+            }
+            comparisons.add(new Comparison(propertyName, Comparison.NE, componentStrings[1], compareWith));
             return Restrictions.ne(propertyName, compareWith);
         } 
         else if (componentStrings.length == 3) {
             
             if (componentStrings[1].equals("")) {//case "=="
                 if ("null".equalsIgnoreCase(componentStrings[2])) {
+                    comparisons.add(new Comparison(componentStrings[0], Comparison.EQ, componentStrings[2], null));
                     return Restrictions.isNull(componentStrings[0]);
                 } else if ("notNull".equalsIgnoreCase(componentStrings[2])) {
+                    comparisons.add(new Comparison(componentStrings[0], Comparison.EQ, componentStrings[2], null));
                     return Restrictions.isNotNull(componentStrings[0]);
                 }
                 Object compareWith = getCompareObject(componentStrings[0], componentStrings[2]);
+                WildcardPattern pattern = compareWith instanceof String ? WildcardPattern.of(componentStrings[2]) : null;
+                if (pattern != null) {
+                    comparisons.add(new Comparison(componentStrings[0], Comparison.EQ, componentStrings[2], pattern));
+                    return createWildcardRestriction(componentStrings[0], pattern);
+                }
+                comparisons.add(new Comparison(componentStrings[0], Comparison.EQ, componentStrings[2], compareWith));
                 return Restrictions.eq(componentStrings[0], compareWith); 
             }
             
+            if (componentStrings[1].equals(Comparison.IN) || componentStrings[1].equals(Comparison.OUT)) {//case "=in=" & "=out="
+                return createSetRestriction(componentStrings[0], componentStrings[1], componentStrings[2]);
+            }
+            
             Object compareWith = getCompareObject(componentStrings[0], componentStrings[2]);
+            comparisons.add(new Comparison(componentStrings[0], componentStrings[1], componentStrings[2], compareWith));
             if (componentStrings[1].equals("lt")) {//case "=lt="
                 return Restrictions.lt(componentStrings[0], compareWith); 
             } 
@@ -293,6 +438,197 @@ public abstract class QueryDecoder {
                                            "\" is invalid. Please specify a valid operator.");
     }
 
+    /**
+     * hand a comparison on a property with a registered {@link PropertyRestriction} over to it
+     * 
+     * @param propertyRestriction
+     * @param componentStrings - the primitive query split by "="
+     * @param primitiveQuery
+     * @return
+     * @throws Exception
+     */
+    private Restriction createPropertyRestriction(PropertyRestriction propertyRestriction, String[] componentStrings,
+                                                  String primitiveQuery) throws Exception {
+        final String propertyName;
+        final String operator;
+        final String value;
+        final String[] values;
+        if (componentStrings.length == 2 && componentStrings[0].endsWith("!")) {//case "!="
+            propertyName = componentStrings[0].substring(0, componentStrings[0].length() - 1);
+            operator = Comparison.NE;
+            value = componentStrings[1];
+            values = new String[] {value};
+        } else if (componentStrings.length == 3) {
+            propertyName = componentStrings[0];
+            operator = componentStrings[1].equals("") ? Comparison.EQ : componentStrings[1];
+            if (operator.equals(Comparison.IN) || operator.equals(Comparison.OUT)) {
+                if (componentStrings[2].length() < 2 || componentStrings[2].charAt(0) != VALUE_LIST_MARK) {
+                    throw new ParseException("Please specify the values of =" + operator + "= in brackets, ex - " + propertyName + "=" + operator + "=(a,b,c)", 0);
+                }
+                final String list = valueLists.get(Integer.parseInt(componentStrings[2].substring(1)));
+                if (list.equals("")) {
+                    throw new ParseException("Please specify at least one value for =" + operator + "= on " + propertyName, 0);
+                }
+                value = "(" + list + ")";
+                values = list.split(",", -1);
+            } else {
+                value = componentStrings[2];
+                values = new String[] {value};
+            }
+        } else {
+            throw new NotFIQLOperatorException("operator used with query string \"" + primitiveQuery + 
+                                               "\" is invalid. Please specify a valid operator.");
+        }
+        final boolean valueList = operator.equals(Comparison.IN) || operator.equals(Comparison.OUT);
+        comparisons.add(new Comparison(propertyName, operator, value, valueList ? Arrays.asList(values) : value));
+        return propertyRestriction.create(propertyName, operator, values);
+    }
+
+    /**
+     * method to create the restriction of a string compared with "*" wildcards
+     * "x*" becomes LIKE 'x%', which the database answers with a btree index range,
+     * patterns starting with a wildcard become a general LIKE and are charged by the query cost estimator
+     * 
+     * @param propertyName
+     * @param pattern
+     * @return
+     */
+    private Restriction createWildcardRestriction(String propertyName, WildcardPattern pattern) {
+        if (pattern.isMatchAll()) {
+            return Restrictions.isNotNull(propertyName);
+        }
+        return Restrictions.like(propertyName, pattern.toLike());
+    }
+
+    /**
+     * method to create the restriction of =in= / =out=
+     * values of integer properties are parsed into a {@link LongSet} without boxing every element,
+     * all other values go through getCompareObject one by one
+     * lists longer than MAX_IN_PARAMETERS are split into several IN clauses, OR-ed for =in= and AND-ed (NOT IN) for =out=
+     * 
+     * @param propertyName
+     * @param operator - Comparison.IN or Comparison.OUT
+     * @param listReference - marker and index of the protected value list
+     * @return
+     * @throws Exception 
+     */
+    private Restriction createSetRestriction(String propertyName, String operator, String listReference) throws Exception {
+        if (listReference.length() < 2 || listReference.charAt(0) != VALUE_LIST_MARK) {
+            throw new ParseException("Please specify the values of =" + operator + "= in brackets, ex - " + propertyName + "=" + operator + "=(a,b,c)", 0);
+        }
+        final String list = valueLists.get(Integer.parseInt(listReference.substring(1)));
+        if (list.equals("")) {
+            throw new ParseException("Please specify at least one value for =" + operator + "= on " + propertyName, 0);
+        }
+        final int firstComma = list.indexOf(',');
+        final Object first = getCompareObject(propertyName, firstComma == -1 ? list : list.substring(0, firstComma));
+
+        final List<List<Object>> chunks;
+        final Object compareValue;
+        if (first instanceof Integer || first instanceof Long) {
+            final LongSet values = LongSet.parse(list);
+            if (first instanceof Integer && !values.isIntRange()) {
+                throw new NumberFormatException("Values of " + propertyName + " must be integers, but were " + list);
+            }
+            chunks = values.chunks(MAX_IN_PARAMETERS, first instanceof Integer);
+            compareValue = values;
+        } else {
+            final Set<Object> values = new LinkedHashSet<Object>();
+            values.add(first);
+            if (firstComma != -1) {
+                for (String value : list.substring(firstComma + 1).split(",", -1)) {
+                    values.add(getCompareObject(propertyName, value));
+                }
+            }
+            final List<Object> distinct = new ArrayList<Object>(values);
+            chunks = new ArrayList<List<Object>>();
+            for (int from = 0; from < distinct.size(); from += MAX_IN_PARAMETERS) {
+                chunks.add(distinct.subList(from, Math.min(from + MAX_IN_PARAMETERS, distinct.size())));
+            }
+            compareValue = distinct;
+        }
+        comparisons.add(new Comparison(propertyName, operator, "(" + list + ")", compareValue));
+
+        Restriction result = null;
+        for (List<Object> chunk : chunks) {
+            final Restriction in = operator.equals(Comparison.IN) ? Restrictions.in(propertyName, chunk) : Restrictions.not(Restrictions.in(propertyName, chunk));
+            if (result == null) {
+                result = in;
+            } else if (operator.equals(Comparison.IN)) {
+                result = Restrictions.or(result, in);
+            } else {
+                result = Restrictions.and(result, in);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * primitive comparisons decoded by the last call of FIQLtoCriteria
+     * used by the search pipeline to analyse a query without inspecting the restrictions
+     * 
+     * @return
+     */
+    public List<Comparison> getComparisons() {
+        return Collections.unmodifiableList(comparisons);
+    }
+
+    /**
+     * canonical form of the query decoded by the last call of FIQLtoCriteria
+     * property paths are resolved, values converted and operands of AND / OR sorted,
+     * so equal queries get the same form regardless of how they were written
+     * 
+     * @return ex - "(alarmAckUser=eq=null;severity=ge=6)", empty for an empty query
+     */
+    public String getCanonicalQuery() {
+        return canonicalQuery;
+    }
+
+    /**
+     * @return number of OR (,) operators in the decoded query
+     */
+    public int getDisjunctionCount() {
+        return disjunctions;
+    }
+
+    /**
+     * @return true if the decoded query only combines comparisons with AND (;)
+     */
+    public boolean isConjunctive() {
+        return disjunctions == 0;
+    }
+
+    /**
+     * called for every property name and the orderBy before any restriction is created
+     * extended classes can reject unknown properties here, so invalid queries fail before reaching the database
+     * 
+     * @param propertyName
+     * @throws ParseException - if the property does not exist
+     */
+    protected void validateProperty(String propertyName) throws ParseException {
+    }
+
+    /**
+     * extended classes map property names of the query to the property path they stand for,
+     * ex - "nodeId" to "node.id", the restriction and the recorded comparison use the path
+     * 
+     * @param propertyName
+     * @return the path, propertyName itself by default
+     */
+    protected String getPropertyPath(String propertyName) {
+        return propertyName;
+    }
+
+    /**
+     * extended classes return the {@link PropertyRestriction} of properties which are not columns of the queried entity
+     * 
+     * @param propertyName
+     * @return null to create the restriction of the property from its compare object
+     */
+    protected PropertyRestriction getPropertyRestriction(String propertyName) {
+        return null;
+    }
+
     /**
      * For the given property name respective comparable object is created
      * other than creating the comparable object validation checks can be added
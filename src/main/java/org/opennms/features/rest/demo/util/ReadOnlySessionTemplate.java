@@ -0,0 +1,223 @@
+package org.opennms.features.rest.demo.util;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.hibernate.FlushMode;
+import org.hibernate.HibernateException;
+import org.hibernate.Query;
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.Transaction;
+import org.opennms.core.criteria.Criteria;
+import org.opennms.netmgt.dao.hibernate.HibernateCriteriaConverter;
+
+/**
+ * opens a dedicated hibernate session for work the DAO interfaces can't express
+ * (cursors, fetch sizes, ...)
+ *
+ * sessions are read-only with flush mode MANUAL and the transaction is always rolled back
+ *
+ */
+public class ReadOnlySessionTemplate {
+
+    /**
+     * maximum number of ids in the IN clause of a fetch query
+     */
+    private static final int FETCH_CHUNK_SIZE = 1000;
+
+    private SessionFactory sessionFactory;
+    private int fetchSize = 0;
+    private ScheduledExecutorService canceller;
+
+    /**
+     * method to initialize local variable sessionFactory using blueprint
+     * @param sessionFactory
+     */
+    public void setSessionFactory(SessionFactory sessionFactory) {
+        this.sessionFactory = sessionFactory;
+    }
+
+    /**
+     * JDBC fetch size of {@link #findMatching(Criteria)}, 0 keeps the driver default
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * read-only replacement of OnmsDao.findMatching
+     * entities are loaded without snapshots for dirty checking and the session is never flushed
+     * 
+     * @param crit
+     * @return
+     * @throws Exception
+     */
+    public <T> List<T> findMatching(final Criteria crit) throws Exception {
+        return findMatching(crit, 0);
+    }
+
+    /**
+     * read-only findMatching limited to timeoutMillis
+     * the timeout becomes the JDBC statement timeout (rounded up to seconds)
+     * and the statement is cancelled through the session once it has passed
+     * 
+     * @param crit
+     * @param timeoutMillis - 0 for no timeout
+     * @return
+     * @throws Exception - the exception of the cancelled statement if the timeout has passed
+     */
+    public <T> List<T> findMatching(final Criteria crit, final long timeoutMillis) throws Exception {
+        return findMatching(crit, timeoutMillis, Collections.<String>emptySet());
+    }
+
+    /**
+     * read-only findMatching which also initializes the given lazy associations of the results
+     * each association costs one fetch join query per {@value #FETCH_CHUNK_SIZE} results,
+     * so the number of statements does not grow with the size of the page
+     * 
+     * @param crit
+     * @param timeoutMillis - 0 for no timeout
+     * @param fetchPaths - associations of the root entity, dotted paths initialize every association on the way
+     *                     (ex - "categories", "monitoredService.ipInterface.node")
+     * @return
+     * @throws Exception
+     */
+    public <T> List<T> findMatching(final Criteria crit, final long timeoutMillis, final Collection<String> fetchPaths) throws Exception {
+        return execute(new SessionCallback<List<T>>() {
+            @SuppressWarnings("unchecked")
+            public List<T> doInSession(final Session session) throws Exception {
+                final org.hibernate.Criteria criteria = toHibernateCriteria(crit, session).setReadOnly(true).setFlushMode(FlushMode.MANUAL);
+                if (fetchSize > 0) {
+                    criteria.setFetchSize(fetchSize);
+                }
+                if (timeoutMillis <= 0) {
+                    return fetch(session, crit.getCriteriaClass(), criteria.list(), fetchPaths, 0);
+                }
+                final int timeoutSeconds = (int) Math.min(Integer.MAX_VALUE, (timeoutMillis + 999) / 1000);
+                criteria.setTimeout(timeoutSeconds);
+                final ScheduledFuture<?> cancel = canceller().schedule(new Runnable() {
+                    public void run() {
+                        try {
+                            session.cancelQuery();
+                        } catch (HibernateException e) {
+                            //statement already finished
+                        }
+                    }
+                }, timeoutMillis, TimeUnit.MILLISECONDS);
+                try {
+                    return fetch(session, crit.getCriteriaClass(), criteria.list(), fetchPaths, timeoutSeconds);
+                } finally {
+                    cancel.cancel(false);
+                }
+            }
+        });
+    }
+
+    /**
+     * initialize the lazy associations of already loaded entities,
+     * the fetch joins resolve to the instances of the session so the results are completed in place
+     * used by callbacks of {@link #execute(SessionCallback)} which load their entities themselves
+     * 
+     * @param session - session the results were loaded in
+     * @param entityClass - class of the results
+     * @param results
+     * @param fetchPaths
+     * @param timeoutSeconds - statement timeout, 0 for none
+     * @return results
+     */
+    public static <T> List<T> fetch(Session session, Class<?> entityClass, List<T> results, Collection<String> fetchPaths, int timeoutSeconds) {
+        if (results.isEmpty() || fetchPaths.isEmpty()) {
+            return results;
+        }
+        final List<Serializable> ids = new ArrayList<Serializable>(results.size());
+        for (T result : results) {
+            ids.add(session.getIdentifier(result));
+        }
+        for (String path : fetchPaths) {
+            final StringBuilder joins = new StringBuilder();
+            String owner = "e";
+            int level = 0;
+            for (String association : path.split("\\.")) {
+                final String alias = "f" + level++;
+                joins.append(" left join fetch ").append(owner).append('.').append(association).append(' ').append(alias);
+                owner = alias;
+            }
+            final String hql = "select distinct e from " + entityClass.getName() + " e" + joins + " where e.id in (:ids)";
+            for (int i = 0; i < ids.size(); i += FETCH_CHUNK_SIZE) {
+                final Query query = session.createQuery(hql).setParameterList("ids", ids.subList(i, Math.min(ids.size(), i + FETCH_CHUNK_SIZE)));
+                if (timeoutSeconds > 0) {
+                    query.setTimeout(timeoutSeconds);
+                }
+                query.setReadOnly(true).list();
+            }
+        }
+        return results;
+    }
+
+    private synchronized ScheduledExecutorService canceller() {
+        if (canceller == null) {
+            canceller = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                public Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "rest-query-canceller");
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return canceller;
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public synchronized void stop() {
+        if (canceller != null) {
+            canceller.shutdownNow();
+            canceller = null;
+        }
+    }
+
+    /**
+     * run the callback in a new read-only session and close the session afterwards
+     * 
+     * @param callback
+     * @return result of the callback
+     * @throws Exception
+     */
+    public <T> T execute(SessionCallback<T> callback) throws Exception {
+        final Session session = sessionFactory.openSession();
+        try {
+            session.setDefaultReadOnly(true);
+            session.setFlushMode(FlushMode.MANUAL);
+            final Transaction tx = session.beginTransaction();
+            try {
+                return callback.doInSession(session);
+            } finally {
+                tx.rollback();
+            }
+        } finally {
+            session.close();
+        }
+    }
+
+    /**
+     * convert a core.criteria object into a hibernate criteria bound to the given session
+     * 
+     * @param crit
+     * @param session
+     * @return
+     */
+    public org.hibernate.Criteria toHibernateCriteria(Criteria crit, Session session) {
+        return new HibernateCriteriaConverter().convert(crit, session);
+    }
+}
@@ -0,0 +1,18 @@
+package org.opennms.features.rest.demo.util;
+
+import org.hibernate.Session;
+
+/**
+ * unit of work executed by {@link ReadOnlySessionTemplate} inside a dedicated session
+ *
+ * @param <T> result type
+ */
+public interface SessionCallback<T> {
+
+    /**
+     * @param session - read-only session with flush mode MANUAL
+     * @return
+     * @throws Exception
+     */
+    T doInSession(Session session) throws Exception;
+}
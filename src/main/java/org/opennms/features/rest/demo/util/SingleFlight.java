@@ -0,0 +1,80 @@
+package org.opennms.features.rest.demo.util;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * deduplicates concurrent executions of the same work
+ * 
+ * the first caller for a key executes the callable in its own thread, callers arriving
+ * while it is running wait for and share its result
+ * results and failures are never cached, the key is released as soon as the execution finishes
+ *
+ * @param <K> key type
+ * @param <V> result type
+ */
+public class SingleFlight<K, V> {
+
+    private final ConcurrentMap<K, FutureTask<V>> inFlight = new ConcurrentHashMap<K, FutureTask<V>>();
+    private final AtomicLong executions = new AtomicLong();
+    private final AtomicLong shared = new AtomicLong();
+
+    /**
+     * @param key - identifies identical work
+     * @param callable - the work
+     * @param timeout - how long a waiter waits for the result of another caller
+     * @param unit
+     * @return result of the callable
+     * @throws TimeoutException - if a waiter timed out, the execution itself is not interrupted
+     * @throws Exception - the exception thrown by the callable, for the executing caller and every waiter
+     */
+    public V execute(K key, Callable<V> callable, long timeout, TimeUnit unit) throws Exception {
+        final FutureTask<V> task = new FutureTask<V>(callable);
+        final FutureTask<V> running = inFlight.putIfAbsent(key, task);
+        try {
+            if (running == null) {
+                executions.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    inFlight.remove(key, task);
+                }
+                return task.get();
+            }
+            shared.incrementAndGet();
+            return running.get(timeout, unit);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * @return number of executions of a callable
+     */
+    public long getExecutions() {
+        return executions.get();
+    }
+
+    /**
+     * @return number of callers which shared the result of another caller
+     */
+    public long getShared() {
+        return shared.get();
+    }
+
+    /**
+     * @return number of keys currently executing
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+}
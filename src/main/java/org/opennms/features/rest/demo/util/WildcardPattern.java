@@ -0,0 +1,74 @@
+package org.opennms.features.rest.demo.util;
+
+/**
+ * a FIQL compare value containing "*" wildcards, ex - "label==core-rtr*"
+ * kept as the compare value of the {@link Comparison} so the pattern is not mistaken for a literal string
+ *
+ */
+public final class WildcardPattern {
+
+    public static final char WILDCARD = '*';
+
+    private final String pattern;
+    private final String prefix; //literal characters before the first wildcard
+
+    private WildcardPattern(String pattern) {
+        this.pattern = pattern;
+        this.prefix = pattern.substring(0, pattern.indexOf(WILDCARD));
+    }
+
+    /**
+     * @param value - compare value as given in the query
+     * @return the pattern or null if the value contains no wildcard
+     */
+    public static WildcardPattern of(String value) {
+        return value.indexOf(WILDCARD) == -1 ? null : new WildcardPattern(value);
+    }
+
+    /**
+     * @return true for "x*", a pattern which can use a btree index
+     */
+    public boolean isPrefix() {
+        return prefix.length() > 0 && pattern.indexOf(WILDCARD) == pattern.length() - 1;
+    }
+
+    /**
+     * @return true if the pattern consists of wildcards only and matches every value
+     */
+    public boolean isMatchAll() {
+        for (int i = 0; i < pattern.length(); i++) {
+            if (pattern.charAt(i) != WILDCARD) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * @return the pattern in SQL LIKE syntax, "%" and "_" of the query are escaped with the default escape character "\"
+     */
+    public String toLike() {
+        final StringBuilder like = new StringBuilder(pattern.length() + 4);
+        for (int i = 0; i < pattern.length(); i++) {
+            final char c = pattern.charAt(i);
+            if (c == WILDCARD) {
+                like.append('%');
+            } else {
+                if (c == '%' || c == '_' || c == '\\') {
+                    like.append('\\');
+                }
+                like.append(c);
+            }
+        }
+        return like.toString();
+    }
+
+    @Override
+    public String toString() {
+        return pattern;
+    }
+}
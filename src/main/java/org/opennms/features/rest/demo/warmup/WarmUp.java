@@ -0,0 +1,313 @@
+package org.opennms.features.rest.demo.warmup;
+
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.ext.MessageBodyWriter;
+
+import org.apache.cxf.jaxrs.impl.MetadataMap;
+import org.apache.cxf.jaxrs.provider.JAXBElementProvider;
+import org.apache.cxf.jaxrs.provider.json.JSONProvider;
+import org.opennms.features.rest.demo.AlarmResource;
+import org.opennms.features.rest.demo.EventResource;
+import org.opennms.features.rest.demo.NodeResource;
+import org.opennms.features.rest.demo.NotificationResource;
+import org.opennms.features.rest.demo.OutageResource;
+import org.opennms.features.rest.demo.index.NodeInventoryIndex;
+import org.opennms.features.rest.demo.search.EntityMetadata;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsAlarmCollection;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsEventCollection;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.OnmsNodeList;
+import org.opennms.netmgt.model.OnmsNotification;
+import org.opennms.netmgt.model.OnmsNotificationCollection;
+import org.opennms.netmgt.model.OnmsOutage;
+import org.opennms.netmgt.model.OnmsOutageCollection;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * warms the bundle up in the background right after blueprint has started it
+ * 
+ * 1. builds the entity metadata used to validate query properties
+ * 2. creates the JAXB contexts of all collection types by writing an empty collection as XML and JSON
+ * 3. runs the configured representative searches through the resources and writes their results,
+ *    which compiles the criteria / HQL, loads the decoder and interceptor classes and lets the JIT see the hot paths
+ * 
+ * readiness is reported only after the warm-up has finished, failed steps are logged and don't block it
+ *
+ */
+public class WarmUp implements WarmUpMBean {
+
+    private static Logger logger = LoggerFactory.getLogger(WarmUp.class);
+
+    private static final Annotation[] NO_ANNOTATIONS = new Annotation[0];
+    private static final Class<?>[] ENTITIES = {OnmsNode.class, OnmsEvent.class, OnmsAlarm.class, OnmsOutage.class, OnmsNotification.class};
+    private static final Class<?>[] COLLECTIONS = {OnmsNodeList.class, OnmsEventCollection.class, OnmsAlarmCollection.class,
+                                                   OnmsOutageCollection.class, OnmsNotificationCollection.class};
+
+    private NodeResource nodeResource;
+    private EventResource eventResource;
+    private AlarmResource alarmResource;
+    private OutageResource outageResource;
+    private NotificationResource notificationResource;
+    private NodeInventoryIndex inventoryIndex;
+    private MessageBodyWriter<Object> jsonProvider = new JSONProvider<Object>();
+
+    private boolean enabled = true;
+    private String queries = "";
+    private int iterations = 3;
+
+    private final JAXBElementProvider<Object> xmlProvider = new JAXBElementProvider<Object>();
+    private Thread thread;
+    private volatile boolean finished = false;
+    private volatile long elapsedMillis = -1;
+    private volatile int failures = 0;
+    private volatile String lastFailure;
+
+    /**
+     * method to initialize local variable nodeResource using blueprint
+     * @param nodeResource
+     */
+    public void setNodeResource(NodeResource nodeResource) {
+        this.nodeResource = nodeResource;
+    }
+
+    /**
+     * method to initialize local variable eventResource using blueprint
+     * @param eventResource
+     */
+    public void setEventResource(EventResource eventResource) {
+        this.eventResource = eventResource;
+    }
+
+    /**
+     * method to initialize local variable alarmResource using blueprint
+     * @param alarmResource
+     */
+    public void setAlarmResource(AlarmResource alarmResource) {
+        this.alarmResource = alarmResource;
+    }
+
+    /**
+     * method to initialize local variable outageResource using blueprint
+     * @param outageResource
+     */
+    public void setOutageResource(OutageResource outageResource) {
+        this.outageResource = outageResource;
+    }
+
+    /**
+     * method to initialize local variable notificationResource using blueprint
+     * @param notificationResource
+     */
+    public void setNotificationResource(NotificationResource notificationResource) {
+        this.notificationResource = notificationResource;
+    }
+
+    /**
+     * method to initialize local variable inventoryIndex using blueprint
+     * @param inventoryIndex
+     */
+    public void setInventoryIndex(NodeInventoryIndex inventoryIndex) {
+        this.inventoryIndex = inventoryIndex;
+    }
+
+    /**
+     * provider used to write the JSON of the warm-up results, the streaming provider of the server
+     * @param jsonProvider
+     */
+    public void setJsonProvider(MessageBodyWriter<Object> jsonProvider) {
+        this.jsonProvider = jsonProvider;
+    }
+
+    /**
+     * @param enabled - false to report readiness right away
+     */
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * representative searches separated by "|", each as resource path and query string
+     * ex - "events?_s=eventSeverity=ge=5&limit=10|alarms?limit=10&orderBy=lastEventTime&order=desc"
+     * @param queries
+     */
+    public void setQueries(String queries) {
+        this.queries = queries;
+    }
+
+    /**
+     * @param iterations - number of runs of every search
+     */
+    public void setIterations(int iterations) {
+        this.iterations = iterations;
+    }
+
+    /**
+     * blueprint init-method, the warm-up runs in its own thread so the bundle start is not delayed
+     */
+    public void start() {
+        if (!enabled) {
+            finished = true;
+            elapsedMillis = 0;
+            return;
+        }
+        thread = new Thread(new Runnable() {
+            public void run() {
+                warmUp();
+            }
+        }, "rest-warmup");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * blueprint destroy-method
+     */
+    public void stop() {
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    private void warmUp() {
+        final long start = System.currentTimeMillis();
+        logger.info("Warm-up started");
+        for (Class<?> entity : ENTITIES) {
+            try {
+                EntityMetadata.forClass(entity);
+            } catch (RuntimeException e) {
+                fail("metadata of " + entity.getSimpleName(), e);
+            }
+        }
+        final JSONProvider<Object> emptyJsonProvider = new JSONProvider<Object>();
+        for (Class<?> collection : COLLECTIONS) {
+            try {
+                final Object empty = collection.newInstance();
+                xmlProvider.writeTo(empty, collection, collection, NO_ANNOTATIONS, MediaType.APPLICATION_XML_TYPE, new MetadataMap<String, Object>(), NullOutputStream.INSTANCE);
+                emptyJsonProvider.writeTo(empty, collection, collection, NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), NullOutputStream.INSTANCE);
+            } catch (Exception e) {
+                fail("JAXB context of " + collection.getSimpleName(), e);
+            }
+        }
+        for (int i = 0; i < iterations && !Thread.currentThread().isInterrupted(); i++) {
+            for (String query : queries.split("\\|")) {
+                if (query.trim().length() > 0 && !Thread.currentThread().isInterrupted()) {
+                    runQuery(query.trim());
+                }
+            }
+        }
+        elapsedMillis = System.currentTimeMillis() - start;
+        finished = true;
+        logger.info("Warm-up finished in {} ms with {} failures", elapsedMillis, failures);
+    }
+
+    /**
+     * run one search through its resource and write the result as XML and JSON
+     * @param query - ex - "events?_s=eventSeverity=ge=5&limit=10"
+     */
+    private void runQuery(String query) {
+        final int questionMark = query.indexOf('?');
+        final String path = questionMark == -1 ? query : query.substring(0, questionMark);
+        final Map<String, String> parameters = new HashMap<String, String>();
+        if (questionMark != -1) {
+            for (String parameter : query.substring(questionMark + 1).split("&")) {
+                final int equals = parameter.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(parameter.substring(0, equals), parameter.substring(equals + 1));
+                }
+            }
+        }
+        final String queryString = parameters.get("_s");
+        final String limit = parameters.get("limit");
+        final String offset = parameters.get("offset");
+        final String orderBy = parameters.get("orderBy");
+        final String order = parameters.get("order");
+        try {
+            final Response response;
+            if (path.equals("nodes")) {
+                response = nodeResource.searchNodes(queryString, limit, offset, orderBy, order, null);
+            } else if (path.equals("events")) {
+                response = eventResource.searchEvents(queryString, limit, offset, orderBy, order, null, null, null);
+            } else if (path.equals("alarms")) {
+                response = alarmResource.searchAlarms(queryString, limit, offset, orderBy, order, null);
+            } else if (path.equals("outages")) {
+                response = outageResource.searchOutages(queryString, limit, offset, orderBy, order, null);
+            } else if (path.equals("notifications")) {
+                response = notificationResource.searchNotifications(queryString, limit, offset, orderBy, order, null);
+            } else {
+                fail(query, new IllegalArgumentException("Unknown resource " + path));
+                return;
+            }
+            final Object entity = response.getEntity();
+            if (response.getStatus() != 200 || entity == null) {
+                fail(query, new IllegalStateException("Status " + response.getStatus() + " " + entity));
+                return;
+            }
+            xmlProvider.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS, MediaType.APPLICATION_XML_TYPE, new MetadataMap<String, Object>(), NullOutputStream.INSTANCE);
+            jsonProvider.writeTo(entity, entity.getClass(), entity.getClass(), NO_ANNOTATIONS, MediaType.APPLICATION_JSON_TYPE, new MetadataMap<String, Object>(), NullOutputStream.INSTANCE);
+        } catch (Exception e) {
+            fail(query, e);
+        }
+    }
+
+    private void fail(String step, Exception e) {
+        failures++;
+        lastFailure = step + ": " + e;
+        logger.warn("Warm-up step {} failed", step, e);
+    }
+
+    public boolean isReady() {
+        return finished && (inventoryIndex == null || inventoryIndex.isReady());
+    }
+
+    public long getElapsedMillis() {
+        return elapsedMillis;
+    }
+
+    public int getFailures() {
+        return failures;
+    }
+
+    public String getLastFailure() {
+        return lastFailure;
+    }
+
+    /**
+     * @return names of the steps, used in the readiness response
+     */
+    public List<String> getPendingSteps() {
+        final List<String> pending = new ArrayList<String>();
+        if (!finished) {
+            pending.add("warm-up");
+        }
+        if (inventoryIndex != null && !inventoryIndex.isReady()) {
+            pending.add("node inventory index");
+        }
+        return pending;
+    }
+
+    /**
+     * discards the warm-up output
+     */
+    private static final class NullOutputStream extends OutputStream {
+        private static final NullOutputStream INSTANCE = new NullOutputStream();
+
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package org.opennms.features.rest.demo.warmup;
+
+/**
+ * management interface of the {@link WarmUp}
+ *
+ */
+public interface WarmUpMBean {
+
+    /**
+     * @return true once the warm-up has finished and the node inventory index is loaded
+     */
+    boolean isReady();
+
+    /**
+     * @return milliseconds the warm-up took, -1 while it is running
+     */
+    long getElapsedMillis();
+
+    /**
+     * @return number of warm-up steps which failed, failures don't block readiness
+     */
+    int getFailures();
+
+    /**
+     * @return description of the last failed step, null if none failed
+     */
+    String getLastFailure();
+}
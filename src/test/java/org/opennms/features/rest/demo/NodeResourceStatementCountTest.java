@@ -0,0 +1,178 @@
+package org.opennms.features.rest.demo;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.Callable;
+
+import javax.ws.rs.core.Response;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
+import org.opennms.features.rest.demo.index.NodeInventoryIndex;
+import org.opennms.features.rest.demo.search.SearchEngine;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.netmgt.dao.api.CategoryDao;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.model.OnmsCategory;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.OnmsNodeList;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * the number of SQL statements of a node page must not depend on the number of nodes in it
+ * the node endpoints run against a temporary database with the inventory index not loaded (database fallbacks)
+ *
+ */
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={
+        "classpath:/META-INF/opennms/applicationContext-soa.xml",
+        "classpath:/META-INF/opennms/applicationContext-dao.xml",
+        "classpath*:/META-INF/opennms/component-dao.xml",
+        "classpath:/META-INF/opennms/applicationContext-minimal-conf.xml"
+})
+@JUnitConfigurationEnvironment
+@JUnitTemporaryDatabase
+public class NodeResourceStatementCountTest {
+
+    private static final String CATEGORY = "StatementCount";
+    private static final String FOREIGN_SOURCE = "statement-count";
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private NodeDao nodeDao;
+
+    @Autowired
+    private CategoryDao categoryDao;
+
+    @Autowired
+    private DistPollerDao distPollerDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private NodeResource resource;
+    private int created = 0;
+
+    @Before
+    public void setUp() {
+        final ReadOnlySessionTemplate sessionTemplate = new ReadOnlySessionTemplate();
+        sessionTemplate.setSessionFactory(sessionFactory);
+        final SearchEngine searchEngine = new SearchEngine();
+        searchEngine.setSessionTemplate(sessionTemplate);
+
+        resource = new NodeResource();
+        resource.setNodeDao(nodeDao);
+        resource.setCategoryDao(categoryDao);
+        resource.setSessionTemplate(sessionTemplate);
+        resource.setSearchEngine(searchEngine);
+        resource.setInventoryIndex(new NodeInventoryIndex());      //not started, the endpoints query the database
+
+        new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                if (categoryDao.findByName(CATEGORY) == null) {
+                    categoryDao.save(new OnmsCategory(CATEGORY));
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testSearchNodes() throws Exception {
+        addNodes(20);
+        final long onePage = countStatements(new Callable<Response>() {
+            public Response call() {
+                return resource.searchNodes("foreignSource==" + FOREIGN_SOURCE, "1", "0", null, null, null);
+            }
+        }, 1);
+        final long twentyPage = countStatements(new Callable<Response>() {
+            public Response call() {
+                return resource.searchNodes("foreignSource==" + FOREIGN_SOURCE, "20", "0", null, null, null);
+            }
+        }, 20);
+        assertEquals("statements of a page of 1 and of 20 nodes", onePage, twentyPage);
+    }
+
+    @Test
+    public void testGetNodesByCategory() throws Exception {
+        final Callable<Response> byCategory = new Callable<Response>() {
+            public Response call() {
+                return resource.getNodesByCategory(CATEGORY);
+            }
+        };
+        addNodes(1);
+        final long few = countStatements(byCategory, created);
+        addNodes(20);
+        assertEquals("statements with " + (created - 20) + " and " + created + " nodes", few, countStatements(byCategory, created));
+    }
+
+    @Test
+    public void testGetNodesByForeignSource() throws Exception {
+        final Callable<Response> byForeignSource = new Callable<Response>() {
+            public Response call() {
+                return resource.getNodesByForeignSource(FOREIGN_SOURCE);
+            }
+        };
+        addNodes(1);
+        final long few = countStatements(byForeignSource, created);
+        addNodes(20);
+        assertEquals("statements with " + (created - 20) + " and " + created + " nodes", few, countStatements(byForeignSource, created));
+    }
+
+    /**
+     * create nodes in the test foreign source and category, committed so the read-only sessions see them
+     */
+    private void addNodes(final int count) {
+        new TransactionTemplate(transactionManager).execute(new TransactionCallbackWithoutResult() {
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                final OnmsCategory category = categoryDao.findByName(CATEGORY);
+                for (int i = 0; i < count; i++) {
+                    final OnmsNode node = new OnmsNode(distPollerDao.load("localhost"), "node-" + created);
+                    node.setForeignSource(FOREIGN_SOURCE);
+                    node.setForeignId(String.valueOf(created));
+                    node.addCategory(category);
+                    nodeDao.save(node);
+                    created++;
+                }
+                nodeDao.flush();
+            }
+        });
+    }
+
+    /**
+     * @param call - request to measure
+     * @param expectedNodes - size of the returned page
+     * @return prepared statements of the request
+     */
+    private long countStatements(Callable<Response> call, int expectedNodes) throws Exception {
+        final Statistics statistics = sessionFactory.getStatistics();
+        statistics.setStatisticsEnabled(true);
+        statistics.clear();
+        final Response response = call.call();
+        final long statements = statistics.getPrepareStatementCount();
+
+        assertEquals(200, response.getStatus());
+        final OnmsNodeList nodes = (OnmsNodeList) response.getEntity();
+        assertEquals(expectedNodes, nodes.size());
+        for (OnmsNode node : nodes) {                           //marshalled associations are loaded with the page
+            assertTrue(Hibernate.isInitialized(node.getCategories()));
+            assertTrue(Hibernate.isInitialized(node.getAssetRecord()));
+        }
+        return statements;
+    }
+}
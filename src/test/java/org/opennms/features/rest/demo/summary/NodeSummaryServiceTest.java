@@ -0,0 +1,218 @@
+package org.opennms.features.rest.demo.summary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Date;
+
+import org.hibernate.Hibernate;
+import org.hibernate.SessionFactory;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.opennms.core.test.OpenNMSJUnit4ClassRunner;
+import org.opennms.core.test.db.annotations.JUnitTemporaryDatabase;
+import org.opennms.features.rest.demo.util.ReadOnlySessionTemplate;
+import org.opennms.netmgt.dao.api.AlarmDao;
+import org.opennms.netmgt.dao.api.CategoryDao;
+import org.opennms.netmgt.dao.api.DistPollerDao;
+import org.opennms.netmgt.dao.api.EventDao;
+import org.opennms.netmgt.dao.api.MonitoredServiceDao;
+import org.opennms.netmgt.dao.api.NodeDao;
+import org.opennms.netmgt.dao.api.OutageDao;
+import org.opennms.netmgt.dao.api.ServiceTypeDao;
+import org.opennms.netmgt.model.OnmsAlarm;
+import org.opennms.netmgt.model.OnmsCategory;
+import org.opennms.netmgt.model.OnmsDistPoller;
+import org.opennms.netmgt.model.OnmsEvent;
+import org.opennms.netmgt.model.OnmsIpInterface;
+import org.opennms.netmgt.model.OnmsMonitoredService;
+import org.opennms.netmgt.model.OnmsNode;
+import org.opennms.netmgt.model.OnmsOutage;
+import org.opennms.netmgt.model.OnmsServiceType;
+import org.opennms.netmgt.model.OnmsSeverity;
+import org.opennms.test.JUnitConfigurationEnvironment;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * the sections of a summary are loaded in sessions which are closed before marshalling,
+ * every association marshalled with the summary has to be initialized when summarize returns
+ *
+ */
+@RunWith(OpenNMSJUnit4ClassRunner.class)
+@ContextConfiguration(locations={
+        "classpath:/META-INF/opennms/applicationContext-soa.xml",
+        "classpath:/META-INF/opennms/applicationContext-dao.xml",
+        "classpath*:/META-INF/opennms/component-dao.xml",
+        "classpath:/META-INF/opennms/applicationContext-minimal-conf.xml"
+})
+@JUnitConfigurationEnvironment
+@JUnitTemporaryDatabase
+public class NodeSummaryServiceTest {
+
+    private static final String CATEGORY = "NodeSummary";
+
+    @Autowired
+    private SessionFactory sessionFactory;
+
+    @Autowired
+    private NodeDao nodeDao;
+
+    @Autowired
+    private CategoryDao categoryDao;
+
+    @Autowired
+    private DistPollerDao distPollerDao;
+
+    @Autowired
+    private ServiceTypeDao serviceTypeDao;
+
+    @Autowired
+    private MonitoredServiceDao monitoredServiceDao;
+
+    @Autowired
+    private EventDao eventDao;
+
+    @Autowired
+    private AlarmDao alarmDao;
+
+    @Autowired
+    private OutageDao outageDao;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private NodeSummaryService service;
+
+    @Before
+    public void setUp() {
+        final ReadOnlySessionTemplate sessionTemplate = new ReadOnlySessionTemplate();
+        sessionTemplate.setSessionFactory(sessionFactory);
+        service = new NodeSummaryService();
+        service.setSessionTemplate(sessionTemplate);
+        service.start();
+    }
+
+    @After
+    public void tearDown() {
+        service.stop();
+    }
+
+    @Test
+    public void testMarshalledAssociationsAreInitialized() {
+        final NodeSummary summary = service.summarize(addNode());
+
+        for (SectionStatus section : summary.getSections()) {
+            assertEquals(section.getName() + ": " + section.getMessage(), SectionStatus.OK, section.getStatus());
+        }
+        final OnmsNode node = summary.getNode();
+        assertTrue(Hibernate.isInitialized(node.getCategories()));
+        assertTrue(Hibernate.isInitialized(node.getAssetRecord()));
+
+        assertEquals(1, summary.getIpInterfaces().size());
+        for (OnmsIpInterface ipInterface : summary.getIpInterfaces()) {
+            assertTrue(Hibernate.isInitialized(ipInterface.getSnmpInterface()));
+        }
+
+        assertEquals(1, summary.getEvents().size());
+        for (OnmsEvent event : summary.getEvents()) {
+            assertEventInitialized(event);
+        }
+
+        assertEquals(1, summary.getAlarms().size());
+        for (OnmsAlarm alarm : summary.getAlarms()) {
+            assertTrue(Hibernate.isInitialized(alarm.getNode()));
+            assertTrue(Hibernate.isInitialized(alarm.getServiceType()));
+            assertTrue(Hibernate.isInitialized(alarm.getDistPoller()));
+            assertTrue(Hibernate.isInitialized(alarm.getLastEvent()));
+            assertEventInitialized(alarm.getLastEvent());
+        }
+
+        assertEquals(1, summary.getOutages().size());
+        for (OnmsOutage outage : summary.getOutages()) {
+            assertTrue(Hibernate.isInitialized(outage.getMonitoredService()));
+            assertTrue(Hibernate.isInitialized(outage.getMonitoredService().getServiceType()));
+            assertTrue(Hibernate.isInitialized(outage.getMonitoredService().getIpInterface()));
+            assertTrue(Hibernate.isInitialized(outage.getMonitoredService().getIpInterface().getNode()));
+            assertTrue(Hibernate.isInitialized(outage.getServiceLostEvent()));
+            assertEventInitialized(outage.getServiceLostEvent());
+        }
+    }
+
+    private static void assertEventInitialized(OnmsEvent event) {
+        assertTrue(Hibernate.isInitialized(event.getNode()));
+        assertTrue(Hibernate.isInitialized(event.getServiceType()));
+        assertTrue(Hibernate.isInitialized(event.getDistPoller()));
+    }
+
+    /**
+     * create a node with an interface, a service, an event, an alarm and an open outage,
+     * committed so the read-only sessions see them
+     * @return id of the node
+     */
+    private int addNode() {
+        return new TransactionTemplate(transactionManager).execute(new TransactionCallback<Integer>() {
+            public Integer doInTransaction(TransactionStatus status) {
+                OnmsCategory category = categoryDao.findByName(CATEGORY);
+                if (category == null) {
+                    category = new OnmsCategory(CATEGORY);
+                    categoryDao.save(category);
+                }
+                OnmsServiceType serviceType = serviceTypeDao.findByName("ICMP");
+                if (serviceType == null) {
+                    serviceType = new OnmsServiceType("ICMP");
+                    serviceTypeDao.save(serviceType);
+                }
+                final OnmsDistPoller distPoller = distPollerDao.load("localhost");
+
+                final OnmsNode node = new OnmsNode(distPoller, "summary-node");
+                node.addCategory(category);
+                final OnmsIpInterface ipInterface = new OnmsIpInterface("192.168.1.1", node);
+                node.addIpInterface(ipInterface);
+                nodeDao.save(node);
+
+                final OnmsMonitoredService monitoredService = new OnmsMonitoredService(ipInterface, serviceType);
+                monitoredServiceDao.save(monitoredService);
+
+                final Date now = new Date();
+                final OnmsEvent event = new OnmsEvent();
+                event.setEventUei("uei.opennms.org/nodes/nodeLostService");
+                event.setEventTime(now);
+                event.setEventCreateTime(now);
+                event.setEventSource("test");
+                event.setEventSeverity(OnmsSeverity.MAJOR.getId());
+                event.setEventLog("Y");
+                event.setEventDisplay("Y");
+                event.setDistPoller(distPoller);
+                event.setNode(node);
+                event.setIpAddr(ipInterface.getIpAddress());
+                event.setServiceType(serviceType);
+                eventDao.save(event);
+
+                final OnmsAlarm alarm = new OnmsAlarm();
+                alarm.setUei(event.getEventUei());
+                alarm.setAlarmType(1);
+                alarm.setCounter(1);
+                alarm.setSeverity(OnmsSeverity.MAJOR);
+                alarm.setFirstEventTime(now);
+                alarm.setLastEventTime(now);
+                alarm.setDistPoller(distPoller);
+                alarm.setNode(node);
+                alarm.setServiceType(serviceType);
+                alarm.setLastEvent(event);
+                alarmDao.save(alarm);
+
+                outageDao.save(new OnmsOutage(now, event, monitoredService));
+
+                nodeDao.flush();
+                return node.getId();
+            }
+        });
+    }
+}